@@ -5,6 +5,7 @@ import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @FeignClient(name = "msvc-productos", url = "http://localhost:8002/api/v1/productos")
 public interface ProductoClientRest {
@@ -14,6 +15,9 @@ public interface ProductoClientRest {
     
     @GetMapping("/{id}")
     Producto findById(@PathVariable Long id);
+
+    @GetMapping("/batch")
+    Map<Long, Producto> findByIds(@RequestParam List<Long> ids);
     
     @PostMapping
     Producto save(@RequestBody Producto producto);
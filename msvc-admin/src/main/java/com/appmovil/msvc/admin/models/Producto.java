@@ -17,4 +17,5 @@ public class Producto {
     private String imagen;
     private Boolean activo;
     private Double rating;
+    private Long version;
 }
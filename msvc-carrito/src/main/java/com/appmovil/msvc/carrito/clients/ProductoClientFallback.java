@@ -1,30 +1,57 @@
 package com.appmovil.msvc.carrito.clients;
 
 import com.appmovil.msvc.carrito.models.Producto;
+import com.appmovil.msvc.carrito.models.VersionCatalogo;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Component
 @Slf4j
 public class ProductoClientFallback implements ProductoClientRest {
 
+    public static final String NOMBRE_NO_DISPONIBLE = "Producto temporalmente no disponible";
+
+    // Los datos de respaldo no deben quedar guardados como copia del producto
+    public static boolean esFallback(Producto producto) {
+        return producto == null || NOMBRE_NO_DISPONIBLE.equals(producto.getNombre());
+    }
+
     @Override
     public Producto findById(Long id) {
         log.warn("Fallback activado para ProductoClient.findById({}). El servicio de productos no está disponible.", id);
         // Retornar producto por defecto para evitar fallo total
         Producto fallback = new Producto();
         fallback.setIdProducto(id);
-        fallback.setNombre("Producto temporalmente no disponible");
+        fallback.setNombre(NOMBRE_NO_DISPONIBLE);
         fallback.setPrecio(BigDecimal.ZERO);
         fallback.setStock(0);
         fallback.setActivo(false);
         return fallback;
     }
 
+    @Override
+    public Map<Long, Producto> findByIds(List<Long> ids) {
+        log.warn("Fallback activado para ProductoClient.findByIds({}). El servicio de productos no está disponible.", ids);
+        Map<Long, Producto> fallback = new LinkedHashMap<>();
+        for (Long id : ids) {
+            fallback.put(id, findById(id));
+        }
+        return fallback;
+    }
+
+    @Override
+    public VersionCatalogo obtenerVersion() {
+        log.warn("Fallback activado para ProductoClient.obtenerVersion(). El servicio de productos no está disponible.");
+        // Versión desconocida: no se refresca ninguna copia hasta que el servicio responda
+        return null;
+    }
+
     @Override
     public List<Producto> findActivos() {
         log.warn("Fallback activado para ProductoClient.findActivos(). El servicio de productos no está disponible.");
@@ -1,6 +1,7 @@
 package com.appmovil.msvc.carrito.clients;
 
 import com.appmovil.msvc.carrito.models.Producto;
+import com.appmovil.msvc.carrito.models.VersionCatalogo;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -8,13 +9,20 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
+import java.util.Map;
 
 @FeignClient(name = "msvc-productos", url = "http://localhost:8002/api/v1/productos", fallback = ProductoClientFallback.class)
 public interface ProductoClientRest {
 
     @GetMapping("/{id}")
     Producto findById(@PathVariable Long id);
+
+    @GetMapping("/batch")
+    Map<Long, Producto> findByIds(@RequestParam List<Long> ids);
     
+    @GetMapping("/version")
+    VersionCatalogo obtenerVersion();
+
     @GetMapping("/activos")
     List<Producto> findActivos();
     
@@ -3,6 +3,7 @@ package com.appmovil.msvc.carrito.controllers;
 import com.appmovil.msvc.carrito.dtos.AgregarItemDTO;
 import com.appmovil.msvc.carrito.dtos.ActualizarCantidadDTO;
 import com.appmovil.msvc.carrito.dtos.CarritoDTO;
+import com.appmovil.msvc.carrito.dtos.OperacionesCarritoDTO;
 import com.appmovil.msvc.carrito.models.entities.Carrito;
 import com.appmovil.msvc.carrito.services.CarritoService;
 import jakarta.validation.Valid;
@@ -55,6 +56,15 @@ public class CarritoController {
         return ResponseEntity.ok(carrito);
     }
 
+    // Aplica de una vez los cambios que la app acumuló sin conexión (agregar, fijar cantidad, quitar)
+    @PatchMapping("/usuario/{idUsuario}")
+    public ResponseEntity<CarritoDTO> aplicarOperaciones(
+            @PathVariable Long idUsuario,
+            @Valid @RequestBody OperacionesCarritoDTO operacionesDTO) {
+        CarritoDTO carrito = carritoService.aplicarOperaciones(idUsuario, operacionesDTO.getOperaciones());
+        return ResponseEntity.ok(carrito);
+    }
+
     @DeleteMapping("/usuario/{idUsuario}")
     public ResponseEntity<Void> vaciarCarrito(@PathVariable Long idUsuario) {
         carritoService.vaciarCarrito(idUsuario);
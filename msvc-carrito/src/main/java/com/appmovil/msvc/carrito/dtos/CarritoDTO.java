@@ -18,4 +18,6 @@ public class CarritoDTO {
     private List<ItemCarritoDTO> items;
     private BigDecimal total;
     private String estado;
+    // true si faltan datos de usuario o de productos porque el servicio no respondió a tiempo
+    private Boolean detallesParciales;
 }
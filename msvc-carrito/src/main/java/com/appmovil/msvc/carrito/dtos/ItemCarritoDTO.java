@@ -15,6 +15,7 @@ public class ItemCarritoDTO {
     private Long idProducto;
     private String nombreProducto;
     private String imagenProducto;
+    private Boolean productoActivo;
     private Integer cantidad;
     private BigDecimal precioUnitario;
     private BigDecimal subtotal;
@@ -0,0 +1,29 @@
+package com.appmovil.msvc.carrito.dtos;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OperacionCarritoDTO {
+
+    public enum Tipo {
+        AGREGAR, // suma cantidad a la línea del producto (la crea si no existe)
+        FIJAR,   // reemplaza la cantidad de una línea existente
+        QUITAR   // quita la línea; cantidad no se usa
+    }
+
+    @NotNull(message = "El tipo de operación no puede estar vacío")
+    private Tipo tipo;
+
+    @NotNull(message = "El ID del producto no puede estar vacío")
+    private Long idProducto;
+
+    @Min(value = 1, message = "La cantidad debe ser al menos 1")
+    private Integer cantidad;
+}
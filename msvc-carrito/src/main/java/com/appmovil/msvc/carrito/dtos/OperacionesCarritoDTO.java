@@ -0,0 +1,23 @@
+package com.appmovil.msvc.carrito.dtos;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OperacionesCarritoDTO {
+
+    // Se aplican en orden y todas o ninguna
+    @NotEmpty(message = "Debe indicar al menos una operación")
+    @Size(max = 100, message = "No se pueden enviar más de 100 operaciones a la vez")
+    private List<@Valid @NotNull OperacionCarritoDTO> operaciones;
+}
@@ -18,6 +18,15 @@ public class Producto {
     private Integer stock;
     private String categoria;
     private String imagen;
+    private String imagenHash;
     private Boolean activo;
     private BigDecimal rating;
+
+    // URL externa o, si la imagen está en el almacén de msvc-productos, la ruta para descargarla
+    public String referenciaImagen() {
+        if (imagen != null) {
+            return imagen;
+        }
+        return imagenHash != null ? "/api/v1/productos/imagenes/" + imagenHash : null;
+    }
 }
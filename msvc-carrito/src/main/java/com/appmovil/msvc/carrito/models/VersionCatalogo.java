@@ -0,0 +1,21 @@
+package com.appmovil.msvc.carrito.models;
+
+import lombok.*;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class VersionCatalogo {
+    // Se compara solo por igualdad: distinta a la guardada en un ítem significa que su copia puede estar vieja
+    private String version;
+
+    // Versión que cambia solo con nombre, imagen o activo; es la que se compara con la de cada copia
+    private String copias;
+
+    // Las versiones de msvc-productos anteriores a copias solo informan la general
+    public String versionDeCopias() {
+        return copias != null ? copias : version;
+    }
+}
@@ -3,6 +3,7 @@ package com.appmovil.msvc.carrito.models.entities;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -10,7 +11,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "carrito")
+// id_usuario_activo repite id_usuario solo mientras el carrito está ACTIVO: la clave única impide dos
+// carritos activos del mismo usuario aunque los creen dos instancias del servicio a la vez
+@Table(name = "carrito", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_carrito_usuario_activo", columnNames = "id_usuario_activo")
+})
 @Getter
 @Setter
 @ToString(exclude = "items")
@@ -38,6 +43,15 @@ public class Carrito {
     @Builder.Default
     private String estado = "ACTIVO"; // ACTIVO, ABANDONADO, CONVERTIDO
 
+    @Column(name = "id_usuario_activo")
+    private Long idUsuarioActivo;
+
+    // Control optimista: dos escrituras del mismo carrito desde transacciones concurrentes no se pisan,
+    // la segunda falla y se reintenta (ver SerializadorCarritos)
+    @Version
+    @ColumnDefault("0")
+    private Long version;
+
     @Column(nullable = false, precision = 10, scale = 2)
     @Builder.Default
     private BigDecimal total = BigDecimal.ZERO;
@@ -50,11 +64,13 @@ public class Carrito {
     protected void onCreate() {
         fechaCreacion = LocalDateTime.now();
         fechaActualizacion = LocalDateTime.now();
+        idUsuarioActivo = "ACTIVO".equals(estado) ? idUsuario : null;
     }
 
     @PreUpdate
     protected void onUpdate() {
         fechaActualizacion = LocalDateTime.now();
+        idUsuarioActivo = "ACTIVO".equals(estado) ? idUsuario : null;
     }
 
     public void calcularTotal() {
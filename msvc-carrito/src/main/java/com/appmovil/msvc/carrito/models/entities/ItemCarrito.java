@@ -1,5 +1,6 @@
 package com.appmovil.msvc.carrito.models.entities;
 
+import com.appmovil.msvc.carrito.models.Producto;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
@@ -9,7 +10,13 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "item_carrito")
+// id_producto indexado: el refresco de copias actualiza todas las líneas de un producto en un UPDATE.
+// Un producto aparece una sola vez por carrito: dos agregados concurrentes no pueden crear dos líneas
+@Table(name = "item_carrito", indexes = {
+        @Index(name = "idx_item_carrito_producto", columnList = "id_producto")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_item_carrito_producto", columnNames = {"id_carrito", "id_producto"})
+})
 @Getter
 @Setter
 @ToString(exclude = "carrito")
@@ -46,6 +53,21 @@ public class ItemCarrito {
     @Column(name = "fecha_agregado", nullable = false, updatable = false)
     private LocalDateTime fechaAgregado;
 
+    // Copia de los datos del producto tomada al agregarlo: el carrito se muestra sin llamar a msvc-productos.
+    // versionCatalogo es la versión del catálogo leída antes de obtener esos datos; cuando msvc-productos
+    // informa otra, SnapshotsProductos refresca la copia en segundo plano
+    @Column(name = "nombre_producto")
+    private String nombreProducto;
+
+    @Column(name = "imagen_producto", length = 2048)
+    private String imagenProducto;
+
+    @Column(name = "producto_activo")
+    private Boolean productoActivo;
+
+    @Column(name = "version_catalogo", length = 40)
+    private String versionCatalogo;
+
     @PrePersist
     protected void onCreate() {
         fechaAgregado = LocalDateTime.now();
@@ -57,6 +79,17 @@ public class ItemCarrito {
         calcularSubtotal();
     }
 
+    public void aplicarSnapshot(Producto producto, String version) {
+        this.nombreProducto = producto.getNombre();
+        this.imagenProducto = producto.referenciaImagen();
+        this.productoActivo = producto.getActivo();
+        this.versionCatalogo = version;
+    }
+
+    public boolean tieneSnapshot() {
+        return nombreProducto != null;
+    }
+
     public void calcularSubtotal() {
         if (cantidad != null && precioUnitario != null) {
             this.subtotal = precioUnitario.multiply(BigDecimal.valueOf(cantidad));
@@ -1,6 +1,7 @@
 package com.appmovil.msvc.carrito.repositories;
 
 import com.appmovil.msvc.carrito.models.entities.Carrito;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -9,6 +10,8 @@ import java.util.Optional;
 @Repository
 public interface CarritoRepository extends JpaRepository<Carrito, Long> {
     
+    // Con las líneas en la misma consulta: el carrito se usa también fuera de la transacción que lo leyó
+    @EntityGraph(attributePaths = "items")
     Optional<Carrito> findByIdUsuarioAndEstado(Long idUsuario, String estado);
     
     Optional<Carrito> findByIdUsuario(Long idUsuario);
@@ -2,6 +2,9 @@ package com.appmovil.msvc.carrito.repositories;
 
 import com.appmovil.msvc.carrito.models.entities.ItemCarrito;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -15,4 +18,12 @@ public interface ItemCarritoRepository extends JpaRepository<ItemCarrito, Long>
     Optional<ItemCarrito> findByCarritoIdCarritoAndIdProducto(Long idCarrito, Long idProducto);
     
     void deleteByCarritoIdCarrito(Long idCarrito);
+
+    // Refresca la copia del producto en todas las líneas que lo contienen, de cualquier carrito
+    @Modifying
+    @Query("UPDATE ItemCarrito i SET i.nombreProducto = :nombre, i.imagenProducto = :imagen, " +
+            "i.productoActivo = :activo, i.versionCatalogo = :version WHERE i.idProducto = :idProducto")
+    int actualizarSnapshot(@Param("idProducto") Long idProducto, @Param("nombre") String nombre,
+                           @Param("imagen") String imagen, @Param("activo") Boolean activo,
+                           @Param("version") String version);
 }
@@ -2,8 +2,11 @@ package com.appmovil.msvc.carrito.services;
 
 import com.appmovil.msvc.carrito.dtos.CarritoDTO;
 import com.appmovil.msvc.carrito.dtos.AgregarItemDTO;
+import com.appmovil.msvc.carrito.dtos.OperacionCarritoDTO;
 import com.appmovil.msvc.carrito.models.entities.Carrito;
 
+import java.util.List;
+
 public interface CarritoService {
     
     Carrito obtenerCarritoActivo(Long idUsuario);
@@ -18,5 +21,7 @@ public interface CarritoService {
     
     void vaciarCarrito(Long idUsuario);
     
+    CarritoDTO aplicarOperaciones(Long idUsuario, List<OperacionCarritoDTO> operaciones);
+    
     Carrito crearCarrito(Long idUsuario);
 }
@@ -1,10 +1,12 @@
 package com.appmovil.msvc.carrito.services;
 
+import com.appmovil.msvc.carrito.clients.ProductoClientFallback;
 import com.appmovil.msvc.carrito.clients.ProductoClientRest;
 import com.appmovil.msvc.carrito.clients.UsuarioClientRest;
 import com.appmovil.msvc.carrito.dtos.AgregarItemDTO;
 import com.appmovil.msvc.carrito.dtos.CarritoDTO;
 import com.appmovil.msvc.carrito.dtos.ItemCarritoDTO;
+import com.appmovil.msvc.carrito.dtos.OperacionCarritoDTO;
 import com.appmovil.msvc.carrito.exceptions.CarritoException;
 import com.appmovil.msvc.carrito.exceptions.ResourceNotFoundException;
 import com.appmovil.msvc.carrito.models.Producto;
@@ -14,18 +16,39 @@ import com.appmovil.msvc.carrito.models.entities.ItemCarrito;
 import com.appmovil.msvc.carrito.repositories.CarritoRepository;
 import com.appmovil.msvc.carrito.repositories.ItemCarritoRepository;
 import feign.FeignException;
-import jakarta.transaction.Transactional;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+// Sin @Transactional en la clase: cada escritura abre su transacción dentro del lock del usuario
+// (SerializadorCarritos), y las lecturas usan las de los repositorios
 @Service
-@Transactional
+@Slf4j
 public class CarritoServiceImpl implements CarritoService {
 
+    // Plazo total para los datos de usuario y productos al mostrar el carrito
+    @Value("${carrito.detalles.timeout-ms:800}")
+    private long timeoutDetallesMs;
+
     @Autowired
     private CarritoRepository carritoRepository;
 
@@ -38,76 +61,152 @@ public class CarritoServiceImpl implements CarritoService {
     @Autowired
     private UsuarioClientRest usuarioClientRest;
 
+    @Autowired
+    private SnapshotsProductos snapshotsProductos;
+
+    @Autowired
+    private CarritosActivos carritosActivos;
+
+    @Autowired
+    private SerializadorCarritos serializadorCarritos;
+
+    // Las llamadas Feign bloquean; en hilos virtuales la espera no ocupa un hilo del sistema
+    private final ExecutorService consultasRemotas = Executors.newVirtualThreadPerTaskExecutor();
+
     @Override
     public Carrito obtenerCarritoActivo(Long idUsuario) {
+        if (carritosActivos.isHabilitado()) {
+            return carritosActivos.obtener(idUsuario, () -> cargarCarritoActivo(idUsuario));
+        }
+        return cargarCarritoActivo(idUsuario);
+    }
+
+    // La lectura no toma el lock; solo el alta se serializa, y vuelve a buscar por si otra operación
+    // del mismo usuario lo creó mientras tanto
+    private Carrito cargarCarritoActivo(Long idUsuario) {
         return carritoRepository.findByIdUsuarioAndEstado(idUsuario, "ACTIVO")
-                .orElseGet(() -> crearCarrito(idUsuario));
+                .orElseGet(() -> serializadorCarritos.ejecutar(idUsuario, () -> carritoRepository
+                        .findByIdUsuarioAndEstado(idUsuario, "ACTIVO")
+                        .orElseGet(() -> crearCarrito(idUsuario))));
     }
 
     @Override
     public CarritoDTO obtenerCarritoConDetalles(Long idUsuario) {
-        Carrito carrito = obtenerCarritoActivo(idUsuario);
-        
-        Usuario usuario = null;
-        try {
-            usuario = usuarioClientRest.findById(idUsuario);
-        } catch (FeignException ex) {
-            throw new ResourceNotFoundException("Usuario", "id", idUsuario.toString());
+        return detalles(obtenerCarritoActivo(idUsuario));
+    }
+
+    private CarritoDTO detalles(Carrito carrito) {
+        Long idUsuario = carrito.getIdUsuario();
+
+        // Las líneas con copia del producto se muestran con ella; solo las anteriores a las copias
+        // requieren llamar a msvc-productos. Una copia tomada con otra versión del catálogo se muestra
+        // igual y se refresca en segundo plano
+        String version = snapshotsProductos.versionConocida();
+        Set<Long> sinSnapshot = new LinkedHashSet<>();
+        Set<Long> desactualizados = new LinkedHashSet<>();
+        for (ItemCarrito item : carrito.getItems()) {
+            if (!item.tieneSnapshot()) {
+                sinSnapshot.add(item.getIdProducto());
+            } else if (!snapshotsProductos.vigente(item.getVersionCatalogo())) {
+                desactualizados.add(item.getIdProducto());
+            }
+        }
+        if (!desactualizados.isEmpty()) {
+            snapshotsProductos.refrescar(desactualizados);
         }
+        List<Long> idsProductos = List.copyOf(sinSnapshot);
 
-        List<ItemCarritoDTO> itemsDTO = carrito.getItems().stream()
-                .map(item -> {
-                    Producto producto = null;
-                    try {
-                        producto = productoClientRest.findById(item.getIdProducto());
-                    } catch (FeignException ex) {
-                        throw new CarritoException("Producto no encontrado: " + item.getIdProducto());
-                    }
+        // El usuario y los productos que faltan (todos en una sola llamada batch) se piden a la vez, cada
+        // uno en un hilo virtual: el carrito tarda lo que la llamada más lenta y no la suma de ambas
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutDetallesMs);
+        Future<Usuario> consultaUsuario = consultasRemotas.submit(() -> usuarioClientRest.findById(idUsuario));
+        Future<Map<Long, Producto>> consultaProductos = idsProductos.isEmpty()
+                ? CompletableFuture.completedFuture(Map.of())
+                : consultasRemotas.submit(() -> productoClientRest.findByIds(idsProductos));
+
+        // Si un servicio falla o no responde antes del plazo, el carrito se devuelve igual con los datos
+        // propios (cantidades, precios, total) y sin los que faltaron
+        Usuario usuario = esperar(consultaUsuario, limite, "usuario " + idUsuario);
+        Map<Long, Producto> productos = esperar(consultaProductos, limite, "productos " + idsProductos);
+        boolean parcial = usuario == null || productos == null;
+        if (productos == null) {
+            productos = Map.of();
+        }
+        snapshotsProductos.guardar(productos, version);
 
-                    return ItemCarritoDTO.builder()
-                            .idItem(item.getIdItem())
-                            .idProducto(item.getIdProducto())
-                            .nombreProducto(producto.getNombre())
-                            .imagenProducto(producto.getImagen())
-                            .precioUnitario(item.getPrecioUnitario())
-                            .cantidad(item.getCantidad())
-                            .subtotal(item.getSubtotal())
-                            .build();
-                }).toList();
+        List<ItemCarritoDTO> itemsDTO = new ArrayList<>(carrito.getItems().size());
+        for (ItemCarrito item : carrito.getItems()) {
+            ItemCarritoDTO.ItemCarritoDTOBuilder dto = ItemCarritoDTO.builder()
+                    .idItem(item.getIdItem())
+                    .idProducto(item.getIdProducto())
+                    .precioUnitario(item.getPrecioUnitario())
+                    .cantidad(item.getCantidad())
+                    .subtotal(item.getSubtotal());
+            if (item.tieneSnapshot()) {
+                dto.nombreProducto(item.getNombreProducto())
+                        .imagenProducto(item.getImagenProducto())
+                        .productoActivo(item.getProductoActivo());
+            } else {
+                // Con el circuit breaker abierto findByIds devuelve datos de respaldo: cuentan como faltantes
+                Producto producto = productos.get(item.getIdProducto());
+                if (!ProductoClientFallback.esFallback(producto)) {
+                    dto.nombreProducto(producto.getNombre())
+                            .imagenProducto(producto.referenciaImagen())
+                            .productoActivo(producto.getActivo());
+                } else {
+                    parcial = true;
+                }
+            }
+            itemsDTO.add(dto.build());
+        }
 
         return CarritoDTO.builder()
                 .idCarrito(carrito.getIdCarrito())
                 .idUsuario(carrito.getIdUsuario())
-                .nombreUsuario(usuario.getNombre() + " " + usuario.getApellido())
+                .nombreUsuario(usuario != null ? usuario.getNombre() + " " + usuario.getApellido() : null)
                 .items(itemsDTO)
                 .total(carrito.getTotal())
                 .estado(carrito.getEstado())
+                .detallesParciales(parcial)
                 .build();
     }
 
-    @Override
-    public Carrito agregarItem(Long idUsuario, AgregarItemDTO agregarItemDTO) {
-        Carrito carrito = obtenerCarritoActivo(idUsuario);
-        
-        Producto producto = null;
+    // Resultado de la consulta o null si falló o no terminó antes del límite (se cancela)
+    private <T> T esperar(Future<T> consulta, long limite, String descripcion) {
         try {
-            producto = productoClientRest.findById(agregarItemDTO.getIdProducto());
-        } catch (FeignException ex) {
-            throw new ResourceNotFoundException("Producto", "id", agregarItemDTO.getIdProducto().toString());
+            return consulta.get(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            consulta.cancel(true);
+            log.warn("Sin respuesta para {} en {} ms; el carrito se devuelve sin esos datos", descripcion, timeoutDetallesMs);
+        } catch (ExecutionException ex) {
+            log.warn("No se pudieron obtener {}: {}", descripcion, ex.getCause().toString());
+        } catch (InterruptedException ex) {
+            consulta.cancel(true);
+            Thread.currentThread().interrupt();
         }
+        return null;
+    }
 
-        if (!producto.getActivo()) {
-            throw new CarritoException("El producto no está disponible");
-        }
+    @PreDestroy
+    public void cerrar() {
+        consultasRemotas.shutdownNow();
+    }
 
-        if (producto.getStock() < agregarItemDTO.getCantidad()) {
-            throw new CarritoException("Stock insuficiente. Disponible: " + producto.getStock());
-        }
-        
-        // Validar cantidad máxima por producto (10 unidades)
-        if (agregarItemDTO.getCantidad() > 10) {
-            throw new CarritoException("No se pueden agregar más de 10 unidades por producto");
+    @Override
+    public Carrito agregarItem(Long idUsuario, AgregarItemDTO agregarItemDTO) {
+        if (carritosActivos.isHabilitado()) {
+            return agregarItemEnMemoria(idUsuario, agregarItemDTO);
         }
+        // Se lee antes que el producto (ver SnapshotsProductos.refrescar). La llamada remota queda
+        // fuera del lock del usuario
+        String version = snapshotsProductos.versionConocida();
+        Producto producto = validarProductoParaAgregar(agregarItemDTO);
+
+        return serializadorCarritos.ejecutar(idUsuario, () -> agregarItemEnBase(idUsuario, agregarItemDTO, producto, version));
+    }
+
+    private Carrito agregarItemEnBase(Long idUsuario, AgregarItemDTO agregarItemDTO, Producto producto, String version) {
+        Carrito carrito = cargarCarritoActivo(idUsuario);
 
         Optional<ItemCarrito> itemExistente = itemCarritoRepository
                 .findByCarritoIdCarritoAndIdProducto(carrito.getIdCarrito(), agregarItemDTO.getIdProducto());
@@ -115,17 +214,11 @@ public class CarritoServiceImpl implements CarritoService {
         if (itemExistente.isPresent()) {
             ItemCarrito item = itemExistente.get();
             int nuevaCantidad = item.getCantidad() + agregarItemDTO.getCantidad();
-            
-            if (producto.getStock() < nuevaCantidad) {
-                throw new CarritoException("Stock insuficiente. Disponible: " + producto.getStock());
-            }
-            
-            if (nuevaCantidad > 10) {
-                throw new CarritoException("No se pueden tener más de 10 unidades por producto");
-            }
+            validarCantidadTotal(producto, nuevaCantidad);
             
             item.setCantidad(nuevaCantidad);
             item.calcularSubtotal();
+            item.aplicarSnapshot(producto, version);
             itemCarritoRepository.save(item);
         } else {
             ItemCarrito nuevoItem = ItemCarrito.builder()
@@ -135,6 +228,7 @@ public class CarritoServiceImpl implements CarritoService {
                     .precioUnitario(producto.getPrecio())
                     .build();
             nuevoItem.calcularSubtotal();
+            nuevoItem.aplicarSnapshot(producto, version);
             carrito.agregarItem(nuevoItem);
         }
 
@@ -144,29 +238,29 @@ public class CarritoServiceImpl implements CarritoService {
 
     @Override
     public Carrito actualizarCantidadItem(Long idUsuario, Long idProducto, Integer cantidad) {
-        Carrito carrito = obtenerCarritoActivo(idUsuario);
+        if (carritosActivos.isHabilitado()) {
+            return actualizarCantidadItemEnMemoria(idUsuario, idProducto, cantidad);
+        }
+        return serializadorCarritos.ejecutar(idUsuario, () -> actualizarCantidadItemEnBase(idUsuario, idProducto, cantidad));
+    }
+
+    // El producto se consulta solo si la línea existe, por eso aquí la llamada remota queda dentro del lock
+    private Carrito actualizarCantidadItemEnBase(Long idUsuario, Long idProducto, Integer cantidad) {
+        Carrito carrito = cargarCarritoActivo(idUsuario);
         
         ItemCarrito item = itemCarritoRepository
                 .findByCarritoIdCarritoAndIdProducto(carrito.getIdCarrito(), idProducto)
                 .orElseThrow(() -> new ResourceNotFoundException("Item", "idProducto", idProducto.toString()));
 
-        Producto producto = null;
-        try {
-            producto = productoClientRest.findById(idProducto);
-        } catch (FeignException ex) {
-            throw new ResourceNotFoundException("Producto", "id", idProducto.toString());
-        }
-
-        if (producto.getStock() < cantidad) {
-            throw new CarritoException("Stock insuficiente. Disponible: " + producto.getStock());
-        }
-        
-        if (cantidad > 10) {
-            throw new CarritoException("No se pueden tener más de 10 unidades por producto");
-        }
+        String version = snapshotsProductos.versionConocida();
+        Producto producto = buscarProducto(idProducto);
+        validarCantidadTotal(producto, cantidad);
 
         item.setCantidad(cantidad);
         item.calcularSubtotal();
+        if (!ProductoClientFallback.esFallback(producto)) {
+            item.aplicarSnapshot(producto, version);
+        }
         itemCarritoRepository.save(item);
 
         carrito.calcularTotal();
@@ -175,26 +269,256 @@ public class CarritoServiceImpl implements CarritoService {
 
     @Override
     public Carrito removerItem(Long idUsuario, Long idProducto) {
-        Carrito carrito = obtenerCarritoActivo(idUsuario);
-        
-        ItemCarrito item = itemCarritoRepository
-                .findByCarritoIdCarritoAndIdProducto(carrito.getIdCarrito(), idProducto)
-                .orElseThrow(() -> new ResourceNotFoundException("Item", "idProducto", idProducto.toString()));
+        if (carritosActivos.isHabilitado()) {
+            return carritosActivos.modificar(idUsuario, () -> cargarCarritoActivo(idUsuario),
+                    carrito -> quitarLinea(carrito, idProducto));
+        }
+        return serializadorCarritos.ejecutar(idUsuario, () -> {
+            Carrito carrito = cargarCarritoActivo(idUsuario);
 
-        carrito.removerItem(item);
-        itemCarritoRepository.delete(item);
+            ItemCarrito item = itemCarritoRepository
+                    .findByCarritoIdCarritoAndIdProducto(carrito.getIdCarrito(), idProducto)
+                    .orElseThrow(() -> new ResourceNotFoundException("Item", "idProducto", idProducto.toString()));
 
-        carrito.calcularTotal();
-        return carritoRepository.save(carrito);
+            carrito.removerItem(item);
+            itemCarritoRepository.delete(item);
+
+            carrito.calcularTotal();
+            return carritoRepository.save(carrito);
+        });
     }
 
     @Override
     public void vaciarCarrito(Long idUsuario) {
-        Carrito carrito = obtenerCarritoActivo(idUsuario);
-        itemCarritoRepository.deleteByCarritoIdCarrito(carrito.getIdCarrito());
-        carrito.getItems().clear();
-        carrito.setTotal(BigDecimal.ZERO);
-        carritoRepository.save(carrito);
+        if (carritosActivos.isHabilitado()) {
+            carritosActivos.modificar(idUsuario, () -> cargarCarritoActivo(idUsuario), CarritosActivos.CarritoActivo::vaciar);
+            return;
+        }
+        serializadorCarritos.ejecutar(idUsuario, () -> {
+            Carrito carrito = cargarCarritoActivo(idUsuario);
+            itemCarritoRepository.deleteByCarritoIdCarrito(carrito.getIdCarrito());
+            carrito.getItems().clear();
+            carrito.setTotal(BigDecimal.ZERO);
+            return carritoRepository.save(carrito);
+        });
+    }
+
+    // Con carritos activos en memoria el producto se consulta antes de tomar el carrito: el cambio
+    // se aplica con el lock de CarritosActivos y no puede incluir llamadas remotas
+    private Carrito agregarItemEnMemoria(Long idUsuario, AgregarItemDTO agregarItemDTO) {
+        String version = snapshotsProductos.versionConocida();
+        Producto producto = validarProductoParaAgregar(agregarItemDTO);
+        Long idProducto = agregarItemDTO.getIdProducto();
+
+        return carritosActivos.modificar(idUsuario, () -> cargarCarritoActivo(idUsuario),
+                carrito -> agregarLinea(carrito, idProducto, agregarItemDTO.getCantidad(), producto, version));
+    }
+
+    // El producto ya pasó validarProducto; aquí se valida la cantidad final de la línea
+    private void agregarLinea(CarritosActivos.CarritoActivo carrito, Long idProducto, int cantidad, Producto producto, String version) {
+        CarritosActivos.Linea actual = carrito.linea(idProducto);
+        if (actual != null) {
+            int nuevaCantidad = actual.cantidad() + cantidad;
+            validarCantidadTotal(producto, nuevaCantidad);
+            carrito.poner(actual.conCantidad(nuevaCantidad).conSnapshot(producto, version));
+        } else {
+            carrito.poner(CarritosActivos.Linea.nueva(idProducto, cantidad, producto.getPrecio())
+                    .conSnapshot(producto, version));
+        }
+    }
+
+    private Carrito actualizarCantidadItemEnMemoria(Long idUsuario, Long idProducto, Integer cantidad) {
+        String version = snapshotsProductos.versionConocida();
+        Producto producto = buscarProducto(idProducto);
+
+        return carritosActivos.modificar(idUsuario, () -> cargarCarritoActivo(idUsuario),
+                carrito -> fijarLinea(carrito, idProducto, cantidad, producto, version));
+    }
+
+    private void fijarLinea(CarritosActivos.CarritoActivo carrito, Long idProducto, int cantidad, Producto producto, String version) {
+        CarritosActivos.Linea actual = carrito.linea(idProducto);
+        if (actual == null) {
+            throw new ResourceNotFoundException("Item", "idProducto", idProducto.toString());
+        }
+        validarCantidadTotal(producto, cantidad);
+        CarritosActivos.Linea nueva = actual.conCantidad(cantidad);
+        carrito.poner(ProductoClientFallback.esFallback(producto) ? nueva : nueva.conSnapshot(producto, version));
+    }
+
+    private void quitarLinea(CarritosActivos.CarritoActivo carrito, Long idProducto) {
+        if (carrito.linea(idProducto) == null) {
+            throw new ResourceNotFoundException("Item", "idProducto", idProducto.toString());
+        }
+        carrito.quitar(idProducto);
+    }
+
+    // Cambios sin conexión de la app: se aplican en orden, todos o ninguno, con las mismas validaciones que
+    // las operaciones individuales. Los productos se piden en una sola llamada batch antes de tomar el
+    // carrito y el total se calcula una vez al final
+    @Override
+    public CarritoDTO aplicarOperaciones(Long idUsuario, List<OperacionCarritoDTO> operaciones) {
+        String version = snapshotsProductos.versionConocida();
+        Map<Long, Producto> productos = buscarProductos(operaciones);
+
+        Carrito carrito;
+        if (carritosActivos.isHabilitado()) {
+            carrito = carritosActivos.modificar(idUsuario, () -> cargarCarritoActivo(idUsuario), activo -> {
+                for (OperacionCarritoDTO operacion : operaciones) {
+                    Long idProducto = operacion.getIdProducto();
+                    Producto producto = productos.get(idProducto);
+                    switch (operacion.getTipo()) {
+                        case AGREGAR -> {
+                            validarProducto(producto, operacion.getCantidad());
+                            agregarLinea(activo, idProducto, operacion.getCantidad(), producto, version);
+                        }
+                        case FIJAR -> fijarLinea(activo, idProducto, operacion.getCantidad(), producto, version);
+                        case QUITAR -> quitarLinea(activo, idProducto);
+                    }
+                }
+            });
+        } else {
+            carrito = serializadorCarritos.ejecutar(idUsuario,
+                    () -> aplicarOperacionesEnBase(idUsuario, operaciones, productos, version));
+        }
+        return detalles(carrito);
+    }
+
+    private Carrito aplicarOperacionesEnBase(Long idUsuario, List<OperacionCarritoDTO> operaciones,
+                                             Map<Long, Producto> productos, String version) {
+        Carrito carrito = cargarCarritoActivo(idUsuario);
+
+        // Se trabaja sobre las líneas por producto. Una línea quitada se reusa si otra operación vuelve a
+        // agregar el producto: Hibernate inserta antes de borrar y la clave (id_carrito, id_producto)
+        // rechazaría una fila nueva
+        Map<Long, ItemCarrito> lineas = new LinkedHashMap<>();
+        carrito.getItems().forEach(item -> lineas.put(item.getIdProducto(), item));
+        Map<Long, ItemCarrito> quitadas = new HashMap<>();
+
+        for (OperacionCarritoDTO operacion : operaciones) {
+            Long idProducto = operacion.getIdProducto();
+            Producto producto = productos.get(idProducto);
+            ItemCarrito item = lineas.get(idProducto);
+            switch (operacion.getTipo()) {
+                case AGREGAR -> {
+                    validarProducto(producto, operacion.getCantidad());
+                    if (item != null) {
+                        int nuevaCantidad = item.getCantidad() + operacion.getCantidad();
+                        validarCantidadTotal(producto, nuevaCantidad);
+                        item.setCantidad(nuevaCantidad);
+                    } else {
+                        item = quitadas.containsKey(idProducto)
+                                ? quitadas.remove(idProducto)
+                                : ItemCarrito.builder().idProducto(idProducto).build();
+                        item.setCantidad(operacion.getCantidad());
+                        item.setPrecioUnitario(producto.getPrecio());
+                        lineas.put(idProducto, item);
+                    }
+                    item.calcularSubtotal();
+                    item.aplicarSnapshot(producto, version);
+                }
+                case FIJAR -> {
+                    if (item == null) {
+                        throw new ResourceNotFoundException("Item", "idProducto", idProducto.toString());
+                    }
+                    validarCantidadTotal(producto, operacion.getCantidad());
+                    item.setCantidad(operacion.getCantidad());
+                    item.calcularSubtotal();
+                    if (!ProductoClientFallback.esFallback(producto)) {
+                        item.aplicarSnapshot(producto, version);
+                    }
+                }
+                case QUITAR -> {
+                    if (item == null) {
+                        throw new ResourceNotFoundException("Item", "idProducto", idProducto.toString());
+                    }
+                    quitadas.put(idProducto, lineas.remove(idProducto));
+                }
+            }
+        }
+
+        for (ItemCarrito quitada : quitadas.values()) {
+            carrito.getItems().remove(quitada);
+            quitada.setCarrito(null);
+        }
+        for (ItemCarrito item : lineas.values()) {
+            if (item.getCarrito() == null) {
+                item.setCarrito(carrito);
+                carrito.getItems().add(item);
+            }
+        }
+        carrito.calcularTotal();
+        return carritoRepository.save(carrito);
+    }
+
+    // Productos de las operaciones que agregan o fijan cantidad, en una sola llamada
+    private Map<Long, Producto> buscarProductos(List<OperacionCarritoDTO> operaciones) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (OperacionCarritoDTO operacion : operaciones) {
+            if (operacion.getTipo() != OperacionCarritoDTO.Tipo.QUITAR) {
+                if (operacion.getCantidad() == null) {
+                    throw new CarritoException("La operación " + operacion.getTipo() + " del producto "
+                            + operacion.getIdProducto() + " requiere una cantidad");
+                }
+                ids.add(operacion.getIdProducto());
+            }
+        }
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<Long, Producto> productos;
+        try {
+            productos = productoClientRest.findByIds(List.copyOf(ids));
+        } catch (FeignException ex) {
+            throw new ResourceNotFoundException("Producto", "id", ids.toString());
+        }
+        for (Long id : ids) {
+            if (productos.get(id) == null) {
+                throw new ResourceNotFoundException("Producto", "id", id.toString());
+            }
+        }
+        return productos;
+    }
+
+    private Producto buscarProducto(Long idProducto) {
+        try {
+            return productoClientRest.findById(idProducto);
+        } catch (FeignException ex) {
+            throw new ResourceNotFoundException("Producto", "id", idProducto.toString());
+        }
+    }
+
+    private Producto validarProductoParaAgregar(AgregarItemDTO agregarItemDTO) {
+        Producto producto = buscarProducto(agregarItemDTO.getIdProducto());
+        validarProducto(producto, agregarItemDTO.getCantidad());
+        return producto;
+    }
+
+    // Producto disponible y con stock para las unidades que se agregan
+    private void validarProducto(Producto producto, int cantidad) {
+        if (!producto.getActivo()) {
+            throw new CarritoException("El producto no está disponible");
+        }
+
+        if (producto.getStock() < cantidad) {
+            throw new CarritoException("Stock insuficiente. Disponible: " + producto.getStock());
+        }
+        
+        // Validar cantidad máxima por producto (10 unidades)
+        if (cantidad > 10) {
+            throw new CarritoException("No se pueden agregar más de 10 unidades por producto");
+        }
+    }
+
+    // Cantidad final de la línea contra el stock y el máximo por producto
+    private void validarCantidadTotal(Producto producto, int cantidad) {
+        if (producto.getStock() < cantidad) {
+            throw new CarritoException("Stock insuficiente. Disponible: " + producto.getStock());
+        }
+        
+        if (cantidad > 10) {
+            throw new CarritoException("No se pueden tener más de 10 unidades por producto");
+        }
     }
 
     @Override
@@ -0,0 +1,853 @@
+package com.appmovil.msvc.carrito.services;
+
+import com.appmovil.msvc.carrito.clients.ProductoClientFallback;
+import com.appmovil.msvc.carrito.exceptions.CarritoException;
+import com.appmovil.msvc.carrito.models.Producto;
+import com.appmovil.msvc.carrito.models.entities.Carrito;
+import com.appmovil.msvc.carrito.models.entities.ItemCarrito;
+import com.appmovil.msvc.carrito.repositories.CarritoRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Carritos activos en memoria con escritura diferida (write-back), por idUsuario y con desalojo LRU.
+ * <p>
+ * Cada cambio se aplica sobre la copia en memoria y se anota en un journal append-only con el estado
+ * final de cada línea modificada (cantidad 0 = línea quitada). Los carritos modificados se escriben en
+ * la base de datos en lotes cada intervalo-flush-ms y al apagar el servicio: varios clics sobre el mismo
+ * carrito dentro de un intervalo terminan en una sola reconciliación de sus líneas. Al arrancar se
+ * reaplican los registros que no llegaron a la base de datos; como son valores absolutos y no deltas,
+ * reaplicar un segmento ya escrito no cambia el resultado. El journal se escribe en segmentos numerados
+ * (journal.1, journal.2, ...) y cada flush pasa al siguiente.
+ * <p>
+ * Solo se desalojan carritos sin cambios pendientes: uno que vuelve a cargarse desde la base de datos
+ * siempre la encuentra al día. Con el modo deshabilitado CarritoServiceImpl usa la base de datos directamente.
+ * <p>
+ * No hay un lock global: el estado de cada carrito se protege con el lock de la franja de su usuario (como
+ * en SerializadorCarritos), el mapa solo se toma para buscar, agregar o desalojar, y el journal se escribe
+ * con commit en grupo: los registros de distintos usuarios que llegan mientras se escribe un grupo salen
+ * juntos en el siguiente, con un solo write y un solo fsync.
+ */
+@Component
+@Slf4j
+public class CarritosActivos {
+
+    // Un registro no puede superar este tamaño; un largo mayor indica un registro corrupto
+    private static final int MAX_REGISTRO = 16 * 1024;
+
+    @Value("${carrito.carritos-activos.enabled:false}")
+    private boolean habilitado;
+
+    @Value("${carrito.carritos-activos.capacidad:10000}")
+    private int capacidad;
+
+    @Value("${carrito.carritos-activos.intervalo-flush-ms:500}")
+    private long intervaloFlushMs;
+
+    @Value("${carrito.carritos-activos.journal:./data/carritos-activos.journal}")
+    private String rutaJournal;
+
+    // true: fsync en cada cambio (sobrevive a un corte de energía, no solo a la caída del proceso)
+    @Value("${carrito.carritos-activos.fsync:false}")
+    private boolean fsync;
+
+    @Value("${carrito.carritos-activos.franjas:256}")
+    private int franjas;
+
+    @Autowired
+    private CarritoRepository carritoRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Lock de cada franja de usuarios: protege las líneas de sus carritos y sus cambios en curso.
+    // Orden de los locks: franja, luego diario, luego mapa; nunca al revés
+    private ReentrantLock[] candados;
+
+    // Orden de acceso: el primero es el usado hace más tiempo. carritos y porEscribir se protegen con mapa,
+    // que solo se toma para operaciones en memoria
+    private final LinkedHashMap<Long, CarritoActivo> carritos = new LinkedHashMap<>(256, 0.75f, true);
+    private final ReentrantLock mapa = new ReentrantLock();
+
+    // Carritos con cambios anotados en el journal activo; se agregan con diario tomado. Se guarda la
+    // referencia y no solo el ID: un get sobre carritos cuenta como uso y los hilos de fondo no deben
+    // alterar el orden LRU
+    private final Map<Long, CarritoActivo> sucios = new ConcurrentHashMap<>();
+
+    // Usuarios incluidos en segmentos rotados que todavía no se escribieron (cantidad de segmentos)
+    private final Map<Long, Integer> porEscribir = new HashMap<>();
+
+    // Segmento activo del journal (rutaJournal.N); cada flush pasa al siguiente. diario protege el canal,
+    // el grupo abierto y sucios; se suelta mientras se escribe un grupo
+    private final ReentrantLock diario = new ReentrantLock();
+    private final Condition grupoEscrito = diario.newCondition();
+    private Grupo grupoAbierto = new Grupo();
+    private boolean escribiendo;
+    private FileChannel journal;
+    private Path rutaSegmento;
+    private long ultimoSegmento;
+
+    // Segmentos rotados cuyo lote falló al escribirse; se reintentan en orden en el siguiente flush
+    private final Deque<Segmento> segmentosSinAplicar = new ArrayDeque<>();
+
+    private TransactionTemplate transacciones;
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void iniciar() throws IOException {
+        if (!habilitado) {
+            return;
+        }
+        if (capacidad < 1) {
+            throw new IllegalStateException("carrito.carritos-activos.capacidad debe ser al menos 1");
+        }
+        if (franjas < 1) {
+            throw new IllegalStateException("carrito.carritos-activos.franjas debe ser al menos 1");
+        }
+        candados = new ReentrantLock[franjas];
+        for (int i = 0; i < franjas; i++) {
+            candados[i] = new ReentrantLock();
+        }
+
+        transacciones = new TransactionTemplate(transactionManager);
+        recuperarJournal();
+        rutaSegmento = Path.of(rutaJournal + "." + (++ultimoSegmento));
+        journal = abrir(rutaSegmento);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "carritos-activos-flush");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        flusher.scheduleWithFixedDelay(this::flushSinFallar, intervaloFlushMs, intervaloFlushMs, TimeUnit.MILLISECONDS);
+        log.info("Carritos activos en memoria (capacidad {}, flush cada {} ms, journal {})",
+                capacidad, intervaloFlushMs, rutaJournal);
+    }
+
+    @PreDestroy
+    public void detener() throws IOException {
+        if (flusher == null) {
+            return;
+        }
+
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        journal.close();
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    /**
+     * Copia del carrito activo del usuario. Si no está en memoria se obtiene con cargar (carrito de la
+     * base de datos, o uno nuevo) y queda en memoria.
+     */
+    public Carrito obtener(Long idUsuario, Supplier<Carrito> cargar) {
+        return modificar(idUsuario, cargar, null);
+    }
+
+    /**
+     * Aplica cambio sobre el carrito en memoria y lo anota en el journal. Si cambio lanza una excepción
+     * (p. ej. una validación), las líneas que alcanzó a modificar se restauran y la excepción se propaga.
+     * cambio se ejecuta con el lock de la franja del usuario tomado: no debe hacer llamadas remotas ni consultas.
+     */
+    public Carrito modificar(Long idUsuario, Supplier<Carrito> cargar, Consumer<CarritoActivo> cambio) {
+        ReentrantLock candado = candado(idUsuario);
+        CarritoActivo cargado = null;
+        while (true) {
+            candado.lock();
+            try {
+                CarritoActivo carrito = buscar(idUsuario, cargado);
+                if (carrito != null) {
+                    if (cambio != null) {
+                        aplicar(carrito, cambio);
+                    }
+                    Carrito copia = carrito.aCarrito();
+                    mapa.lock();
+                    try {
+                        recortar(idUsuario);
+                    } finally {
+                        mapa.unlock();
+                    }
+                    return copia;
+                }
+            } finally {
+                candado.unlock();
+            }
+            // La carga (y un posible alta del carrito) se hace sin el lock; si otro hilo cargó el mismo
+            // carrito mientras tanto, se usa el suyo
+            cargado = CarritoActivo.de(cargar.get());
+        }
+    }
+
+    private CarritoActivo buscar(Long idUsuario, CarritoActivo cargado) {
+        mapa.lock();
+        try {
+            CarritoActivo carrito = carritos.get(idUsuario);
+            if (carrito == null && cargado != null) {
+                carrito = cargado;
+                carritos.put(idUsuario, carrito);
+            }
+            return carrito;
+        } finally {
+            mapa.unlock();
+        }
+    }
+
+    private ReentrantLock candado(Long idUsuario) {
+        return candados[Math.floorMod(Long.hashCode(idUsuario), candados.length)];
+    }
+
+    /**
+     * Actualiza la copia del producto en las líneas en memoria, después de que SnapshotsProductos la
+     * escribió en la base de datos. No se anota en el journal: la base de datos ya tiene el valor.
+     */
+    public void actualizarSnapshot(Map<Long, Producto> productos, String version) {
+        if (!habilitado || productos.isEmpty()) {
+            return;
+        }
+        List<CarritoActivo> enMemoria;
+        mapa.lock();
+        try {
+            enMemoria = new ArrayList<>(carritos.values());
+        } finally {
+            mapa.unlock();
+        }
+        for (CarritoActivo carrito : enMemoria) {
+            ReentrantLock candado = candado(carrito.idUsuario);
+            candado.lock();
+            try {
+                for (Map.Entry<Long, Producto> entrada : productos.entrySet()) {
+                    Linea linea = carrito.lineas.get(entrada.getKey());
+                    if (linea != null && !ProductoClientFallback.esFallback(entrada.getValue())) {
+                        carrito.lineas.put(entrada.getKey(), linea.conSnapshot(entrada.getValue(), version));
+                    }
+                }
+            } finally {
+                candado.unlock();
+            }
+        }
+    }
+
+    /**
+     * Rota el journal y escribe en la base de datos los carritos modificados desde el flush anterior,
+     * en una sola transacción. El segmento rotado se borra recién cuando esa transacción hizo commit.
+     */
+    public synchronized void flush() {
+        if (hayCambios()) {
+            rotar();
+        }
+
+        while (!segmentosSinAplicar.isEmpty()) {
+            Segmento segmento = segmentosSinAplicar.peekFirst();
+            Map<Long, List<ItemCarrito>> nuevos = transacciones.execute(estado -> escribir(segmento.carritos()));
+            try {
+                Files.deleteIfExists(segmento.ruta());
+            } catch (IOException ex) {
+                throw new CarritoException("No se pudo borrar el segmento " + segmento.ruta() + ": " + ex.getMessage(), ex);
+            }
+            segmentosSinAplicar.pollFirst();
+            liberar(segmento, nuevos);
+        }
+    }
+
+    // El segmento siguiente se abre y el anterior se cierra sin locks. Con diario tomado solo se espera al
+    // grupo en escritura, se cambia el canal y se toman los carritos modificados; sus copias se hacen
+    // después, cada una con el lock de su franja, así la copia incluye completos los cambios ya anotados.
+    // Un cambio que entra al segmento nuevo después del cambio de canal puede quedar también en la copia:
+    // los registros son valores absolutos y escribirlo dos veces no altera el resultado
+    private void rotar() {
+        Path rutaNueva = Path.of(rutaJournal + "." + (ultimoSegmento + 1));
+        FileChannel nuevo;
+        try {
+            nuevo = abrir(rutaNueva);
+        } catch (IOException ex) {
+            throw new CarritoException("No se pudo rotar el journal de carritos: " + ex.getMessage(), ex);
+        }
+
+        FileChannel anterior;
+        Path rutaAnterior;
+        List<CarritoActivo> modificados;
+        diario.lock();
+        try {
+            while (escribiendo) {
+                grupoEscrito.awaitUninterruptibly();
+            }
+            modificados = new ArrayList<>(sucios.values());
+            // Antes de sacarlos de sucios: recortar no debe desalojarlos mientras tanto
+            mapa.lock();
+            try {
+                modificados.forEach(carrito -> porEscribir.merge(carrito.idUsuario, 1, Integer::sum));
+            } finally {
+                mapa.unlock();
+            }
+            sucios.clear();
+            anterior = journal;
+            rutaAnterior = rutaSegmento;
+            journal = nuevo;
+            rutaSegmento = rutaNueva;
+            ultimoSegmento++;
+        } finally {
+            diario.unlock();
+        }
+
+        List<Escrito> lote = new ArrayList<>(modificados.size());
+        for (CarritoActivo carrito : modificados) {
+            ReentrantLock candado = candado(carrito.idUsuario);
+            candado.lock();
+            try {
+                lote.add(new Escrito(carrito, carrito.copia()));
+            } finally {
+                candado.unlock();
+            }
+        }
+        Segmento segmento = new Segmento(rutaAnterior, lote);
+        segmentosSinAplicar.addLast(segmento);
+
+        try {
+            anterior.close();
+        } catch (IOException ex) {
+            // Los registros ya están escritos; el segmento se aplica igual
+            log.warn("No se pudo cerrar el segmento {}: {}", segmento.ruta(), ex.getMessage());
+        }
+    }
+
+    private boolean hayCambios() {
+        return !sucios.isEmpty();
+    }
+
+    private static FileChannel abrir(Path ruta) throws IOException {
+        return FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    public int getTamanio() {
+        mapa.lock();
+        try {
+            return carritos.size();
+        } finally {
+            mapa.unlock();
+        }
+    }
+
+    private void flushSinFallar() {
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            log.warn("Flush de carritos activos fallido, se reintenta en el próximo intervalo: {}", ex.getMessage());
+        }
+    }
+
+    private void aplicar(CarritoActivo carrito, Consumer<CarritoActivo> cambio) {
+        try {
+            cambio.accept(carrito);
+        } catch (RuntimeException ex) {
+            carrito.deshacer();
+            throw ex;
+        }
+        if (carrito.anteriores.isEmpty()) {
+            return;
+        }
+
+        try {
+            ByteArrayOutputStream registros = new ByteArrayOutputStream(128 * carrito.anteriores.size());
+            for (Long idProducto : carrito.anteriores.keySet()) {
+                escribirRegistro(registros, carrito, idProducto, carrito.lineas.get(idProducto));
+            }
+            anotar(carrito, registros.toByteArray());
+        } catch (IOException ex) {
+            // Sin registro durable el cambio no se confirma
+            carrito.deshacer();
+            throw new CarritoException("No se pudo registrar el cambio del carrito: " + ex.getMessage(), ex);
+        }
+        carrito.anteriores.clear();
+    }
+
+    // Agrega los registros al grupo abierto y espera a que ese grupo quede escrito. Si no hay otro grupo
+    // en escritura, este hilo escribe el suyo; si lo hay, espera y el siguiente grupo lleva de una vez los
+    // registros de todos los que llegaron mientras tanto
+    private void anotar(CarritoActivo carrito, byte[] registros) throws IOException {
+        diario.lock();
+        try {
+            Grupo grupo = grupoAbierto;
+            grupo.registros.writeBytes(registros);
+            // Un cambio que después falla deja el carrito en sucios: se escribe su estado (ya restaurado)
+            sucios.put(carrito.idUsuario, carrito);
+            while (!grupo.escrito) {
+                if (escribiendo) {
+                    grupoEscrito.awaitUninterruptibly();
+                } else {
+                    escribirGrupo();
+                }
+            }
+            if (grupo.error != null) {
+                throw grupo.error;
+            }
+        } finally {
+            diario.unlock();
+        }
+    }
+
+    // Se llama con diario tomado y lo suelta durante el write y el fsync, para que otros hilos sigan
+    // llenando el grupo siguiente
+    private void escribirGrupo() {
+        Grupo grupo = grupoAbierto;
+        grupoAbierto = new Grupo();
+        escribiendo = true;
+        FileChannel canal = journal;
+        diario.unlock();
+
+        IOException error = null;
+        long tamanioAnterior = -1;
+        try {
+            tamanioAnterior = canal.size();
+            ByteBuffer buffer = ByteBuffer.wrap(grupo.registros.toByteArray());
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            if (fsync) {
+                canal.force(false);
+            }
+        } catch (IOException ex) {
+            // Se descarta un grupo escrito a medias: ninguno de sus cambios se confirma
+            error = ex;
+            truncarSinFallar(canal, tamanioAnterior);
+        } finally {
+            diario.lock();
+            grupo.error = error;
+            grupo.escrito = true;
+            escribiendo = false;
+            grupoEscrito.signalAll();
+        }
+    }
+
+    // Desaloja, desde el usado hace más tiempo, carritos sin cambios pendientes hasta volver a la capacidad.
+    // El carrito en uso (conservar) no sale aunque los demás tengan cambios pendientes. Se llama con mapa
+    // tomado; un carrito cuya franja está ocupada puede estar a mitad de un cambio todavía no anotado y se
+    // saltea (tryLock: esperar aquí invertiría el orden de los locks)
+    private void recortar(Long conservar) {
+        Iterator<Map.Entry<Long, CarritoActivo>> it = carritos.entrySet().iterator();
+        while (carritos.size() > capacidad && it.hasNext()) {
+            Long idUsuario = it.next().getKey();
+            if (idUsuario.equals(conservar) || sucios.containsKey(idUsuario) || porEscribir.containsKey(idUsuario)) {
+                continue;
+            }
+            ReentrantLock candado = candado(idUsuario);
+            if (candado.tryLock()) {
+                try {
+                    it.remove();
+                } finally {
+                    candado.unlock();
+                }
+            }
+        }
+    }
+
+    private void liberar(Segmento segmento, Map<Long, List<ItemCarrito>> nuevos) {
+        for (Escrito escrito : segmento.carritos()) {
+            CarritoActivo carrito = escrito.activo();
+            // Las líneas nuevas reciben el ID generado al insertarlas
+            ReentrantLock candado = candado(carrito.idUsuario);
+            candado.lock();
+            try {
+                for (ItemCarrito item : nuevos.getOrDefault(carrito.idUsuario, List.of())) {
+                    Linea linea = carrito.lineas.get(item.getIdProducto());
+                    if (linea != null && linea.idItem() == null) {
+                        carrito.lineas.put(item.getIdProducto(), linea.conIdItem(item.getIdItem()));
+                    }
+                }
+            } finally {
+                candado.unlock();
+            }
+        }
+        mapa.lock();
+        try {
+            for (Escrito escrito : segmento.carritos()) {
+                porEscribir.computeIfPresent(escrito.activo().idUsuario, (id, cantidad) -> cantidad == 1 ? null : cantidad - 1);
+            }
+            recortar(null);
+        } finally {
+            mapa.unlock();
+        }
+    }
+
+    private Map<Long, List<ItemCarrito>> escribir(List<Escrito> lote) {
+        Map<Long, List<ItemCarrito>> nuevos = new HashMap<>();
+        for (Escrito escrito : lote) {
+            CarritoActivo estado = escrito.copia();
+            Carrito carrito = carritoRepository.findById(estado.idCarrito).orElse(null);
+            if (carrito == null) {
+                log.warn("El carrito {} del usuario {} ya no existe; se descartan sus cambios en memoria",
+                        estado.idCarrito, estado.idUsuario);
+                continue;
+            }
+            nuevos.put(estado.idUsuario, volcar(estado, carrito));
+            carritoRepository.save(carrito);
+        }
+        return nuevos;
+    }
+
+    // Deja las líneas de la entidad iguales a las del estado en memoria; devuelve las insertadas
+    private static List<ItemCarrito> volcar(CarritoActivo estado, Carrito carrito) {
+        Set<Long> vistos = new HashSet<>();
+        for (ItemCarrito item : new ArrayList<>(carrito.getItems())) {
+            Linea linea = estado.lineas.get(item.getIdProducto());
+            if (linea == null || !vistos.add(item.getIdProducto())) {
+                carrito.getItems().remove(item);
+                item.setCarrito(null);
+                continue;
+            }
+            linea.copiarEn(item);
+        }
+
+        List<ItemCarrito> nuevos = new ArrayList<>();
+        for (Linea linea : estado.lineas.values()) {
+            if (!vistos.contains(linea.idProducto())) {
+                ItemCarrito item = new ItemCarrito();
+                linea.copiarEn(item);
+                item.setCarrito(carrito);
+                carrito.getItems().add(item);
+                nuevos.add(item);
+            }
+        }
+        carrito.calcularTotal();
+        return nuevos;
+    }
+
+    private static void truncarSinFallar(FileChannel canal, long tamanio) {
+        if (tamanio < 0) {
+            return;
+        }
+        try {
+            canal.truncate(tamanio);
+        } catch (IOException ex) {
+            log.error("No se pudo truncar el journal de carritos activos: {}", ex.getMessage());
+        }
+    }
+
+    // Reaplica, en una sola transacción, los segmentos que quedaron de la ejecución anterior (el último
+    // es el que estaba activo)
+    private void recuperarJournal() throws IOException {
+        Path base = Path.of(rutaJournal).toAbsolutePath();
+        Files.createDirectories(base.getParent());
+
+        List<Path> archivos = new ArrayList<>();
+        String prefijo = base.getFileName() + ".";
+        try (Stream<Path> hermanos = Files.list(base.getParent())) {
+            hermanos.filter(ruta -> ruta.getFileName().toString().startsWith(prefijo)
+                            && ruta.getFileName().toString().substring(prefijo.length()).matches("\\d+"))
+                    .sorted(Comparator.comparingLong(ruta -> Long.parseLong(ruta.getFileName().toString().substring(prefijo.length()))))
+                    .forEach(archivos::add);
+        }
+        if (archivos.isEmpty()) {
+            return;
+        }
+
+        // idCarrito -> registros en orden
+        Map<Long, List<Registro>> porCarrito = new LinkedHashMap<>();
+        for (Path archivo : archivos) {
+            leerRegistros(archivo, porCarrito);
+        }
+        transacciones.executeWithoutResult(estado -> {
+            for (Map.Entry<Long, List<Registro>> entrada : porCarrito.entrySet()) {
+                Carrito carrito = carritoRepository.findById(entrada.getKey()).orElse(null);
+                if (carrito == null) {
+                    continue;
+                }
+                CarritoActivo activoRecuperado = CarritoActivo.de(carrito);
+                for (Registro registro : entrada.getValue()) {
+                    if (registro.linea() == null) {
+                        activoRecuperado.lineas.remove(registro.idProducto());
+                    } else {
+                        activoRecuperado.lineas.put(registro.idProducto(), registro.linea());
+                    }
+                }
+                volcar(activoRecuperado, carrito);
+                carritoRepository.save(carrito);
+            }
+        });
+        for (Path archivo : archivos) {
+            Files.delete(archivo);
+        }
+        log.info("Journal de carritos activos recuperado: {} archivos, {} carritos", archivos.size(), porCarrito.size());
+    }
+
+    private static void escribirRegistro(ByteArrayOutputStream destino, CarritoActivo carrito, Long idProducto,
+                                         Linea linea) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream datos = new DataOutputStream(bytes);
+        datos.writeLong(carrito.idCarrito);
+        datos.writeLong(idProducto);
+        datos.writeInt(linea == null ? 0 : linea.cantidad());
+        if (linea != null) {
+            datos.writeUTF(linea.precioUnitario().toPlainString());
+            escribirTexto(datos, linea.nombreProducto());
+            escribirTexto(datos, linea.imagenProducto());
+            datos.writeByte(linea.productoActivo() == null ? -1 : linea.productoActivo() ? 1 : 0);
+            escribirTexto(datos, linea.versionCatalogo());
+        }
+        byte[] contenido = bytes.toByteArray();
+
+        DataOutputStream marco = new DataOutputStream(destino);
+        marco.writeInt(contenido.length);
+        marco.write(contenido);
+        marco.writeInt(crc(contenido));
+    }
+
+    private static void leerRegistros(Path archivo, Map<Long, List<Registro>> porCarrito) throws IOException {
+        try (InputStream in = Files.newInputStream(archivo);
+             DataInputStream datos = new DataInputStream(new BufferedInputStream(in))) {
+            while (true) {
+                int largo = datos.readInt();
+                if (largo <= 0 || largo > MAX_REGISTRO) {
+                    log.warn("Registro corrupto en {}; se descarta el resto del archivo", archivo);
+                    return;
+                }
+                byte[] contenido = new byte[largo];
+                datos.readFully(contenido);
+                if (datos.readInt() != crc(contenido)) {
+                    log.warn("Registro corrupto en {}; se descarta el resto del archivo", archivo);
+                    return;
+                }
+
+                DataInputStream registro = new DataInputStream(new ByteArrayInputStream(contenido));
+                long idCarrito = registro.readLong();
+                long idProducto = registro.readLong();
+                int cantidad = registro.readInt();
+                Linea linea = null;
+                if (cantidad > 0) {
+                    BigDecimal precio = new BigDecimal(registro.readUTF());
+                    String nombre = leerTexto(registro);
+                    String imagen = leerTexto(registro);
+                    byte activo = registro.readByte();
+                    String version = leerTexto(registro);
+                    linea = new Linea(null, idProducto, cantidad, precio, nombre, imagen,
+                            activo < 0 ? null : activo == 1, version, null);
+                }
+                porCarrito.computeIfAbsent(idCarrito, id -> new ArrayList<>()).add(new Registro(idProducto, linea));
+            }
+        } catch (EOFException ex) {
+            // Fin del archivo (o último registro escrito a medias)
+        }
+    }
+
+    private static void escribirTexto(DataOutputStream datos, String texto) throws IOException {
+        datos.writeBoolean(texto != null);
+        if (texto != null) {
+            datos.writeUTF(texto);
+        }
+    }
+
+    private static String leerTexto(DataInputStream datos) throws IOException {
+        return datos.readBoolean() ? datos.readUTF() : null;
+    }
+
+    private static int crc(byte[] contenido) {
+        CRC32 crc = new CRC32();
+        crc.update(contenido);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Estado en memoria de un carrito activo. Los cambios se hacen con poner, quitar y vaciar dentro
+     * de CarritosActivos.modificar.
+     */
+    public static final class CarritoActivo {
+
+        private final Long idCarrito;
+        private final Long idUsuario;
+        private final String estado;
+        private final LocalDateTime fechaCreacion;
+        private final LinkedHashMap<Long, Linea> lineas;
+
+        // Valor previo de cada línea tocada por el cambio en curso (null si no existía)
+        private final Map<Long, Linea> anteriores = new LinkedHashMap<>();
+
+        private CarritoActivo(Long idCarrito, Long idUsuario, String estado, LocalDateTime fechaCreacion,
+                              LinkedHashMap<Long, Linea> lineas) {
+            this.idCarrito = idCarrito;
+            this.idUsuario = idUsuario;
+            this.estado = estado;
+            this.fechaCreacion = fechaCreacion;
+            this.lineas = lineas;
+        }
+
+        static CarritoActivo de(Carrito carrito) {
+            LinkedHashMap<Long, Linea> lineas = new LinkedHashMap<>();
+            for (ItemCarrito item : carrito.getItems()) {
+                lineas.putIfAbsent(item.getIdProducto(), Linea.de(item));
+            }
+            return new CarritoActivo(carrito.getIdCarrito(), carrito.getIdUsuario(), carrito.getEstado(),
+                    carrito.getFechaCreacion(), lineas);
+        }
+
+        public Long getIdCarrito() {
+            return idCarrito;
+        }
+
+        public Linea linea(Long idProducto) {
+            return lineas.get(idProducto);
+        }
+
+        public Collection<Linea> lineas() {
+            return Collections.unmodifiableCollection(lineas.values());
+        }
+
+        public void poner(Linea linea) {
+            recordar(linea.idProducto());
+            lineas.put(linea.idProducto(), linea);
+        }
+
+        public void quitar(Long idProducto) {
+            if (lineas.containsKey(idProducto)) {
+                recordar(idProducto);
+                lineas.remove(idProducto);
+            }
+        }
+
+        public void vaciar() {
+            new ArrayList<>(lineas.keySet()).forEach(this::quitar);
+        }
+
+        private void recordar(Long idProducto) {
+            if (!anteriores.containsKey(idProducto)) {
+                anteriores.put(idProducto, lineas.get(idProducto));
+            }
+        }
+
+        private void deshacer() {
+            anteriores.forEach((idProducto, linea) -> {
+                if (linea == null) {
+                    lineas.remove(idProducto);
+                } else {
+                    lineas.put(idProducto, linea);
+                }
+            });
+            anteriores.clear();
+        }
+
+        private CarritoActivo copia() {
+            return new CarritoActivo(idCarrito, idUsuario, estado, fechaCreacion, new LinkedHashMap<>(lineas));
+        }
+
+        private Carrito aCarrito() {
+            Carrito carrito = Carrito.builder()
+                    .idCarrito(idCarrito)
+                    .idUsuario(idUsuario)
+                    .estado(estado)
+                    .fechaCreacion(fechaCreacion)
+                    .items(new ArrayList<>(lineas.size()))
+                    .build();
+            for (Linea linea : lineas.values()) {
+                ItemCarrito item = new ItemCarrito();
+                linea.copiarEn(item);
+                item.setIdItem(linea.idItem());
+                item.setFechaAgregado(linea.fechaAgregado());
+                item.setCarrito(carrito);
+                carrito.getItems().add(item);
+            }
+            carrito.calcularTotal();
+            return carrito;
+        }
+    }
+
+    /**
+     * Línea de un carrito en memoria (inmutable). idItem es null hasta que la línea se inserta en la base de datos.
+     */
+    public record Linea(Long idItem, Long idProducto, int cantidad, BigDecimal precioUnitario,
+                        String nombreProducto, String imagenProducto, Boolean productoActivo,
+                        String versionCatalogo, LocalDateTime fechaAgregado) {
+
+        public static Linea nueva(Long idProducto, int cantidad, BigDecimal precioUnitario) {
+            return new Linea(null, idProducto, cantidad, precioUnitario, null, null, null, null, LocalDateTime.now());
+        }
+
+        static Linea de(ItemCarrito item) {
+            return new Linea(item.getIdItem(), item.getIdProducto(), item.getCantidad(), item.getPrecioUnitario(),
+                    item.getNombreProducto(), item.getImagenProducto(), item.getProductoActivo(),
+                    item.getVersionCatalogo(), item.getFechaAgregado());
+        }
+
+        public Linea conCantidad(int cantidad) {
+            return new Linea(idItem, idProducto, cantidad, precioUnitario, nombreProducto, imagenProducto,
+                    productoActivo, versionCatalogo, fechaAgregado);
+        }
+
+        public Linea conSnapshot(Producto producto, String version) {
+            return new Linea(idItem, idProducto, cantidad, precioUnitario, producto.getNombre(),
+                    producto.referenciaImagen(), producto.getActivo(), version, fechaAgregado);
+        }
+
+        private Linea conIdItem(Long idItem) {
+            return new Linea(idItem, idProducto, cantidad, precioUnitario, nombreProducto, imagenProducto,
+                    productoActivo, versionCatalogo, fechaAgregado);
+        }
+
+        // Copia los datos de la línea en una entidad (sin idItem ni fechaAgregado, que asigna la base de datos)
+        private void copiarEn(ItemCarrito item) {
+            item.setIdProducto(idProducto);
+            item.setCantidad(cantidad);
+            item.setPrecioUnitario(precioUnitario);
+            item.setNombreProducto(nombreProducto);
+            item.setImagenProducto(imagenProducto);
+            item.setProductoActivo(productoActivo);
+            item.setVersionCatalogo(versionCatalogo);
+            item.calcularSubtotal();
+        }
+    }
+
+    private record Registro(Long idProducto, Linea linea) {
+    }
+
+    // Carrito en memoria y copia de su estado al rotar el journal (lo que se escribe)
+    private record Escrito(CarritoActivo activo, CarritoActivo copia) {
+    }
+
+    private record Segmento(Path ruta, List<Escrito> carritos) {
+    }
+
+    // Registros de varios cambios que se escriben juntos en el journal
+    private static final class Grupo {
+        private final ByteArrayOutputStream registros = new ByteArrayOutputStream();
+        private boolean escrito;
+        private IOException error;
+    }
+}
@@ -0,0 +1,97 @@
+package com.appmovil.msvc.carrito.services;
+
+import com.appmovil.msvc.carrito.exceptions.CarritoException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serializa las operaciones sobre el carrito de un mismo usuario sin un lock global.
+ * <p>
+ * Cada usuario cae en una de N franjas según su ID y cada franja tiene su ReentrantLock: las operaciones
+ * de un usuario se ejecutan de a una y las de usuarios en franjas distintas avanzan en paralelo. La
+ * operación corre en su propia transacción, que se confirma antes de soltar el lock, así la siguiente
+ * operación del mismo usuario ya ve el carrito y las líneas que dejó la anterior.
+ * <p>
+ * El lock no alcanza entre instancias del servicio. Ahí protegen la versión de Carrito y las claves únicas
+ * (un carrito ACTIVO por usuario, una línea por producto): si la transacción choca con otra, se deshace y
+ * se reintenta desde el principio hasta carrito.serializacion.reintentos veces.
+ */
+@Component
+@Slf4j
+public class SerializadorCarritos {
+
+    @Value("${carrito.serializacion.franjas:256}")
+    private int franjas;
+
+    @Value("${carrito.serializacion.reintentos:3}")
+    private int reintentos;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ReentrantLock[] candados;
+    private TransactionTemplate transacciones;
+
+    @PostConstruct
+    public void iniciar() {
+        if (franjas < 1) {
+            throw new IllegalStateException("carrito.serializacion.franjas debe ser al menos 1");
+        }
+        candados = new ReentrantLock[franjas];
+        for (int i = 0; i < franjas; i++) {
+            candados[i] = new ReentrantLock();
+        }
+        transacciones = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Ejecuta la operación con el lock del usuario y en una transacción nueva. Debe llamarse sin una
+     * transacción en curso: si se uniera a una externa, el lock se soltaría antes de confirmarla.
+     */
+    public <T> T ejecutar(Long idUsuario, Supplier<T> operacion) {
+        ReentrantLock candado = candados[Math.floorMod(Long.hashCode(idUsuario), candados.length)];
+        candado.lock();
+        try {
+            // Llamada anidada desde una operación del mismo hilo: ya tiene el lock y la transacción,
+            // y si hay que reintentar lo hace la operación externa
+            if (candado.getHoldCount() > 1) {
+                return operacion.get();
+            }
+            for (int intento = 1; ; intento++) {
+                try {
+                    return transacciones.execute(estado -> operacion.get());
+                } catch (ConcurrencyFailureException | DataIntegrityViolationException ex) {
+                    if (intento > reintentos) {
+                        log.warn("Carrito del usuario {}: conflicto tras {} intentos: {}", idUsuario, intento, ex.toString());
+                        throw new CarritoException("El carrito fue modificado por otra operación al mismo tiempo. Intente nuevamente");
+                    }
+                    log.debug("Carrito del usuario {}: conflicto en el intento {}, se reintenta", idUsuario, intento);
+                    esperar(intento);
+                }
+            }
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    // Espera corta y aleatoria para que dos instancias que chocaron no vuelvan a chocar en el mismo instante
+    private static void esperar(int intento) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 5L * intento + 1));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CarritoException("Operación interrumpida");
+        }
+    }
+}
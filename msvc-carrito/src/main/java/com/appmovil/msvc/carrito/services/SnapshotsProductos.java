@@ -0,0 +1,165 @@
+package com.appmovil.msvc.carrito.services;
+
+import com.appmovil.msvc.carrito.clients.ProductoClientFallback;
+import com.appmovil.msvc.carrito.clients.ProductoClientRest;
+import com.appmovil.msvc.carrito.models.Producto;
+import com.appmovil.msvc.carrito.models.VersionCatalogo;
+import com.appmovil.msvc.carrito.repositories.ItemCarritoRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Mantiene las copias de productos guardadas en item_carrito (nombre, imagen, activo).
+ * <p>
+ * La versión de copias del catálogo de msvc-productos (cambia con nombre, imagen o activo, no con el
+ * stock ni el rating) se consulta a lo sumo una vez por intervalo-version-ms y en segundo plano:
+ * mostrar un carrito nunca espera por ella. Un ítem cuya copia se tomó con otra versión se sigue
+ * mostrando con esa copia y se refresca después, con una llamada batch por lote de productos y un
+ * UPDATE por producto que corrige todas las líneas que lo contienen.
+ */
+@Component
+@Slf4j
+public class SnapshotsProductos {
+
+    @Value("${carrito.snapshots.intervalo-version-ms:10000}")
+    private long intervaloVersionMs;
+
+    @Autowired
+    private ProductoClientRest productoClientRest;
+
+    @Autowired
+    private ItemCarritoRepository itemCarritoRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CarritosActivos carritosActivos;
+
+    private TransactionTemplate transacciones;
+
+    // Un solo hilo: los refrescos se aplican en orden y no compiten entre sí por las mismas filas
+    private ExecutorService hilo;
+    private Executor ejecutor;
+
+    private volatile String versionCatalogo;
+    private volatile long consultadaEn;
+    private final AtomicBoolean consultandoVersion = new AtomicBoolean();
+
+    // Productos con un refresco ya encolado; un segundo carrito con el mismo producto no lo repite
+    private final Set<Long> enCurso = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void iniciar() {
+        transacciones = new TransactionTemplate(transactionManager);
+        hilo = Executors.newSingleThreadExecutor(tarea -> {
+            Thread thread = new Thread(tarea, "snapshots-productos");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ejecutor = hilo;
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (hilo != null) {
+            hilo.shutdownNow();
+        }
+    }
+
+    /**
+     * Última versión del catálogo conocida, o null si todavía no se obtuvo. Si pasó el intervalo,
+     * encola una consulta nueva y devuelve la anterior sin esperar.
+     */
+    public String versionConocida() {
+        if (System.currentTimeMillis() - consultadaEn >= intervaloVersionMs && consultandoVersion.compareAndSet(false, true)) {
+            ejecutor.execute(() -> {
+                try {
+                    VersionCatalogo version = productoClientRest.obtenerVersion();
+                    if (version != null && version.versionDeCopias() != null) {
+                        versionCatalogo = version.versionDeCopias();
+                    }
+                } catch (RuntimeException ex) {
+                    log.warn("No se pudo consultar la versión del catálogo: {}", ex.toString());
+                } finally {
+                    consultadaEn = System.currentTimeMillis();
+                    consultandoVersion.set(false);
+                }
+            });
+        }
+        return versionCatalogo;
+    }
+
+    public boolean vigente(String version) {
+        String actual = versionCatalogo;
+        return actual == null || actual.equals(version);
+    }
+
+    /**
+     * Vuelve a leer los productos en msvc-productos y guarda la copia nueva, en segundo plano.
+     */
+    public void refrescar(Collection<Long> idsProductos) {
+        List<Long> nuevos = idsProductos.stream().filter(enCurso::add).toList();
+        if (nuevos.isEmpty()) {
+            return;
+        }
+        ejecutor.execute(() -> {
+            try {
+                // La versión se lee antes que los datos: si el catálogo cambia en el medio, la copia
+                // queda marcada con la versión anterior y se vuelve a refrescar, nunca al revés
+                String version = versionCatalogo;
+                guardarAhora(productoClientRest.findByIds(nuevos), version);
+            } catch (RuntimeException ex) {
+                log.warn("No se pudieron refrescar las copias de los productos {}: {}", nuevos, ex.toString());
+            } finally {
+                nuevos.forEach(enCurso::remove);
+            }
+        });
+    }
+
+    /**
+     * Guarda en segundo plano la copia de productos ya obtenidos (p. ej. al mostrar un carrito con
+     * líneas anteriores a las copias), sin volver a pedirlos.
+     */
+    public void guardar(Map<Long, Producto> productos, String version) {
+        if (productos.isEmpty()) {
+            return;
+        }
+        Map<Long, Producto> copia = new LinkedHashMap<>(productos);
+        ejecutor.execute(() -> {
+            try {
+                guardarAhora(copia, version);
+            } catch (RuntimeException ex) {
+                log.warn("No se pudieron guardar las copias de los productos {}: {}", copia.keySet(), ex.toString());
+            }
+        });
+    }
+
+    private void guardarAhora(Map<Long, Producto> productos, String version) {
+        transacciones.executeWithoutResult(estado -> {
+            for (Map.Entry<Long, Producto> entrada : productos.entrySet()) {
+                Producto producto = entrada.getValue();
+                if (ProductoClientFallback.esFallback(producto)) {
+                    continue;
+                }
+                itemCarritoRepository.actualizarSnapshot(entrada.getKey(), producto.getNombre(),
+                        producto.referenciaImagen(), producto.getActivo(), version);
+            }
+        });
+        // Los carritos en memoria también: si no, al escribirse volverían a dejar la copia anterior
+        carritosActivos.actualizarSnapshot(productos, version);
+    }
+}
@@ -0,0 +1,205 @@
+package com.appmovil.msvc.carrito.services;
+
+import com.appmovil.msvc.carrito.clients.ProductoClientRest;
+import com.appmovil.msvc.carrito.clients.UsuarioClientRest;
+import com.appmovil.msvc.carrito.dtos.AgregarItemDTO;
+import com.appmovil.msvc.carrito.dtos.CarritoDTO;
+import com.appmovil.msvc.carrito.dtos.ItemCarritoDTO;
+import com.appmovil.msvc.carrito.dtos.OperacionCarritoDTO;
+import com.appmovil.msvc.carrito.models.Producto;
+import com.appmovil.msvc.carrito.models.Usuario;
+import com.appmovil.msvc.carrito.models.entities.Carrito;
+import com.appmovil.msvc.carrito.models.entities.ItemCarrito;
+import com.appmovil.msvc.carrito.repositories.CarritoRepository;
+import com.appmovil.msvc.carrito.repositories.ItemCarritoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+/**
+ * Varios hilos agregan productos a los carritos de los mismos usuarios a la vez, empezando sin carrito:
+ * al terminar cada usuario tiene un solo carrito ACTIVO, una línea por producto y ninguna unidad perdida.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@DisplayName("CarritoService - Concurrencia por usuario")
+class CarritoServiceConcurrenciaTest {
+
+    private static final int HILOS = 8;
+    private static final int USUARIOS = 4;
+    private static final int PRODUCTOS = 10;
+
+    // Rango propio: la base en memoria puede compartirse con otros tests del módulo
+    private static final long PRIMER_USUARIO = 900_000;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private CarritoRepository carritoRepository;
+
+    @Autowired
+    private ItemCarritoRepository itemCarritoRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @MockBean
+    private UsuarioClientRest usuarioClientRest;
+
+    @MockBean
+    private ProductoClientRest productoClientRest;
+
+    @BeforeEach
+    void setUp() {
+        when(usuarioClientRest.findById(anyLong())).thenAnswer(inv -> {
+            Usuario usuario = new Usuario();
+            usuario.setIdUsuario(inv.getArgument(0));
+            return usuario;
+        });
+        when(productoClientRest.findById(anyLong())).thenAnswer(inv -> producto(inv.getArgument(0)));
+        when(productoClientRest.findByIds(anyList())).thenAnswer(inv -> inv.<List<Long>>getArgument(0).stream()
+                .collect(Collectors.toMap(id -> id, this::producto)));
+    }
+
+    private Producto producto(Long idProducto) {
+        return Producto.builder().idProducto(idProducto).nombre("Producto " + idProducto)
+                .precio(BigDecimal.TEN).stock(1_000).activo(true).build();
+    }
+
+    @Test
+    @DisplayName("agregarItem - Los agregados concurrentes no deben duplicar carritos ni líneas")
+    void testAgregarItem_Concurrente_NoDebeDuplicar() throws Exception {
+        // Given: cada hilo agrega una unidad de cada producto a cada usuario, en su propio orden
+        List<long[]> operaciones = new ArrayList<>();
+        for (int u = 1; u <= USUARIOS; u++) {
+            for (int p = 1; p <= PRODUCTOS; p++) {
+                operaciones.add(new long[]{PRIMER_USUARIO + u, p});
+            }
+        }
+        ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> tareas = new ArrayList<>();
+
+        // When
+        for (int h = 0; h < HILOS; h++) {
+            List<long[]> orden = new ArrayList<>(operaciones);
+            Collections.shuffle(orden);
+            tareas.add(hilos.submit(() -> {
+                largada.await();
+                for (long[] operacion : orden) {
+                    carritoService.agregarItem(operacion[0],
+                            AgregarItemDTO.builder().idProducto(operacion[1]).cantidad(1).build());
+                }
+                return null;
+            }));
+        }
+        largada.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(60, TimeUnit.SECONDS);
+        }
+        hilos.shutdown();
+
+        // Then
+        transactionTemplate.executeWithoutResult(estado -> {
+            Map<Long, List<Carrito>> porUsuario = carritoRepository.findAll().stream()
+                    .filter(carrito -> carrito.getIdUsuario() > PRIMER_USUARIO && carrito.getIdUsuario() <= PRIMER_USUARIO + USUARIOS)
+                    .collect(Collectors.groupingBy(Carrito::getIdUsuario));
+            assertThat(porUsuario).hasSize(USUARIOS);
+            porUsuario.values().forEach(carritos -> {
+                assertThat(carritos).hasSize(1);
+                Carrito carrito = carritos.get(0);
+                assertThat(carrito.getItems()).hasSize(PRODUCTOS);
+                assertThat(carrito.getItems()).extracting(ItemCarrito::getCantidad).containsOnly(HILOS);
+                assertThat(carrito.getTotal()).isEqualByComparingTo(BigDecimal.valueOf(10L * HILOS * PRODUCTOS));
+            });
+        });
+    }
+
+    @Test
+    @DisplayName("aplicarOperaciones - Los lotes concurrentes deben aplicarse completos y uno tras otro")
+    void testAplicarOperaciones_Concurrente_NoDebeDuplicar() throws Exception {
+        // Given: cada hilo envía un lote que agrega una unidad de cada producto
+        long idUsuario = PRIMER_USUARIO + 200;
+        List<OperacionCarritoDTO> lote = new ArrayList<>();
+        for (long p = 1; p <= PRODUCTOS; p++) {
+            lote.add(OperacionCarritoDTO.builder().tipo(OperacionCarritoDTO.Tipo.AGREGAR).idProducto(p).cantidad(1).build());
+        }
+        ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> tareas = new ArrayList<>();
+
+        // When
+        for (int h = 0; h < HILOS; h++) {
+            tareas.add(hilos.submit(() -> {
+                largada.await();
+                return carritoService.aplicarOperaciones(idUsuario, lote);
+            }));
+        }
+        largada.countDown();
+        for (Future<?> tarea : tareas) {
+            tarea.get(60, TimeUnit.SECONDS);
+        }
+        hilos.shutdown();
+        // Quitar y volver a agregar en el mismo lote reusa la fila (la clave única no lo rechaza)
+        CarritoDTO resultado = carritoService.aplicarOperaciones(idUsuario, List.of(
+                OperacionCarritoDTO.builder().tipo(OperacionCarritoDTO.Tipo.QUITAR).idProducto(1L).build(),
+                OperacionCarritoDTO.builder().tipo(OperacionCarritoDTO.Tipo.AGREGAR).idProducto(1L).cantidad(2).build()));
+
+        // Then
+        assertThat(resultado.getItems()).hasSize(PRODUCTOS);
+        assertThat(resultado.getItems()).filteredOn(item -> item.getIdProducto() == 1L)
+                .extracting(ItemCarritoDTO::getCantidad).containsExactly(2);
+        assertThat(resultado.getItems()).filteredOn(item -> item.getIdProducto() != 1L)
+                .extracting(ItemCarritoDTO::getCantidad).containsOnly(HILOS);
+        assertThat(resultado.getTotal()).isEqualByComparingTo(BigDecimal.valueOf(10L * (2 + HILOS * (PRODUCTOS - 1))));
+        transactionTemplate.executeWithoutResult(estado -> assertThat(carritoRepository.findAll())
+                .filteredOn(carrito -> carrito.getIdUsuario() == idUsuario).hasSize(1));
+    }
+
+    @Test
+    @DisplayName("Claves únicas - Deben rechazar un segundo carrito ACTIVO y una línea repetida aunque no haya lock")
+    void testClavesUnicas_DebenRechazarDuplicados() {
+        // Given
+        long idUsuario = PRIMER_USUARIO + 100;
+        Carrito carrito = carritoRepository.save(Carrito.builder().idUsuario(idUsuario).build());
+        ItemCarrito linea = ItemCarrito.builder().carrito(carrito).idProducto(1L).cantidad(1).precioUnitario(BigDecimal.TEN).build();
+        itemCarritoRepository.save(linea);
+
+        // When & Then
+        assertThatThrownBy(() -> carritoRepository.save(Carrito.builder().idUsuario(idUsuario).build()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThatThrownBy(() -> itemCarritoRepository.save(ItemCarrito.builder()
+                .carrito(carrito).idProducto(1L).cantidad(2).precioUnitario(BigDecimal.TEN).build()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+
+        // Un carrito que deja de estar ACTIVO libera la clave
+        Carrito convertido = carritoRepository.findById(carrito.getIdCarrito()).orElseThrow();
+        convertido.setEstado("CONVERTIDO");
+        carritoRepository.save(convertido);
+        assertThat(carritoRepository.save(Carrito.builder().idUsuario(idUsuario).build()).getIdCarrito()).isNotNull();
+    }
+}
@@ -0,0 +1,190 @@
+package com.appmovil.msvc.carrito.services;
+
+import com.appmovil.msvc.carrito.clients.ProductoClientRest;
+import com.appmovil.msvc.carrito.clients.UsuarioClientRest;
+import com.appmovil.msvc.carrito.dtos.CarritoDTO;
+import com.appmovil.msvc.carrito.models.Producto;
+import com.appmovil.msvc.carrito.models.Usuario;
+import com.appmovil.msvc.carrito.models.VersionCatalogo;
+import com.appmovil.msvc.carrito.models.entities.Carrito;
+import com.appmovil.msvc.carrito.models.entities.ItemCarrito;
+import com.appmovil.msvc.carrito.repositories.CarritoRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Latencia de obtenerCarritoConDetalles con carritos de 1, 10 y 50 ítems contra servicios simulados
+ * con 20 ms por llamada (más 0,2 ms por producto en la llamada batch). Se compara con el esquema
+ * anterior (usuario y luego un findById por ítem, en secuencia) y con ítems que ya tienen la copia
+ * del producto, donde solo queda la llamada de usuario.
+ * Se ejecuta solo a pedido: mvn test -Dtest=CarritoServiceImplBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("CarritoService - Benchmark de detalles del carrito")
+class CarritoServiceImplBenchmarkTest {
+
+    private static final long LATENCIA_MS = 20;
+    private static final int REPETICIONES = 30;
+
+    @Test
+    void medirLatencia() {
+        System.out.printf("%n%-8s %-22s %-22s %-22s%n", "Ítems", "Secuencial p50 (ms)", "Concurrente p50 (ms)",
+                "Con copia p50 (ms)");
+        for (int items : new int[]{1, 10, 50}) {
+            Carrito carrito = carrito(items);
+            ProductoLento productos = new ProductoLento(0);
+            CarritoServiceImpl servicio = servicio(carrito, productos, 2_000);
+            Carrito conCopia = carrito(items);
+            conCopia.getItems().forEach(item -> item.aplicarSnapshot(ProductoLento.producto(item.getIdProducto()), "v1"));
+            CarritoServiceImpl servicioConCopia = servicio(conCopia, productos, 2_000);
+
+            long[] secuencial = new long[REPETICIONES];
+            long[] concurrente = new long[REPETICIONES];
+            long[] snapshot = new long[REPETICIONES];
+            for (int i = 0; i < REPETICIONES; i++) {
+                long t = System.nanoTime();
+                servicio.obtenerCarritoConDetalles(1L);
+                concurrente[i] = System.nanoTime() - t;
+
+                t = System.nanoTime();
+                servicioConCopia.obtenerCarritoConDetalles(1L);
+                snapshot[i] = System.nanoTime() - t;
+
+                t = System.nanoTime();
+                dormir(LATENCIA_MS);
+                for (ItemCarrito item : carrito.getItems()) {
+                    productos.findById(item.getIdProducto());
+                }
+                secuencial[i] = System.nanoTime() - t;
+            }
+            System.out.printf("%-8d %-22.1f %-22.1f %-22.1f%n", items, p50(secuencial), p50(concurrente), p50(snapshot));
+
+            // Una llamada batch en paralelo con la del usuario, sin importar la cantidad de ítems
+            assertThat(p50(concurrente)).isLessThan(LATENCIA_MS * 3);
+            assertThat(productos.llamadas).isEqualTo(REPETICIONES);
+        }
+
+        // Productos no responde: el carrito sale al vencer el plazo, con los datos propios
+        CarritoServiceImpl servicio = servicio(carrito(10), new ProductoLento(5_000), 200);
+        long t = System.nanoTime();
+        CarritoDTO parcial = servicio.obtenerCarritoConDetalles(1L);
+        double demora = (System.nanoTime() - t) / 1e6;
+        System.out.printf("Productos sin respuesta (plazo 200 ms): %.1f ms, detallesParciales=%s%n%n",
+                demora, parcial.getDetallesParciales());
+
+        assertThat(parcial.getDetallesParciales()).isTrue();
+        assertThat(demora).isLessThan(1_000);
+    }
+
+    private static CarritoServiceImpl servicio(Carrito carrito, ProductoClientRest productos, long timeoutMs) {
+        CarritoRepository repositorio = mock(CarritoRepository.class);
+        when(repositorio.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carrito));
+        UsuarioClientRest usuarios = mock(UsuarioClientRest.class);
+        when(usuarios.findById(1L)).thenAnswer(inv -> {
+            dormir(LATENCIA_MS);
+            Usuario usuario = new Usuario();
+            usuario.setNombre("María");
+            usuario.setApellido("González");
+            return usuario;
+        });
+
+        SnapshotsProductos snapshots = mock(SnapshotsProductos.class);
+        when(snapshots.vigente(any())).thenReturn(true);
+
+        CarritoServiceImpl servicio = new CarritoServiceImpl();
+        ReflectionTestUtils.setField(servicio, "snapshotsProductos", snapshots);
+        ReflectionTestUtils.setField(servicio, "carritosActivos", new CarritosActivos());
+        ReflectionTestUtils.setField(servicio, "carritoRepository", repositorio);
+        ReflectionTestUtils.setField(servicio, "usuarioClientRest", usuarios);
+        ReflectionTestUtils.setField(servicio, "productoClientRest", productos);
+        ReflectionTestUtils.setField(servicio, "timeoutDetallesMs", timeoutMs);
+        return servicio;
+    }
+
+    private static Carrito carrito(int items) {
+        Carrito carrito = Carrito.builder().idCarrito(1L).idUsuario(1L).estado("ACTIVO").items(new ArrayList<>()).build();
+        for (long id = 1; id <= items; id++) {
+            ItemCarrito item = ItemCarrito.builder().idItem(id).idProducto(id).cantidad(1)
+                    .precioUnitario(BigDecimal.TEN).build();
+            item.calcularSubtotal();
+            carrito.agregarItem(item);
+        }
+        carrito.calcularTotal();
+        return carrito;
+    }
+
+    private static double p50(long[] latencias) {
+        long[] ordenadas = latencias.clone();
+        Arrays.sort(ordenadas);
+        return ordenadas[ordenadas.length / 2] / 1e6;
+    }
+
+    private static void dormir(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // msvc-productos simulado: latencia fija por llamada y un pequeño costo por producto en el batch
+    private static final class ProductoLento implements ProductoClientRest {
+
+        private final long demoraExtraMs;
+
+        // Llamadas batch recibidas
+        private volatile int llamadas;
+
+        ProductoLento(long demoraExtraMs) {
+            this.demoraExtraMs = demoraExtraMs;
+        }
+
+        @Override
+        public Producto findById(Long id) {
+            dormir(LATENCIA_MS + demoraExtraMs);
+            return producto(id);
+        }
+
+        @Override
+        public Map<Long, Producto> findByIds(List<Long> ids) {
+            llamadas++;
+            dormir(LATENCIA_MS + demoraExtraMs + ids.size() / 5);
+            Map<Long, Producto> productos = new LinkedHashMap<>();
+            ids.forEach(id -> productos.put(id, producto(id)));
+            return productos;
+        }
+
+        @Override
+        public VersionCatalogo obtenerVersion() {
+            return new VersionCatalogo("v1", "v1");
+        }
+
+        @Override
+        public List<Producto> findActivos() {
+            return List.of();
+        }
+
+        @Override
+        public void actualizarStock(Long id, Integer cantidad) {
+        }
+
+        private static Producto producto(Long id) {
+            return Producto.builder().idProducto(id).nombre("Producto " + id).activo(true).stock(10).build();
+        }
+    }
+}
@@ -1,10 +1,12 @@
-﻿package com.appmovil.msvc.carrito.services;
+package com.appmovil.msvc.carrito.services;
 
+import com.appmovil.msvc.carrito.clients.ProductoClientFallback;
 import com.appmovil.msvc.carrito.clients.ProductoClientRest;
 import com.appmovil.msvc.carrito.clients.UsuarioClientRest;
 import com.appmovil.msvc.carrito.dtos.AgregarItemDTO;
 import com.appmovil.msvc.carrito.dtos.CarritoDTO;
 import com.appmovil.msvc.carrito.dtos.ItemCarritoDTO;
+import com.appmovil.msvc.carrito.dtos.OperacionCarritoDTO;
 import com.appmovil.msvc.carrito.exceptions.CarritoException;
 import com.appmovil.msvc.carrito.exceptions.ResourceNotFoundException;
 import com.appmovil.msvc.carrito.models.Producto;
@@ -12,6 +14,7 @@ import com.appmovil.msvc.carrito.models.Usuario;
 import com.appmovil.msvc.carrito.models.entities.Carrito;
 import com.appmovil.msvc.carrito.models.entities.ItemCarrito;
 import com.appmovil.msvc.carrito.repositories.CarritoRepository;
+import com.appmovil.msvc.carrito.repositories.ItemCarritoRepository;
 import feign.FeignException;
 import org.junit.jupiter.api.BeforeEach;
 
@@ -22,12 +25,19 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -46,6 +56,18 @@ class CarritoServiceImplTest {
     @Mock
     private ProductoClientRest productoClientRest;
 
+    @Mock
+    private ItemCarritoRepository itemCarritoRepository;
+
+    @Mock
+    private SnapshotsProductos snapshotsProductos;
+
+    @Mock
+    private CarritosActivos carritosActivos;
+
+    @Mock
+    private SerializadorCarritos serializadorCarritos;
+
     @InjectMocks
     private CarritoServiceImpl carritoService;
 
@@ -78,6 +100,12 @@ class CarritoServiceImplTest {
         carritoTest.setEstado("ACTIVO");
         carritoTest.setFechaCreacion(LocalDateTime.now());
         carritoTest.setItems(new ArrayList<>());
+
+        ReflectionTestUtils.setField(carritoService, "timeoutDetallesMs", 1000L);
+
+        // El lock y la transacción por usuario no se prueban aquí: la operación se ejecuta directamente
+        lenient().when(serializadorCarritos.ejecutar(anyLong(), any()))
+                .thenAnswer(inv -> inv.<Supplier<?>>getArgument(1).get());
     }
 
     @Test
@@ -127,7 +155,6 @@ class CarritoServiceImplTest {
     void testAgregarItem_ItemNuevo_DebeAgregarExitosamente() {
         // Given
         when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
-        when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
         when(productoClientRest.findById(1L)).thenReturn(productoTest);
         when(carritoRepository.save(any(Carrito.class))).thenAnswer(inv -> inv.getArgument(0));
 
@@ -155,7 +182,7 @@ class CarritoServiceImplTest {
         carritoTest.getItems().add(itemExistente);
 
         when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
-        when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
+        when(itemCarritoRepository.findByCarritoIdCarritoAndIdProducto(1L, 1L)).thenReturn(Optional.of(itemExistente));
         when(productoClientRest.findById(1L)).thenReturn(productoTest);
         when(carritoRepository.save(any(Carrito.class))).thenAnswer(inv -> inv.getArgument(0));
 
@@ -165,13 +192,13 @@ class CarritoServiceImplTest {
         // Then
         assertThat(resultado.getItems()).hasSize(1);
         assertThat(resultado.getItems().get(0).getCantidad()).isEqualTo(5); // 2 + 3
+        verify(itemCarritoRepository).save(itemExistente);
     }
 
     @Test
     @DisplayName("agregarItem - Debe lanzar excepción con cantidad mayor a 10")
     void testAgregarItem_CantidadMayorA10_DebeLanzarExcepcion() {
         // Given
-        when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
         when(productoClientRest.findById(1L)).thenReturn(productoTest);
 
         // When & Then
@@ -192,6 +219,7 @@ class CarritoServiceImplTest {
         carritoTest.getItems().add(itemExistente);
 
         when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
+        when(itemCarritoRepository.findByCarritoIdCarritoAndIdProducto(1L, 1L)).thenReturn(Optional.of(itemExistente));
         when(productoClientRest.findById(1L)).thenReturn(productoTest);
 
         // When & Then
@@ -205,7 +233,6 @@ class CarritoServiceImplTest {
     void testAgregarItem_StockInsuficiente_DebeLanzarExcepcion() {
         // Given
         productoTest.setStock(2); // Stock menor que cantidad solicitada
-        when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
         when(productoClientRest.findById(1L)).thenReturn(productoTest);
 
         // When & Then
@@ -219,7 +246,6 @@ class CarritoServiceImplTest {
     void testAgregarItem_ProductoInactivo_DebeLanzarExcepcion() {
         // Given
         productoTest.setActivo(false);
-        when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
         when(productoClientRest.findById(1L)).thenReturn(productoTest);
 
         // When & Then
@@ -232,13 +258,13 @@ class CarritoServiceImplTest {
     @DisplayName("agregarItem - Debe manejar error cuando producto no existe")
     void testAgregarItem_ProductoNoExiste_DebeLanzarExcepcion() {
         // Given
-        when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
         when(productoClientRest.findById(1L)).thenThrow(mock(FeignException.class));
 
         // When & Then
         assertThatThrownBy(() -> carritoService.agregarItem(1L, AgregarItemDTO.builder().idProducto(1L).cantidad(2).build()))
-                .isInstanceOf(CarritoException.class)
-                .hasMessageContaining("producto");
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessageContaining("Producto");
+        verify(carritoRepository, never()).save(any());
     }
 
     @Test
@@ -254,7 +280,7 @@ class CarritoServiceImplTest {
         carritoTest.getItems().add(item);
 
         when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
-        when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
+        when(itemCarritoRepository.findByCarritoIdCarritoAndIdProducto(1L, 1L)).thenReturn(Optional.of(item));
         when(productoClientRest.findById(1L)).thenReturn(productoTest);
         when(carritoRepository.save(any(Carrito.class))).thenAnswer(inv -> inv.getArgument(0));
 
@@ -263,6 +289,8 @@ class CarritoServiceImplTest {
 
         // Then
         assertThat(resultado.getItems().get(0).getCantidad()).isEqualTo(5);
+        assertThat(resultado.getTotal()).isEqualByComparingTo(BigDecimal.valueOf(5000));
+        verify(itemCarritoRepository).save(item);
         verify(carritoRepository).save(any());
     }
 
@@ -289,7 +317,7 @@ class CarritoServiceImplTest {
         carritoTest.getItems().add(item);
 
         when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
-        when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
+        when(itemCarritoRepository.findByCarritoIdCarritoAndIdProducto(1L, 1L)).thenReturn(Optional.of(item));
         when(carritoRepository.save(any(Carrito.class))).thenAnswer(inv -> inv.getArgument(0));
 
         // When
@@ -297,6 +325,7 @@ class CarritoServiceImplTest {
 
         // Then
         assertThat(resultado.getItems()).isEmpty();
+        verify(itemCarritoRepository).delete(item);
         verify(carritoRepository).save(any());
     }
 
@@ -323,7 +352,6 @@ class CarritoServiceImplTest {
         carritoTest.getItems().addAll(Arrays.asList(item1, item2));
 
         when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
-        when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
         when(carritoRepository.save(any(Carrito.class))).thenAnswer(inv -> inv.getArgument(0));
 
         // When
@@ -331,6 +359,7 @@ class CarritoServiceImplTest {
 
         // Then
         assertThat(carritoTest.getItems()).isEmpty();
+        verify(itemCarritoRepository).deleteByCarritoIdCarrito(1L);
         verify(carritoRepository).save(argThat(c -> c.getItems().isEmpty()));
     }
 
@@ -346,7 +375,7 @@ class CarritoServiceImplTest {
 
         when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
         when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
-        when(productoClientRest.findById(1L)).thenReturn(productoTest);
+        when(productoClientRest.findByIds(List.of(1L))).thenReturn(Map.of(1L, productoTest));
 
         // When
         CarritoDTO resultado = carritoService.obtenerCarritoConDetalles(1L);
@@ -354,7 +383,9 @@ class CarritoServiceImplTest {
         // Then
         assertThat(resultado.getItems()).hasSize(1);
         assertThat(resultado.getItems().get(0).getNombreProducto()).isEqualTo("iPhone 15");
-        verify(productoClientRest).findById(1L);
+        assertThat(resultado.getDetallesParciales()).isFalse();
+        verify(productoClientRest).findByIds(List.of(1L));
+        verify(productoClientRest, never()).findById(anyLong());
     }
 
     @Test
@@ -374,6 +405,7 @@ class CarritoServiceImplTest {
         item2.setSubtotal(BigDecimal.valueOf(1500));
 
         carritoTest.getItems().addAll(Arrays.asList(item1, item2));
+        carritoTest.calcularTotal();
 
         Producto producto2 = new Producto();
         producto2.setIdProducto(2L);
@@ -382,14 +414,13 @@ class CarritoServiceImplTest {
 
         when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
         when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
-        when(productoClientRest.findById(1L)).thenReturn(productoTest);
-        when(productoClientRest.findById(2L)).thenReturn(producto2);
+        when(productoClientRest.findByIds(List.of(1L, 2L))).thenReturn(Map.of(1L, productoTest, 2L, producto2));
 
         // When
         CarritoDTO resultado = carritoService.obtenerCarritoConDetalles(1L);
 
         // Then
-        assertThat(resultado.getTotal()).isEqualTo(3500); // 2000 + 1500
+        assertThat(resultado.getTotal()).isEqualByComparingTo("3500"); // 2000 + 1500
         assertThat(resultado.getItems().stream().mapToInt(ItemCarritoDTO::getCantidad).sum()).isEqualTo(5); // 2 + 3
     }
 
@@ -406,6 +437,355 @@ class CarritoServiceImplTest {
         // Then
         assertThat(resultado).isNotNull();
         assertThat(resultado.getNombreUsuario()).isNull();
+        assertThat(resultado.getDetallesParciales()).isTrue();
+    }
+
+    @Test
+    @DisplayName("obtenerCarrito - Debe consultar usuario y productos a la vez")
+    void testObtenerCarrito_DebeConsultarEnParalelo() {
+        // Given: cada servicio espera a que el otro también haya sido llamado
+        ItemCarrito item = new ItemCarrito();
+        item.setIdProducto(1L);
+        item.setCantidad(1);
+        carritoTest.getItems().add(item);
+        CountDownLatch ambasLlamadas = new CountDownLatch(2);
+
+        when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
+        when(usuarioClientRest.findById(1L)).thenAnswer(inv -> {
+            ambasLlamadas.countDown();
+            ambasLlamadas.await(2, TimeUnit.SECONDS);
+            return usuarioTest;
+        });
+        when(productoClientRest.findByIds(List.of(1L))).thenAnswer(inv -> {
+            ambasLlamadas.countDown();
+            ambasLlamadas.await(2, TimeUnit.SECONDS);
+            return Map.of(1L, productoTest);
+        });
+
+        // When
+        CarritoDTO resultado = carritoService.obtenerCarritoConDetalles(1L);
+
+        // Then: en secuencia, la primera llamada habría agotado el plazo
+        assertThat(resultado.getDetallesParciales()).isFalse();
+        assertThat(resultado.getNombreUsuario()).isEqualTo("María González");
+        assertThat(resultado.getItems().get(0).getNombreProducto()).isEqualTo("iPhone 15");
+    }
+
+    @Test
+    @DisplayName("obtenerCarrito - Si productos no responde a tiempo debe devolver los ítems sin sus datos")
+    void testObtenerCarrito_TimeoutProductos_DebeDevolverParcial() {
+        // Given
+        ReflectionTestUtils.setField(carritoService, "timeoutDetallesMs", 100L);
+        ItemCarrito item = new ItemCarrito();
+        item.setIdProducto(1L);
+        item.setCantidad(2);
+        item.setPrecioUnitario(BigDecimal.valueOf(1000));
+        item.setSubtotal(BigDecimal.valueOf(2000));
+        carritoTest.getItems().add(item);
+
+        when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
+        when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
+        when(productoClientRest.findByIds(List.of(1L))).thenAnswer(inv -> {
+            Thread.sleep(5_000);
+            return Map.of(1L, productoTest);
+        });
+
+        // When
+        long inicio = System.nanoTime();
+        CarritoDTO resultado = carritoService.obtenerCarritoConDetalles(1L);
+        long demoraMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+        // Then
+        assertThat(demoraMs).isLessThan(2_000);
+        assertThat(resultado.getDetallesParciales()).isTrue();
+        assertThat(resultado.getNombreUsuario()).isEqualTo("María González");
+        assertThat(resultado.getItems()).hasSize(1);
+        assertThat(resultado.getItems().get(0).getNombreProducto()).isNull();
+        assertThat(resultado.getItems().get(0).getSubtotal()).isEqualByComparingTo("2000");
+    }
+
+    @Test
+    @DisplayName("obtenerCarrito - Un producto que ya no existe no debe impedir mostrar el carrito")
+    void testObtenerCarrito_ProductoFaltante_DebeDevolverParcial() {
+        // Given
+        ItemCarrito item = new ItemCarrito();
+        item.setIdProducto(99L);
+        item.setCantidad(1);
+        carritoTest.getItems().add(item);
+
+        when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
+        when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
+        when(productoClientRest.findByIds(List.of(99L))).thenReturn(Map.of());
+
+        // When
+        CarritoDTO resultado = carritoService.obtenerCarritoConDetalles(1L);
+
+        // Then
+        assertThat(resultado.getItems()).hasSize(1);
+        assertThat(resultado.getDetallesParciales()).isTrue();
+    }
+
+    @Test
+    @DisplayName("obtenerCarrito - Los datos de respaldo del fallback no deben mostrarse como datos del producto")
+    void testObtenerCarrito_FallbackProductos_DebeDevolverParcial() {
+        // Given: el circuit breaker está abierto y findByIds responde con el fallback
+        ItemCarrito item = new ItemCarrito();
+        item.setIdProducto(1L);
+        item.setCantidad(1);
+        carritoTest.getItems().add(item);
+
+        when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
+        when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
+        when(productoClientRest.findByIds(List.of(1L))).thenReturn(new ProductoClientFallback().findByIds(List.of(1L)));
+
+        // When
+        CarritoDTO resultado = carritoService.obtenerCarritoConDetalles(1L);
+
+        // Then
+        assertThat(resultado.getDetallesParciales()).isTrue();
+        assertThat(resultado.getItems()).singleElement().satisfies(linea -> {
+            assertThat(linea.getNombreProducto()).isNull();
+            assertThat(linea.getProductoActivo()).isNull();
+        });
+    }
+
+    @Test
+    @DisplayName("obtenerCarrito - Con la copia del producto vigente no debe llamar a msvc-productos")
+    void testObtenerCarrito_ConSnapshot_NoDebeConsultarProductos() {
+        // Given
+        ItemCarrito item = ItemCarrito.builder().idProducto(1L).cantidad(1).precioUnitario(BigDecimal.valueOf(1000)).build();
+        item.aplicarSnapshot(productoTest, "1-7");
+        carritoTest.getItems().add(item);
+
+        when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
+        when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
+        when(snapshotsProductos.versionConocida()).thenReturn("1-7");
+        when(snapshotsProductos.vigente("1-7")).thenReturn(true);
+
+        // When
+        CarritoDTO resultado = carritoService.obtenerCarritoConDetalles(1L);
+
+        // Then
+        assertThat(resultado.getItems().get(0).getNombreProducto()).isEqualTo("iPhone 15");
+        assertThat(resultado.getItems().get(0).getProductoActivo()).isTrue();
+        assertThat(resultado.getDetallesParciales()).isFalse();
+        verifyNoInteractions(productoClientRest);
+        verify(snapshotsProductos, never()).refrescar(any());
+    }
+
+    @Test
+    @DisplayName("obtenerCarrito - Una copia de otra versión debe mostrarse y refrescarse en segundo plano")
+    void testObtenerCarrito_SnapshotDesactualizado_DebeRefrescar() {
+        // Given
+        ItemCarrito item = ItemCarrito.builder().idProducto(1L).cantidad(1).precioUnitario(BigDecimal.valueOf(1000)).build();
+        item.aplicarSnapshot(productoTest, "1-7");
+        carritoTest.getItems().add(item);
+
+        when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
+        when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
+        when(snapshotsProductos.versionConocida()).thenReturn("1-8");
+        when(snapshotsProductos.vigente("1-7")).thenReturn(false);
+
+        // When
+        CarritoDTO resultado = carritoService.obtenerCarritoConDetalles(1L);
+
+        // Then
+        assertThat(resultado.getItems().get(0).getNombreProducto()).isEqualTo("iPhone 15");
+        verify(snapshotsProductos).refrescar(Set.of(1L));
+        verifyNoInteractions(productoClientRest);
+    }
+
+    @Test
+    @DisplayName("obtenerCarrito - Las líneas sin copia deben consultarse y guardar la copia obtenida")
+    void testObtenerCarrito_SinSnapshot_DebeGuardarCopia() {
+        // Given
+        ItemCarrito item = ItemCarrito.builder().idProducto(1L).cantidad(1).precioUnitario(BigDecimal.valueOf(1000)).build();
+        carritoTest.getItems().add(item);
+
+        when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
+        when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
+        when(snapshotsProductos.versionConocida()).thenReturn("1-7");
+        when(productoClientRest.findByIds(List.of(1L))).thenReturn(Map.of(1L, productoTest));
+
+        // When
+        CarritoDTO resultado = carritoService.obtenerCarritoConDetalles(1L);
+
+        // Then
+        assertThat(resultado.getItems().get(0).getNombreProducto()).isEqualTo("iPhone 15");
+        verify(snapshotsProductos).guardar(Map.of(1L, productoTest), "1-7");
+    }
+
+    @Test
+    @DisplayName("agregarItem - Con carritos activos en memoria no debe consultar la base de datos")
+    void testAgregarItem_EnMemoria_NoDebeConsultarBase() {
+        // Given
+        CarritosActivos.CarritoActivo activo = enMemoria();
+        when(productoClientRest.findById(1L)).thenReturn(productoTest);
+        when(snapshotsProductos.versionConocida()).thenReturn("1-7");
+
+        // When
+        carritoService.agregarItem(1L, AgregarItemDTO.builder().idProducto(1L).cantidad(3).build());
+        carritoService.agregarItem(1L, AgregarItemDTO.builder().idProducto(1L).cantidad(2).build());
+
+        // Then
+        assertThat(activo.linea(1L).cantidad()).isEqualTo(5);
+        assertThat(activo.linea(1L).precioUnitario()).isEqualByComparingTo("1000");
+        assertThat(activo.linea(1L).nombreProducto()).isEqualTo("iPhone 15");
+        assertThat(activo.linea(1L).versionCatalogo()).isEqualTo("1-7");
+        verifyNoInteractions(carritoRepository, itemCarritoRepository);
+    }
+
+    @Test
+    @DisplayName("agregarItem - Con carritos activos en memoria debe validar la cantidad total de la línea")
+    void testAgregarItem_EnMemoria_TotalExcede10_DebeLanzarExcepcion() {
+        // Given
+        CarritosActivos.CarritoActivo activo = enMemoria();
+        activo.poner(CarritosActivos.Linea.nueva(1L, 8, BigDecimal.valueOf(1000)));
+        when(productoClientRest.findById(1L)).thenReturn(productoTest);
+
+        // When & Then
+        assertThatThrownBy(() -> carritoService.agregarItem(1L, AgregarItemDTO.builder().idProducto(1L).cantidad(3).build()))
+                .isInstanceOf(CarritoException.class)
+                .hasMessageContaining("10 unidades");
+        assertThat(activo.linea(1L).cantidad()).isEqualTo(8);
+    }
+
+    @Test
+    @DisplayName("removerItem - Con carritos activos en memoria debe fallar si el producto no está en el carrito")
+    void testRemoverItem_EnMemoria_ItemInexistente_DebeLanzarExcepcion() {
+        // Given
+        enMemoria();
+
+        // When & Then
+        assertThatThrownBy(() -> carritoService.removerItem(1L, 1L))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("aplicarOperaciones - Debe aplicar todas las operaciones con una consulta de productos y un guardado")
+    void testAplicarOperaciones_DebeAplicarEnUnaTransaccion() {
+        // Given: el carrito tiene 2 unidades del producto 1 y 1 del producto 2
+        carritoTest.agregarItem(item(10L, 1L, 2));
+        carritoTest.agregarItem(item(11L, 2L, 1));
+        Producto audifonos = Producto.builder().idProducto(3L).nombre("AirPods").precio(BigDecimal.valueOf(200)).stock(5).activo(true).build();
+        when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
+        when(productoClientRest.findByIds(List.of(3L, 1L))).thenReturn(Map.of(1L, productoTest, 3L, audifonos));
+        when(carritoRepository.save(any(Carrito.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
+
+        // When
+        CarritoDTO resultado = carritoService.aplicarOperaciones(1L, List.of(
+                operacion(OperacionCarritoDTO.Tipo.AGREGAR, 3L, 2),
+                operacion(OperacionCarritoDTO.Tipo.FIJAR, 1L, 5),
+                operacion(OperacionCarritoDTO.Tipo.QUITAR, 2L, null)));
+
+        // Then
+        assertThat(resultado.getItems()).extracting(ItemCarritoDTO::getIdProducto, ItemCarritoDTO::getCantidad)
+                .containsExactlyInAnyOrder(tuple(1L, 5), tuple(3L, 2));
+        assertThat(resultado.getTotal()).isEqualByComparingTo("5400");
+        assertThat(carritoTest.getItems()).allMatch(item -> item.getCarrito() == carritoTest);
+        verify(productoClientRest, times(1)).findByIds(any());
+        verify(productoClientRest, never()).findById(anyLong());
+        verify(carritoRepository, times(1)).save(carritoTest);
+        verifyNoInteractions(itemCarritoRepository);
+    }
+
+    @Test
+    @DisplayName("aplicarOperaciones - Quitar y volver a agregar un producto debe reusar su línea")
+    void testAplicarOperaciones_QuitarYAgregar_DebeReusarLinea() {
+        // Given
+        ItemCarrito existente = item(10L, 1L, 4);
+        carritoTest.agregarItem(existente);
+        when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
+        when(productoClientRest.findByIds(List.of(1L))).thenReturn(Map.of(1L, productoTest));
+        when(carritoRepository.save(any(Carrito.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        // When
+        carritoService.aplicarOperaciones(1L, List.of(
+                operacion(OperacionCarritoDTO.Tipo.QUITAR, 1L, null),
+                operacion(OperacionCarritoDTO.Tipo.AGREGAR, 1L, 1)));
+
+        // Then
+        assertThat(carritoTest.getItems()).containsExactly(existente);
+        assertThat(existente.getIdItem()).isEqualTo(10L);
+        assertThat(existente.getCantidad()).isEqualTo(1);
+        assertThat(carritoTest.getTotal()).isEqualByComparingTo("1000");
+    }
+
+    @Test
+    @DisplayName("aplicarOperaciones - Si una operación no es válida no debe guardar ninguna")
+    void testAplicarOperaciones_OperacionInvalida_NoDebeGuardar() {
+        // Given
+        Producto inactivo = Producto.builder().idProducto(3L).nombre("Agotado").precio(BigDecimal.TEN).stock(5).activo(false).build();
+        when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
+        when(productoClientRest.findByIds(List.of(1L, 3L))).thenReturn(Map.of(1L, productoTest, 3L, inactivo));
+
+        // When & Then
+        assertThatThrownBy(() -> carritoService.aplicarOperaciones(1L, List.of(
+                operacion(OperacionCarritoDTO.Tipo.AGREGAR, 1L, 1),
+                operacion(OperacionCarritoDTO.Tipo.AGREGAR, 3L, 1))))
+                .isInstanceOf(CarritoException.class)
+                .hasMessageContaining("no está disponible");
+        verify(carritoRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("aplicarOperaciones - Debe fallar antes de tomar el carrito si un producto no existe")
+    void testAplicarOperaciones_ProductoInexistente_DebeLanzarExcepcion() {
+        // Given
+        when(productoClientRest.findByIds(List.of(1L, 99L))).thenReturn(Map.of(1L, productoTest));
+
+        // When & Then
+        assertThatThrownBy(() -> carritoService.aplicarOperaciones(1L, List.of(
+                operacion(OperacionCarritoDTO.Tipo.AGREGAR, 1L, 1),
+                operacion(OperacionCarritoDTO.Tipo.FIJAR, 99L, 2))))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessageContaining("99");
+        verifyNoInteractions(carritoRepository, serializadorCarritos);
+    }
+
+    @Test
+    @DisplayName("aplicarOperaciones - Con carritos activos en memoria debe aplicar todo en una sola modificación")
+    void testAplicarOperaciones_EnMemoria_DebeAplicarEnUnaModificacion() {
+        // Given
+        CarritosActivos.CarritoActivo activo = enMemoria();
+        activo.poner(CarritosActivos.Linea.nueva(2L, 1, BigDecimal.TEN));
+        when(productoClientRest.findByIds(List.of(1L))).thenReturn(Map.of(1L, productoTest));
+
+        // When
+        carritoService.aplicarOperaciones(1L, List.of(
+                operacion(OperacionCarritoDTO.Tipo.AGREGAR, 1L, 2),
+                operacion(OperacionCarritoDTO.Tipo.FIJAR, 1L, 3),
+                operacion(OperacionCarritoDTO.Tipo.QUITAR, 2L, null)));
+
+        // Then
+        assertThat(activo.lineas()).extracting(CarritosActivos.Linea::idProducto, CarritosActivos.Linea::cantidad)
+                .containsExactly(tuple(1L, 3));
+        verify(carritosActivos, times(1)).modificar(eq(1L), any(), any());
+        verifyNoInteractions(carritoRepository, itemCarritoRepository);
+    }
+
+    private ItemCarrito item(Long idItem, Long idProducto, int cantidad) {
+        ItemCarrito item = ItemCarrito.builder().idItem(idItem).idProducto(idProducto).cantidad(cantidad)
+                .precioUnitario(BigDecimal.valueOf(1000)).build();
+        item.calcularSubtotal();
+        return item;
+    }
+
+    private OperacionCarritoDTO operacion(OperacionCarritoDTO.Tipo tipo, Long idProducto, Integer cantidad) {
+        return OperacionCarritoDTO.builder().tipo(tipo).idProducto(idProducto).cantidad(cantidad).build();
+    }
+
+    // Carritos activos habilitados: modificar aplica el cambio sobre el estado devuelto
+    private CarritosActivos.CarritoActivo enMemoria() {
+        CarritosActivos.CarritoActivo activo = CarritosActivos.CarritoActivo.de(carritoTest);
+        when(carritosActivos.isHabilitado()).thenReturn(true);
+        when(carritosActivos.modificar(eq(1L), any(), any())).thenAnswer(inv -> {
+            Consumer<CarritosActivos.CarritoActivo> cambio = inv.getArgument(2);
+            cambio.accept(activo);
+            return carritoTest;
+        });
+        return activo;
     }
 
     @Test
@@ -413,7 +793,6 @@ class CarritoServiceImplTest {
     void testAgregarItem_DebeCalcularSubtotal() {
         // Given
         when(carritoRepository.findByIdUsuarioAndEstado(1L, "ACTIVO")).thenReturn(Optional.of(carritoTest));
-        when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
         when(productoClientRest.findById(1L)).thenReturn(productoTest);
         when(carritoRepository.save(any(Carrito.class))).thenAnswer(inv -> inv.getArgument(0));
 
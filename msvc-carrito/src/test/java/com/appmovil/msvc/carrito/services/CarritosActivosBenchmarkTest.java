@@ -0,0 +1,124 @@
+package com.appmovil.msvc.carrito.services;
+
+import com.appmovil.msvc.carrito.clients.ProductoClientRest;
+import com.appmovil.msvc.carrito.clients.UsuarioClientRest;
+import com.appmovil.msvc.carrito.dtos.AgregarItemDTO;
+import com.appmovil.msvc.carrito.models.Producto;
+import com.appmovil.msvc.carrito.models.Usuario;
+import com.appmovil.msvc.carrito.models.entities.Carrito;
+import com.appmovil.msvc.carrito.repositories.CarritoRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+/**
+ * Latencia de agregarItem por el camino de la base de datos (H2) y con carritos activos en memoria.
+ * msvc-productos y msvc-usuarios están simulados y responden al instante: se mide el costo propio del
+ * carrito, sin la validación remota del producto. Se ejecuta solo a pedido:
+ * mvn test -Dtest=CarritosActivosBenchmarkTest -Dbenchmark=true
+ */
+@SpringBootTest(properties = {
+        "carrito.carritos-activos.enabled=true",
+        "carrito.carritos-activos.intervalo-flush-ms=100",
+        "carrito.carritos-activos.journal=target/benchmark/carritos-activos.journal"
+})
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("CarritosActivos - Benchmark de agregarItem")
+class CarritosActivosBenchmarkTest {
+
+    private static final int USUARIOS = 200;
+    private static final int PRODUCTOS = 50;
+    private static final int OPERACIONES = 5_000;
+
+    @Autowired
+    private CarritoService carritoService;
+
+    @Autowired
+    private CarritosActivos carritosActivos;
+
+    @Autowired
+    private CarritoRepository carritoRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @MockBean
+    private UsuarioClientRest usuarioClientRest;
+
+    @MockBean
+    private ProductoClientRest productoClientRest;
+
+    @Test
+    void compararBaseDeDatosContraMemoria() {
+        when(usuarioClientRest.findById(anyLong())).thenAnswer(inv -> {
+            Usuario usuario = new Usuario();
+            usuario.setIdUsuario(inv.getArgument(0));
+            return usuario;
+        });
+        when(productoClientRest.findById(anyLong())).thenAnswer(inv -> Producto.builder()
+                .idProducto(inv.getArgument(0)).nombre("Producto " + inv.getArgument(0))
+                .precio(BigDecimal.TEN).stock(1_000).activo(true).build());
+
+        // Cada escenario usa su propio rango de usuarios; el primero de cada rango es calentamiento
+        ReflectionTestUtils.setField(carritosActivos, "habilitado", false);
+        medir(null, 10_000);
+        long[] enBase = medir("Base de datos", 20_000);
+
+        ReflectionTestUtils.setField(carritosActivos, "habilitado", true);
+        medir(null, 30_000);
+        long[] enMemoria = medir("Carritos activos en memoria", 40_000);
+
+        // Después del flush la base de datos tiene todo lo agregado en memoria
+        carritosActivos.flush();
+        int lineas = transactionTemplate.execute(estado -> carritoRepository.findAll().stream()
+                .filter(carrito -> carrito.getIdUsuario() > 40_000)
+                .mapToInt(carrito -> carrito.getItems().size())
+                .sum());
+        assertThat(lineas).isEqualTo(OPERACIONES);
+        assertThat(percentil(enMemoria, 0.5)).isLessThan(percentil(enBase, 0.5));
+    }
+
+    private long[] medir(String escenario, long primerUsuario) {
+        // Se mide sobre carritos ya activos: el alta (una vez por usuario) queda fuera
+        for (int u = 1; u <= USUARIOS; u++) {
+            carritoService.obtenerCarritoActivo(primerUsuario + u);
+        }
+
+        long[] latencias = new long[OPERACIONES];
+        for (int i = 0; i < OPERACIONES; i++) {
+            long idUsuario = primerUsuario + 1 + i % USUARIOS;
+            long idProducto = 1 + (i / USUARIOS) % PRODUCTOS;
+            AgregarItemDTO item = AgregarItemDTO.builder().idProducto(idProducto).cantidad(1).build();
+            long inicio = System.nanoTime();
+            Carrito carrito = carritoService.agregarItem(idUsuario, item);
+            latencias[i] = System.nanoTime() - inicio;
+            assertThat(carrito.getItems()).isNotEmpty();
+        }
+        if (escenario != null) {
+            System.out.printf("%-30s p50 %.3f ms  p99 %.3f ms  máx %.3f ms%n", escenario,
+                    percentil(latencias, 0.5), percentil(latencias, 0.99), percentil(latencias, 1.0));
+        }
+        return latencias;
+    }
+
+    private static double percentil(long[] latencias, double p) {
+        long[] ordenadas = latencias.clone();
+        Arrays.sort(ordenadas);
+        int indice = (int) Math.min(ordenadas.length - 1, Math.ceil(p * ordenadas.length) - 1);
+        return ordenadas[Math.max(0, indice)] / 1e6;
+    }
+}
@@ -0,0 +1,358 @@
+package com.appmovil.msvc.carrito.services;
+
+import com.appmovil.msvc.carrito.exceptions.CarritoException;
+import com.appmovil.msvc.carrito.models.Producto;
+import com.appmovil.msvc.carrito.models.entities.Carrito;
+import com.appmovil.msvc.carrito.models.entities.ItemCarrito;
+import com.appmovil.msvc.carrito.repositories.CarritoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("CarritosActivos - Unit Tests")
+class CarritosActivosTest {
+
+    @Mock
+    private CarritoRepository carritoRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private CarritosActivos carritosActivos;
+
+    @TempDir
+    Path directorio;
+
+    // Segmento activo al iniciar
+    private Path journal;
+
+    // Filas de la tabla carrito simuladas
+    private Carrito carritoUno;
+    private Carrito carritoDos;
+    private final AtomicInteger cargas = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        journal = directorio.resolve("carritos.journal.1");
+        carritoUno = carrito(10L, 1L);
+        carritoDos = carrito(20L, 2L);
+        when(carritoRepository.findById(10L)).thenReturn(Optional.of(carritoUno));
+        when(carritoRepository.findById(20L)).thenReturn(Optional.of(carritoDos));
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        configurar(carritosActivos, 100);
+        carritosActivos.iniciar();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        carritosActivos.detener();
+    }
+
+    private void configurar(CarritosActivos instancia, int capacidad) {
+        ReflectionTestUtils.setField(instancia, "habilitado", true);
+        ReflectionTestUtils.setField(instancia, "capacidad", capacidad);
+        ReflectionTestUtils.setField(instancia, "franjas", 16);
+        // Intervalo largo: en los tests el flush se invoca a mano
+        ReflectionTestUtils.setField(instancia, "intervaloFlushMs", 60_000L);
+        ReflectionTestUtils.setField(instancia, "rutaJournal", directorio.resolve("carritos.journal").toString());
+    }
+
+    @Test
+    @DisplayName("modificar - Debe aplicar los cambios en memoria sin tocar la base de datos")
+    void testModificar_DebeAplicarEnMemoria() {
+        // When
+        carritosActivos.modificar(1L, cargar(carritoUno), c -> c.poner(CarritosActivos.Linea.nueva(5L, 2, BigDecimal.TEN)));
+        Carrito resultado = carritosActivos.modificar(1L, cargar(carritoUno),
+                c -> c.poner(c.linea(5L).conCantidad(3)));
+
+        // Then
+        assertThat(resultado.getItems()).hasSize(1);
+        assertThat(resultado.getItems().get(0).getCantidad()).isEqualTo(3);
+        assertThat(resultado.getTotal()).isEqualByComparingTo("30");
+        assertThat(cargas.get()).isEqualTo(1);
+        verifyNoInteractions(carritoRepository);
+        assertThat(carritoUno.getItems()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("flush - Debe escribir una sola vez cada carrito modificado y borrar el segmento")
+    void testFlush_DebeAgruparCambiosPorCarrito() throws IOException {
+        // Given
+        carritosActivos.modificar(1L, cargar(carritoUno), c -> c.poner(CarritosActivos.Linea.nueva(5L, 1, BigDecimal.TEN)));
+        carritosActivos.modificar(1L, cargar(carritoUno), c -> c.poner(CarritosActivos.Linea.nueva(6L, 1, BigDecimal.ONE)));
+        carritosActivos.modificar(1L, cargar(carritoUno), c -> c.poner(c.linea(5L).conCantidad(4)));
+        carritosActivos.modificar(2L, cargar(carritoDos), c -> c.poner(CarritosActivos.Linea.nueva(5L, 1, BigDecimal.TEN)));
+
+        // When
+        carritosActivos.flush();
+
+        // Then
+        verify(carritoRepository, times(1)).save(carritoUno);
+        verify(carritoRepository, times(1)).save(carritoDos);
+        verify(transactionManager, times(1)).commit(any());
+        assertThat(carritoUno.getItems()).extracting(ItemCarrito::getIdProducto, ItemCarrito::getCantidad)
+                .containsExactly(tuple(5L, 4), tuple(6L, 1));
+        assertThat(carritoUno.getTotal()).isEqualByComparingTo("41");
+        Path siguiente = directorio.resolve("carritos.journal.2");
+        try (var archivos = Files.list(directorio)) {
+            assertThat(archivos).containsExactly(siguiente);
+        }
+        assertThat(Files.size(siguiente)).isZero();
+
+        // Sin cambios nuevos no vuelve a escribir
+        carritosActivos.flush();
+        verify(carritoRepository, times(2)).save(any());
+    }
+
+    @Test
+    @DisplayName("flush - Debe quitar de la base de datos las líneas quitadas en memoria")
+    void testFlush_DebeQuitarLineas() {
+        // Given
+        ItemCarrito existente = ItemCarrito.builder().idItem(1L).idProducto(5L).cantidad(2).precioUnitario(BigDecimal.TEN).build();
+        existente.setCarrito(carritoUno);
+        carritoUno.getItems().add(existente);
+
+        // When
+        carritosActivos.modificar(1L, cargar(carritoUno), CarritosActivos.CarritoActivo::vaciar);
+        carritosActivos.flush();
+
+        // Then
+        assertThat(carritoUno.getItems()).isEmpty();
+        assertThat(existente.getCarrito()).isNull();
+        assertThat(carritoUno.getTotal()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    @DisplayName("modificar - Si el cambio lanza una excepción debe restaurar las líneas y no anotar nada")
+    void testModificar_ConExcepcion_DebeRevertir() throws IOException {
+        // Given
+        carritosActivos.modificar(1L, cargar(carritoUno), c -> c.poner(CarritosActivos.Linea.nueva(5L, 1, BigDecimal.TEN)));
+        long tamanio = Files.size(journal);
+
+        // When
+        assertThatThrownBy(() -> carritosActivos.modificar(1L, cargar(carritoUno), c -> {
+            c.poner(c.linea(5L).conCantidad(9));
+            c.quitar(5L);
+            throw new CarritoException("inválido");
+        })).isInstanceOf(CarritoException.class);
+
+        // Then
+        Carrito resultado = carritosActivos.obtener(1L, cargar(carritoUno));
+        assertThat(resultado.getItems()).extracting(ItemCarrito::getCantidad).containsExactly(1);
+        assertThat(Files.size(journal)).isEqualTo(tamanio);
+    }
+
+    @Test
+    @DisplayName("iniciar - Debe reaplicar el journal de una ejecución que terminó sin flush")
+    void testIniciar_DebeRecuperarJournal() throws IOException {
+        // Given: se simula una caída (sin flush) y un último registro escrito a medias
+        carritosActivos.modificar(1L, cargar(carritoUno), c -> c.poner(CarritosActivos.Linea.nueva(5L, 1, BigDecimal.TEN)));
+        carritosActivos.modificar(1L, cargar(carritoUno), c -> c.poner(CarritosActivos.Linea.nueva(6L, 2, BigDecimal.ONE)));
+        carritosActivos.modificar(1L, cargar(carritoUno), c -> {
+            c.poner(c.linea(5L).conSnapshot(Producto.builder().nombre("Laptop").activo(true).build(), "1-7").conCantidad(3));
+            c.quitar(6L);
+        });
+        simularCaida(carritosActivos);
+        try (FileChannel canal = FileChannel.open(journal, StandardOpenOption.APPEND)) {
+            canal.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2}));
+        }
+
+        // When
+        carritosActivos = new CarritosActivos();
+        ReflectionTestUtils.setField(carritosActivos, "carritoRepository", carritoRepository);
+        ReflectionTestUtils.setField(carritosActivos, "transactionManager", transactionManager);
+        configurar(carritosActivos, 100);
+        carritosActivos.iniciar();
+
+        // Then
+        assertThat(carritoUno.getItems()).hasSize(1);
+        ItemCarrito item = carritoUno.getItems().get(0);
+        assertThat(item.getIdProducto()).isEqualTo(5L);
+        assertThat(item.getCantidad()).isEqualTo(3);
+        assertThat(item.getNombreProducto()).isEqualTo("Laptop");
+        assertThat(item.getVersionCatalogo()).isEqualTo("1-7");
+        assertThat(carritoUno.getTotal()).isEqualByComparingTo("30");
+        verify(carritoRepository).save(carritoUno);
+        try (var archivos = Files.list(directorio)) {
+            assertThat(archivos).containsExactly(journal);
+        }
+        assertThat(Files.size(journal)).isZero();
+    }
+
+    @Test
+    @DisplayName("recortar - No debe desalojar carritos con cambios sin escribir")
+    void testRecortar_NoDebeDesalojarCarritosConCambios() throws IOException {
+        // Given
+        carritosActivos.detener();
+        carritosActivos = new CarritosActivos();
+        ReflectionTestUtils.setField(carritosActivos, "carritoRepository", carritoRepository);
+        ReflectionTestUtils.setField(carritosActivos, "transactionManager", transactionManager);
+        configurar(carritosActivos, 1);
+        carritosActivos.iniciar();
+
+        // When
+        carritosActivos.modificar(1L, cargar(carritoUno), c -> c.poner(CarritosActivos.Linea.nueva(5L, 1, BigDecimal.TEN)));
+        carritosActivos.obtener(2L, cargar(carritoDos));
+
+        // Then: el segundo entra sin desalojar al primero, que tiene cambios pendientes
+        assertThat(carritosActivos.getTamanio()).isEqualTo(2);
+
+        // When
+        carritosActivos.flush();
+
+        // Then: ya escrito, el primero es el usado hace más tiempo y sale
+        assertThat(carritosActivos.getTamanio()).isEqualTo(1);
+        carritosActivos.obtener(1L, cargar(carritoUno));
+        assertThat(cargas.get()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("actualizarSnapshot - Debe refrescar la copia del producto en los carritos en memoria")
+    void testActualizarSnapshot_DebeRefrescarLineas() {
+        // Given
+        carritosActivos.modificar(1L, cargar(carritoUno), c -> c.poner(CarritosActivos.Linea.nueva(5L, 1, BigDecimal.TEN)));
+        Producto producto = Producto.builder().idProducto(5L).nombre("Laptop Pro").activo(false).build();
+
+        // When
+        carritosActivos.actualizarSnapshot(Map.of(5L, producto), "1-9");
+
+        // Then
+        ItemCarrito item = carritosActivos.obtener(1L, cargar(carritoUno)).getItems().get(0);
+        assertThat(item.getNombreProducto()).isEqualTo("Laptop Pro");
+        assertThat(item.getProductoActivo()).isFalse();
+        assertThat(item.getVersionCatalogo()).isEqualTo("1-9");
+    }
+
+    @Test
+    @DisplayName("modificar - Un cambio en curso no debe bloquear a los usuarios de otra franja")
+    void testModificar_DebeBloquearSoloALaFranjaDelUsuario() throws Exception {
+        // Given: un cambio del usuario 1 queda esperando con el lock de su franja tomado
+        CountDownLatch dentro = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+        CompletableFuture<Carrito> primero = CompletableFuture.supplyAsync(() ->
+                carritosActivos.modificar(1L, cargar(carritoUno), c -> {
+                    dentro.countDown();
+                    esperar(soltar);
+                    c.poner(CarritosActivos.Linea.nueva(5L, 1, BigDecimal.TEN));
+                }));
+        assertThat(dentro.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // When
+        Carrito otro = CompletableFuture.supplyAsync(() -> carritosActivos.modificar(2L, cargar(carritoDos),
+                c -> c.poner(CarritosActivos.Linea.nueva(6L, 2, BigDecimal.ONE)))).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertThat(otro.getItems()).extracting(ItemCarrito::getCantidad).containsExactly(2);
+        assertThat(primero).isNotDone();
+        soltar.countDown();
+        assertThat(primero.get(5, TimeUnit.SECONDS).getItems()).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("modificar - Los cambios concurrentes de varios usuarios deben quedar todos en el journal")
+    void testModificar_Concurrente_DebeAnotarTodo() throws Exception {
+        // Given: un carrito por usuario
+        int usuarios = 8;
+        int cambios = 50;
+        List<Carrito> filas = new ArrayList<>();
+        for (long u = 1; u <= usuarios; u++) {
+            Carrito carrito = carrito(100 + u, 100 + u);
+            when(carritoRepository.findById(carrito.getIdCarrito())).thenReturn(Optional.of(carrito));
+            filas.add(carrito);
+        }
+        ReflectionTestUtils.setField(carritosActivos, "fsync", true);
+        ExecutorService hilos = Executors.newFixedThreadPool(usuarios);
+        List<Future<?>> tareas = new ArrayList<>();
+
+        // When: cada hilo suma unidades al carrito de su usuario y el proceso cae sin flush
+        for (Carrito fila : filas) {
+            Carrito enMemoria = carrito(fila.getIdCarrito(), fila.getIdUsuario());
+            tareas.add(hilos.submit(() -> {
+                for (int i = 1; i <= cambios; i++) {
+                    int cantidad = i;
+                    carritosActivos.modificar(enMemoria.getIdUsuario(), cargar(enMemoria),
+                            c -> c.poner(CarritosActivos.Linea.nueva(5L, cantidad, BigDecimal.ONE)));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get(30, TimeUnit.SECONDS);
+        }
+        hilos.shutdown();
+        simularCaida(carritosActivos);
+        carritosActivos = new CarritosActivos();
+        ReflectionTestUtils.setField(carritosActivos, "carritoRepository", carritoRepository);
+        ReflectionTestUtils.setField(carritosActivos, "transactionManager", transactionManager);
+        configurar(carritosActivos, 100);
+        carritosActivos.iniciar();
+
+        // Then: la recuperación deja en cada fila el último valor de su usuario
+        assertThat(filas).allSatisfy(fila -> assertThat(fila.getItems())
+                .extracting(ItemCarrito::getCantidad).containsExactly(cambios));
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Supplier<Carrito> cargar(Carrito carrito) {
+        return () -> {
+            cargas.incrementAndGet();
+            return carrito;
+        };
+    }
+
+    private static Carrito carrito(Long idCarrito, Long idUsuario) {
+        return Carrito.builder().idCarrito(idCarrito).idUsuario(idUsuario).estado("ACTIVO").items(new ArrayList<>()).build();
+    }
+
+    private void simularCaida(CarritosActivos instancia) throws IOException {
+        ((ScheduledExecutorService) ReflectionTestUtils.getField(instancia, "flusher")).shutdownNow();
+        ((FileChannel) ReflectionTestUtils.getField(instancia, "journal")).close();
+        ReflectionTestUtils.setField(instancia, "flusher", null);
+    }
+}
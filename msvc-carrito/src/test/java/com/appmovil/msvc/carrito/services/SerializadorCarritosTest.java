@@ -0,0 +1,142 @@
+package com.appmovil.msvc.carrito.services;
+
+import com.appmovil.msvc.carrito.exceptions.CarritoException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("SerializadorCarritos - Unit Tests")
+class SerializadorCarritosTest {
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private SerializadorCarritos serializador;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenAnswer(inv -> mock(TransactionStatus.class));
+        ReflectionTestUtils.setField(serializador, "franjas", 16);
+        ReflectionTestUtils.setField(serializador, "reintentos", 3);
+        serializador.iniciar();
+    }
+
+    @Test
+    @DisplayName("ejecutar - Ante un conflicto de versión debe reintentar en una transacción nueva")
+    void testEjecutar_ConConflicto_DebeReintentar() {
+        // Given
+        AtomicInteger intentos = new AtomicInteger();
+
+        // When
+        String resultado = serializador.ejecutar(1L, () -> {
+            if (intentos.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Carrito", 1L);
+            }
+            return "ok";
+        });
+
+        // Then
+        assertThat(resultado).isEqualTo("ok");
+        verify(transactionManager, times(3)).getTransaction(any());
+        verify(transactionManager, times(2)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    @DisplayName("ejecutar - Debe dejar de reintentar al agotar los reintentos")
+    void testEjecutar_ConflictoPersistente_DebeFallar() {
+        // Given
+        AtomicInteger intentos = new AtomicInteger();
+
+        // When & Then
+        assertThatThrownBy(() -> serializador.ejecutar(1L, () -> {
+            intentos.incrementAndGet();
+            throw new DataIntegrityViolationException("uk_item_carrito_producto");
+        })).isInstanceOf(CarritoException.class)
+                .hasMessageContaining("modificado por otra operación");
+        assertThat(intentos.get()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("ejecutar - Los errores de negocio no deben reintentarse")
+    void testEjecutar_ErrorDeNegocio_NoDebeReintentar() {
+        // Given
+        AtomicInteger intentos = new AtomicInteger();
+
+        // When & Then
+        assertThatThrownBy(() -> serializador.ejecutar(1L, () -> {
+            intentos.incrementAndGet();
+            throw new CarritoException("Stock insuficiente");
+        })).isInstanceOf(CarritoException.class).hasMessage("Stock insuficiente");
+        assertThat(intentos.get()).isEqualTo(1);
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    @DisplayName("ejecutar - Una llamada anidada del mismo usuario debe unirse a la operación en curso")
+    void testEjecutar_Anidada_DebeUsarLaTransaccionExterna() {
+        // When
+        Integer resultado = serializador.ejecutar(1L, () -> serializador.ejecutar(1L, () -> 7));
+
+        // Then
+        assertThat(resultado).isEqualTo(7);
+        verify(transactionManager, times(1)).getTransaction(any());
+    }
+
+    @Test
+    @DisplayName("ejecutar - Debe serializar un mismo usuario sin bloquear a los de otra franja")
+    void testEjecutar_DebeBloquearSoloAlMismoUsuario() throws Exception {
+        // Given: una operación del usuario 1 queda esperando con el lock tomado
+        CountDownLatch dentro = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+        CompletableFuture<Void> primera = CompletableFuture.runAsync(() -> serializador.ejecutar(1L, () -> {
+            dentro.countDown();
+            esperar(soltar);
+            return null;
+        }));
+        assertThat(dentro.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // When
+        CompletableFuture<Integer> mismoUsuario = CompletableFuture.supplyAsync(() -> serializador.ejecutar(1L, () -> 1));
+        CompletableFuture<Integer> otroUsuario = CompletableFuture.supplyAsync(() -> serializador.ejecutar(2L, () -> 2));
+
+        // Then
+        assertThat(otroUsuario.get(5, TimeUnit.SECONDS)).isEqualTo(2);
+        Thread.sleep(50);
+        assertThat(mismoUsuario).isNotDone();
+        soltar.countDown();
+        assertThat(mismoUsuario.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        primera.get(5, TimeUnit.SECONDS);
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.appmovil.msvc.carrito.services;
+
+import com.appmovil.msvc.carrito.clients.ProductoClientFallback;
+import com.appmovil.msvc.carrito.clients.ProductoClientRest;
+import com.appmovil.msvc.carrito.models.Producto;
+import com.appmovil.msvc.carrito.models.VersionCatalogo;
+import com.appmovil.msvc.carrito.repositories.ItemCarritoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("SnapshotsProductos - Unit Tests")
+class SnapshotsProductosTest {
+
+    @Mock
+    private ProductoClientRest productoClientRest;
+
+    @Mock
+    private ItemCarritoRepository itemCarritoRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private CarritosActivos carritosActivos;
+
+    @InjectMocks
+    private SnapshotsProductos snapshotsProductos;
+
+    // Tareas encoladas; se ejecutan a mano para controlar el orden
+    private final List<Runnable> tareas = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(snapshotsProductos, "intervaloVersionMs", 10_000L);
+        snapshotsProductos.iniciar();
+        snapshotsProductos.detener();
+        ReflectionTestUtils.setField(snapshotsProductos, "ejecutor", (Executor) tareas::add);
+    }
+
+    @Test
+    @DisplayName("versionConocida - Debe consultar la versión en segundo plano y a lo sumo una vez por intervalo")
+    void testVersionConocida_DebeConsultarUnaVezPorIntervalo() {
+        // Given
+        when(productoClientRest.obtenerVersion()).thenReturn(new VersionCatalogo("1-30", "1-7"));
+
+        // When
+        String antes = snapshotsProductos.versionConocida();
+        snapshotsProductos.versionConocida();
+        ejecutarTareas();
+
+        // Then
+        assertThat(antes).isNull();
+        assertThat(snapshotsProductos.versionConocida()).isEqualTo("1-7");
+        assertThat(tareas).isEmpty();
+        verify(productoClientRest, times(1)).obtenerVersion();
+        assertThat(snapshotsProductos.vigente("1-7")).isTrue();
+        assertThat(snapshotsProductos.vigente("1-6")).isFalse();
+    }
+
+    @Test
+    @DisplayName("versionConocida - Un cambio de stock o rating no debe dejar viejas las copias")
+    void testVersionConocida_CambioSinDatosDeCopia_DebeSeguirVigente() {
+        // Given: la copia se tomó con la versión de copias 1-7; luego cambió solo el stock
+        ReflectionTestUtils.setField(snapshotsProductos, "versionCatalogo", "1-7");
+        ReflectionTestUtils.setField(snapshotsProductos, "consultadaEn", 0L);
+        when(productoClientRest.obtenerVersion()).thenReturn(new VersionCatalogo("1-31", "1-7"));
+
+        // When
+        snapshotsProductos.versionConocida();
+        ejecutarTareas();
+
+        // Then
+        assertThat(snapshotsProductos.vigente("1-7")).isTrue();
+    }
+
+    @Test
+    @DisplayName("versionConocida - Sin versión de copias debe usar la versión general")
+    void testVersionConocida_SinCopias_DebeUsarVersionGeneral() {
+        // Given: msvc-productos anterior a la versión de copias
+        when(productoClientRest.obtenerVersion()).thenReturn(new VersionCatalogo("1-31", null));
+
+        // When
+        snapshotsProductos.versionConocida();
+        ejecutarTareas();
+
+        // Then
+        assertThat(snapshotsProductos.versionConocida()).isEqualTo("1-31");
+    }
+
+    @Test
+    @DisplayName("vigente - Sin versión conocida toda copia debe considerarse vigente")
+    void testVigente_SinVersion_DebeSerVigente() {
+        assertThat(snapshotsProductos.vigente("1-6")).isTrue();
+        assertThat(snapshotsProductos.vigente(null)).isTrue();
+    }
+
+    @Test
+    @DisplayName("refrescar - Debe pedir los productos en una llamada batch y actualizar sus líneas")
+    void testRefrescar_DebeActualizarCopias() {
+        // Given
+        ReflectionTestUtils.setField(snapshotsProductos, "versionCatalogo", "1-8");
+        Producto laptop = Producto.builder().idProducto(1L).nombre("Laptop").activo(false).imagen("laptop.png").build();
+        when(productoClientRest.findByIds(List.of(1L))).thenReturn(Map.of(1L, laptop));
+
+        // When
+        snapshotsProductos.refrescar(List.of(1L));
+        ejecutarTareas();
+
+        // Then
+        verify(itemCarritoRepository).actualizarSnapshot(1L, "Laptop", "laptop.png", false, "1-8");
+        verify(carritosActivos).actualizarSnapshot(Map.of(1L, laptop), "1-8");
+    }
+
+    @Test
+    @DisplayName("refrescar - Un producto con un refresco encolado no debe pedirse de nuevo")
+    void testRefrescar_DebeDeduplicar() {
+        // Given
+        when(productoClientRest.findByIds(anyList())).thenReturn(Map.of());
+
+        // When
+        snapshotsProductos.refrescar(List.of(1L, 2L));
+        snapshotsProductos.refrescar(List.of(2L));
+        snapshotsProductos.refrescar(List.of(1L, 3L));
+        ejecutarTareas();
+        snapshotsProductos.refrescar(List.of(1L));
+        ejecutarTareas();
+
+        // Then
+        verify(productoClientRest).findByIds(List.of(1L, 2L));
+        verify(productoClientRest).findByIds(List.of(3L));
+        verify(productoClientRest).findByIds(List.of(1L));
+        verifyNoMoreInteractions(productoClientRest);
+    }
+
+    @Test
+    @DisplayName("guardar - No debe guardar los productos devueltos por el fallback")
+    void testGuardar_DebeOmitirFallback() {
+        // Given
+        Producto real = Producto.builder().idProducto(1L).nombre("Laptop").activo(true).build();
+        Producto fallback = Producto.builder().idProducto(2L).nombre(ProductoClientFallback.NOMBRE_NO_DISPONIBLE).activo(false).build();
+
+        // When
+        snapshotsProductos.guardar(Map.of(1L, real, 2L, fallback), "1-7");
+        ejecutarTareas();
+
+        // Then
+        verify(itemCarritoRepository).actualizarSnapshot(1L, "Laptop", null, true, "1-7");
+        verify(itemCarritoRepository, never()).actualizarSnapshot(eq(2L), any(), any(), any(), any());
+    }
+
+    private void ejecutarTareas() {
+        List<Runnable> pendientes = new ArrayList<>(tareas);
+        tareas.clear();
+        pendientes.forEach(Runnable::run);
+    }
+}
@@ -1,9 +1,15 @@
 package com.appmovil.msvc.pedidos.clients;
 
+import com.appmovil.msvc.pedidos.exceptions.PedidoException;
+import com.appmovil.msvc.pedidos.model.LineaStock;
 import com.appmovil.msvc.pedidos.model.Producto;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @Component
 @Slf4j
 public class ProductoClientFallback implements ProductoClientRest {
@@ -20,6 +26,16 @@ public class ProductoClientFallback implements ProductoClientRest {
         return fallback;
     }
 
+    @Override
+    public Map<Long, Producto> findByIds(List<Long> ids) {
+        log.warn("Fallback activado para ProductoClient.findByIds({}). El servicio de productos no está disponible.", ids);
+        Map<Long, Producto> fallback = new LinkedHashMap<>();
+        for (Long id : ids) {
+            fallback.put(id, findById(id));
+        }
+        return fallback;
+    }
+
     @Override
     public Producto updateStock(Long id, Integer cantidad) {
         log.warn("Fallback activado para ProductoClient.updateStock({}, {}). El servicio de productos no está disponible.", id, cantidad);
@@ -32,6 +48,19 @@ public class ProductoClientFallback implements ProductoClientRest {
         return fallback;
     }
 
+    @Override
+    public void reservarStock(List<LineaStock> lineas) {
+        log.warn("Fallback activado para ProductoClient.reservarStock({}). El servicio de productos no está disponible.", lineas);
+        // Sin confirmación de la reserva el pedido no puede crearse
+        throw new PedidoException("No se pudo reservar el stock: el servicio de productos no está disponible");
+    }
+
+    @Override
+    public void liberarStock(List<LineaStock> lineas) {
+        log.warn("Fallback activado para ProductoClient.liberarStock({}). El servicio de productos no está disponible.", lineas);
+        throw new PedidoException("No se pudo liberar el stock: el servicio de productos no está disponible");
+    }
+
     @Override
     public void eliminarPedidoPorProducto(Long idProducto) {
         log.warn("Fallback activado para ProductoClient.eliminarPedidoPorProducto({}). El servicio de productos no está disponible.", idProducto);
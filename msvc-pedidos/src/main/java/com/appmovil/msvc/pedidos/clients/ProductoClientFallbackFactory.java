@@ -0,0 +1,26 @@
+package com.appmovil.msvc.pedidos.clients;
+
+import feign.FeignException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.openfeign.FallbackFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Con el circuit breaker activo toda excepción de ProductoClientRest pasa por aquí. Un 4xx (p. ej.
+ * "Stock insuficiente" al reservar) es la respuesta de msvc-productos y no una caída: se relanza para
+ * que PedidoServiceImpl lo informe con el mensaje de productos. El resto usa ProductoClientFallback.
+ */
+@Component
+public class ProductoClientFallbackFactory implements FallbackFactory<ProductoClientRest> {
+
+    @Autowired
+    private ProductoClientFallback fallback;
+
+    @Override
+    public ProductoClientRest create(Throwable cause) {
+        if (cause instanceof FeignException.FeignClientException errorDelCliente) {
+            throw errorDelCliente;
+        }
+        return fallback;
+    }
+}
@@ -1,22 +1,38 @@
 package com.appmovil.msvc.pedidos.clients;
 
+import com.appmovil.msvc.pedidos.model.LineaStock;
 import com.appmovil.msvc.pedidos.model.Producto;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 
-@FeignClient(name = "msvc-productos", url = "http://localhost:8002/api/v1/productos", fallback = ProductoClientFallback.class)
+import java.util.List;
+import java.util.Map;
+
+@FeignClient(name = "msvc-productos", url = "http://localhost:8002/api/v1/productos", fallbackFactory = ProductoClientFallbackFactory.class)
 public interface ProductoClientRest {
 
     @GetMapping("/{id}")
     Producto findById(@PathVariable("id") Long id);
 
+    @GetMapping("/batch")
+    Map<Long, Producto> findByIds(@RequestParam("ids") List<Long> ids);
+
 
     @PutMapping("/{id}/stock")
     Producto updateStock(@PathVariable("id") Long id, @RequestParam("cantidad") Integer cantidad);
 
+    // Descuenta todas las líneas en una sola transacción de msvc-productos: si una falla no se descuenta ninguna
+    @PostMapping("/stock/reservar")
+    void reservarStock(@RequestBody List<LineaStock> lineas);
+
+    @PostMapping("/stock/liberar")
+    void liberarStock(@RequestBody List<LineaStock> lineas);
+
     @PutMapping("/producto/{idProducto}")
     void eliminarPedidoPorProducto(@PathVariable("idProducto") Long idProducto);
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.appmovil.msvc.pedidos.controller;
 
 import com.appmovil.msvc.pedidos.dtos.PedidoCreationDTO;
 import com.appmovil.msvc.pedidos.dtos.PedidoDTO;
+import com.appmovil.msvc.pedidos.dtos.ProductoVendidoDTO;
 import com.appmovil.msvc.pedidos.services.PedidoService;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
@@ -54,6 +55,18 @@ public class PedidoController {
         return ResponseEntity.ok(pedidos);
     }
 
+    @GetMapping("/mas-vendidos")
+    public ResponseEntity<List<ProductoVendidoDTO>> masVendidos(@RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(pedidoService.masVendidos(null, limit));
+    }
+
+    @GetMapping("/mas-vendidos/categoria/{categoria}")
+    public ResponseEntity<List<ProductoVendidoDTO>> masVendidosPorCategoria(
+            @PathVariable String categoria,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(pedidoService.masVendidos(categoria, limit));
+    }
+
     @PatchMapping("/{id}/estado")
     public ResponseEntity<PedidoDTO> actualizarEstado(
             @PathVariable Long id,
@@ -0,0 +1,22 @@
+package com.appmovil.msvc.pedidos.dtos;
+
+import lombok.*;
+
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductoVendidoDTO {
+
+    private Long idProducto;
+
+    private String nombre;
+
+    private String categoria;
+
+    // Unidades vendidas con decaimiento: una venta pesa la mitad cada vida-media-horas
+    private Double ventas;
+}
@@ -0,0 +1,28 @@
+package com.appmovil.msvc.pedidos.events;
+
+import com.appmovil.msvc.pedidos.model.LineaVenta;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Se publica desde PedidoServiceImpl al crear un pedido (suma sus líneas al ranking de más vendidos)
+ * y al cancelarlo (las resta). La fecha del pedido define el peso de la venta en ambos casos,
+ * así una cancelación descuenta exactamente lo que sumó el alta.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class VentasModificadasEvent {
+
+    private final Long idPedido;
+
+    private final LocalDateTime fechaPedido;
+
+    private final List<LineaVenta> lineas;
+
+    private final boolean cancelacion;
+}
@@ -0,0 +1,14 @@
+package com.appmovil.msvc.pedidos.model;
+
+import lombok.*;
+
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class LineaStock {
+    private Long idProducto;
+    private Integer cantidad;
+}
@@ -0,0 +1,16 @@
+package com.appmovil.msvc.pedidos.model;
+
+import lombok.*;
+
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class LineaVenta {
+    private Long idProducto;
+    private String nombre;
+    private String categoria;
+    private Integer cantidad;
+}
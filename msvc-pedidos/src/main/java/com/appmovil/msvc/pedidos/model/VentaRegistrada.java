@@ -0,0 +1,18 @@
+package com.appmovil.msvc.pedidos.model;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+
+// Línea de un pedido no cancelado, leída para reconstruir el ranking de más vendidos
+@Getter
+@ToString
+@AllArgsConstructor
+public class VentaRegistrada {
+    private Long idPedido;
+    private LocalDateTime fechaPedido;
+    private Long idProducto;
+    private String nombreProducto;
+    private Integer cantidad;
+}
@@ -1,7 +1,10 @@
 package com.appmovil.msvc.pedidos.repositories;
 
+import com.appmovil.msvc.pedidos.model.VentaRegistrada;
 import com.appmovil.msvc.pedidos.model.entity.Pedido;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -16,4 +19,10 @@ public interface PedidoRepository extends JpaRepository<Pedido, Long> {
     List<Pedido> findByEstado(String estado);
 
     List<Pedido> findByIdUsuarioOrderByFechaPedidoDesc(Long idUsuario);
+
+    // Líneas de los pedidos no cancelados posteriores a idPedido (el último incluido en el snapshot del ranking)
+    @Query("SELECT new com.appmovil.msvc.pedidos.model.VentaRegistrada(p.id, p.fechaPedido, d.idProducto, " +
+            "d.nombreProducto, d.cantidad) FROM Pedido p JOIN p.detalles d " +
+            "WHERE p.id > :idPedido AND p.estado <> 'CANCELADO' ORDER BY p.id")
+    List<VentaRegistrada> findVentasPosteriores(@Param("idPedido") Long idPedido);
 }
\ No newline at end of file
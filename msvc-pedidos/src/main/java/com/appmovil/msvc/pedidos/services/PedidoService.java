@@ -2,6 +2,7 @@ package com.appmovil.msvc.pedidos.services;
 
 import com.appmovil.msvc.pedidos.dtos.PedidoCreationDTO;
 import com.appmovil.msvc.pedidos.dtos.PedidoDTO;
+import com.appmovil.msvc.pedidos.dtos.ProductoVendidoDTO;
 import java.util.List;
 
 public interface PedidoService {
@@ -21,4 +22,7 @@ public interface PedidoService {
     List<PedidoDTO> findByEstado(String estado);
 
     void cancelarPedido(Long idPedido);
+
+    // categoria null para el ranking de todo el catálogo
+    List<ProductoVendidoDTO> masVendidos(String categoria, int limit);
 }
\ No newline at end of file
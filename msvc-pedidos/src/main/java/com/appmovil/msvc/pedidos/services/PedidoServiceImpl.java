@@ -5,27 +5,38 @@ import com.appmovil.msvc.pedidos.clients.UsuarioClientRest;
 import com.appmovil.msvc.pedidos.dtos.PedidoCreationDTO;
 import com.appmovil.msvc.pedidos.dtos.PedidoDTO;
 import com.appmovil.msvc.pedidos.dtos.PedidoDetalleDTO;
+import com.appmovil.msvc.pedidos.dtos.ProductoVendidoDTO;
+import com.appmovil.msvc.pedidos.events.VentasModificadasEvent;
 import com.appmovil.msvc.pedidos.exceptions.PedidoException;
 import com.appmovil.msvc.pedidos.exceptions.ResourceNotFoundException;
+import com.appmovil.msvc.pedidos.model.LineaStock;
+import com.appmovil.msvc.pedidos.model.LineaVenta;
 import com.appmovil.msvc.pedidos.model.Producto;
 import com.appmovil.msvc.pedidos.model.Usuario;
 import com.appmovil.msvc.pedidos.model.entity.Pedido;
 import com.appmovil.msvc.pedidos.model.entity.PedidoDetalle;
 import com.appmovil.msvc.pedidos.repositories.PedidoRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import feign.FeignException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class PedidoServiceImpl implements PedidoService {
 
+    private static final ObjectMapper LECTOR_ERRORES = new ObjectMapper();
+
     @Autowired
     private PedidoRepository pedidoRepository;
 
@@ -35,6 +46,12 @@ public class PedidoServiceImpl implements PedidoService {
     @Autowired
     private ProductoClientRest productoClientRest;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private RankingVentas rankingVentas;
+
     @Override
     @Transactional
     public PedidoDTO crearPedido(PedidoCreationDTO creationDTO) {
@@ -60,37 +77,54 @@ public class PedidoServiceImpl implements PedidoService {
         pedido.setMetodoPago(creationDTO.getMetodoPago());
         pedido.setNotas(creationDTO.getNotas());
 
+        // Obtener todos los productos del pedido en una sola llamada
+        List<Long> idsProductos = creationDTO.getDetalles().stream()
+                .map(PedidoDetalleDTO::getIdProducto)
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Long, Producto> productos;
+        try {
+            productos = productoClientRest.findByIds(idsProductos);
+        } catch (FeignException ex) {
+            throw new PedidoException("Error al validar el producto: " + ex.getMessage());
+        }
+
         // Agregar detalles y validar productos
         for (PedidoDetalleDTO detalleDTO : creationDTO.getDetalles()) {
-            Producto producto;
-            try {
-                producto = productoClientRest.findById(detalleDTO.getIdProducto());
-                if (producto == null || !producto.getActivo()) {
-                    throw new PedidoException("El producto " + detalleDTO.getIdProducto() + " no existe o no está activo");
-                }
-                if (producto.getStock() < detalleDTO.getCantidad()) {
-                    throw new PedidoException("Stock insuficiente para el producto: " + producto.getNombre());
-                }
-            } catch (FeignException ex) {
-                throw new PedidoException("Error al validar el producto: " + ex.getMessage());
+            Producto producto = productos.get(detalleDTO.getIdProducto());
+            if (producto == null || !producto.getActivo()) {
+                throw new PedidoException("El producto " + detalleDTO.getIdProducto() + " no existe o no está activo");
+            }
+            if (producto.getStock() < detalleDTO.getCantidad()) {
+                throw new PedidoException("Stock insuficiente para el producto: " + producto.getNombre());
             }
 
             PedidoDetalle detalle = new PedidoDetalle();
-            detalle.setIdProducto(producto.getIdProducto());
+            detalle.setIdProducto(detalleDTO.getIdProducto());
             detalle.setNombreProducto(producto.getNombre());
             detalle.setPrecioUnitario(producto.getPrecio());
             detalle.setCantidad(detalleDTO.getCantidad());
             pedido.agregarDetalle(detalle);
+        }
 
-            // Reducir stock
-            try {
-                productoClientRest.updateStock(producto.getIdProducto(), -detalleDTO.getCantidad());
-            } catch (Exception ex) {
-                log.warn("No se pudo actualizar el stock del producto: {}", ex.getMessage());
-            }
+        // Reservar el stock de todas las líneas de una vez: o se descuentan todas o ninguna
+        List<LineaStock> lineas = lineasDeStock(pedido);
+        try {
+            productoClientRest.reservarStock(lineas);
+        } catch (FeignException ex) {
+            throw new PedidoException("No se pudo reservar el stock del pedido: " + mensajeDeProductos(ex));
         }
 
-        Pedido pedidoGuardado = pedidoRepository.save(pedido);
+        Pedido pedidoGuardado;
+        try {
+            pedidoGuardado = pedidoRepository.save(pedido);
+        } catch (RuntimeException ex) {
+            // El pedido no quedó registrado: se devuelve lo reservado
+            liberarStockSinFallar(lineas);
+            throw ex;
+        }
+        eventPublisher.publishEvent(new VentasModificadasEvent(pedidoGuardado.getId(),
+                pedidoGuardado.getFechaPedido(), lineasDeVenta(pedidoGuardado, productos), false));
         return convertirADTO(pedidoGuardado);
     }
 
@@ -157,17 +191,63 @@ public class PedidoServiceImpl implements PedidoService {
             throw new PedidoException("Solo se pueden cancelar pedidos en estado PENDIENTE");
         }
 
-        // Restaurar stock
-        for (PedidoDetalle detalle : pedido.getDetalles()) {
-            try {
-                productoClientRest.updateStock(detalle.getIdProducto(), detalle.getCantidad());
-            } catch (Exception ex) {
-                log.warn("No se pudo restaurar el stock del producto: {}", ex.getMessage());
+        pedido.setEstado("CANCELADO");
+        pedidoRepository.save(pedido);
+
+        // Restaurar stock en una sola llamada; si falla se hace rollback y el pedido sigue PENDIENTE
+        try {
+            productoClientRest.liberarStock(lineasDeStock(pedido));
+        } catch (FeignException ex) {
+            throw new PedidoException("No se pudo restaurar el stock del pedido: " + mensajeDeProductos(ex));
+        }
+        eventPublisher.publishEvent(new VentasModificadasEvent(pedido.getId(), pedido.getFechaPedido(),
+                lineasDeVenta(pedido, Map.of()), true));
+    }
+
+    @Override
+    public List<ProductoVendidoDTO> masVendidos(String categoria, int limit) {
+        if (limit < 1 || limit > 100) {
+            throw new PedidoException("El parámetro limit debe estar entre 1 y 100");
+        }
+        return rankingVentas.masVendidos(categoria, limit);
+    }
+
+    // El ErrorDTO de msvc-productos trae el motivo en "mensaje" (p. ej. "Stock insuficiente para el producto...")
+    private static String mensajeDeProductos(FeignException ex) {
+        try {
+            JsonNode mensaje = LECTOR_ERRORES.readTree(ex.contentUTF8()).path("mensaje");
+            if (mensaje.isTextual()) {
+                return mensaje.asText();
             }
+        } catch (JsonProcessingException | RuntimeException ignorada) {
+            // Cuerpo vacío o que no es JSON: queda el mensaje de Feign
         }
+        return ex.getMessage();
+    }
 
-        pedido.setEstado("CANCELADO");
-        pedidoRepository.save(pedido);
+    private List<LineaStock> lineasDeStock(Pedido pedido) {
+        return pedido.getDetalles().stream()
+                .map(detalle -> new LineaStock(detalle.getIdProducto(), detalle.getCantidad()))
+                .collect(Collectors.toList());
+    }
+
+    // La categoría sale de los productos consultados al crear el pedido; al cancelar no hace falta
+    private List<LineaVenta> lineasDeVenta(Pedido pedido, Map<Long, Producto> productos) {
+        return pedido.getDetalles().stream()
+                .map(detalle -> {
+                    Producto producto = productos.get(detalle.getIdProducto());
+                    return new LineaVenta(detalle.getIdProducto(), detalle.getNombreProducto(),
+                            producto != null ? producto.getCategoria() : null, detalle.getCantidad());
+                })
+                .collect(Collectors.toList());
+    }
+
+    private void liberarStockSinFallar(List<LineaStock> lineas) {
+        try {
+            productoClientRest.liberarStock(lineas);
+        } catch (Exception ex) {
+            log.error("No se pudo liberar el stock reservado {}: {}", lineas, ex.getMessage());
+        }
     }
 
     private PedidoDTO convertirADTO(Pedido pedido) {
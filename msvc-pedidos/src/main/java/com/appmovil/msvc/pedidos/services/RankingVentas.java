@@ -0,0 +1,465 @@
+package com.appmovil.msvc.pedidos.services;
+
+import com.appmovil.msvc.pedidos.clients.ProductoClientRest;
+import com.appmovil.msvc.pedidos.dtos.ProductoVendidoDTO;
+import com.appmovil.msvc.pedidos.events.VentasModificadasEvent;
+import com.appmovil.msvc.pedidos.model.LineaVenta;
+import com.appmovil.msvc.pedidos.model.Producto;
+import com.appmovil.msvc.pedidos.model.VentaRegistrada;
+import com.appmovil.msvc.pedidos.repositories.PedidoRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ranking de productos más vendidos, general y por categoría, mantenido en memoria a partir de los
+ * pedidos creados y cancelados. Cada unidad vendida pesa la mitad cada vida-media-horas, así el
+ * ranking refleja lo que se vende ahora y no lo acumulado desde siempre.
+ *
+ * El decaimiento se aplica hacia adelante: cada venta suma cantidad·e^(λ·(t − t0)) con t la fecha del
+ * pedido, por lo que el orden relativo no cambia con el paso del tiempo y los conjuntos ordenados solo
+ * se tocan cuando hay una venta. El valor actual se obtiene al leer, dividiendo por e^(λ·(ahora − t0)).
+ *
+ * El estado se guarda cada intervalo-snapshot-ms en un archivo; al arrancar se lee y se suman los
+ * pedidos posteriores al último incluido. Sin archivo se reconstruye una vez desde todos los pedidos.
+ * Esa relectura no recupera una cancelación ni un pedido que confirmó después de otro con ID mayor:
+ * esos cambios se guardan en el snapshot en el momento, sin esperar al intervalo.
+ */
+@Component
+@Slf4j
+public class RankingVentas {
+
+    private static final int FORMATO_SNAPSHOT = 1;
+
+    // Con exponentes mayores se rebasa t0 antes de que e^(λ·(t − t0)) pierda precisión
+    private static final double EXPONENTE_MAXIMO = 50;
+
+    // Productos cuyo puntaje actual quedó por debajo de esto salen del ranking al rebasar t0
+    private static final double PUNTAJE_MINIMO = 1e-6;
+
+    private static final int LOTE_PRODUCTOS = 200;
+
+    @Value("${pedidos.ranking.vida-media-horas:72}")
+    private double vidaMediaHoras;
+
+    @Value("${pedidos.ranking.snapshot:./data/ranking-ventas.snapshot}")
+    private String rutaSnapshot;
+
+    @Value("${pedidos.ranking.intervalo-snapshot-ms:60000}")
+    private long intervaloSnapshotMs;
+
+    @Autowired
+    private PedidoRepository pedidoRepository;
+
+    @Autowired
+    private ProductoClientRest productoClientRest;
+
+    private Clock reloj = Clock.systemDefaultZone();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Tabla tabla;
+
+    // Eventos recibidos mientras se carga el estado inicial; se aplican al terminar la carga
+    private List<VentasModificadasEvent> pendientes = new ArrayList<>();
+
+    // Hubo cambios desde el último snapshot escrito
+    private volatile boolean modificado;
+
+    private ScheduledExecutorService snapshots;
+
+    @PostConstruct
+    public void iniciar() {
+        tabla = new Tabla(lambda(), segundos(LocalDateTime.now(reloj)));
+        snapshots = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "ranking-snapshot");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        snapshots.scheduleWithFixedDelay(this::guardarSinFallar, intervaloSnapshotMs, intervaloSnapshotMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void detener() {
+        snapshots.shutdown();
+        try {
+            snapshots.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        guardarSinFallar();
+    }
+
+    /**
+     * Carga el snapshot y suma los pedidos posteriores. Los pedidos creados o cancelados mientras tanto
+     * se aplican al final, descartando los que la lectura de la base de datos ya incluyó.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        Path archivo = Path.of(rutaSnapshot);
+        Tabla cargada = null;
+        if (Files.exists(archivo)) {
+            try {
+                cargada = leerSnapshot(archivo, lambda());
+            } catch (IOException | RuntimeException ex) {
+                log.warn("Snapshot del ranking inválido ({}), se reconstruye desde los pedidos", ex.getMessage());
+            }
+        }
+        if (cargada == null) {
+            cargada = new Tabla(lambda(), segundos(LocalDateTime.now(reloj)));
+        }
+        long incluidoHasta = cargada.ultimoIdPedido;
+
+        List<VentaRegistrada> ventas = pedidoRepository.findVentasPosteriores(incluidoHasta);
+        Map<Long, String> categorias = categorias(ventas);
+        Set<Long> contados = new HashSet<>();
+        for (VentaRegistrada venta : ventas) {
+            contados.add(venta.getIdPedido());
+            cargada.sumar(venta.getIdProducto(), venta.getNombreProducto(), categorias.get(venta.getIdProducto()),
+                    venta.getCantidad(), segundos(venta.getFechaPedido()), 1);
+            cargada.ultimoIdPedido = Math.max(cargada.ultimoIdPedido, venta.getIdPedido());
+        }
+
+        lock.writeLock().lock();
+        try {
+            tabla = cargada;
+            for (VentasModificadasEvent evento : pendientes) {
+                // Un alta leída de la base ya está sumada; una cancelación solo resta lo que se llegó a sumar
+                boolean contado = evento.getIdPedido() <= incluidoHasta || contados.contains(evento.getIdPedido());
+                if (evento.isCancelacion() == contado) {
+                    aplicar(evento);
+                    contados.add(evento.getIdPedido());
+                }
+            }
+            modificado = !ventas.isEmpty() || !pendientes.isEmpty();
+            pendientes = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Ranking de ventas cargado: {} productos, {} líneas de pedidos releídas",
+                cargada.entradas.size(), ventas.size());
+        // Entre los eventos recibidos durante la carga puede haber cancelaciones
+        guardarSinFallar();
+    }
+
+    @TransactionalEventListener
+    public void onVentasModificadas(VentasModificadasEvent evento) {
+        boolean guardar;
+        lock.writeLock().lock();
+        try {
+            if (pendientes != null) {
+                pendientes.add(evento);
+                return;
+            }
+            // Un alta con ID mayor al último incluido se recupera al releer los pedidos; el resto no
+            guardar = evento.isCancelacion() || evento.getIdPedido() <= tabla.ultimoIdPedido;
+            aplicar(evento);
+            modificado = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (guardar) {
+            guardarSinFallar();
+        }
+    }
+
+    /**
+     * Los limite productos con más ventas recientes, de todo el catálogo o de una categoría
+     * (sin distinguir mayúsculas). El puntaje son las unidades vendidas con decaimiento a la fecha actual.
+     */
+    public List<ProductoVendidoDTO> masVendidos(String categoria, int limite) {
+        lock.readLock().lock();
+        try {
+            TreeSet<Entrada> orden = categoria == null
+                    ? tabla.general
+                    : tabla.porCategoria.get(normalizar(categoria));
+            if (orden == null) {
+                return List.of();
+            }
+            double escala = Math.exp(-tabla.lambda * (segundos(LocalDateTime.now(reloj)) - tabla.t0));
+            List<ProductoVendidoDTO> resultado = new ArrayList<>(Math.min(limite, orden.size()));
+            Iterator<Entrada> it = orden.iterator();
+            while (it.hasNext() && resultado.size() < limite) {
+                Entrada entrada = it.next();
+                resultado.add(new ProductoVendidoDTO(entrada.idProducto, entrada.nombre, entrada.categoria,
+                        Math.round(entrada.puntaje * escala * 100.0) / 100.0));
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Escribe el estado en un archivo temporal y lo reemplaza de forma atómica: un corte a mitad de la
+     * escritura deja el snapshot anterior intacto. No escribe nada si no hubo ventas desde el último.
+     */
+    public synchronized void guardarSnapshot() throws IOException {
+        byte[] contenido;
+        lock.readLock().lock();
+        try {
+            if (!modificado || pendientes != null) {
+                return;
+            }
+            modificado = false;
+            contenido = tabla.serializar();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        try {
+            Path archivo = Path.of(rutaSnapshot).toAbsolutePath();
+            Files.createDirectories(archivo.getParent());
+            Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+            Files.write(temporal, contenido);
+            Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException ex) {
+            modificado = true;
+            throw ex;
+        }
+    }
+
+    private void guardarSinFallar() {
+        try {
+            guardarSnapshot();
+        } catch (IOException | RuntimeException ex) {
+            log.error("No se pudo guardar el snapshot del ranking de ventas: {}", ex.getMessage());
+        }
+    }
+
+    private void aplicar(VentasModificadasEvent evento) {
+        int signo = evento.isCancelacion() ? -1 : 1;
+        long segundos = segundos(evento.getFechaPedido());
+        for (LineaVenta linea : evento.getLineas()) {
+            tabla.sumar(linea.getIdProducto(), linea.getNombre(), linea.getCategoria(), linea.getCantidad(),
+                    segundos, signo);
+        }
+        if (!evento.isCancelacion()) {
+            tabla.ultimoIdPedido = Math.max(tabla.ultimoIdPedido, evento.getIdPedido());
+        }
+    }
+
+    // Categorías de los productos releídos; si msvc-productos no responde quedan solo en el ranking general
+    private Map<Long, String> categorias(List<VentaRegistrada> ventas) {
+        List<Long> ids = ventas.stream().map(VentaRegistrada::getIdProducto).distinct().toList();
+        Map<Long, String> categorias = new HashMap<>();
+        for (int desde = 0; desde < ids.size(); desde += LOTE_PRODUCTOS) {
+            List<Long> lote = ids.subList(desde, Math.min(desde + LOTE_PRODUCTOS, ids.size()));
+            try {
+                for (Map.Entry<Long, Producto> producto : productoClientRest.findByIds(lote).entrySet()) {
+                    if (producto.getValue() != null && producto.getValue().getCategoria() != null) {
+                        categorias.put(producto.getKey(), producto.getValue().getCategoria());
+                    }
+                }
+            } catch (RuntimeException ex) {
+                log.warn("No se pudieron obtener las categorías de {} productos: {}", lote.size(), ex.getMessage());
+            }
+        }
+        return categorias;
+    }
+
+    private double lambda() {
+        return Math.log(2) / (vidaMediaHoras * 3600);
+    }
+
+    private long segundos(LocalDateTime fecha) {
+        return fecha.atZone(reloj.getZone()).toEpochSecond();
+    }
+
+    private static String normalizar(String categoria) {
+        return categoria.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Tabla leerSnapshot(Path archivo, double lambda) throws IOException {
+        try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo)))) {
+            if (entrada.readInt() != FORMATO_SNAPSHOT) {
+                throw new IOException("formato desconocido");
+            }
+            // Con otra vida media los puntajes guardados no son comparables con los nuevos
+            if (entrada.readDouble() != lambda) {
+                throw new IOException("cambió la vida media");
+            }
+            Tabla tabla = new Tabla(lambda, entrada.readLong());
+            tabla.ultimoIdPedido = entrada.readLong();
+            int cantidad = entrada.readInt();
+            for (int i = 0; i < cantidad; i++) {
+                Entrada leida = new Entrada(entrada.readLong(), leerTexto(entrada), leerTexto(entrada));
+                leida.puntaje = entrada.readDouble();
+                tabla.agregar(leida);
+            }
+            return tabla;
+        }
+    }
+
+    private static String leerTexto(DataInputStream entrada) throws IOException {
+        return entrada.readBoolean() ? entrada.readUTF() : null;
+    }
+
+    private static void escribirTexto(DataOutputStream salida, String texto) throws IOException {
+        salida.writeBoolean(texto != null);
+        if (texto != null) {
+            salida.writeUTF(texto);
+        }
+    }
+
+    private static final class Entrada {
+
+        // Mayor puntaje primero; a igual puntaje, el ID desempata para que el orden sea total
+        static final Comparator<Entrada> ORDEN = Comparator.comparingDouble((Entrada e) -> -e.puntaje)
+                .thenComparingLong(e -> e.idProducto);
+
+        final long idProducto;
+        String nombre;
+        String categoria;
+        double puntaje;
+
+        Entrada(long idProducto, String nombre, String categoria) {
+            this.idProducto = idProducto;
+            this.nombre = nombre;
+            this.categoria = categoria;
+        }
+    }
+
+    /**
+     * Puntajes por producto y los conjuntos ordenados que los indexan. El puntaje forma parte del orden,
+     * por eso una entrada se saca de sus conjuntos antes de modificarla y se vuelve a insertar después.
+     * No es thread-safe: RankingVentas la protege con su lock.
+     */
+    static final class Tabla {
+
+        final double lambda;
+        long t0;
+        long ultimoIdPedido;
+        final Map<Long, Entrada> entradas = new HashMap<>();
+        final TreeSet<Entrada> general = new TreeSet<>(Entrada.ORDEN);
+        final Map<String, TreeSet<Entrada>> porCategoria = new HashMap<>();
+
+        Tabla(double lambda, long t0) {
+            this.lambda = lambda;
+            this.t0 = t0;
+        }
+
+        void sumar(Long idProducto, String nombre, String categoria, Integer cantidad, long segundos, int signo) {
+            if (idProducto == null || cantidad == null || cantidad <= 0) {
+                return;
+            }
+            if (lambda * (segundos - t0) > EXPONENTE_MAXIMO) {
+                rebasar(segundos);
+            }
+            Entrada entrada = entradas.get(idProducto);
+            if (entrada == null) {
+                // Cancelación de un producto que ya salió del ranking: no hay nada que restar
+                if (signo < 0) {
+                    return;
+                }
+                entrada = new Entrada(idProducto, nombre, categoria);
+            } else {
+                quitar(entrada);
+                if (nombre != null) {
+                    entrada.nombre = nombre;
+                }
+                if (categoria != null) {
+                    entrada.categoria = categoria;
+                }
+            }
+            entrada.puntaje += signo * cantidad * Math.exp(lambda * (segundos - t0));
+            if (entrada.puntaje > PUNTAJE_MINIMO * Math.exp(lambda * (segundos - t0))) {
+                agregar(entrada);
+            }
+        }
+
+        void agregar(Entrada entrada) {
+            entradas.put(entrada.idProducto, entrada);
+            general.add(entrada);
+            if (entrada.categoria != null) {
+                porCategoria.computeIfAbsent(normalizar(entrada.categoria), c -> new TreeSet<>(Entrada.ORDEN))
+                        .add(entrada);
+            }
+        }
+
+        private void quitar(Entrada entrada) {
+            entradas.remove(entrada.idProducto);
+            general.remove(entrada);
+            if (entrada.categoria != null) {
+                String clave = normalizar(entrada.categoria);
+                TreeSet<Entrada> categoria = porCategoria.get(clave);
+                if (categoria != null) {
+                    categoria.remove(entrada);
+                    if (categoria.isEmpty()) {
+                        porCategoria.remove(clave);
+                    }
+                }
+            }
+        }
+
+        // Lleva t0 a nuevoT0 escalando todos los puntajes por igual y descarta los que ya no pesan
+        private void rebasar(long nuevoT0) {
+            double escala = Math.exp(-lambda * (nuevoT0 - t0));
+            List<Entrada> todas = new ArrayList<>(entradas.values());
+            entradas.clear();
+            general.clear();
+            porCategoria.clear();
+            t0 = nuevoT0;
+            for (Entrada entrada : todas) {
+                entrada.puntaje *= escala;
+                if (entrada.puntaje > PUNTAJE_MINIMO) {
+                    agregar(entrada);
+                }
+            }
+        }
+
+        byte[] serializar() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + entradas.size() * 48);
+            try (DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(bytes))) {
+                salida.writeInt(FORMATO_SNAPSHOT);
+                salida.writeDouble(lambda);
+                salida.writeLong(t0);
+                salida.writeLong(ultimoIdPedido);
+                salida.writeInt(general.size());
+                for (Entrada entrada : general) {
+                    salida.writeLong(entrada.idProducto);
+                    escribirTexto(salida, entrada.nombre);
+                    escribirTexto(salida, entrada.categoria);
+                    salida.writeDouble(entrada.puntaje);
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.appmovil.msvc.pedidos.clients;
+
+import com.appmovil.msvc.pedidos.exceptions.PedidoException;
+import feign.FeignException;
+import feign.Request;
+import feign.Response;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ProductoClientFallbackFactory - Unit Tests")
+class ProductoClientFallbackFactoryTest {
+
+    @Spy
+    private ProductoClientFallback fallback = new ProductoClientFallback();
+
+    @InjectMocks
+    private ProductoClientFallbackFactory factory;
+
+    @Test
+    @DisplayName("create - Un 4xx de msvc-productos debe relanzarse y no usar el fallback")
+    void testCreate_ErrorDelCliente_DebeRelanzarse() {
+        // Given: /stock/reservar respondió 400 por stock insuficiente
+        FeignException error = respuesta(400, "{\"mensaje\":\"Stock insuficiente para el producto con ID 1\"}");
+
+        // When & Then
+        assertThatThrownBy(() -> factory.create(error))
+                .isSameAs(error)
+                .isInstanceOf(FeignException.FeignClientException.class);
+    }
+
+    @Test
+    @DisplayName("create - Un 5xx o una caída debe usar el fallback")
+    void testCreate_ServicioCaido_DebeUsarFallback() {
+        // Given
+        FeignException error = respuesta(503, "");
+
+        // When
+        ProductoClientRest cliente = factory.create(error);
+
+        // Then
+        assertThat(cliente).isSameAs(fallback);
+        assertThatThrownBy(() -> cliente.reservarStock(List.of()))
+                .isInstanceOf(PedidoException.class)
+                .hasMessageContaining("no está disponible");
+    }
+
+    private static FeignException respuesta(int status, String cuerpo) {
+        Request request = Request.create(Request.HttpMethod.POST, "http://localhost:8002/api/v1/productos/stock/reservar",
+                Map.of(), null, StandardCharsets.UTF_8, null);
+        Response response = Response.builder()
+                .status(status)
+                .reason("error")
+                .request(request)
+                .headers(Map.of())
+                .body(cuerpo, StandardCharsets.UTF_8)
+                .build();
+        return FeignException.errorStatus("ProductoClientRest#reservarStock(List)", response);
+    }
+}
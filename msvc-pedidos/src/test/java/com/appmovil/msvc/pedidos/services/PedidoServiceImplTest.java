@@ -6,6 +6,7 @@ import com.appmovil.msvc.pedidos.clients.UsuarioClientRest;
 import com.appmovil.msvc.pedidos.dtos.PedidoCreationDTO;
 import com.appmovil.msvc.pedidos.dtos.PedidoDTO;
 import com.appmovil.msvc.pedidos.dtos.PedidoDetalleDTO;
+import com.appmovil.msvc.pedidos.events.VentasModificadasEvent;
 import com.appmovil.msvc.pedidos.exceptions.PedidoException;
 import com.appmovil.msvc.pedidos.exceptions.ResourceNotFoundException;
 import com.appmovil.msvc.pedidos.model.Producto;
@@ -14,6 +15,8 @@ import com.appmovil.msvc.pedidos.model.entity.Pedido;
 import com.appmovil.msvc.pedidos.model.entity.PedidoDetalle;
 import com.appmovil.msvc.pedidos.repositories.PedidoRepository;
 import feign.FeignException;
+import feign.Request;
+import feign.Response;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -21,12 +24,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.*;
@@ -49,6 +55,12 @@ class PedidoServiceImplTest {
     @Mock
     private PagoClientRest pagoClientRest;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private RankingVentas rankingVentas;
+
     @InjectMocks
     private PedidoServiceImpl pedidoService;
 
@@ -74,6 +86,7 @@ class PedidoServiceImplTest {
         productoTest.setPrecio(100);
         productoTest.setStock(50);
         productoTest.setActivo(true);
+        productoTest.setCategoria("LAPTOPS");
 
         // Pedido mock
         pedidoTest = new Pedido();
@@ -103,8 +116,7 @@ class PedidoServiceImplTest {
     void testCrearPedido_ConDatosValidos_DebeCrearExitosamente() {
         // Given
         when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
-        when(productoClientRest.findById(1L)).thenReturn(productoTest);
-        when(productoClientRest.updateStock(eq(1L), eq(-2))).thenReturn(productoTest);
+        when(productoClientRest.findByIds(List.of(1L))).thenReturn(Map.of(1L, productoTest));
         when(pedidoRepository.save(any(Pedido.class))).thenAnswer(invocation -> {
             Pedido pedido = invocation.getArgument(0);
             pedido.setId(1L);
@@ -122,8 +134,9 @@ class PedidoServiceImplTest {
         assertThat(resultado.getDetalles()).hasSize(1);
         
         verify(usuarioClientRest).findById(1L);
-        verify(productoClientRest).findById(1L);
-        verify(productoClientRest).updateStock(1L, -2);
+        verify(productoClientRest).findByIds(List.of(1L));
+        verify(productoClientRest).reservarStock(argThat(lineas -> lineas.size() == 1
+                && lineas.get(0).getIdProducto() == 1L && lineas.get(0).getCantidad() == 2));
         verify(pedidoRepository).save(any(Pedido.class));
     }
 
@@ -162,7 +175,7 @@ class PedidoServiceImplTest {
     void testCrearPedido_ConProductoInexistente_DebeLanzarExcepcion() {
         // Given
         when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
-        when(productoClientRest.findById(1L)).thenThrow(FeignException.class);
+        when(productoClientRest.findByIds(List.of(1L))).thenThrow(FeignException.class);
 
         // When & Then
         assertThatThrownBy(() -> pedidoService.crearPedido(creationDTO))
@@ -178,7 +191,7 @@ class PedidoServiceImplTest {
         // Given
         productoTest.setActivo(false);
         when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
-        when(productoClientRest.findById(1L)).thenReturn(productoTest);
+        when(productoClientRest.findByIds(List.of(1L))).thenReturn(Map.of(1L, productoTest));
 
         // When & Then
         assertThatThrownBy(() -> pedidoService.crearPedido(creationDTO))
@@ -194,7 +207,7 @@ class PedidoServiceImplTest {
         // Given
         productoTest.setStock(1); // Stock menor que cantidad solicitada (2)
         when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
-        when(productoClientRest.findById(1L)).thenReturn(productoTest);
+        when(productoClientRest.findByIds(List.of(1L))).thenReturn(Map.of(1L, productoTest));
 
         // When & Then
         assertThatThrownBy(() -> pedidoService.crearPedido(creationDTO))
@@ -202,7 +215,42 @@ class PedidoServiceImplTest {
                 .hasMessageContaining("Stock insuficiente");
         
         verify(pedidoRepository, never()).save(any());
-        verify(productoClientRest, never()).updateStock(anyLong(), anyInt());
+        verify(productoClientRest, never()).reservarStock(any());
+    }
+
+    @Test
+    @DisplayName("crearPedido - Si la reserva de stock falla no debe guardar el pedido")
+    void testCrearPedido_ConReservaRechazada_DebeLanzarExcepcion() {
+        // Given
+        when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
+        when(productoClientRest.findByIds(List.of(1L))).thenReturn(Map.of(1L, productoTest));
+        doThrow(FeignException.class).when(productoClientRest).reservarStock(any());
+
+        // When & Then
+        assertThatThrownBy(() -> pedidoService.crearPedido(creationDTO))
+                .isInstanceOf(PedidoException.class)
+                .hasMessageContaining("reservar el stock");
+
+        verify(pedidoRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("crearPedido - Un 400 de msvc-productos al reservar debe informar su mensaje")
+    void testCrearPedido_StockInsuficienteEnProductos_DebeInformarMensaje() {
+        // Given
+        when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
+        when(productoClientRest.findByIds(List.of(1L))).thenReturn(Map.of(1L, productoTest));
+        doThrow(errorDeProductos(400,
+                "{\"status\":400,\"mensaje\":\"Stock insuficiente para el producto con ID 1 (disponible: 0, solicitado: 2)\"}"))
+                .when(productoClientRest).reservarStock(any());
+
+        // When & Then
+        assertThatThrownBy(() -> pedidoService.crearPedido(creationDTO))
+                .isInstanceOf(PedidoException.class)
+                .hasMessage("No se pudo reservar el stock del pedido: "
+                        + "Stock insuficiente para el producto con ID 1 (disponible: 0, solicitado: 2)");
+
+        verify(pedidoRepository, never()).save(any());
     }
 
     @Test
@@ -210,15 +258,18 @@ class PedidoServiceImplTest {
     void testCrearPedido_DebeActualizarStock() {
         // Given
         when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
-        when(productoClientRest.findById(1L)).thenReturn(productoTest);
-        when(productoClientRest.updateStock(anyLong(), anyInt())).thenReturn(productoTest);
+        when(productoClientRest.findByIds(List.of(1L))).thenReturn(Map.of(1L, productoTest));
         when(pedidoRepository.save(any(Pedido.class))).thenAnswer(inv -> inv.getArgument(0));
 
         // When
         pedidoService.crearPedido(creationDTO);
 
         // Then
-        verify(productoClientRest).updateStock(1L, -2); // Debe reducir 2 unidades
+        verify(productoClientRest).reservarStock(argThat(lineas ->
+                lineas.get(0).getIdProducto() == 1L && lineas.get(0).getCantidad() == 2)); // Debe reducir 2 unidades
+        verify(eventPublisher).publishEvent(argThat((VentasModificadasEvent evento) -> !evento.isCancelacion()
+                && evento.getLineas().get(0).getCantidad() == 2
+                && evento.getLineas().get(0).getCategoria().equals("LAPTOPS")));
     }
 
     @Test
@@ -259,15 +310,30 @@ class PedidoServiceImplTest {
         pedidoTest.getDetalles().add(detalle);
         
         when(pedidoRepository.findById(1L)).thenReturn(Optional.of(pedidoTest));
-        when(productoClientRest.updateStock(anyLong(), anyInt())).thenReturn(productoTest);
         when(pedidoRepository.save(any(Pedido.class))).thenAnswer(inv -> inv.getArgument(0));
 
         // When
         pedidoService.cancelarPedido(1L);
 
         // Then
-        verify(productoClientRest).updateStock(1L, 3); // Debe restaurar 3 unidades
+        verify(productoClientRest).liberarStock(argThat(lineas ->
+                lineas.get(0).getIdProducto() == 1L && lineas.get(0).getCantidad() == 3)); // Debe restaurar 3 unidades
         verify(pedidoRepository).save(argThat(pedido -> pedido.getEstado().equals("CANCELADO")));
+        // El ranking de más vendidos descuenta las unidades con la fecha original del pedido
+        verify(eventPublisher).publishEvent(argThat((VentasModificadasEvent evento) -> evento.isCancelacion()
+                && evento.getFechaPedido().equals(pedidoTest.getFechaPedido())
+                && evento.getLineas().get(0).getCantidad() == 3));
+    }
+
+    @Test
+    @DisplayName("masVendidos - Debe rechazar un limit fuera de rango")
+    void testMasVendidos_ConLimitFueraDeRango_DebeLanzarExcepcion() {
+        assertThatThrownBy(() -> pedidoService.masVendidos(null, 0))
+                .isInstanceOf(PedidoException.class)
+                .hasMessageContaining("limit");
+        assertThatThrownBy(() -> pedidoService.masVendidos("LAPTOPS", 101))
+                .isInstanceOf(PedidoException.class);
+        verifyNoInteractions(rankingVentas);
     }
 
     @Test
@@ -282,7 +348,7 @@ class PedidoServiceImplTest {
                 .isInstanceOf(PedidoException.class)
                 .hasMessageContaining("PENDIENTE");
         
-        verify(productoClientRest, never()).updateStock(anyLong(), anyInt());
+        verify(productoClientRest, never()).liberarStock(any());
     }
 
     @Test
@@ -387,8 +453,7 @@ class PedidoServiceImplTest {
     void testCrearPedido_DebeCalcularTotalesCorrectamente() {
         // Given
         when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
-        when(productoClientRest.findById(1L)).thenReturn(productoTest);
-        when(productoClientRest.updateStock(anyLong(), anyInt())).thenReturn(productoTest);
+        when(productoClientRest.findByIds(List.of(1L))).thenReturn(Map.of(1L, productoTest));
         when(pedidoRepository.save(any(Pedido.class))).thenAnswer(invocation -> {
             Pedido pedido = invocation.getArgument(0);
             pedido.setId(1L);
@@ -424,4 +489,17 @@ class PedidoServiceImplTest {
         assertThat(resultado).hasSize(2);
         verify(pedidoRepository).findAll();
     }
+
+    private static FeignException errorDeProductos(int status, String cuerpo) {
+        Request request = Request.create(Request.HttpMethod.POST, "http://localhost:8002/api/v1/productos/stock/reservar",
+                Map.of(), null, StandardCharsets.UTF_8, null);
+        Response response = Response.builder()
+                .status(status)
+                .reason("error")
+                .request(request)
+                .headers(Map.of())
+                .body(cuerpo, StandardCharsets.UTF_8)
+                .build();
+        return FeignException.errorStatus("ProductoClientRest#reservarStock(List)", response);
+    }
 }
@@ -0,0 +1,230 @@
+package com.appmovil.msvc.pedidos.services;
+
+import com.appmovil.msvc.pedidos.clients.ProductoClientRest;
+import com.appmovil.msvc.pedidos.dtos.ProductoVendidoDTO;
+import com.appmovil.msvc.pedidos.events.VentasModificadasEvent;
+import com.appmovil.msvc.pedidos.model.LineaVenta;
+import com.appmovil.msvc.pedidos.model.Producto;
+import com.appmovil.msvc.pedidos.model.VentaRegistrada;
+import com.appmovil.msvc.pedidos.repositories.PedidoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("RankingVentas - Unit Tests")
+class RankingVentasTest {
+
+    private static final LocalDateTime AHORA = LocalDateTime.of(2025, 6, 1, 12, 0);
+
+    @Mock
+    private PedidoRepository pedidoRepository;
+
+    @Mock
+    private ProductoClientRest productoClientRest;
+
+    @InjectMocks
+    private RankingVentas ranking;
+
+    @TempDir
+    Path directorio;
+
+    @BeforeEach
+    void setUp() {
+        configurar(ranking);
+        ranking.iniciar();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ranking.detener();
+    }
+
+    private void configurar(RankingVentas instancia) {
+        ReflectionTestUtils.setField(instancia, "vidaMediaHoras", 72.0);
+        ReflectionTestUtils.setField(instancia, "rutaSnapshot", directorio.resolve("ranking.snapshot").toString());
+        ReflectionTestUtils.setField(instancia, "intervaloSnapshotMs", 3_600_000L);
+        ReflectionTestUtils.setField(instancia, "reloj", Clock.fixed(AHORA.toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+    }
+
+    private static VentasModificadasEvent venta(long idPedido, LocalDateTime fecha, LineaVenta... lineas) {
+        return new VentasModificadasEvent(idPedido, fecha, List.of(lineas), false);
+    }
+
+    private static VentasModificadasEvent cancelacion(long idPedido, LocalDateTime fecha, LineaVenta... lineas) {
+        return new VentasModificadasEvent(idPedido, fecha, List.of(lineas), true);
+    }
+
+    private static LineaVenta linea(long idProducto, String categoria, int cantidad) {
+        return new LineaVenta(idProducto, "Producto " + idProducto, categoria, cantidad);
+    }
+
+    @Test
+    @DisplayName("masVendidos - Las ventas antiguas deben pesar la mitad por cada vida media")
+    void testMasVendidos_DebeAplicarDecaimiento() {
+        // Given
+        when(pedidoRepository.findVentasPosteriores(0L)).thenReturn(List.of());
+        ranking.cargar();
+        ranking.onVentasModificadas(venta(1L, AHORA.minusHours(144), linea(1L, "LAPTOPS", 10)));
+        ranking.onVentasModificadas(venta(2L, AHORA, linea(2L, "LAPTOPS", 4)));
+        ranking.onVentasModificadas(venta(3L, AHORA.minusHours(72), linea(3L, "MONITORES", 6)));
+
+        // When
+        List<ProductoVendidoDTO> resultado = ranking.masVendidos(null, 10);
+
+        // Then: 10 unidades de hace dos vidas medias valen 2.5
+        assertThat(resultado).extracting(ProductoVendidoDTO::getIdProducto).containsExactly(2L, 3L, 1L);
+        assertThat(resultado).extracting(ProductoVendidoDTO::getVentas).containsExactly(4.0, 3.0, 2.5);
+    }
+
+    @Test
+    @DisplayName("masVendidos por categoría - Debe ignorar mayúsculas y respetar el límite")
+    void testMasVendidos_PorCategoria() {
+        // Given
+        when(pedidoRepository.findVentasPosteriores(0L)).thenReturn(List.of());
+        ranking.cargar();
+        ranking.onVentasModificadas(venta(1L, AHORA, linea(1L, "LAPTOPS", 1), linea(2L, "Laptops", 5),
+                linea(3L, "LAPTOPS", 3), linea(4L, "MONITORES", 9)));
+
+        // When
+        List<ProductoVendidoDTO> resultado = ranking.masVendidos(" laptops ", 2);
+
+        // Then
+        assertThat(resultado).extracting(ProductoVendidoDTO::getIdProducto).containsExactly(2L, 3L);
+        assertThat(ranking.masVendidos("SIN_VENTAS", 5)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("onVentasModificadas - Cancelar un pedido debe descontar exactamente lo que sumó")
+    void testCancelacion_DebeDescontarLoSumado() {
+        // Given
+        when(pedidoRepository.findVentasPosteriores(0L)).thenReturn(List.of());
+        ranking.cargar();
+        LocalDateTime fecha = AHORA.minusHours(30);
+        ranking.onVentasModificadas(venta(1L, fecha, linea(1L, "LAPTOPS", 5)));
+        ranking.onVentasModificadas(venta(2L, AHORA, linea(2L, "LAPTOPS", 2), linea(1L, "LAPTOPS", 1)));
+
+        // When
+        ranking.onVentasModificadas(cancelacion(1L, fecha, linea(1L, null, 5)));
+        ranking.onVentasModificadas(cancelacion(2L, AHORA, linea(2L, null, 2)));
+        // Producto que nunca figuró en el ranking
+        ranking.onVentasModificadas(cancelacion(3L, AHORA, linea(99L, null, 1)));
+
+        // Then
+        assertThat(ranking.masVendidos(null, 10)).singleElement().satisfies(producto -> {
+            assertThat(producto.getIdProducto()).isEqualTo(1L);
+            assertThat(producto.getVentas()).isEqualTo(1.0);
+        });
+        assertThat(ranking.masVendidos("laptops", 10)).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("cargar - Debe leer el snapshot y sumar solo los pedidos posteriores")
+    void testCargar_DesdeSnapshot_DebeSumarPedidosPosteriores() throws Exception {
+        // Given: un snapshot con los pedidos hasta el 2
+        when(pedidoRepository.findVentasPosteriores(0L)).thenReturn(List.of());
+        ranking.cargar();
+        ranking.onVentasModificadas(venta(1L, AHORA, linea(1L, "LAPTOPS", 3)));
+        ranking.onVentasModificadas(venta(2L, AHORA, linea(2L, "MONITORES", 2)));
+        ranking.guardarSnapshot();
+        assertThat(Files.exists(directorio.resolve("ranking.snapshot"))).isTrue();
+
+        RankingVentas reiniciado = new RankingVentas();
+        ReflectionTestUtils.setField(reiniciado, "pedidoRepository", pedidoRepository);
+        ReflectionTestUtils.setField(reiniciado, "productoClientRest", productoClientRest);
+        configurar(reiniciado);
+        reiniciado.iniciar();
+        when(pedidoRepository.findVentasPosteriores(2L)).thenReturn(List.of(
+                new VentaRegistrada(3L, AHORA, 2L, "Producto 2", 4)));
+        Producto monitor = new Producto();
+        monitor.setCategoria("MONITORES");
+        when(productoClientRest.findByIds(List.of(2L))).thenReturn(Map.of(2L, monitor));
+
+        // Un pedido creado mientras se cargaba, ya incluido en la lectura, y otro nuevo
+        reiniciado.onVentasModificadas(venta(3L, AHORA, linea(2L, "MONITORES", 4)));
+        reiniciado.onVentasModificadas(venta(4L, AHORA, linea(1L, "LAPTOPS", 1)));
+
+        try {
+            // When
+            reiniciado.cargar();
+
+            // Then
+            assertThat(reiniciado.masVendidos(null, 10))
+                    .extracting(ProductoVendidoDTO::getIdProducto, ProductoVendidoDTO::getVentas)
+                    .containsExactly(tuple(2L, 6.0), tuple(1L, 4.0));
+            assertThat(reiniciado.masVendidos("monitores", 10)).hasSize(1);
+        } finally {
+            reiniciado.detener();
+        }
+    }
+
+    @Test
+    @DisplayName("onVentasModificadas - Una cancelación o un alta fuera de orden deben sobrevivir a un reinicio inmediato")
+    void testCancelacionYAltaFueraDeOrden_DebenGuardarseEnElMomento() throws Exception {
+        // Given: el snapshot periódico ya incluye los pedidos 1 y 3
+        when(pedidoRepository.findVentasPosteriores(0L)).thenReturn(List.of());
+        ranking.cargar();
+        ranking.onVentasModificadas(venta(1L, AHORA, linea(1L, "LAPTOPS", 5)));
+        ranking.onVentasModificadas(venta(3L, AHORA, linea(2L, "LAPTOPS", 2)));
+        ranking.guardarSnapshot();
+
+        // When: se cancela el 1, confirma el 2 (ID menor que el 3) y el proceso cae antes del intervalo
+        ranking.onVentasModificadas(cancelacion(1L, AHORA, linea(1L, null, 5)));
+        ranking.onVentasModificadas(venta(2L, AHORA, linea(3L, "MONITORES", 1)));
+        RankingVentas reiniciado = new RankingVentas();
+        ReflectionTestUtils.setField(reiniciado, "pedidoRepository", pedidoRepository);
+        ReflectionTestUtils.setField(reiniciado, "productoClientRest", productoClientRest);
+        configurar(reiniciado);
+        reiniciado.iniciar();
+        when(pedidoRepository.findVentasPosteriores(3L)).thenReturn(List.of());
+
+        try {
+            reiniciado.cargar();
+
+            // Then
+            assertThat(reiniciado.masVendidos(null, 10))
+                    .extracting(ProductoVendidoDTO::getIdProducto, ProductoVendidoDTO::getVentas)
+                    .containsExactly(tuple(2L, 2.0), tuple(3L, 1.0));
+        } finally {
+            reiniciado.detener();
+        }
+    }
+
+    @Test
+    @DisplayName("cargar - Sin snapshot debe reconstruir desde todos los pedidos aunque msvc-productos no responda")
+    void testCargar_SinSnapshot_DebeReconstruir() {
+        // Given
+        when(pedidoRepository.findVentasPosteriores(0L)).thenReturn(List.of(
+                new VentaRegistrada(1L, AHORA.minusHours(72), 5L, "Mouse", 8),
+                new VentaRegistrada(2L, AHORA, 5L, "Mouse", 1)));
+        when(productoClientRest.findByIds(anyList())).thenThrow(new RuntimeException("sin conexión"));
+
+        // When
+        ranking.cargar();
+
+        // Then
+        assertThat(ranking.masVendidos(null, 10)).singleElement().satisfies(producto -> {
+            assertThat(producto.getNombre()).isEqualTo("Mouse");
+            assertThat(producto.getVentas()).isEqualTo(5.0);
+        });
+    }
+}
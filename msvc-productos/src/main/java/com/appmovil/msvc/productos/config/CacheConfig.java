@@ -0,0 +1,35 @@
+package com.appmovil.msvc.productos.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String PRODUCTOS = "productos";
+    public static final String PRODUCTOS_ACTIVOS = "productosActivos";
+    public static final String PRODUCTOS_POR_CATEGORIA = "productosPorCategoria";
+
+    // Tamaño máximo y TTL de cada caché; recordStats publica hits/misses/evictions en /actuator/metrics
+    @Value("${productos.cache.spec:maximumSize=5000,expireAfterWrite=10m,recordStats}")
+    private String cacheSpec;
+
+    @Bean
+    @ConditionalOnProperty(name = "productos.cache.enabled", havingValue = "true", matchIfMissing = true)
+    public CacheManager cacheManager() {
+        CaffeineCacheManager caffeineCacheManager =
+                new CaffeineCacheManager(PRODUCTOS, PRODUCTOS_ACTIVOS, PRODUCTOS_POR_CATEGORIA);
+        caffeineCacheManager.setCacheSpecification(cacheSpec);
+        caffeineCacheManager.setAllowNullValues(false);
+
+        // Las invalidaciones se aplican recién cuando la transacción hace commit
+        return new TransactionAwareCacheManagerProxy(caffeineCacheManager);
+    }
+}
@@ -1,42 +1,241 @@
 package com.appmovil.msvc.productos.controller;
 
+import com.appmovil.msvc.productos.dtos.CambiosDTO;
+import com.appmovil.msvc.productos.dtos.EstadisticasIndiceDTO;
+import com.appmovil.msvc.productos.dtos.ImagenDTO;
+import com.appmovil.msvc.productos.dtos.LineaStockDTO;
+import com.appmovil.msvc.productos.dtos.PaginaDTO;
+import com.appmovil.msvc.productos.dtos.ProductoUpdateDTO;
+import com.appmovil.msvc.productos.dtos.RatingProductoDTO;
+import com.appmovil.msvc.productos.dtos.ResultadoImportacionDTO;
+import com.appmovil.msvc.productos.dtos.StockBajoDTO;
+import com.appmovil.msvc.productos.dtos.StockDTO;
+import com.appmovil.msvc.productos.dtos.SugerenciaDTO;
+import com.appmovil.msvc.productos.dtos.VersionCatalogoDTO;
 import com.appmovil.msvc.productos.models.entities.Producto;
+import com.appmovil.msvc.productos.services.AlertasStock;
 import com.appmovil.msvc.productos.services.ProductoService;
+import com.appmovil.msvc.productos.services.RespuestasSerializadas;
+import com.appmovil.msvc.productos.services.VersionCatalogo;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/v1/productos")
 @Validated
 public class ProductoController {
 
+    // Atributos de petición con los que Tomcat transmite un archivo por sendfile al terminar el servlet
+    private static final String SENDFILE_SOPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARCHIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+
     @Autowired
     private ProductoService productoService;
 
+    @Autowired
+    private VersionCatalogo versionCatalogo;
+
+    @Autowired
+    private RespuestasSerializadas respuestasSerializadas;
+
+    @Autowired
+    private AlertasStock alertasStock;
+
     @GetMapping
-    public ResponseEntity<List<Producto>> findAll() {
-        List<Producto> productos = this.productoService.findAll();
-        return ResponseEntity.ok(productos);
+    public void findAll(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serializado(request, response, () -> this.productoService.findAll());
+    }
+    
+    // GET /api/v1/productos?limit=20&cursor=... (Paginado por keyset; 'next' trae el cursor de la página siguiente)
+    @GetMapping(params = "limit")
+    public void findAllPaginado(
+            @RequestParam int limit,
+            @RequestParam(required = false) String cursor,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serializado(request, response, () -> this.productoService.findAll(cursor, limit));
     }
     
     @GetMapping("/activos")
-    public ResponseEntity<List<Producto>> findActivos() {
-        List<Producto> productos = this.productoService.findActivos();
-        return ResponseEntity.ok(productos);
+    public void findActivos(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serializado(request, response, () -> this.productoService.findActivos());
+    }
+
+    @GetMapping(value = "/activos", params = "limit")
+    public void findActivosPaginado(
+            @RequestParam int limit,
+            @RequestParam(required = false) String cursor,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serializado(request, response, () -> this.productoService.findActivos(cursor, limit));
+    }
+
+    // GET /api/v1/productos/resumen (Listado liviano para pantallas de catálogo, sin la imagen @Lob)
+    @GetMapping("/resumen")
+    public void findResumen(
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serializado(request, response, () -> this.productoService.findResumenActivos(cursor, limit));
+    }
+
+    @GetMapping("/categoria/{categoria}/resumen")
+    public void findResumenByCategoria(
+            @PathVariable String categoria,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serializado(request, response, () -> this.productoService.findResumenByCategoria(categoria, cursor, limit));
+    }
+
+    // GET /api/v1/productos/consulta?categoria=laptops&precioMin=100&precioMax=900&orden=-rating&limit=20
+    // (Productos activos por rango de precio; orden: precio, -precio, rating, -rating. Resuelto sobre idx_productos_*)
+    @GetMapping("/consulta")
+    public void consultar(
+            @RequestParam(required = false) String categoria,
+            @RequestParam(required = false) Integer precioMin,
+            @RequestParam(required = false) Integer precioMax,
+            @RequestParam(defaultValue = "precio") String orden,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serializado(request, response, () ->
+                this.productoService.consultar(categoria, precioMin, precioMax, orden, cursor, limit));
+    }
+
+    // GET /api/v1/productos/facetas (Cantidad de productos, con stock y rango de precios por categoría)
+    @GetMapping("/facetas")
+    public void findFacetas(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serializado(request, response, () -> this.productoService.findFacetas());
+    }
+
+    // GET /api/v1/productos/stock-bajo (Productos con stock por debajo de su umbralStock)
+    @GetMapping("/stock-bajo")
+    public ResponseEntity<List<StockBajoDTO>> findStockBajo() {
+        return ResponseEntity.ok(this.productoService.findStockBajo());
+    }
+
+    // GET /api/v1/productos/stock-bajo/alertas (Server-sent events: "estado" al conectar y luego
+    // "stock-bajo" / "stock-repuesto" cada vez que un producto cruza su umbral)
+    @GetMapping(value = "/stock-bajo/alertas", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter alertasStockBajo() {
+        return this.alertasStock.suscribir();
+    }
+
+    // GET /api/v1/productos/sugerencias?q=lap&limit=10 (Autocompletado por prefijo de palabra del nombre)
+    @GetMapping("/sugerencias")
+    public ResponseEntity<List<SugerenciaDTO>> sugerencias(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit,
+            WebRequest request) {
+        return condicional(request, () -> this.productoService.sugerencias(q, limit));
+    }
+
+    // GET /api/v1/productos/cambios?desde=0&limit=100 (Altas, modificaciones y bajas posteriores a la secuencia
+    // desde; la respuesta trae en "hasta" el valor para la próxima llamada)
+    @GetMapping("/cambios")
+    public ResponseEntity<CambiosDTO> cambios(
+            @RequestParam(defaultValue = "0") long desde,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(this.productoService.cambios(desde, limit));
+    }
+
+    // GET /api/v1/productos/version (Versión del catálogo; cambia con cada alta, edición, baja, stock o rating.
+    // copias cambia solo con nombre, imagen o activo: los servicios que guardan copias de productos la
+    // consultan para saber si deben refrescarlas)
+    @GetMapping("/version")
+    public ResponseEntity<VersionCatalogoDTO> version() {
+        long version = versionCatalogo.getVersion();
+        long copias = versionCatalogo.getVersionCopias();
+        return ResponseEntity.ok()
+                .eTag(versionCatalogo.etag(version))
+                .cacheControl(CacheControl.noCache())
+                .body(new VersionCatalogoDTO(versionCatalogo.token(version), versionCatalogo.token(copias)));
+    }
+
+    // GET /api/v1/productos/{id}/imagen (Bytes de la imagen; con If-None-Match devuelve 304)
+    @GetMapping("/{id}/imagen")
+    public ResponseEntity<byte[]> findImagen(@PathVariable Long id, HttpServletRequest request,
+                                             HttpServletResponse response) throws IOException {
+        ImagenDTO imagen = this.productoService.findImagen(id);
+        aislar(response);
+
+        if (imagen.getArchivo() != null) {
+            // El producto puede cambiar de imagen: caché corta, revalidada con el hash como ETag
+            transmitir(imagen, CacheControl.maxAge(1, TimeUnit.HOURS).cachePrivate(), request, response);
+            return null;
+        }
+
+        if (imagen.getUrl() != null) {
+            return ResponseEntity.status(HttpStatus.FOUND)
+                    .location(URI.create(imagen.getUrl()))
+                    .eTag(imagen.getEtag())
+                    .build();
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(imagen.getTipoContenido()))
+                .contentLength(imagen.getContenido().length)
+                .eTag(imagen.getEtag())
+                .cacheControl(CacheControl.maxAge(1, TimeUnit.HOURS).cachePrivate())
+                .body(imagen.getContenido());
+    }
+
+    // GET /api/v1/productos/imagenes/{hash} (Archivo del almacén de imágenes por su SHA-256; el contenido
+    // de un hash nunca cambia, así que se puede cachear un año como immutable)
+    @GetMapping("/imagenes/{hash}")
+    public void findImagenPorHash(@PathVariable String hash, HttpServletRequest request,
+                                  HttpServletResponse response) throws IOException {
+        aislar(response);
+        transmitir(this.productoService.findImagenPorHash(hash),
+                CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable(), request, response);
     }
 
     // GET /api/productos/{id}
     @GetMapping("/{id}")
-    public ResponseEntity<Producto> findById(@PathVariable Long id) {
+    public ResponseEntity<Producto> findById(@PathVariable Long id, WebRequest request) {
         // Muestra el detalle de un producto específico
-        Producto producto = this.productoService.findById(id);
-        return ResponseEntity.status(HttpStatus.OK).body(producto);
+        return condicional(request, () -> this.productoService.findById(id));
+    }
+
+    // GET /api/v1/productos/batch?ids=1,2,3 (Varios productos en una sola llamada, indexados por ID)
+    @GetMapping("/batch")
+    public ResponseEntity<Map<Long, Producto>> findByIds(@RequestParam List<Long> ids, WebRequest request) {
+        return condicional(request, () -> this.productoService.findByIds(ids));
+    }
+
+    // POST /api/v1/productos/batch (Misma consulta, con la lista de IDs en el cuerpo)
+    @PostMapping("/batch")
+    public ResponseEntity<Map<Long, Producto>> findByIdsBody(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok(this.productoService.findByIds(ids));
     }
 
     // POST /api/productos (Crea un nuevo producto - Requiere rol de Admin)
@@ -48,15 +247,32 @@ public class ProductoController {
                 .body(productoService.save(producto));
     }
 
+    // GET /api/v1/productos/exportar (Catálogo completo en NDJSON para sincronizaciones; se escribe a medida
+    // que se lee de la base de datos, así la memoria usada no depende del tamaño del catálogo)
+    @GetMapping(value = "/exportar", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportar() {
+        StreamingResponseBody cuerpo = salida -> this.productoService.exportar(salida);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(cuerpo);
+    }
+
+    // POST /api/v1/productos/importar (Carga masiva desde NDJSON o CSV con encabezado; devuelve el reporte de errores por fila)
+    @PostMapping(value = "/importar", consumes = {"application/x-ndjson", "text/csv"})
+    public ResponseEntity<ResultadoImportacionDTO> importar(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType tipo,
+            InputStream entrada) {
+        boolean csv = tipo.isCompatibleWith(MediaType.parseMediaType("text/csv"));
+        return ResponseEntity.ok(this.productoService.importar(entrada, csv));
+    }
+
     // PUT /api/productos/{id} (Actualiza un producto existente - Requiere rol de Admin)
     @PutMapping("/{id}")
-    // En el método del servicio, gestionaremos si es una actualización o una creación
-    public ResponseEntity<Producto> update(@PathVariable Long id, @Valid @RequestBody Producto producto) {
-        // Aseguramos que el ID del path se use en el cuerpo para la actualización
-        producto.setId(id);
+    // Si el cuerpo trae "version" y no coincide con la actual se responde 409 Conflict
+    public ResponseEntity<Producto> update(@PathVariable Long id, @Valid @RequestBody ProductoUpdateDTO producto) {
         return ResponseEntity
                 .status(HttpStatus.OK) // Devolvemos 200 OK para una actualización
-                .body(productoService.save(producto));
+                .body(productoService.update(id, producto));
     }
 
     // DELETE /api/productos/{id} (Elimina un producto - Requiere rol de Admin)
@@ -69,22 +285,154 @@ public class ProductoController {
     }
 
     @GetMapping("/categoria/{categoria}")
-    public ResponseEntity<List<Producto>> findByCategoria(@PathVariable String categoria) {
-        List<Producto> productos = this.productoService.findByCategoria(categoria);
-        return ResponseEntity.ok(productos);
+    public void findByCategoria(@PathVariable String categoria,
+                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serializado(request, response, () -> this.productoService.findByCategoria(categoria));
+    }
+    
+    @GetMapping(value = "/categoria/{categoria}", params = "limit")
+    public void findByCategoriaPaginado(
+            @PathVariable String categoria,
+            @RequestParam int limit,
+            @RequestParam(required = false) String cursor,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        serializado(request, response, () -> this.productoService.findByCategoria(categoria, cursor, limit));
     }
     
     @GetMapping("/buscar")
-    public ResponseEntity<List<Producto>> buscarPorNombre(@RequestParam String nombre) {
-        List<Producto> productos = this.productoService.buscarPorNombre(nombre);
-        return ResponseEntity.ok(productos);
+    public ResponseEntity<List<Producto>> buscarPorNombre(@RequestParam String nombre, WebRequest request) {
+        return condicional(request, () -> this.productoService.buscarPorNombre(nombre));
+    }
+
+    @GetMapping(value = "/buscar", params = "limit")
+    public ResponseEntity<PaginaDTO<Producto>> buscarPorNombrePaginado(
+            @RequestParam String nombre,
+            @RequestParam int limit,
+            @RequestParam(required = false) String cursor,
+            WebRequest request) {
+        return condicional(request, () -> this.productoService.buscarPorNombre(nombre, cursor, limit));
+    }
+    
+    // POST /api/v1/productos/busqueda/reindexar (Reconstruye el índice de búsqueda en memoria desde la base de datos)
+    @PostMapping("/busqueda/reindexar")
+    public ResponseEntity<EstadisticasIndiceDTO> reconstruirIndiceBusqueda() {
+        return ResponseEntity.ok(this.productoService.reconstruirIndiceBusqueda());
     }
     
     @PutMapping("/{id}/stock")
-    public ResponseEntity<Producto> actualizarStock(
+    public ResponseEntity<StockDTO> actualizarStock(
             @PathVariable Long id,
             @RequestParam Integer cantidad) {
-        Producto producto = this.productoService.actualizarStock(id, cantidad);
-        return ResponseEntity.ok(producto);
+        StockDTO stock = this.productoService.actualizarStock(id, cantidad);
+        return ResponseEntity.ok(stock);
+    }
+
+    // POST /api/v1/productos/stock/reservar (Descuenta el stock de todas las líneas de un pedido en una transacción: todas o ninguna)
+    @PostMapping("/stock/reservar")
+    public ResponseEntity<List<StockDTO>> reservarStock(@RequestBody List<LineaStockDTO> lineas) {
+        return ResponseEntity.ok(this.productoService.reservarStock(lineas));
+    }
+
+    // POST /api/v1/productos/stock/liberar (Devuelve el stock reservado, p. ej. al cancelar un pedido)
+    @PostMapping("/stock/liberar")
+    public ResponseEntity<List<StockDTO>> liberarStock(@RequestBody List<LineaStockDTO> lineas) {
+        return ResponseEntity.ok(this.productoService.liberarStock(lineas));
+    }
+
+    // PUT /api/v1/productos/ratings (Promedios de reseñas enviados en lote por msvc-resenas)
+    @PutMapping("/ratings")
+    public ResponseEntity<Map<String, Integer>> actualizarRatings(@RequestBody List<RatingProductoDTO> ratings) {
+        return ResponseEntity.ok(Map.of("actualizados", this.productoService.actualizarRatings(ratings)));
+    }
+
+    // La ETag sale de la versión del catálogo y se lee antes de consultar: si el cliente ya tiene esa
+    // versión (If-None-Match) se responde 304 sin tocar la base de datos ni serializar el cuerpo
+    private <T> ResponseEntity<T> condicional(WebRequest request, Supplier<T> consulta) {
+        String etag = versionCatalogo.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(consulta.get());
+    }
+
+    // Listados calientes: además de la ETag, el cuerpo ya serializado (y su copia gzip) queda en
+    // RespuestasSerializadas para esa versión del catálogo y se copia tal cual a la salida del servlet
+    private void serializado(HttpServletRequest request, HttpServletResponse response, Supplier<?> consulta)
+            throws IOException {
+        long version = versionCatalogo.getVersion();
+        String etag = versionCatalogo.etag(version);
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+
+        RespuestasSerializadas.Respuesta respuesta = respuestasSerializadas.obtener(version, peticion(request), consulta);
+        boolean gzip = respuesta.comprimida() && aceptaGzip(request);
+        byte[] cuerpo = gzip ? respuesta.gzip() : respuesta.json();
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentLength(cuerpo.length);
+        response.getOutputStream().write(cuerpo);
+    }
+
+    // Las imágenes son contenido subido por usuarios y se sirven desde el origen de la API: un SVG (o un
+    // data URI declarado como text/html) abierto directamente podría ejecutar scripts. La CSP con sandbox
+    // lo impide sin afectar a quien lo muestra en un <img>, y nosniff evita que el navegador adivine otro tipo
+    private static void aislar(HttpServletResponse response) {
+        response.setHeader("Content-Security-Policy", "default-src 'none'; sandbox");
+        response.setHeader("X-Content-Type-Options", "nosniff");
+    }
+
+    // Imagen del almacén en disco. Con el conector NIO de Tomcat se delega en sendfile y el kernel copia
+    // el archivo del page cache al socket; si no está disponible se mapea el archivo en memoria y se
+    // escribe desde el mapeo, sin leerlo antes a un byte[] del heap
+    private void transmitir(ImagenDTO imagen, CacheControl cache, HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        String etag = "\"" + imagen.getEtag() + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cache.getHeaderValue());
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(imagen.getTipoContenido());
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setContentLengthLong(imagen.getTamanio());
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SOPORTADO))) {
+            request.setAttribute(SENDFILE_ARCHIVO, imagen.getArchivo().toString());
+            request.setAttribute(SENDFILE_INICIO, 0L);
+            request.setAttribute(SENDFILE_FIN, imagen.getTamanio());
+            return;
+        }
+        try (FileChannel canal = FileChannel.open(imagen.getArchivo(), StandardOpenOption.READ)) {
+            MappedByteBuffer mapeo = canal.map(FileChannel.MapMode.READ_ONLY, 0, imagen.getTamanio());
+            WritableByteChannel salida = Channels.newChannel(response.getOutputStream());
+            while (mapeo.hasRemaining()) {
+                salida.write(mapeo);
+            }
+        }
+    }
+
+    // Ruta más parámetros ordenados por nombre: el mismo listado pedido con otro orden de parámetros comparte entrada
+    private static String peticion(HttpServletRequest request) {
+        StringBuilder clave = new StringBuilder(request.getRequestURI());
+        new TreeMap<>(request.getParameterMap()).forEach((nombre, valores) ->
+                clave.append('&').append(nombre).append('=').append(String.join(",", valores)));
+        return clave.toString();
+    }
+
+    private static boolean aceptaGzip(HttpServletRequest request) {
+        String aceptadas = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return aceptadas != null && aceptadas.toLowerCase(Locale.ROOT).contains("gzip");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,26 @@
+package com.appmovil.msvc.productos.dtos;
+
+import com.appmovil.msvc.productos.models.entities.Producto;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CambiosDTO {
+
+    private Long desde;
+    // Secuencia a enviar como desde en la próxima llamada
+    private Long hasta;
+    // true si se cortó por el limit: conviene volver a pedir enseguida desde hasta
+    private Boolean hayMas;
+
+    // Altas y modificaciones, con el estado actual de cada producto
+    private List<Producto> productos;
+    // IDs de los productos eliminados
+    private List<Long> eliminados;
+}
@@ -0,0 +1,15 @@
+package com.appmovil.msvc.productos.dtos;
+
+import lombok.*;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class ErrorFilaDTO {
+
+    // Número de línea (NDJSON) o de registro de datos sin contar el encabezado (CSV), desde 1
+    private Long fila;
+    private String mensaje;
+}
@@ -0,0 +1,16 @@
+package com.appmovil.msvc.productos.dtos;
+
+import lombok.*;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EstadisticasIndiceDTO {
+
+    private Integer documentos;
+    private Integer terminos;
+    private Long duracionMs;
+}
@@ -0,0 +1,18 @@
+package com.appmovil.msvc.productos.dtos;
+
+import lombok.*;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FacetaCategoriaDTO {
+
+    private String categoria;
+    private Integer productos;
+    private Integer enStock;
+    private Integer precioMin;
+    private Integer precioMax;
+}
@@ -0,0 +1,22 @@
+package com.appmovil.msvc.productos.dtos;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FacetasDTO {
+
+    // Totales sobre todos los productos activos (chip "todos")
+    private Integer productos;
+    private Integer enStock;
+    private Integer precioMin;
+    private Integer precioMax;
+
+    private List<FacetaCategoriaDTO> categorias;
+}
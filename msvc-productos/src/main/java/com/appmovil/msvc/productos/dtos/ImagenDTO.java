@@ -0,0 +1,23 @@
+package com.appmovil.msvc.productos.dtos;
+
+import lombok.*;
+
+import java.nio.file.Path;
+
+@Getter
+@Setter
+@ToString(exclude = "contenido")
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImagenDTO {
+
+    private byte[] contenido;
+    private String tipoContenido;
+    // Si la imagen guardada es una URL externa se redirige en vez de transmitir bytes
+    private String url;
+    private String etag;
+    // Imagen del almacén en disco: se transmite desde el archivo sin cargarla en memoria
+    private Path archivo;
+    private Long tamanio;
+}
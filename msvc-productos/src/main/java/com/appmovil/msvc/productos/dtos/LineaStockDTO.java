@@ -0,0 +1,14 @@
+package com.appmovil.msvc.productos.dtos;
+
+import lombok.*;
+
+@Getter
+@Setter
+@ToString
+@AllArgsConstructor
+@NoArgsConstructor
+public class LineaStockDTO {
+
+    private Long idProducto;
+    private Integer cantidad;
+}
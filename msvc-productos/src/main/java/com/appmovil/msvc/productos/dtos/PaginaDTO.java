@@ -0,0 +1,19 @@
+package com.appmovil.msvc.productos.dtos;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaginaDTO<T> {
+
+    private List<T> items;
+    private Integer limit;
+    // Cursor opaco para pedir la página siguiente; null cuando no hay más resultados
+    private String next;
+}
@@ -0,0 +1,17 @@
+package com.appmovil.msvc.productos.dtos;
+
+import lombok.*;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductoFacetaDTO {
+
+    private Long id;
+    private String categoria;
+    private Integer precio;
+    private Integer stock;
+    private Boolean activo;
+}
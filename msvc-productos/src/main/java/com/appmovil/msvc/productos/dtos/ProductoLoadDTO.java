@@ -1,5 +1,8 @@
 package com.appmovil.msvc.productos.dtos;
 
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
 import lombok.*;
 
 @Getter
@@ -9,10 +12,20 @@ import lombok.*;
 @NoArgsConstructor
 public class ProductoLoadDTO {
 
+    @NotBlank(message = "El nombre es obligatorio")
     private String nombre;
+
+    @NotNull(message = "El precio es obligatorio")
+    @Min(value = 0, message = "El precio no puede ser negativo")
     private Integer precio;
+
+    @NotBlank(message = "La categoría es obligatoria")
     private String categoria;
+
     private String imagen;
     private String descripcion;
+
+    @NotNull(message = "El stock es obligatorio")
+    @Min(value = 0, message = "El stock no puede ser negativo")
     private Integer stock;
-}
\ No newline at end of file
+}
@@ -13,4 +13,18 @@ public class ProductoSimpleDTO {
     private String nombre;
     private String imagen;
     private Integer precio;
-}
\ No newline at end of file
+
+    // Usado por las proyecciones JPQL: no lee la imagen, solo referencia dónde descargarla. Las del
+    // almacén se sirven por su hash (inmutable y cacheable); las demás por el endpoint del producto;
+    // sin imagen queda null
+    public ProductoSimpleDTO(Long id, String nombre, Integer precio, String imagenHash, Boolean conImagen) {
+        this(id, nombre, referenciaImagen(id, imagenHash, conImagen), precio);
+    }
+
+    private static String referenciaImagen(Long id, String imagenHash, Boolean conImagen) {
+        if (imagenHash != null) {
+            return "/api/v1/productos/imagenes/" + imagenHash;
+        }
+        return Boolean.TRUE.equals(conImagen) ? "/api/v1/productos/" + id + "/imagen" : null;
+    }
+}
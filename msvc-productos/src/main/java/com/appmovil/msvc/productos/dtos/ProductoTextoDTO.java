@@ -0,0 +1,16 @@
+package com.appmovil.msvc.productos.dtos;
+
+import lombok.*;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductoTextoDTO {
+
+    private Long id;
+    private String nombre;
+    private String categoria;
+    private String descripcion;
+}
@@ -20,11 +20,20 @@ public class ProductoUpdateDTO {
     private String categoria;
 
     private String imagen;
+    // Imagen ya guardada (el imagenHash leído del producto): se usa si no se envía imagen
+    private String imagenHash;
     private String descripcion;
 
     @NotNull(message = "El stock es obligatorio")
     private Integer stock;
 
+    // Si no se envía se conserva el umbral actual; 0 desactiva la alerta
+    private Integer umbralStock;
 
     private Double rating;
+
+    private Boolean activo;
+
+    // Versión leída por el cliente; si no coincide con la actual la actualización se rechaza (409)
+    private Long version;
 }
\ No newline at end of file
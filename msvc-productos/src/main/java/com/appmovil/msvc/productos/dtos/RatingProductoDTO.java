@@ -0,0 +1,16 @@
+package com.appmovil.msvc.productos.dtos;
+
+import lombok.*;
+
+// Promedio de reseñas de un producto calculado por msvc-resenas
+@Getter
+@Setter
+@ToString
+@AllArgsConstructor
+@NoArgsConstructor
+public class RatingProductoDTO {
+
+    private Long idProducto;
+    private Double rating;
+    private Long cantidadResenas;
+}
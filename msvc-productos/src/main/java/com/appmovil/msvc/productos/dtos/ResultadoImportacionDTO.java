@@ -0,0 +1,24 @@
+package com.appmovil.msvc.productos.dtos;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ResultadoImportacionDTO {
+
+    private Long filas;
+    private Long insertadas;
+    private Long conError;
+
+    // Detalle de las primeras filas con error (hasta productos.importacion.max-errores)
+    private List<ErrorFilaDTO> errores;
+
+    private Long duracionMs;
+    private Long filasPorSegundo;
+}
@@ -0,0 +1,17 @@
+package com.appmovil.msvc.productos.dtos;
+
+import lombok.*;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockBajoDTO {
+
+    private Long id;
+    private String nombre;
+    private String categoria;
+    private Integer stock;
+    private Integer umbralStock;
+}
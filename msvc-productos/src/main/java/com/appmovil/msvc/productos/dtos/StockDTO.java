@@ -0,0 +1,15 @@
+package com.appmovil.msvc.productos.dtos;
+
+import lombok.*;
+
+@Getter
+@Setter
+@ToString
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockDTO {
+
+    private Long id;
+    private String categoria;
+    private Integer stock;
+}
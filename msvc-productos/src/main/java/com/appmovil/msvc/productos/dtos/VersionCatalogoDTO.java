@@ -0,0 +1,16 @@
+package com.appmovil.msvc.productos.dtos;
+
+import lombok.*;
+
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class VersionCatalogoDTO {
+
+    private String version;
+
+    // Cambia solo cuando cambia el nombre, la imagen o el estado activo de algún producto
+    private String copias;
+}
@@ -0,0 +1,36 @@
+package com.appmovil.msvc.productos.events;
+
+import com.appmovil.msvc.productos.models.entities.Producto;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Se publica desde ProductoServiceImpl en cada alta, modificación o baja.
+ * Los listeners lo reciben con @TransactionalEventListener, es decir, solo si la transacción hizo commit.
+ */
+@Getter
+@ToString
+public class ProductoModificadoEvent {
+
+    private final Long idProducto;
+
+    // Estado del producto luego del cambio; null cuando el producto fue eliminado
+    private final Producto producto;
+
+    // Si cambió alguno de los datos que otros servicios guardan como copia (nombre, imagen, activo)
+    private final boolean copiaModificada;
+
+    public ProductoModificadoEvent(Long idProducto, Producto producto) {
+        this(idProducto, producto, true);
+    }
+
+    public ProductoModificadoEvent(Long idProducto, Producto producto, boolean copiaModificada) {
+        this.idProducto = idProducto;
+        this.producto = producto;
+        this.copiaModificada = copiaModificada;
+    }
+
+    public boolean isEliminado() {
+        return producto == null;
+    }
+}
@@ -0,0 +1,27 @@
+package com.appmovil.msvc.productos.events;
+
+import com.appmovil.msvc.productos.models.entities.Producto;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Se publica desde ImportadorProductos una vez por lote insertado, en lugar de un ProductoModificadoEvent
+ * por fila: los listeners aplican el lote completo tomando su lock una sola vez.
+ */
+@Getter
+@ToString(of = "productos")
+@AllArgsConstructor
+public class ProductosImportadosEvent {
+
+    private final List<Producto> productos;
+
+    // Cada producto del lote como si se hubiera dado de alta individualmente
+    public List<ProductoModificadoEvent> comoAltas() {
+        return productos.stream()
+                .map(producto -> new ProductoModificadoEvent(producto.getId(), producto))
+                .toList();
+    }
+}
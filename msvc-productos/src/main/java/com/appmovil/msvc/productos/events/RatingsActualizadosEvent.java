@@ -0,0 +1,26 @@
+package com.appmovil.msvc.productos.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Se publica desde ProductoServiceImpl cuando msvc-resenas envía un lote de promedios de rating.
+ * No cambia stock, categoría ni textos: lo escuchan VersionCatalogo y SugerenciasProductos,
+ * que ordena las sugerencias por rating.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class RatingsActualizadosEvent {
+
+    // idProducto -> rating nuevo, solo de los productos que existían al aplicar el lote
+    private final Map<Long, Double> ratings;
+
+    public List<Long> getIdsProductos() {
+        return List.copyOf(ratings.keySet());
+    }
+}
@@ -0,0 +1,23 @@
+package com.appmovil.msvc.productos.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Se publica desde ProductoServiceImpl cuando el stock cambia por el UPDATE condicional.
+ * No trae la entidad: ese camino nunca la carga, solo lee el stock resultante.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class StockActualizadoEvent {
+
+    private final Long idProducto;
+
+    private final String categoria;
+
+    private final Integer stockAnterior;
+
+    private final Integer stock;
+}
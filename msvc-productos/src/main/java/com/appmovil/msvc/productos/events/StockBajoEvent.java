@@ -0,0 +1,22 @@
+package com.appmovil.msvc.productos.events;
+
+import com.appmovil.msvc.productos.dtos.StockBajoDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Se publica desde AlertasStock cuando el stock de un producto cruza su umbralStock, en cualquiera de
+ * los dos sentidos. Sale después del commit del cambio de stock, así que se escucha con @EventListener
+ * (un @TransactionalEventListener no lo recibiría).
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class StockBajoEvent {
+
+    private final StockBajoDTO producto;
+
+    // true: el stock quedó por debajo del umbral; false: se repuso y volvió a alcanzarlo
+    private final boolean bajo;
+}
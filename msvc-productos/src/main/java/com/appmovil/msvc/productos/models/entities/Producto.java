@@ -1,12 +1,25 @@
 package com.appmovil.msvc.productos.models.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
 
+import java.util.Locale;
+
 @Entity
-@Table(name = "productos")
+// Índices de las consultas de catálogo: filtran por categoría normalizada y activo, y ordenan por precio o
+// rating con id_producto como desempate, así el motor recorre el índice en orden sin ordenar en memoria.
+// El rating se indexa descendente porque el listado habitual es "mejor calificados primero"
+@Table(name = "productos", indexes = {
+        @Index(name = "idx_productos_categoria_activo_precio", columnList = "categoria_norm, activo, precio, id_producto"),
+        @Index(name = "idx_productos_categoria_activo_rating", columnList = "categoria_norm, activo, rating DESC, id_producto DESC"),
+        @Index(name = "idx_productos_activo_precio", columnList = "activo, precio, id_producto"),
+        @Index(name = "idx_productos_activo_rating", columnList = "activo, rating DESC, id_producto DESC"),
+        @Index(name = "idx_productos_secuencia", columnList = "secuencia"),
+        @Index(name = "idx_productos_umbral_stock", columnList = "umbral_stock")
+})
 @Getter @Setter @ToString
 @NoArgsConstructor @AllArgsConstructor
 @Builder
@@ -29,8 +42,20 @@ public class Producto {
     @NotBlank(message = "La categoría es obligatoria")
     private String categoria;
 
-    @Lob //
-    private String imagen; // 
+    // Categoría en minúsculas y sin espacios de borde: se compara por igualdad para usar los índices
+    // (IgnoreCase envuelve la columna en UPPER() y obliga a recorrer la tabla)
+    @JsonIgnore
+    @Column(name = "categoria_norm")
+    private String categoriaNorm;
+
+    // Solo URLs externas: las imágenes subidas (data URI o Base64) se guardan en AlmacenImagenes
+    // y la fila conserva su hash, así la imagen no viaja en cada lectura de la entidad
+    @Column(length = 2048)
+    private String imagen;
+
+    // SHA-256 del archivo en AlmacenImagenes; se sirve en GET /api/v1/productos/imagenes/{hash}
+    @Column(name = "imagen_hash", length = 64)
+    private String imagenHash;
 
     @Column(columnDefinition = "TEXT")
     private String descripcion;
@@ -38,6 +63,11 @@ public class Producto {
     @NotNull(message = "El stock es obligatorio")
     private Integer stock;
 
+    // Punto de reposición: cuando el stock queda por debajo, AlertasStock lo informa.
+    // null o 0 = sin alerta; la carga inicial lee solo las filas con umbral por idx_productos_umbral_stock
+    @Column(name = "umbral_stock")
+    private Integer umbralStock;
+
     @Column(nullable = false)
     @Builder.Default
     private Boolean activo = true;
@@ -45,6 +75,16 @@ public class Producto {
     @Builder.Default
     private Double rating = 0.0;
 
+    // Control de concurrencia optimista: una edición con una versión vieja falla en vez de pisar el stock
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    private Long version;
+
+    // Posición del último cambio de la fila en el orden global de SecuenciaCambios: GET /cambios?desde=
+    // devuelve las filas con una secuencia mayor recorriendo idx_productos_secuencia
+    @Column(name = "secuencia")
+    private Long secuencia;
+
     @PrePersist
     protected void onCreate() {
         if (activo == null) {
@@ -53,5 +93,15 @@ public class Producto {
         if (rating == null) {
             rating = 0.0;
         }
+        categoriaNorm = normalizarCategoria(categoria);
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        categoriaNorm = normalizarCategoria(categoria);
+    }
+
+    public static String normalizarCategoria(String categoria) {
+        return categoria == null ? null : categoria.trim().toLowerCase(Locale.ROOT);
     }
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.appmovil.msvc.productos.models.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Marca de un producto eliminado: delete borra la fila de productos, así que sin esta marca
+ * un cliente que sincroniza con GET /cambios nunca se enteraría de la baja.
+ */
+@Entity
+@Table(name = "productos_eliminados", indexes = {
+        @Index(name = "idx_productos_eliminados_secuencia", columnList = "secuencia")
+})
+@Getter @Setter @ToString
+@NoArgsConstructor @AllArgsConstructor
+@Builder
+public class ProductoEliminado {
+
+    @Id
+    @Column(name = "id_producto")
+    private Long id;
+
+    @Column(nullable = false)
+    private Long secuencia;
+
+    @Column(name = "eliminado_en", nullable = false)
+    private LocalDateTime eliminadoEn;
+}
@@ -0,0 +1,26 @@
+package com.appmovil.msvc.productos.models.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Último segmento del journal de stock caliente cuyos deltas ya están en productos.stock. Se actualiza
+ * en la misma transacción que los deltas: un segmento con número menor o igual no se vuelve a aplicar,
+ * aunque su archivo haya quedado en disco por una caída o un error al borrarlo.
+ */
+@Entity
+@Table(name = "stock_caliente_aplicado")
+@Getter @Setter @ToString
+@NoArgsConstructor @AllArgsConstructor
+@Builder
+public class StockCalienteAplicado {
+
+    // Una sola fila
+    public static final Integer ID = 1;
+
+    @Id
+    private Integer id;
+
+    @Column(name = "ultimo_segmento", nullable = false)
+    private Long ultimoSegmento;
+}
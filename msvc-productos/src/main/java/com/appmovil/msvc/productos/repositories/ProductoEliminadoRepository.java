@@ -0,0 +1,20 @@
+package com.appmovil.msvc.productos.repositories;
+
+import com.appmovil.msvc.productos.models.entities.ProductoEliminado;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ProductoEliminadoRepository extends JpaRepository<ProductoEliminado, Long> {
+
+    // Bajas posteriores a desde y ya confirmadas (hasta), recorriendo idx_productos_eliminados_secuencia
+    List<ProductoEliminado> findBySecuenciaGreaterThanAndSecuenciaLessThanEqualOrderBySecuenciaAsc(
+            Long desde, Long hasta, Limit limit);
+
+    @Query("SELECT MAX(e.secuencia) FROM ProductoEliminado e")
+    Long maxSecuencia();
+}
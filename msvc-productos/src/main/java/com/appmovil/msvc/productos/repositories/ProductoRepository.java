@@ -1,18 +1,155 @@
 package com.appmovil.msvc.productos.repositories;
 
+import com.appmovil.msvc.productos.dtos.ProductoFacetaDTO;
+import com.appmovil.msvc.productos.dtos.ProductoSimpleDTO;
+import com.appmovil.msvc.productos.dtos.ProductoTextoDTO;
+import com.appmovil.msvc.productos.dtos.StockBajoDTO;
+import com.appmovil.msvc.productos.dtos.StockDTO;
+import com.appmovil.msvc.productos.dtos.SugerenciaDTO;
 import com.appmovil.msvc.productos.models.entities.Producto;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface ProductoRepository extends JpaRepository<Producto, Long> {
-    List<Producto> findByCategoriaIgnoreCase(String categoria);
-    
+public interface ProductoRepository extends JpaRepository<Producto, Long>, JpaSpecificationExecutor<Producto> {
     List<Producto> findByActivo(Boolean activo);
     
-    List<Producto> findByCategoriaIgnoreCaseAndActivo(String categoria, Boolean activo);
+    // La categoría se compara ya normalizada (Producto.normalizarCategoria) para usar idx_productos_categoria_*
+    List<Producto> findByCategoriaNormAndActivo(String categoriaNorm, Boolean activo);
     
     List<Producto> findByNombreContainingIgnoreCase(String nombre);
+
+    // Paginación por keyset: solo se leen las filas de la página pedida (id_producto > cursor)
+    List<Producto> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    List<Producto> findByActivoAndIdGreaterThanOrderByIdAsc(Boolean activo, Long id, Limit limit);
+
+    List<Producto> findByCategoriaNormAndActivoAndIdGreaterThanOrderByIdAsc(String categoriaNorm, Boolean activo, Long id, Limit limit);
+
+    List<Producto> findByNombreContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(String nombre, Long id, Limit limit);
+
+    // Proyecciones livianas para listados: de la imagen solo se leen su hash y si existe
+    @Query("SELECT new com.appmovil.msvc.productos.dtos.ProductoSimpleDTO(p.id, p.nombre, p.precio, p.imagenHash, " +
+            "CASE WHEN p.imagen IS NOT NULL AND p.imagen <> '' THEN true ELSE false END) " +
+            "FROM Producto p WHERE p.activo = true AND p.id > :cursor ORDER BY p.id")
+    List<ProductoSimpleDTO> findResumenActivos(@Param("cursor") Long cursor, Limit limit);
+
+    @Query("SELECT new com.appmovil.msvc.productos.dtos.ProductoSimpleDTO(p.id, p.nombre, p.precio, p.imagenHash, " +
+            "CASE WHEN p.imagen IS NOT NULL AND p.imagen <> '' THEN true ELSE false END) " +
+            "FROM Producto p WHERE p.activo = true AND p.categoriaNorm = :categoria " +
+            "AND p.id > :cursor ORDER BY p.id")
+    List<ProductoSimpleDTO> findResumenByCategoria(@Param("categoria") String categoria,
+                                                   @Param("cursor") Long cursor, Limit limit);
+
+    @Query("SELECT p.imagen FROM Producto p WHERE p.id = :id")
+    Optional<String> findImagenById(@Param("id") Long id);
+
+    @Query("SELECT p.imagenHash FROM Producto p WHERE p.id = :id")
+    Optional<String> findImagenHashById(@Param("id") Long id);
+
+    // Filas que todavía guardan la imagen en línea (data URI o Base64), pendientes de MigracionImagenes
+    @Query("SELECT p.id FROM Producto p WHERE p.imagenHash IS NULL AND p.imagen IS NOT NULL " +
+            "AND p.imagen NOT LIKE 'http://%' AND p.imagen NOT LIKE 'https://%' AND p.id > :cursor ORDER BY p.id")
+    List<Long> findIdsConImagenEnLinea(@Param("cursor") Long cursor, Limit limit);
+
+    // Bloquea la fila mientras se mueve su imagen: una edición concurrente espera en vez de pisarse
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Producto p WHERE p.id = :id")
+    Optional<Producto> findParaMigrarImagen(@Param("id") Long id);
+
+    // Campos de texto para el índice de búsqueda en memoria (sin la imagen)
+    @Query("SELECT new com.appmovil.msvc.productos.dtos.ProductoTextoDTO(p.id, p.nombre, p.categoria, p.descripcion) " +
+            "FROM Producto p")
+    List<ProductoTextoDTO> findAllTextos();
+
+    int FETCH_SIZE_EXPORTACION = 500;
+
+    // Catálogo completo como cursor para la exportación: se leen FETCH_SIZE_EXPORTACION filas por viaje
+    // y las entidades se cargan en modo solo lectura (sin copia para dirty checking). Debe consumirse
+    // dentro de una transacción y cerrarse al terminar
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + FETCH_SIZE_EXPORTACION),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT p FROM Producto p ORDER BY p.id")
+    Stream<Producto> streamAll();
+
+    // Columnas necesarias para las facetas en memoria (carga inicial)
+    @Query("SELECT new com.appmovil.msvc.productos.dtos.ProductoFacetaDTO(p.id, p.categoria, p.precio, p.stock, p.activo) " +
+            "FROM Producto p")
+    List<ProductoFacetaDTO> findAllFacetas();
+
+    // Productos con punto de reposición para AlertasStock (carga inicial); recorre idx_productos_umbral_stock
+    @Query("SELECT new com.appmovil.msvc.productos.dtos.StockBajoDTO(p.id, p.nombre, p.categoria, p.stock, p.umbralStock) " +
+            "FROM Producto p WHERE p.umbralStock > 0")
+    List<StockBajoDTO> findConUmbralStock();
+
+    // Productos activos para el trie de sugerencias en memoria (carga inicial)
+    @Query("SELECT new com.appmovil.msvc.productos.dtos.SugerenciaDTO(p.id, p.nombre, p.rating, " +
+            "CASE WHEN p.stock > 0 THEN true ELSE false END) FROM Producto p WHERE p.activo = true")
+    List<SugerenciaDTO> findAllSugerencias();
+
+    // Cambio de stock atómico: la condición del WHERE impide dejarlo negativo aunque haya pedidos concurrentes.
+    // Devuelve 0 si el producto no existe o no alcanza el stock. Incrementa la versión para invalidar ediciones en curso.
+    // Todos los UPDATE directos reciben además la secuencia del cambio (SecuenciaCambios.siguiente())
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Producto p SET p.stock = p.stock + :delta, p.version = p.version + 1, p.secuencia = :secuencia " +
+            "WHERE p.id = :id AND p.stock + :delta >= 0")
+    int sumarStock(@Param("id") Long id, @Param("delta") Integer delta, @Param("secuencia") Long secuencia);
+
+    // Escritura en lote del modo stock caliente: el control de stock negativo ya se hizo en memoria
+    @Modifying
+    @Query("UPDATE Producto p SET p.stock = p.stock + :delta, p.version = p.version + 1, p.secuencia = :secuencia " +
+            "WHERE p.id = :id")
+    int aplicarDeltaStock(@Param("id") Long id, @Param("delta") Integer delta, @Param("secuencia") Long secuencia);
+
+    // Promedio de reseñas recibido de msvc-resenas; sube la versión igual que un cambio de stock
+    @Modifying
+    @Query("UPDATE Producto p SET p.rating = :rating, p.version = p.version + 1, p.secuencia = :secuencia " +
+            "WHERE p.id = :id")
+    int actualizarRating(@Param("id") Long id, @Param("rating") Double rating, @Param("secuencia") Long secuencia);
+
+    // Altas y modificaciones posteriores a desde y ya confirmadas (hasta), recorriendo idx_productos_secuencia
+    List<Producto> findBySecuenciaGreaterThanAndSecuenciaLessThanEqualOrderBySecuenciaAsc(Long desde, Long hasta, Limit limit);
+
+    @Query("SELECT MAX(p.secuencia) FROM Producto p")
+    Long maxSecuencia();
+
+    // Filas creadas antes de existir categoria_norm (ddl-auto=update agrega la columna vacía) y ratings
+    // nulos, que romperían el orden por rating de la consulta paginada
+    @Modifying
+    @Query("UPDATE Producto p SET p.categoriaNorm = LOWER(TRIM(p.categoria)) WHERE p.categoriaNorm IS NULL")
+    int normalizarCategoriasPendientes();
+
+    @Modifying
+    @Query("UPDATE Producto p SET p.rating = 0.0 WHERE p.rating IS NULL")
+    int completarRatingsNulos();
+
+    // Filas anteriores a la columna secuencia: se ordenan por ID, que ya es creciente
+    @Modifying
+    @Query("UPDATE Producto p SET p.secuencia = p.id WHERE p.secuencia IS NULL")
+    int asignarSecuenciasPendientes();
+
+    @Query("SELECT new com.appmovil.msvc.productos.dtos.StockDTO(p.id, p.categoria, p.stock) FROM Producto p WHERE p.id = :id")
+    Optional<StockDTO> findStockById(@Param("id") Long id);
+
+    @Query("SELECT new com.appmovil.msvc.productos.dtos.StockDTO(p.id, p.categoria, p.stock) FROM Producto p " +
+            "WHERE p.id IN :ids ORDER BY p.id")
+    List<StockDTO> findStockByIdIn(@Param("ids") Collection<Long> ids);
 }
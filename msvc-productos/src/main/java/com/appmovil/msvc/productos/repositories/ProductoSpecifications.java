@@ -0,0 +1,59 @@
+package com.appmovil.msvc.productos.repositories;
+
+import com.appmovil.msvc.productos.models.entities.Producto;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Filtros de la consulta paginada del catálogo. Solo se agregan las condiciones pedidas (sin "x IS NULL OR"),
+ * así cada combinación llega al motor con la forma que puede resolver sobre idx_productos_*.
+ */
+public final class ProductoSpecifications {
+
+    private ProductoSpecifications() {
+    }
+
+    /**
+     * Productos activos de la categoría (ya normalizada; null para todas) con precio entre
+     * precioMin y precioMax, ambos opcionales e inclusivos.
+     */
+    public static Specification<Producto> activos(String categoriaNorm, Integer precioMin, Integer precioMax) {
+        return (root, query, cb) -> {
+            List<Predicate> condiciones = new ArrayList<>();
+            if (categoriaNorm != null) {
+                condiciones.add(cb.equal(root.get("categoriaNorm"), categoriaNorm));
+            }
+            condiciones.add(cb.isTrue(root.get("activo")));
+            if (precioMin != null) {
+                condiciones.add(cb.greaterThanOrEqualTo(root.get("precio"), precioMin));
+            }
+            if (precioMax != null) {
+                condiciones.add(cb.lessThanOrEqualTo(root.get("precio"), precioMax));
+            }
+            return cb.and(condiciones.toArray(Predicate[]::new));
+        };
+    }
+
+    /**
+     * Keyset sobre (atributo, id): filas posteriores a la última entregada en el orden pedido.
+     * La condición redundante "atributo >= valor" le da al motor un rango sobre el índice, así la
+     * página siguiente arranca en la posición del cursor en lugar de filtrar desde el inicio.
+     */
+    public static <V extends Comparable<? super V>> Specification<Producto> despuesDe(
+            String atributo, V valor, Long id, boolean descendente) {
+        return (root, query, cb) -> {
+            Path<V> columna = root.get(atributo);
+            Path<Long> columnaId = root.get("id");
+            if (descendente) {
+                return cb.and(cb.lessThanOrEqualTo(columna, valor),
+                        cb.or(cb.lessThan(columna, valor), cb.lessThan(columnaId, id)));
+            }
+            return cb.and(cb.greaterThanOrEqualTo(columna, valor),
+                    cb.or(cb.greaterThan(columna, valor), cb.greaterThan(columnaId, id)));
+        };
+    }
+}
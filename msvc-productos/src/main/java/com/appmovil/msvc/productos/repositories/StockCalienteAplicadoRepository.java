@@ -0,0 +1,9 @@
+package com.appmovil.msvc.productos.repositories;
+
+import com.appmovil.msvc.productos.models.entities.StockCalienteAplicado;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StockCalienteAplicadoRepository extends JpaRepository<StockCalienteAplicado, Integer> {
+}
@@ -0,0 +1,269 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.dtos.StockBajoDTO;
+import com.appmovil.msvc.productos.events.ProductoModificadoEvent;
+import com.appmovil.msvc.productos.events.ProductosImportadosEvent;
+import com.appmovil.msvc.productos.events.StockActualizadoEvent;
+import com.appmovil.msvc.productos.events.StockBajoEvent;
+import com.appmovil.msvc.productos.models.entities.Producto;
+import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Productos cuyo stock está por debajo de su umbralStock (punto de reposición).
+ * Se cargan una vez con las filas que tienen umbral y luego se mantienen con los eventos de
+ * ProductoServiceImpl, así GET /stock-bajo no recorre la tabla. Cada vez que un cambio de stock
+ * cruza el umbral se publica un StockBajoEvent y se envía a los suscriptores de GET /stock-bajo/alertas (SSE).
+ * <p>
+ * El cruce se evalúa contra el último estado conocido del producto y no contra el stock anterior del
+ * evento: dos cambios confirmados casi a la vez pueden llegar en otro orden, pero el conjunto queda
+ * con el stock del último y nunca informa dos veces seguidas el mismo sentido.
+ */
+@Component
+@Slf4j
+public class AlertasStock extends VistaCatalogo<List<StockBajoDTO>, StockBajoEvent> {
+
+    public static final String EVENTO_ESTADO = "estado";
+    public static final String EVENTO_BAJO = "stock-bajo";
+    public static final String EVENTO_REPUESTO = "stock-repuesto";
+
+    // Una conexión SSE se cierra a los 30 minutos; EventSource reconecta solo y recibe de nuevo el estado
+    @Value("${productos.alertas-stock.sse-timeout-ms:1800000}")
+    private long timeoutSseMs;
+
+    // Comentario periódico para que los proxies no corten la conexión mientras no hay alertas
+    @Value("${productos.alertas-stock.heartbeat-ms:30000}")
+    private long heartbeatMs;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private StockCaliente stockCaliente;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Productos con umbral > 0
+    private Map<Long, Vigilado> vigilados = new HashMap<>();
+
+    // IDs de los vigilados que están por debajo del umbral, en orden
+    private SortedSet<Long> bajos = new TreeSet<>();
+
+    private final List<SseEmitter> suscriptores = new CopyOnWriteArrayList<>();
+    private final AtomicLong ultimaAlerta = new AtomicLong();
+
+    // Un solo hilo escribe en las conexiones SSE: un cliente lento no demora el commit que originó la alerta
+    private ScheduledExecutorService envios;
+
+    @PostConstruct
+    public void iniciar() {
+        envios = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "alertas-stock");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        if (heartbeatMs > 0) {
+            envios.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        envios.shutdownNow();
+        suscriptores.forEach(SseEmitter::complete);
+        suscriptores.clear();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlIniciar() {
+        reconstruir();
+    }
+
+    public void reconstruir() {
+        List<StockBajoDTO> filas = recargar();
+        log.info("Alertas de stock cargadas: {} productos con umbral, {} por debajo", filas.size(), bajos.size());
+    }
+
+    @TransactionalEventListener
+    public void onProductoModificado(ProductoModificadoEvent event) {
+        registrar(List.of(event));
+    }
+
+    @TransactionalEventListener
+    public void onProductosImportados(ProductosImportadosEvent event) {
+        registrar(event.comoAltas());
+    }
+
+    @TransactionalEventListener
+    public void onStockActualizado(StockActualizadoEvent event) {
+        registrar(List.of(event));
+    }
+
+    public List<StockBajoDTO> stockBajo() {
+        if (!isListo()) {
+            reconstruir();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<StockBajoDTO> resultado = new ArrayList<>(bajos.size());
+            for (Long id : bajos) {
+                resultado.add(vigilados.get(id).aDTO());
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Nueva conexión SSE. El primer evento ("estado") trae los productos que ya están por debajo del
+     * umbral; después llega un "stock-bajo" o "stock-repuesto" por cada cruce.
+     */
+    public SseEmitter suscribir() {
+        SseEmitter emitter = new SseEmitter(timeoutSseMs);
+        emitter.onCompletion(() -> suscriptores.remove(emitter));
+        emitter.onTimeout(() -> suscriptores.remove(emitter));
+        emitter.onError(ex -> suscriptores.remove(emitter));
+        // Se registra antes de leer el estado: un cruce que llega en el medio se envía igual
+        suscriptores.add(emitter);
+        try {
+            emitter.send(SseEmitter.event().name(EVENTO_ESTADO).data(stockBajo(), MediaType.APPLICATION_JSON));
+        } catch (IOException ex) {
+            suscriptores.remove(emitter);
+            emitter.completeWithError(ex);
+        }
+        return emitter;
+    }
+
+    public int getSuscriptores() {
+        return suscriptores.size();
+    }
+
+    @Override
+    protected List<StockBajoDTO> leer() {
+        return productoRepository.findConUmbralStock();
+    }
+
+    @Override
+    protected void reemplazar(List<StockBajoDTO> filas) {
+        vigilados = new HashMap<>();
+        bajos = new TreeSet<>();
+        for (StockBajoDTO fila : filas) {
+            poner(new Vigilado(fila.getId(), fila.getNombre(), fila.getCategoria(), fila.getStock(), fila.getUmbralStock()));
+        }
+    }
+
+    @Override
+    protected void aplicar(Object event, List<StockBajoEvent> alertas) {
+        if (event instanceof ProductoModificadoEvent modificado) {
+            Vigilado actual = quitar(modificado.getIdProducto());
+            Producto producto = modificado.getProducto();
+            if (producto == null || producto.getUmbralStock() == null || producto.getUmbralStock() <= 0) {
+                return;
+            }
+            // En stock caliente la columna va detrás del contador en memoria: se conserva el último stock recibido
+            Integer stock = actual != null && stockCaliente.isCaliente(producto.getId()) ? actual.stock() : producto.getStock();
+            Vigilado nuevo = new Vigilado(producto.getId(), producto.getNombre(), producto.getCategoria(),
+                    stock, producto.getUmbralStock());
+            poner(nuevo);
+            // Un umbral recién asignado por encima del stock también es un cruce
+            if (nuevo.bajo() != (actual != null && actual.bajo())) {
+                alertas.add(new StockBajoEvent(nuevo.aDTO(), nuevo.bajo()));
+            }
+        } else if (event instanceof StockActualizadoEvent stock) {
+            Vigilado actual = vigilados.get(stock.getIdProducto());
+            if (actual == null) {
+                return;
+            }
+            Vigilado nuevo = new Vigilado(actual.id(), actual.nombre(), actual.categoria(), stock.getStock(), actual.umbral());
+            poner(nuevo);
+            if (nuevo.bajo() != actual.bajo()) {
+                alertas.add(new StockBajoEvent(nuevo.aDTO(), nuevo.bajo()));
+            }
+        }
+    }
+
+    private void poner(Vigilado vigilado) {
+        vigilados.put(vigilado.id(), vigilado);
+        if (vigilado.bajo()) {
+            bajos.add(vigilado.id());
+        } else {
+            bajos.remove(vigilado.id());
+        }
+    }
+
+    private Vigilado quitar(Long id) {
+        bajos.remove(id);
+        return vigilados.remove(id);
+    }
+
+    @Override
+    protected void publicar(List<StockBajoEvent> alertas) {
+        for (StockBajoEvent alerta : alertas) {
+            log.info("Producto {} {} (stock {}, umbral {})", alerta.getProducto().getId(),
+                    alerta.isBajo() ? "por debajo del umbral de stock" : "repuesto",
+                    alerta.getProducto().getStock(), alerta.getProducto().getUmbralStock());
+            eventPublisher.publishEvent(alerta);
+        }
+        if (!suscriptores.isEmpty()) {
+            envios.execute(() -> alertas.forEach(this::enviar));
+        }
+    }
+
+    private void enviar(StockBajoEvent alerta) {
+        String id = String.valueOf(ultimaAlerta.incrementAndGet());
+        for (SseEmitter emitter : suscriptores) {
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(id)
+                        .name(alerta.isBajo() ? EVENTO_BAJO : EVENTO_REPUESTO)
+                        .data(alerta.getProducto(), MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException ex) {
+                // Cliente desconectado o conexión ya cerrada
+                suscriptores.remove(emitter);
+            }
+        }
+    }
+
+    private void heartbeat() {
+        for (SseEmitter emitter : suscriptores) {
+            try {
+                emitter.send(SseEmitter.event().comment("ping"));
+            } catch (IOException | IllegalStateException ex) {
+                suscriptores.remove(emitter);
+            }
+        }
+    }
+
+    private record Vigilado(Long id, String nombre, String categoria, Integer stock, Integer umbral) {
+
+        boolean bajo() {
+            return stock != null && stock < umbral;
+        }
+
+        StockBajoDTO aDTO() {
+            return new StockBajoDTO(id, nombre, categoria, stock, umbral);
+        }
+    }
+}
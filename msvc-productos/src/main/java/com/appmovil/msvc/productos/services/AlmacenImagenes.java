@@ -0,0 +1,205 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.exception.ProductoException;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Imágenes de productos en disco, direccionadas por contenido: cada archivo se llama como el SHA-256
+ * de sus bytes, así la misma imagen subida para varios productos se guarda una sola vez y un archivo
+ * nunca cambia (se puede servir con caché immutable). La tabla productos solo guarda el hash.
+ * <p>
+ * Los archivos se reparten en subdirectorios por los dos primeros caracteres del hash para no dejar
+ * cientos de miles de entradas en un mismo directorio. Un archivo cuyo producto se borra o cambia de
+ * imagen queda huérfano: otro producto puede compartirlo y no ocupa filas ni caché.
+ */
+@Component
+public class AlmacenImagenes {
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern BASE64 = Pattern.compile("[A-Za-z0-9+/]+={0,2}");
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+
+    // Bytes mínimos para reconocer la firma de una imagen en un Base64 plano
+    private static final int MINIMO_BASE64 = 8;
+
+    @Value("${productos.imagenes.directorio:./data/imagenes}")
+    private String directorio;
+
+    private Path raiz;
+
+    @PostConstruct
+    public void iniciar() throws IOException {
+        raiz = Path.of(directorio).toAbsolutePath().normalize();
+        Files.createDirectories(raiz);
+    }
+
+    /**
+     * Archivo listo para transmitir. tipoContenido se deduce de los primeros bytes.
+     */
+    public record ArchivoImagen(String hash, Path ruta, long tamanio, String tipoContenido) {
+    }
+
+    /**
+     * Bytes y tipo de una imagen escrita en línea (data URI o Base64).
+     */
+    public record Contenido(byte[] bytes, String tipoContenido) {
+    }
+
+    public static boolean esUrl(String imagen) {
+        return imagen.startsWith("http://") || imagen.startsWith("https://");
+    }
+
+    /**
+     * Imagen escrita en la propia columna: un data URI, o un Base64 plano cuyos bytes empiezan con la firma
+     * de un formato de imagen conocido. Cualquier otro texto (URL externa, nombre de archivo, una palabra
+     * como "camiseta" que también es Base64 válido) es una referencia y se guarda tal cual.
+     */
+    public static boolean enLinea(String imagen) {
+        if (imagen == null || imagen.isBlank() || esUrl(imagen)) {
+            return false;
+        }
+        if (imagen.startsWith("data:")) {
+            return true;
+        }
+        String base64 = ESPACIOS.matcher(imagen).replaceAll("");
+        if (base64.length() % 4 != 0 || !BASE64.matcher(base64).matches()) {
+            return false;
+        }
+        byte[] bytes = Base64.getDecoder().decode(base64);
+        return bytes.length >= MINIMO_BASE64
+                && !"application/octet-stream".equals(tipoContenido(bytes, Math.min(bytes.length, 12)));
+    }
+
+    /**
+     * Guarda la imagen recibida en un alta, edición o importación y devuelve su hash.
+     * Devuelve null si el valor no es una imagen en línea (ver {@link #enLinea(String)}).
+     */
+    public String externalizar(String imagen) {
+        if (!enLinea(imagen)) {
+            return null;
+        }
+        return guardar(decodificar(imagen).bytes());
+    }
+
+    public String guardar(byte[] contenido) {
+        String hash = hash(contenido);
+        Path destino = ruta(hash);
+        if (Files.exists(destino)) {
+            return hash;
+        }
+        try {
+            Files.createDirectories(destino.getParent());
+            // Se escribe a un temporal y se mueve: un lector nunca ve un archivo a medias.
+            // Dos escrituras simultáneas del mismo hash dejan los mismos bytes
+            Path temporal = Files.createTempFile(destino.getParent(), hash, ".tmp");
+            try {
+                Files.write(temporal, contenido);
+                Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporal);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("No se pudo guardar la imagen " + hash, ex);
+        }
+        return hash;
+    }
+
+    public boolean existe(String hash) {
+        return hash != null && HASH.matcher(hash).matches() && Files.exists(ruta(hash));
+    }
+
+    public ArchivoImagen abrir(String hash) {
+        if (hash == null || !HASH.matcher(hash).matches()) {
+            throw new ProductoException("Hash de imagen inválido");
+        }
+        Path ruta = ruta(hash);
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            ByteBuffer cabecera = ByteBuffer.allocate(12);
+            canal.read(cabecera, 0);
+            return new ArchivoImagen(hash, ruta, canal.size(), tipoContenido(cabecera.array(), cabecera.position()));
+        } catch (IOException ex) {
+            throw new ProductoException("La imagen " + hash + " no existe");
+        }
+    }
+
+    /**
+     * Decodifica el formato que acepta la columna imagen: data URI o Base64 plano.
+     */
+    public static Contenido decodificar(String imagen) {
+        String tipoContenido = "application/octet-stream";
+        String base64 = imagen;
+        if (imagen.startsWith("data:")) {
+            int coma = imagen.indexOf(',');
+            if (coma < 0) {
+                throw new ProductoException("La imagen no tiene un formato válido");
+            }
+            String cabecera = imagen.substring("data:".length(), coma);
+            int separador = cabecera.indexOf(';');
+            tipoContenido = separador >= 0 ? cabecera.substring(0, separador) : cabecera;
+            base64 = imagen.substring(coma + 1);
+        }
+
+        byte[] bytes;
+        try {
+            bytes = Base64.getMimeDecoder().decode(base64);
+        } catch (IllegalArgumentException ex) {
+            throw new ProductoException("La imagen no tiene un formato válido");
+        }
+        // El decodificador MIME descarta los caracteres ajenos a Base64: un valor sin ninguno válido queda vacío
+        if (bytes.length == 0) {
+            throw new ProductoException("La imagen no tiene un formato válido");
+        }
+        return new Contenido(bytes, tipoContenido);
+    }
+
+    private Path ruta(String hash) {
+        return raiz.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static String hash(byte[] contenido) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(contenido));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // Firmas de los formatos habituales; el resto se sirve como binario genérico
+    static String tipoContenido(byte[] cabecera, int largo) {
+        if (largo >= 8 && (cabecera[0] & 0xFF) == 0x89 && cabecera[1] == 'P' && cabecera[2] == 'N' && cabecera[3] == 'G') {
+            return "image/png";
+        }
+        if (largo >= 3 && (cabecera[0] & 0xFF) == 0xFF && (cabecera[1] & 0xFF) == 0xD8 && (cabecera[2] & 0xFF) == 0xFF) {
+            return "image/jpeg";
+        }
+        if (largo >= 6 && cabecera[0] == 'G' && cabecera[1] == 'I' && cabecera[2] == 'F' && cabecera[3] == '8') {
+            return "image/gif";
+        }
+        if (largo >= 12 && cabecera[0] == 'R' && cabecera[1] == 'I' && cabecera[2] == 'F' && cabecera[3] == 'F'
+                && cabecera[8] == 'W' && cabecera[9] == 'E' && cabecera[10] == 'B' && cabecera[11] == 'P') {
+            return "image/webp";
+        }
+        String inicio = new String(cabecera, 0, largo, StandardCharsets.US_ASCII).stripLeading();
+        if (inicio.startsWith("<svg") || inicio.startsWith("<?xml")) {
+            return "image/svg+xml";
+        }
+        return "application/octet-stream";
+    }
+}
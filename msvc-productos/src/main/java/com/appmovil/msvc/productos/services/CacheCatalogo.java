@@ -0,0 +1,136 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.config.CacheConfig;
+import com.appmovil.msvc.productos.models.entities.Producto;
+import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Lecturas cacheadas del catálogo: el detalle por ID y los listados. Cada entrada se guarda con la
+ * versión de VersionCatalogo leída antes de consultar la base de datos y solo se usa si ningún cambio
+ * la invalidó desde esa versión. Una consulta lenta que leyó el estado anterior a un commit puede
+ * guardar su resultado después de la invalidación, pero ese resultado ya no se entrega.
+ *
+ * Los listados guardan solo los IDs y se arman con las entradas por producto: un cambio de stock o de
+ * rating invalida la entrada de ese producto y los listados que lo contienen siguen en caché.
+ */
+@Component
+public class CacheCatalogo {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private VersionCatalogo versionCatalogo;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    public Producto producto(Long id, Supplier<Producto> consulta) {
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCTOS);
+        Producto cacheado = productoVigente(cache, id);
+        if (cacheado != null) {
+            return cacheado;
+        }
+
+        long version = versionCatalogo.getVersion();
+        Producto producto = consulta.get();
+        guardar(cache, id, new Entrada<>(version, producto));
+        return producto;
+    }
+
+    /**
+     * Listado cacheado bajo clave. pertenece indica si un producto sigue correspondiendo al listado: si
+     * alguno de los armados desde la caché ya no corresponde, se descarta la entrada y se consulta.
+     */
+    public List<Producto> listado(String nombreCache, Object clave, Supplier<List<Producto>> consulta,
+                                  Predicate<Producto> pertenece) {
+        Cache cache = cacheManager.getCache(nombreCache);
+        Entrada<List<Long>> cacheada = leer(cache, clave);
+        if (cacheada != null && versionCatalogo.listadosVigentes(cacheada.version())) {
+            List<Producto> armado = armar(cacheada.valor(), pertenece);
+            if (armado != null) {
+                return armado;
+            }
+        }
+
+        long version = versionCatalogo.getVersion();
+        List<Producto> productos = consulta.get();
+        Cache cacheProductos = cacheManager.getCache(CacheConfig.PRODUCTOS);
+        List<Long> ids = new ArrayList<>(productos.size());
+        for (Producto producto : productos) {
+            ids.add(producto.getId());
+            guardar(cacheProductos, producto.getId(), new Entrada<>(version, producto));
+        }
+        guardar(cache, clave, new Entrada<>(version, List.copyOf(ids)));
+        return productos;
+    }
+
+    // Arma el listado con las entradas vigentes y trae las que faltan en una sola consulta IN (...).
+    // Devuelve null si algún producto se eliminó o dejó de pertenecer al listado
+    private List<Producto> armar(List<Long> ids, Predicate<Producto> pertenece) {
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCTOS);
+        Map<Long, Producto> encontrados = new HashMap<>(ids.size() * 2);
+        List<Long> faltantes = new ArrayList<>();
+        for (Long id : ids) {
+            Producto producto = productoVigente(cache, id);
+            if (producto != null) {
+                encontrados.put(id, producto);
+            } else {
+                faltantes.add(id);
+            }
+        }
+
+        if (!faltantes.isEmpty()) {
+            long version = versionCatalogo.getVersion();
+            for (Producto producto : productoRepository.findAllById(faltantes)) {
+                encontrados.put(producto.getId(), producto);
+                guardar(cache, producto.getId(), new Entrada<>(version, producto));
+            }
+        }
+
+        List<Producto> productos = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Producto producto = encontrados.get(id);
+            if (producto == null || !pertenece.test(producto)) {
+                return null;
+            }
+            productos.add(producto);
+        }
+        return productos;
+    }
+
+    private Producto productoVigente(Cache cache, Long id) {
+        Entrada<Producto> cacheada = leer(cache, id);
+        return cacheada != null && versionCatalogo.productoVigente(id, cacheada.version()) ? cacheada.valor() : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Entrada<T> leer(Cache cache, Object clave) {
+        if (cache == null) {
+            return null;
+        }
+        Cache.ValueWrapper valor = cache.get(clave);
+        return valor == null ? null : (Entrada<T>) valor.get();
+    }
+
+    private static void guardar(Cache cache, Object clave, Entrada<?> entrada) {
+        if (cache != null) {
+            cache.put(clave, entrada);
+        }
+    }
+
+    // Valor cacheado junto a la versión del catálogo leída antes de consultarlo
+    record Entrada<T>(long version, T valor) {
+    }
+}
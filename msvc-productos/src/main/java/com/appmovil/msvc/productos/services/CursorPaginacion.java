@@ -0,0 +1,115 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.dtos.PaginaDTO;
+import com.appmovil.msvc.productos.exception.ProductoException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Paginación por keyset sobre id_producto: el cursor es el último ID entregado,
+ * codificado en Base64 URL-safe para que el cliente lo trate como opaco.
+ * Las consultas ordenadas por otro atributo guardan además el orden y el valor de la última fila.
+ */
+public final class CursorPaginacion {
+
+    public static final int LIMIT_MAXIMO = 100;
+
+    private static final String PREFIJO = "id:";
+
+    private static final String PREFIJO_ORDEN = "k:";
+
+    // Última fila entregada en una consulta ordenada: valor del atributo de orden y su ID
+    public record Posicion(String valor, Long id) {
+    }
+
+    private CursorPaginacion() {
+    }
+
+    public static String codificar(Long ultimoId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIJO + ultimoId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Long decodificar(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!valor.startsWith(PREFIJO)) {
+                throw new ProductoException("Cursor de paginación inválido");
+            }
+            return Long.parseLong(valor.substring(PREFIJO.length()));
+        } catch (IllegalArgumentException ex) {
+            throw new ProductoException("Cursor de paginación inválido");
+        }
+    }
+
+    // Si el cursor lo emitió una consulta paginada solo por ID
+    public static boolean esPorId(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return false;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).startsWith(PREFIJO);
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    public static String codificar(String orden, Object valor, Long ultimoId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIJO_ORDEN + orden + ":" + valor + ":" + ultimoId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica el cursor de una consulta ordenada. Devuelve null para la primera página y rechaza
+     * cursores emitidos con otro orden: reutilizarlos saltearía o repetiría filas.
+     */
+    public static Posicion decodificar(String cursor, String orden) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String prefijo = PREFIJO_ORDEN + orden + ":";
+            int separador = valor.lastIndexOf(':');
+            if (!valor.startsWith(prefijo) || separador < prefijo.length()) {
+                throw new ProductoException("Cursor de paginación inválido para el orden '" + orden + "'");
+            }
+            return new Posicion(valor.substring(prefijo.length(), separador), Long.parseLong(valor.substring(separador + 1)));
+        } catch (IllegalArgumentException ex) {
+            throw new ProductoException("Cursor de paginación inválido");
+        }
+    }
+
+    public static int normalizarLimit(int limit) {
+        if (limit < 1) {
+            throw new ProductoException("El limit debe ser mayor a 0");
+        }
+        return Math.min(limit, LIMIT_MAXIMO);
+    }
+
+    /**
+     * Arma la página a partir de una consulta que pidió limit + 1 filas:
+     * la fila extra solo indica que existe una página siguiente.
+     */
+    public static <T> PaginaDTO<T> armarPagina(List<T> filas, int limit, Function<T, Long> id) {
+        return armarPaginaConCursor(filas, limit, fila -> codificar(id.apply(fila)));
+    }
+
+    // Igual que armarPagina, con el cursor de la última fila armado por quien consulta (consultas ordenadas)
+    public static <T> PaginaDTO<T> armarPaginaConCursor(List<T> filas, int limit, Function<T, String> cursor) {
+        boolean hayMas = filas.size() > limit;
+        List<T> items = hayMas ? filas.subList(0, limit) : filas;
+
+        return PaginaDTO.<T>builder()
+                .items(items)
+                .limit(limit)
+                .next(hayMas ? cursor.apply(items.get(limit - 1)) : null)
+                .build();
+    }
+}
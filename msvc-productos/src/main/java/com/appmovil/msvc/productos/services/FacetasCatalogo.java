@@ -0,0 +1,200 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.dtos.FacetaCategoriaDTO;
+import com.appmovil.msvc.productos.dtos.FacetasDTO;
+import com.appmovil.msvc.productos.dtos.ProductoFacetaDTO;
+import com.appmovil.msvc.productos.events.ProductoModificadoEvent;
+import com.appmovil.msvc.productos.events.ProductosImportadosEvent;
+import com.appmovil.msvc.productos.events.StockActualizadoEvent;
+import com.appmovil.msvc.productos.models.entities.Producto;
+import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+
+/**
+ * Facetas del catálogo por categoría (cantidad de productos activos, cuántos tienen stock y rango de precios).
+ * Se cargan una vez desde la base de datos y luego se mantienen con los eventos de ProductoServiceImpl,
+ * así GET /facetas no agrega sobre la tabla en cada pedido.
+ */
+@Component
+@Slf4j
+public class FacetasCatalogo extends VistaCatalogo<List<ProductoFacetaDTO>, Void> {
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    private Map<Long, Entrada> productos = new HashMap<>();
+
+    // categoría en minúsculas -> agregados; ordenado para devolver las categorías alfabéticamente
+    private Map<String, Faceta> categorias = new TreeMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlIniciar() {
+        reconstruir();
+    }
+
+    public void reconstruir() {
+        List<ProductoFacetaDTO> filas = recargar();
+        log.info("Facetas del catálogo cargadas: {} productos, {} categorías", filas.size(), categorias.size());
+    }
+
+    @TransactionalEventListener
+    public void onProductoModificado(ProductoModificadoEvent event) {
+        registrar(List.of(event));
+    }
+
+    @TransactionalEventListener
+    public void onProductosImportados(ProductosImportadosEvent event) {
+        registrar(event.comoAltas());
+    }
+
+    @TransactionalEventListener
+    public void onStockActualizado(StockActualizadoEvent event) {
+        registrar(List.of(event));
+    }
+
+    public FacetasDTO facetas() {
+        if (!isListo()) {
+            reconstruir();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<FacetaCategoriaDTO> porCategoria = new ArrayList<>(categorias.size());
+            int total = 0;
+            int enStock = 0;
+            Integer precioMin = null;
+            Integer precioMax = null;
+            for (Faceta faceta : categorias.values()) {
+                FacetaCategoriaDTO dto = faceta.aDTO();
+                porCategoria.add(dto);
+                total += dto.getProductos();
+                enStock += dto.getEnStock();
+                if (dto.getPrecioMin() != null) {
+                    precioMin = precioMin == null ? dto.getPrecioMin() : Math.min(precioMin, dto.getPrecioMin());
+                    precioMax = precioMax == null ? dto.getPrecioMax() : Math.max(precioMax, dto.getPrecioMax());
+                }
+            }
+
+            return FacetasDTO.builder()
+                    .productos(total)
+                    .enStock(enStock)
+                    .precioMin(precioMin)
+                    .precioMax(precioMax)
+                    .categorias(porCategoria)
+                    .build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected List<ProductoFacetaDTO> leer() {
+        return productoRepository.findAllFacetas();
+    }
+
+    @Override
+    protected void reemplazar(List<ProductoFacetaDTO> filas) {
+        productos = new HashMap<>();
+        categorias = new TreeMap<>();
+        for (ProductoFacetaDTO fila : filas) {
+            agregar(new Entrada(fila.getId(), fila.getCategoria(), fila.getPrecio(), fila.getStock(),
+                    Boolean.TRUE.equals(fila.getActivo())));
+        }
+    }
+
+    @Override
+    protected void aplicar(Object event, List<Void> avisos) {
+        if (event instanceof ProductoModificadoEvent modificado) {
+            quitar(modificado.getIdProducto());
+            Producto producto = modificado.getProducto();
+            if (producto != null) {
+                agregar(new Entrada(producto.getId(), producto.getCategoria(), producto.getPrecio(), producto.getStock(),
+                        Boolean.TRUE.equals(producto.getActivo())));
+            }
+        } else if (event instanceof StockActualizadoEvent stock) {
+            Entrada actual = quitar(stock.getIdProducto());
+            if (actual != null) {
+                agregar(new Entrada(actual.id(), actual.categoria(), actual.precio(), stock.getStock(), actual.activo()));
+            }
+        }
+    }
+
+    private void agregar(Entrada entrada) {
+        productos.put(entrada.id(), entrada);
+        if (entrada.activo() && entrada.categoria() != null) {
+            categorias.computeIfAbsent(clave(entrada.categoria()), clave -> new Faceta()).agregar(entrada);
+        }
+    }
+
+    private Entrada quitar(Long id) {
+        Entrada entrada = productos.remove(id);
+        if (entrada != null && entrada.activo() && entrada.categoria() != null) {
+            String clave = clave(entrada.categoria());
+            Faceta faceta = categorias.get(clave);
+            faceta.quitar(entrada);
+            if (faceta.productos == 0) {
+                categorias.remove(clave);
+            }
+        }
+        return entrada;
+    }
+
+    private static String clave(String categoria) {
+        return categoria.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record Entrada(Long id, String categoria, Integer precio, Integer stock, boolean activo) {
+
+        boolean conStock() {
+            return stock != null && stock > 0;
+        }
+    }
+
+    private static final class Faceta {
+        private String nombre;
+        private int productos;
+        private int enStock;
+
+        // precio -> cantidad de productos con ese precio: el mínimo y el máximo siguen siendo
+        // correctos cuando se quita el producto que los definía
+        private final TreeMap<Integer, Integer> precios = new TreeMap<>();
+
+        void agregar(Entrada entrada) {
+            nombre = entrada.categoria();
+            productos++;
+            if (entrada.conStock()) {
+                enStock++;
+            }
+            if (entrada.precio() != null) {
+                precios.merge(entrada.precio(), 1, Integer::sum);
+            }
+        }
+
+        void quitar(Entrada entrada) {
+            productos--;
+            if (entrada.conStock()) {
+                enStock--;
+            }
+            if (entrada.precio() != null) {
+                precios.computeIfPresent(entrada.precio(), (precio, cantidad) -> cantidad == 1 ? null : cantidad - 1);
+            }
+        }
+
+        FacetaCategoriaDTO aDTO() {
+            return FacetaCategoriaDTO.builder()
+                    .categoria(nombre)
+                    .productos(productos)
+                    .enStock(enStock)
+                    .precioMin(precios.isEmpty() ? null : precios.firstKey())
+                    .precioMax(precios.isEmpty() ? null : precios.lastKey())
+                    .build();
+        }
+    }
+}
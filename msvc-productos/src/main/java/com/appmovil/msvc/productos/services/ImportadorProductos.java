@@ -0,0 +1,372 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.config.CacheConfig;
+import com.appmovil.msvc.productos.dtos.ErrorFilaDTO;
+import com.appmovil.msvc.productos.dtos.ProductoLoadDTO;
+import com.appmovil.msvc.productos.dtos.ResultadoImportacionDTO;
+import com.appmovil.msvc.productos.events.ProductosImportadosEvent;
+import com.appmovil.msvc.productos.exception.ProductoException;
+import com.appmovil.msvc.productos.models.entities.Producto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Carga masiva de productos desde NDJSON o CSV. El archivo se lee fila a fila (nunca completo en memoria),
+ * cada fila se valida y las válidas se insertan con JDBC en lotes de tamanio-lote, un lote por transacción.
+ * Cada lote insertado publica un ProductosImportadosEvent con todos sus productos (índice, facetas y versión).
+ */
+@Component
+@Slf4j
+public class ImportadorProductos {
+
+    private static final String INSERT =
+            "INSERT INTO productos (nombre, precio, categoria, categoria_norm, imagen, descripcion, stock, activo, rating, version, secuencia, imagen_hash) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final List<String> COLUMNAS = List.of("nombre", "precio", "categoria", "imagen", "descripcion", "stock");
+
+    @Value("${productos.importacion.tamanio-lote:500}")
+    private int tamanioLote;
+
+    @Value("${productos.importacion.max-errores:1000}")
+    private int maxErrores;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private SecuenciaCambios secuenciaCambios;
+
+    @Autowired
+    private AlmacenImagenes almacenImagenes;
+
+    public ResultadoImportacionDTO importar(InputStream entrada, boolean csv) {
+        long inicio = System.nanoTime();
+        Importacion importacion = new Importacion();
+
+        try (BufferedReader lector = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8))) {
+            if (csv) {
+                leerCsv(lector, importacion);
+            } else {
+                leerNdjson(lector, importacion);
+            }
+        } catch (IOException ex) {
+            throw new ProductoException("Error al leer el archivo de importación: " + ex.getMessage());
+        }
+        importacion.insertarLote();
+
+        long duracionNs = System.nanoTime() - inicio;
+        log.info("Importación terminada: {} filas, {} insertadas, {} con error en {} ms",
+                importacion.filas, importacion.insertadas, importacion.conError, duracionNs / 1_000_000);
+        return ResultadoImportacionDTO.builder()
+                .filas(importacion.filas)
+                .insertadas(importacion.insertadas)
+                .conError(importacion.conError)
+                .errores(importacion.errores)
+                .duracionMs(duracionNs / 1_000_000)
+                .filasPorSegundo(duracionNs == 0 ? 0 : importacion.filas * 1_000_000_000L / duracionNs)
+                .build();
+    }
+
+    private void leerNdjson(BufferedReader lector, Importacion importacion) throws IOException {
+        ObjectReader lectorJson = objectMapper.readerFor(ProductoLoadDTO.class);
+        long numero = 0;
+        String linea;
+        while ((linea = lector.readLine()) != null) {
+            numero++;
+            if (linea.isBlank()) {
+                continue;
+            }
+            try {
+                importacion.procesar(numero, lectorJson.readValue(linea));
+            } catch (JsonProcessingException ex) {
+                importacion.error(numero, "JSON inválido: " + ex.getOriginalMessage());
+            }
+        }
+    }
+
+    private void leerCsv(Reader lector, Importacion importacion) throws IOException {
+        List<String> encabezado = leerRegistroCsv(lector);
+        if (encabezado == null) {
+            return;
+        }
+
+        // Posición de cada columna conocida según el encabezado; las columnas desconocidas se ignoran
+        Map<String, Integer> posiciones = new HashMap<>();
+        for (int i = 0; i < encabezado.size(); i++) {
+            String columna = encabezado.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+            if (COLUMNAS.contains(columna)) {
+                posiciones.put(columna, i);
+            }
+        }
+
+        long numero = 0;
+        List<String> registro;
+        while ((registro = leerRegistroCsv(lector)) != null) {
+            numero++;
+            if (registro.size() == 1 && registro.get(0).isBlank()) {
+                continue;
+            }
+            try {
+                ProductoLoadDTO dto = new ProductoLoadDTO(
+                        texto(registro, posiciones.get("nombre")),
+                        entero(registro, posiciones.get("precio"), "precio"),
+                        texto(registro, posiciones.get("categoria")),
+                        texto(registro, posiciones.get("imagen")),
+                        texto(registro, posiciones.get("descripcion")),
+                        entero(registro, posiciones.get("stock"), "stock"));
+                importacion.procesar(numero, dto);
+            } catch (NumberFormatException ex) {
+                importacion.error(numero, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Lee un registro CSV (RFC 4180): campos separados por coma, entre comillas si contienen comas,
+     * comillas ("" escapa una comilla) o saltos de línea. Devuelve null al llegar al final.
+     */
+    static List<String> leerRegistroCsv(Reader lector) throws IOException {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        boolean leyoAlgo = false;
+
+        int c;
+        while ((c = lector.read()) != -1) {
+            leyoAlgo = true;
+            char caracter = (char) c;
+            if (entreComillas) {
+                if (caracter != '"') {
+                    campo.append(caracter);
+                    continue;
+                }
+                lector.mark(1);
+                int siguiente = lector.read();
+                if (siguiente == '"') {
+                    campo.append('"');
+                } else {
+                    entreComillas = false;
+                    if (siguiente != -1) {
+                        lector.reset();
+                    }
+                }
+            } else if (caracter == '"') {
+                entreComillas = true;
+            } else if (caracter == ',') {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else if (caracter == '\n') {
+                break;
+            } else if (caracter != '\r') {
+                campo.append(caracter);
+            }
+        }
+
+        if (!leyoAlgo) {
+            return null;
+        }
+        campos.add(campo.toString());
+        return campos;
+    }
+
+    private static String texto(List<String> registro, Integer posicion) {
+        if (posicion == null || posicion >= registro.size()) {
+            return null;
+        }
+        String valor = registro.get(posicion).trim();
+        return valor.isEmpty() ? null : valor;
+    }
+
+    private static Integer entero(List<String> registro, Integer posicion, String columna) {
+        String valor = texto(registro, posicion);
+        if (valor == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(valor);
+        } catch (NumberFormatException ex) {
+            throw new NumberFormatException("El campo " + columna + " debe ser un número entero: '" + valor + "'");
+        }
+    }
+
+    // Estado de una importación en curso: contadores, reporte de errores y el lote pendiente de insertar
+    private final class Importacion {
+        private long filas;
+        private long insertadas;
+        private long conError;
+        private final List<ErrorFilaDTO> errores = new ArrayList<>();
+        private final List<Fila> lote = new ArrayList<>();
+
+        void procesar(long numero, ProductoLoadDTO dto) {
+            Set<ConstraintViolation<ProductoLoadDTO>> violaciones = validator.validate(dto);
+            if (!violaciones.isEmpty()) {
+                error(numero, violaciones.stream()
+                        .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining("; ")));
+                return;
+            }
+
+            // La imagen en línea va al almacén en disco; la fila guarda el hash
+            String imagenHash;
+            try {
+                imagenHash = almacenImagenes.externalizar(dto.getImagen());
+            } catch (ProductoException ex) {
+                error(numero, ex.getMessage());
+                return;
+            }
+
+            filas++;
+            lote.add(new Fila(numero, dto, imagenHash));
+            if (lote.size() >= tamanioLote) {
+                insertarLote();
+            }
+        }
+
+        void error(long numero, String mensaje) {
+            filas++;
+            conError++;
+            if (errores.size() < maxErrores) {
+                errores.add(new ErrorFilaDTO(numero, mensaje));
+            }
+        }
+
+        void insertarLote() {
+            if (lote.isEmpty()) {
+                return;
+            }
+            try {
+                insertadas += insertar(lote);
+            } catch (DataAccessException ex) {
+                // Se reintenta fila por fila para informar exactamente cuáles falló la base de datos
+                for (Fila fila : lote) {
+                    try {
+                        insertadas += insertar(List.of(fila));
+                    } catch (DataAccessException errorFila) {
+                        filas--;
+                        error(fila.numero(), "Error al insertar: "
+                                + NestedExceptionUtils.getMostSpecificCause(errorFila).getMessage());
+                    }
+                }
+            }
+            lote.clear();
+        }
+    }
+
+    private int insertar(List<Fila> filas) {
+        return new TransactionTemplate(transactionManager).execute(estado -> {
+            KeyHolder claves = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT, new String[]{"id_producto"}),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            Fila fila = filas.get(i);
+                            ProductoLoadDTO dto = fila.dto();
+                            ps.setString(1, dto.getNombre());
+                            ps.setInt(2, dto.getPrecio());
+                            ps.setString(3, dto.getCategoria());
+                            ps.setString(4, Producto.normalizarCategoria(dto.getCategoria()));
+                            ps.setString(5, fila.imagenHash() == null ? dto.getImagen() : null);
+                            ps.setString(6, dto.getDescripcion());
+                            ps.setInt(7, dto.getStock());
+                            ps.setBoolean(8, true);
+                            ps.setDouble(9, 0.0);
+                            ps.setLong(10, 0L);
+                            ps.setLong(11, secuenciaCambios.siguiente());
+                            ps.setString(12, fila.imagenHash());
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return filas.size();
+                        }
+                    }, claves);
+
+            // Un solo evento por lote: publicar uno por fila costaba más que el propio INSERT.
+            // La caché transaccional se limpia al hacer commit, igual que en un alta
+            List<Map<String, Object>> ids = claves.getKeyList();
+            List<Producto> productos = new ArrayList<>(filas.size());
+            for (int i = 0; i < filas.size(); i++) {
+                Long id = ((Number) ids.get(i).values().iterator().next()).longValue();
+                productos.add(aProducto(id, filas.get(i)));
+            }
+            eventPublisher.publishEvent(new ProductosImportadosEvent(productos));
+            limpiarCache(CacheConfig.PRODUCTOS_ACTIVOS);
+            limpiarCache(CacheConfig.PRODUCTOS_POR_CATEGORIA);
+            return filas.size();
+        });
+    }
+
+    private void limpiarCache(String nombre) {
+        Cache cache = cacheManager.getCache(nombre);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private static Producto aProducto(Long id, Fila fila) {
+        ProductoLoadDTO dto = fila.dto();
+        return Producto.builder()
+                .id(id)
+                .nombre(dto.getNombre())
+                .precio(dto.getPrecio())
+                .categoria(dto.getCategoria())
+                .categoriaNorm(Producto.normalizarCategoria(dto.getCategoria()))
+                .imagen(fila.imagenHash() == null ? dto.getImagen() : null)
+                .imagenHash(fila.imagenHash())
+                .descripcion(dto.getDescripcion())
+                .stock(dto.getStock())
+                .activo(true)
+                .rating(0.0)
+                .version(0L)
+                .build();
+    }
+
+    private record Fila(long numero, ProductoLoadDTO dto, String imagenHash) {
+    }
+}
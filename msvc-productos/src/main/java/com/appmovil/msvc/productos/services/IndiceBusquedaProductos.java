@@ -0,0 +1,290 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.dtos.EstadisticasIndiceDTO;
+import com.appmovil.msvc.productos.dtos.ProductoTextoDTO;
+import com.appmovil.msvc.productos.events.ProductoModificadoEvent;
+import com.appmovil.msvc.productos.events.ProductosImportadosEvent;
+import com.appmovil.msvc.productos.models.entities.Producto;
+import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido de trigramas en memoria sobre nombre, categoría y descripción.
+ * Reemplaza el LIKE '%x%' de buscarPorNombre: la búsqueda solo recorre las listas
+ * de los trigramas de la consulta y ordena por similitud (sin acentos ni mayúsculas).
+ */
+@Component
+@Slf4j
+public class IndiceBusquedaProductos extends VistaCatalogo<IndiceBusquedaProductos.Contenido, Void> {
+
+    private static final Pattern MARCAS_DIACRITICAS = Pattern.compile("\\p{M}+");
+    private static final Pattern NO_ALFANUMERICO = Pattern.compile("[^a-z0-9]+");
+
+    private static final int CAMPO_NOMBRE = 1;
+    private static final int CAMPO_CATEGORIA = 2;
+    private static final int CAMPO_DESCRIPCION = 4;
+
+    private static final double PESO_NOMBRE = 3;
+    private static final double PESO_CATEGORIA = 2;
+    private static final double PESO_DESCRIPCION = 1;
+
+    // Fracción mínima de trigramas de la consulta que debe contener algún campo del producto
+    private static final double SIMILITUD_MINIMA = 0.5;
+
+    // Más relevante primero; a igual puntaje, menor ID primero
+    private static final Comparator<Coincidencia> ORDEN_RELEVANCIA =
+            Comparator.comparingDouble(Coincidencia::puntaje).reversed().thenComparing(Coincidencia::id);
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // trigrama -> (idProducto -> máscara de campos donde aparece)
+    private Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    private Map<Long, Documento> documentos = new HashMap<>();
+
+    @PostConstruct
+    void registrarMetricas() {
+        Gauge.builder("productos.busqueda.documentos", this, indice -> indice.estadisticas().getDocumentos())
+                .description("Productos indexados para búsqueda")
+                .register(meterRegistry);
+        Gauge.builder("productos.busqueda.terminos", this, indice -> indice.estadisticas().getTerminos())
+                .description("Trigramas distintos en el índice de búsqueda")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlIniciar() {
+        reconstruir();
+    }
+
+    public synchronized EstadisticasIndiceDTO reconstruir() {
+        long inicio = System.currentTimeMillis();
+        recargar();
+
+        EstadisticasIndiceDTO estadisticas = estadisticas();
+        estadisticas.setDuracionMs(System.currentTimeMillis() - inicio);
+        log.info("Índice de búsqueda reconstruido: {} productos, {} trigramas en {} ms",
+                estadisticas.getDocumentos(), estadisticas.getTerminos(), estadisticas.getDuracionMs());
+        return estadisticas;
+    }
+
+    @TransactionalEventListener
+    public void onProductoModificado(ProductoModificadoEvent event) {
+        registrar(List.of(event));
+    }
+
+    @TransactionalEventListener
+    public void onProductosImportados(ProductosImportadosEvent event) {
+        registrar(event.comoAltas());
+    }
+
+    @Override
+    protected Contenido leer() {
+        Contenido contenido = new Contenido(new HashMap<>(), new HashMap<>());
+        for (ProductoTextoDTO texto : productoRepository.findAllTextos()) {
+            agregar(contenido.postings(), contenido.documentos(), texto);
+        }
+        return contenido;
+    }
+
+    @Override
+    protected void reemplazar(Contenido leido) {
+        postings = leido.postings();
+        documentos = leido.documentos();
+    }
+
+    /**
+     * Devuelve los IDs de los productos que coinciden, del más relevante al menos relevante.
+     */
+    public List<Long> buscar(String consulta, int maximo) {
+        return buscar(consulta, null, maximo).stream().map(Coincidencia::id).toList();
+    }
+
+    /**
+     * Coincidencias ordenadas por puntaje descendente y luego por ID, a partir de la siguiente a desde
+     * (null para empezar por la más relevante). Es el recorrido que pagina GET /buscar con cursor.
+     */
+    public List<Coincidencia> buscar(String consulta, Coincidencia desde, int maximo) {
+        String normalizada = normalizar(consulta);
+        if (normalizada.isEmpty()) {
+            return List.of();
+        }
+        Set<String> trigramasConsulta = trigramas(normalizada);
+
+        Map<Long, Acumulado> candidatos = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (String trigrama : trigramasConsulta) {
+                Map<Long, Integer> lista = postings.get(trigrama);
+                if (lista == null) {
+                    continue;
+                }
+                for (Map.Entry<Long, Integer> entrada : lista.entrySet()) {
+                    candidatos.computeIfAbsent(entrada.getKey(), id -> new Acumulado()).sumar(entrada.getValue());
+                }
+            }
+
+            int total = trigramasConsulta.size();
+            List<Coincidencia> resultados = new ArrayList<>();
+            for (Map.Entry<Long, Acumulado> candidato : candidatos.entrySet()) {
+                Acumulado acumulado = candidato.getValue();
+                if ((double) acumulado.mejorCobertura() / total < SIMILITUD_MINIMA) {
+                    continue;
+                }
+
+                // Puntaje del campo que mejor coincide, más un bono si el nombre contiene la consulta completa
+                double puntaje = acumulado.mejorPuntaje() / total;
+                String nombre = " " + documentos.get(candidato.getKey()).nombre + " ";
+                if (nombre.contains(" " + normalizada + " ")) {
+                    puntaje += 2;
+                } else if (nombre.contains(normalizada)) {
+                    puntaje += 1;
+                }
+                Coincidencia coincidencia = new Coincidencia(candidato.getKey(), puntaje);
+                if (desde == null || ORDEN_RELEVANCIA.compare(coincidencia, desde) > 0) {
+                    resultados.add(coincidencia);
+                }
+            }
+
+            return resultados.stream()
+                    .sorted(ORDEN_RELEVANCIA)
+                    .limit(maximo)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public EstadisticasIndiceDTO estadisticas() {
+        lock.readLock().lock();
+        try {
+            return EstadisticasIndiceDTO.builder()
+                    .documentos(documentos.size())
+                    .terminos(postings.size())
+                    .build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Minúsculas, sin tildes ni diéresis y solo letras/dígitos separados por un espacio
+    static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String sinAcentos = MARCAS_DIACRITICAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return NO_ALFANUMERICO.matcher(sinAcentos.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    static Set<String> trigramas(String normalizado) {
+        Set<String> trigramas = new HashSet<>();
+        if (normalizado.isEmpty()) {
+            return trigramas;
+        }
+        for (String palabra : normalizado.split(" ")) {
+            // Relleno al estilo pg_trgm para que los prefijos y palabras cortas también generen trigramas
+            String relleno = "  " + palabra + " ";
+            for (int i = 0; i + 3 <= relleno.length(); i++) {
+                trigramas.add(relleno.substring(i, i + 3));
+            }
+        }
+        return trigramas;
+    }
+
+    @Override
+    protected void aplicar(Object evento, List<Void> avisos) {
+        ProductoModificadoEvent event = (ProductoModificadoEvent) evento;
+        quitar(postings, documentos, event.getIdProducto());
+        if (!event.isEliminado()) {
+            Producto producto = event.getProducto();
+            agregar(postings, documentos, new ProductoTextoDTO(
+                    producto.getId(), producto.getNombre(), producto.getCategoria(), producto.getDescripcion()));
+        }
+    }
+
+    private static void agregar(Map<String, Map<Long, Integer>> postings, Map<Long, Documento> documentos,
+                                ProductoTextoDTO texto) {
+        Map<String, Integer> campos = new HashMap<>();
+        String nombre = normalizar(texto.getNombre());
+        marcar(campos, trigramas(nombre), CAMPO_NOMBRE);
+        marcar(campos, trigramas(normalizar(texto.getCategoria())), CAMPO_CATEGORIA);
+        marcar(campos, trigramas(normalizar(texto.getDescripcion())), CAMPO_DESCRIPCION);
+
+        for (Map.Entry<String, Integer> campo : campos.entrySet()) {
+            postings.computeIfAbsent(campo.getKey(), t -> new HashMap<>()).put(texto.getId(), campo.getValue());
+        }
+        documentos.put(texto.getId(), new Documento(nombre, campos.keySet()));
+    }
+
+    private static void quitar(Map<String, Map<Long, Integer>> postings, Map<Long, Documento> documentos, Long id) {
+        Documento anterior = documentos.remove(id);
+        if (anterior == null) {
+            return;
+        }
+        for (String trigrama : anterior.trigramas) {
+            Map<Long, Integer> lista = postings.get(trigrama);
+            if (lista != null) {
+                lista.remove(id);
+                if (lista.isEmpty()) {
+                    postings.remove(trigrama);
+                }
+            }
+        }
+    }
+
+    private static void marcar(Map<String, Integer> campos, Set<String> trigramas, int campo) {
+        for (String trigrama : trigramas) {
+            campos.merge(trigrama, campo, (actual, nuevo) -> actual | nuevo);
+        }
+    }
+
+    public record Coincidencia(Long id, double puntaje) {
+    }
+
+    record Contenido(Map<String, Map<Long, Integer>> postings, Map<Long, Documento> documentos) {
+    }
+
+    private record Documento(String nombre, Set<String> trigramas) {
+    }
+
+    private static final class Acumulado {
+        private int nombre;
+        private int categoria;
+        private int descripcion;
+
+        void sumar(int campos) {
+            if ((campos & CAMPO_NOMBRE) != 0) {
+                nombre++;
+            }
+            if ((campos & CAMPO_CATEGORIA) != 0) {
+                categoria++;
+            }
+            if ((campos & CAMPO_DESCRIPCION) != 0) {
+                descripcion++;
+            }
+        }
+
+        int mejorCobertura() {
+            return Math.max(nombre, Math.max(categoria, descripcion));
+        }
+
+        double mejorPuntaje() {
+            return Math.max(PESO_NOMBRE * nombre, Math.max(PESO_CATEGORIA * categoria, PESO_DESCRIPCION * descripcion));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.exception.ProductoException;
+import com.appmovil.msvc.productos.models.entities.Producto;
+import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mueve a AlmacenImagenes las imágenes que todavía están en línea en productos.imagen (data URI o Base64)
+ * y deja en la fila solo el hash. Corre en segundo plano al iniciar, en lotes con una transacción cada uno:
+ * si se interrumpe, el próximo arranque sigue con las filas pendientes. Cuando no quedan filas en línea
+ * solo cuesta la consulta inicial.
+ */
+@Component
+@Slf4j
+public class MigracionImagenes {
+
+    private static final int TAMANIO_LOTE = 50;
+
+    @Value("${productos.imagenes.migrar-al-iniciar:true}")
+    private boolean migrarAlIniciar;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private AlmacenImagenes almacenImagenes;
+
+    @Autowired
+    private SecuenciaCambios secuenciaCambios;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private VersionCatalogo versionCatalogo;
+
+    private TransactionTemplate transacciones;
+
+    @PostConstruct
+    public void iniciar() {
+        transacciones = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!migrarAlIniciar) {
+            return;
+        }
+        Thread hilo = new Thread(() -> {
+            try {
+                migrar();
+            } catch (RuntimeException ex) {
+                log.error("La migración de imágenes se interrumpió; se retomará en el próximo arranque", ex);
+            }
+        }, "migracion-imagenes");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Migra todas las filas pendientes y devuelve cuántas imágenes movió.
+     */
+    public int migrar() {
+        int migradas = 0;
+        long cursor = 0;
+        List<Long> ids;
+        while (!(ids = productoRepository.findIdsConImagenEnLinea(cursor, Limit.of(TAMANIO_LOTE))).isEmpty()) {
+            List<Long> lote = ids;
+            List<Long> movidas = transacciones.execute(estado -> migrarLote(lote));
+            if (!movidas.isEmpty()) {
+                // El JSON de los productos migrados cambia (imagen pasa a imagenHash) y con él la
+                // referencia a la imagen que otros servicios guardan como copia
+                versionCatalogo.incrementarCopias();
+                versionCatalogo.invalidarProductos(movidas);
+            }
+            migradas += movidas.size();
+            cursor = ids.get(ids.size() - 1);
+        }
+        if (migradas > 0) {
+            log.info("Migración de imágenes: {} imágenes movidas al almacén en disco", migradas);
+        }
+        return migradas;
+    }
+
+    // Cada fila se relee bloqueada: una edición que llegó después de la consulta de IDs ya dejó el valor nuevo
+    private List<Long> migrarLote(List<Long> ids) {
+        List<Long> movidas = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Producto producto = productoRepository.findParaMigrarImagen(id).orElse(null);
+            if (producto == null || producto.getImagenHash() != null) {
+                continue;
+            }
+            String hash;
+            try {
+                hash = almacenImagenes.externalizar(producto.getImagen());
+            } catch (ProductoException ex) {
+                log.warn("La imagen del producto {} no es un data URI válido; queda en la tabla", id);
+                continue;
+            }
+            // URL o referencia de texto: no es una imagen en línea y queda como está
+            if (hash == null) {
+                continue;
+            }
+            producto.setImagenHash(hash);
+            producto.setImagen(null);
+            producto.setSecuencia(secuenciaCambios.siguiente());
+            movidas.add(id);
+        }
+        return movidas;
+    }
+}
@@ -0,0 +1,40 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Ajustes de datos que ddl-auto=update no hace: al agregar una columna las filas existentes quedan en null.
+ * Se ejecutan al iniciar, antes que las cargas en memoria, y no hacen nada si no hay filas pendientes.
+ */
+@Component
+@Slf4j
+public class MigracionesCatalogo {
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private SecuenciaCambios secuenciaCambios;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional
+    public void migrar() {
+        int categorias = productoRepository.normalizarCategoriasPendientes();
+        int ratings = productoRepository.completarRatingsNulos();
+        int secuencias = productoRepository.asignarSecuenciasPendientes();
+        if (categorias > 0 || ratings > 0 || secuencias > 0) {
+            log.info("Migración del catálogo: {} categorías normalizadas, {} ratings nulos en 0, {} secuencias asignadas",
+                    categorias, ratings, secuencias);
+        }
+        secuenciaCambios.sincronizar();
+    }
+}
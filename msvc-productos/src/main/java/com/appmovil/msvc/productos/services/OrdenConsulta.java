@@ -0,0 +1,62 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.exception.ProductoException;
+import com.appmovil.msvc.productos.models.entities.Producto;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Órdenes aceptados por GET /consulta: el nombre del atributo, con "-" adelante para descendente.
+ * El desempate es siempre id_producto en la misma dirección, igual que en los índices.
+ */
+public enum OrdenConsulta {
+
+    PRECIO("precio", "precio", false),
+    PRECIO_DESC("-precio", "precio", true),
+    RATING("rating", "rating", false),
+    RATING_DESC("-rating", "rating", true);
+
+    private final String parametro;
+    private final String atributo;
+    private final boolean descendente;
+
+    OrdenConsulta(String parametro, String atributo, boolean descendente) {
+        this.parametro = parametro;
+        this.atributo = atributo;
+        this.descendente = descendente;
+    }
+
+    public static OrdenConsulta desde(String parametro) {
+        String valor = parametro == null || parametro.isBlank() ? PRECIO.parametro : parametro.trim();
+        return Arrays.stream(values())
+                .filter(orden -> orden.parametro.equalsIgnoreCase(valor))
+                .findFirst()
+                .orElseThrow(() -> new ProductoException("Orden inválido: '" + parametro + "'. Valores permitidos: "
+                        + Arrays.stream(values()).map(OrdenConsulta::getParametro).collect(Collectors.joining(", "))));
+    }
+
+    public String getParametro() {
+        return parametro;
+    }
+
+    public String getAtributo() {
+        return atributo;
+    }
+
+    public boolean isDescendente() {
+        return descendente;
+    }
+
+    public boolean porPrecio() {
+        return "precio".equals(atributo);
+    }
+
+    // Valor del atributo de orden que se guarda en el cursor (sin ternario: promovería el precio a double)
+    public Object valor(Producto producto) {
+        if (porPrecio()) {
+            return producto.getPrecio();
+        }
+        return producto.getRating();
+    }
+}
@@ -1,8 +1,24 @@
 package com.appmovil.msvc.productos.services;
 
 import com.appmovil.msvc.productos.models.entities.Producto;
+import com.appmovil.msvc.productos.dtos.CambiosDTO;
+import com.appmovil.msvc.productos.dtos.EstadisticasIndiceDTO;
+import com.appmovil.msvc.productos.dtos.FacetasDTO;
+import com.appmovil.msvc.productos.dtos.SugerenciaDTO;
+import com.appmovil.msvc.productos.dtos.ImagenDTO;
+import com.appmovil.msvc.productos.dtos.LineaStockDTO;
+import com.appmovil.msvc.productos.dtos.PaginaDTO;
+import com.appmovil.msvc.productos.dtos.ProductoSimpleDTO;
 import com.appmovil.msvc.productos.dtos.ProductoUpdateDTO;
+import com.appmovil.msvc.productos.dtos.RatingProductoDTO;
+import com.appmovil.msvc.productos.dtos.ResultadoImportacionDTO;
+import com.appmovil.msvc.productos.dtos.StockBajoDTO;
+import com.appmovil.msvc.productos.dtos.StockDTO;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.Map;
 
 public interface ProductoService {
 
@@ -14,13 +30,54 @@ public interface ProductoService {
 
     Producto findById(Long id);
 
+    Map<Long, Producto> findByIds(List<Long> ids);
+
     void delete(Long id);
 
     Producto update(Long id, ProductoUpdateDTO productoUpdateDTO);
     
-    Producto actualizarStock(Long id, Integer cantidad);
+    StockDTO actualizarStock(Long id, Integer cantidad);
+
+    List<StockDTO> reservarStock(List<LineaStockDTO> lineas);
+
+    List<StockDTO> liberarStock(List<LineaStockDTO> lineas);
 
     List<Producto> findByCategoria(String categoria);
     
     List<Producto> buscarPorNombre(String nombre);
+
+    PaginaDTO<Producto> findAll(String cursor, int limit);
+
+    PaginaDTO<Producto> findActivos(String cursor, int limit);
+
+    PaginaDTO<Producto> findByCategoria(String categoria, String cursor, int limit);
+
+    PaginaDTO<Producto> buscarPorNombre(String nombre, String cursor, int limit);
+
+    PaginaDTO<ProductoSimpleDTO> findResumenActivos(String cursor, int limit);
+
+    PaginaDTO<ProductoSimpleDTO> findResumenByCategoria(String categoria, String cursor, int limit);
+
+    PaginaDTO<Producto> consultar(String categoria, Integer precioMin, Integer precioMax,
+                                  String orden, String cursor, int limit);
+
+    ImagenDTO findImagen(Long id);
+
+    ImagenDTO findImagenPorHash(String hash);
+
+    EstadisticasIndiceDTO reconstruirIndiceBusqueda();
+
+    FacetasDTO findFacetas();
+
+    List<StockBajoDTO> findStockBajo();
+
+    List<SugerenciaDTO> sugerencias(String consulta, int limit);
+
+    ResultadoImportacionDTO importar(InputStream entrada, boolean csv);
+
+    long exportar(OutputStream salida) throws IOException;
+
+    int actualizarRatings(List<RatingProductoDTO> ratings);
+
+    CambiosDTO cambios(long desde, int limit);
 }
\ No newline at end of file
@@ -1,21 +1,126 @@
 package com.appmovil.msvc.productos.services;
 
+import com.appmovil.msvc.productos.config.CacheConfig;
+import com.appmovil.msvc.productos.dtos.CambiosDTO;
+import com.appmovil.msvc.productos.dtos.EstadisticasIndiceDTO;
+import com.appmovil.msvc.productos.dtos.FacetasDTO;
+import com.appmovil.msvc.productos.dtos.ImagenDTO;
+import com.appmovil.msvc.productos.dtos.LineaStockDTO;
+import com.appmovil.msvc.productos.dtos.PaginaDTO;
+import com.appmovil.msvc.productos.dtos.ProductoSimpleDTO;
 import com.appmovil.msvc.productos.dtos.ProductoUpdateDTO;
+import com.appmovil.msvc.productos.dtos.RatingProductoDTO;
+import com.appmovil.msvc.productos.dtos.ResultadoImportacionDTO;
+import com.appmovil.msvc.productos.dtos.StockBajoDTO;
+import com.appmovil.msvc.productos.dtos.StockDTO;
+import com.appmovil.msvc.productos.dtos.SugerenciaDTO;
+import com.appmovil.msvc.productos.events.ProductoModificadoEvent;
+import com.appmovil.msvc.productos.events.RatingsActualizadosEvent;
+import com.appmovil.msvc.productos.events.StockActualizadoEvent;
 import com.appmovil.msvc.productos.exception.ProductoException;
 import com.appmovil.msvc.productos.models.entities.Producto;
+import com.appmovil.msvc.productos.models.entities.ProductoEliminado;
+import com.appmovil.msvc.productos.repositories.ProductoEliminadoRepository;
 import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import com.appmovil.msvc.productos.repositories.ProductoSpecifications;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.DigestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.Collectors;
 
 @Service
 public class ProductoServiceImpl implements ProductoService {
 
 
+ private static final int MAX_RESULTADOS_BUSQUEDA = 50;
+
+ private static final String ORDEN_RELEVANCIA = "relevancia";
+
  @Autowired
  private ProductoRepository productoRepository;
 
+ @Autowired
+ private IndiceBusquedaProductos indiceBusqueda;
+
+ @Autowired
+ private ApplicationEventPublisher eventPublisher;
+
+ @Autowired
+ private CacheManager cacheManager;
+
+ @Autowired
+ private CacheCatalogo cacheCatalogo;
+
+ @Autowired
+ private StockCaliente stockCaliente;
+
+ @Autowired
+ private FacetasCatalogo facetasCatalogo;
+
+ @Autowired
+ private AlertasStock alertasStock;
+
+ @Autowired
+ private SugerenciasProductos sugerenciasProductos;
+
+ @Autowired
+ private ImportadorProductos importadorProductos;
+
+ @Autowired
+ private ObjectMapper objectMapper;
+
+ @Autowired
+ private ProductoEliminadoRepository productoEliminadoRepository;
+
+ @Autowired
+ private SecuenciaCambios secuenciaCambios;
+
+ @Autowired
+ private AlmacenImagenes almacenImagenes;
+
+ @PersistenceContext
+ private EntityManager entityManager;
+
 
 
  @Override
@@ -28,85 +133,596 @@ public class ProductoServiceImpl implements ProductoService {
  @Transactional(readOnly = true)
  public Producto findById(Long id) {
 
-  return this.productoRepository.findById(id).orElseThrow(
+  return cacheCatalogo.producto(id, () -> this.productoRepository.findById(id).orElseThrow(
           () -> new ProductoException("El Producto con ID " + id + " no se encuentra en la base de datos")
-  );
+  ));
+ }
+
+ @Override
+ @Transactional(readOnly = true)
+ public Map<Long, Producto> findByIds(List<Long> ids) {
+  if (ids == null || ids.isEmpty()) {
+   return Collections.emptyMap();
+  }
+
+  // Una sola consulta IN (...) en vez de un findById por cada ítem
+  return this.productoRepository.findAllById(new LinkedHashSet<>(ids)).stream()
+          .collect(Collectors.toMap(Producto::getId, Function.identity()));
  }
 
  @Override
  @Transactional
+ @Caching(evict = {
+         @CacheEvict(cacheNames = CacheConfig.PRODUCTOS, key = "#result.id"),
+         @CacheEvict(cacheNames = {CacheConfig.PRODUCTOS_ACTIVOS, CacheConfig.PRODUCTOS_POR_CATEGORIA}, allEntries = true)
+ })
  public Producto save(Producto producto) {
 
-  return this.productoRepository.save(producto);
+  validarUmbralStock(producto.getUmbralStock());
+  asignarImagen(producto, producto.getImagen(), producto.getImagenHash());
+  producto.setSecuencia(secuenciaCambios.siguiente());
+  Producto guardado = this.productoRepository.save(producto);
+  eventPublisher.publishEvent(new ProductoModificadoEvent(guardado.getId(), guardado));
+  return guardado;
  }
 
  @Override
  @Transactional
+ @Caching(evict = {
+         @CacheEvict(cacheNames = CacheConfig.PRODUCTOS, key = "#id"),
+         @CacheEvict(cacheNames = {CacheConfig.PRODUCTOS_ACTIVOS, CacheConfig.PRODUCTOS_POR_CATEGORIA}, allEntries = true)
+ })
  public Producto update(Long id, ProductoUpdateDTO updateDTO) {
 
   Producto productoDB = this.productoRepository.findById(id).orElseThrow(
           () -> new ProductoException("Producto con ID " + id + " no encontrado para actualizar")
   );
 
+  // El cliente editó una copia vieja (p. ej. con un stock que ya cambió): se rechaza en vez de pisarla
+  if (updateDTO.getVersion() != null && !updateDTO.getVersion().equals(productoDB.getVersion())) {
+   throw new ObjectOptimisticLockingFailureException(Producto.class, id);
+  }
 
+  List<Object> copiaAnterior = datosDeCopia(productoDB);
   productoDB.setNombre(updateDTO.getNombre());
   productoDB.setPrecio(updateDTO.getPrecio());
   productoDB.setCategoria(updateDTO.getCategoria());
-  productoDB.setImagen(updateDTO.getImagen());
+  asignarImagen(productoDB, updateDTO.getImagen(), updateDTO.getImagenHash());
   productoDB.setDescripcion(updateDTO.getDescripcion());
-  productoDB.setStock(updateDTO.getStock());
+  if (stockCaliente.isCaliente(id)) {
+   // La columna stock la escribe el flush del modo caliente; acá solo se ajusta el contador en memoria
+   stockCaliente.fijar(id, updateDTO.getStock());
+  } else {
+   productoDB.setStock(updateDTO.getStock());
+  }
 
   if (updateDTO.getRating() != null) {
    productoDB.setRating(updateDTO.getRating());
   }
+  if (updateDTO.getActivo() != null) {
+   productoDB.setActivo(updateDTO.getActivo());
+  }
+  if (updateDTO.getUmbralStock() != null) {
+   validarUmbralStock(updateDTO.getUmbralStock());
+   productoDB.setUmbralStock(updateDTO.getUmbralStock());
+  }
 
+  productoDB.setSecuencia(secuenciaCambios.siguiente());
 
-  return this.productoRepository.save(productoDB);
+  Producto actualizado = this.productoRepository.save(productoDB);
+  eventPublisher.publishEvent(new ProductoModificadoEvent(actualizado.getId(), actualizado,
+          !copiaAnterior.equals(datosDeCopia(actualizado))));
+  return actualizado;
+ }
+
+ // Los datos del producto que otros servicios guardan como copia (ver VersionCatalogo.getVersionCopias)
+ private static List<Object> datosDeCopia(Producto producto) {
+  return Arrays.asList(producto.getNombre(), producto.getImagen(), producto.getImagenHash(), producto.getActivo());
  }
 
 
  @Override
  @Transactional
+ @Caching(evict = {
+         @CacheEvict(cacheNames = CacheConfig.PRODUCTOS, key = "#id"),
+         @CacheEvict(cacheNames = {CacheConfig.PRODUCTOS_ACTIVOS, CacheConfig.PRODUCTOS_POR_CATEGORIA}, allEntries = true)
+ })
  public void delete(Long id) {
   if (!productoRepository.existsById(id)) {
    throw new ProductoException("Producto con ID " + id + " no existe para eliminar");
   }
   productoRepository.deleteById(id);
+  // La fila desaparece: la marca con su secuencia es lo que GET /cambios informa como baja
+  productoEliminadoRepository.save(new ProductoEliminado(id, secuenciaCambios.siguiente(), LocalDateTime.now()));
+  eventPublisher.publishEvent(new ProductoModificadoEvent(id, null));
  }
 
  @Override
  @Transactional(readOnly = true)
  public List<Producto> findActivos() {
-  return productoRepository.findByActivo(true);
+  return cacheCatalogo.listado(CacheConfig.PRODUCTOS_ACTIVOS, SimpleKey.EMPTY,
+          () -> productoRepository.findByActivo(true), producto -> Boolean.TRUE.equals(producto.getActivo()));
  }
 
  @Override
  @Transactional(readOnly = true)
  public List<Producto> findByCategoria(String categoria) {
-  if ("todos".equalsIgnoreCase(categoria)) {
+  String normalizada = Producto.normalizarCategoria(categoria);
+  if ("todos".equals(normalizada)) {
    return findActivos();
   }
 
-  return productoRepository.findByCategoriaIgnoreCaseAndActivo(categoria, true);
+  return cacheCatalogo.listado(CacheConfig.PRODUCTOS_POR_CATEGORIA, normalizada,
+          () -> productoRepository.findByCategoriaNormAndActivo(normalizada, true),
+          producto -> Boolean.TRUE.equals(producto.getActivo()) && normalizada.equals(producto.getCategoriaNorm()));
  }
 
  @Override
  @Transactional(readOnly = true)
  public List<Producto> buscarPorNombre(String nombre) {
-  return productoRepository.findByNombreContainingIgnoreCase(nombre);
+  // Mientras el índice en memoria no termine de cargarse se consulta la base de datos
+  if (!indiceBusqueda.isListo()) {
+   return productoRepository.findByNombreContainingIgnoreCase(nombre);
+  }
+
+  List<Long> ids = indiceBusqueda.buscar(nombre, MAX_RESULTADOS_BUSQUEDA);
+  if (ids.isEmpty()) {
+   return Collections.emptyList();
+  }
+
+  // Se respeta el orden de relevancia que entrega el índice
+  Map<Long, Producto> productos = findByIds(ids);
+  return ids.stream()
+          .map(productos::get)
+          .filter(Objects::nonNull)
+          .collect(Collectors.toList());
+ }
+
+ @Override
+ @Transactional(readOnly = true)
+ public PaginaDTO<Producto> findAll(String cursor, int limit) {
+  int tamanio = CursorPaginacion.normalizarLimit(limit);
+  List<Producto> filas = productoRepository.findByIdGreaterThanOrderByIdAsc(
+          CursorPaginacion.decodificar(cursor), Limit.of(tamanio + 1));
+  return CursorPaginacion.armarPagina(filas, tamanio, Producto::getId);
+ }
+
+ @Override
+ @Transactional(readOnly = true)
+ public PaginaDTO<Producto> findActivos(String cursor, int limit) {
+  int tamanio = CursorPaginacion.normalizarLimit(limit);
+  List<Producto> filas = productoRepository.findByActivoAndIdGreaterThanOrderByIdAsc(
+          true, CursorPaginacion.decodificar(cursor), Limit.of(tamanio + 1));
+  return CursorPaginacion.armarPagina(filas, tamanio, Producto::getId);
+ }
+
+ @Override
+ @Transactional(readOnly = true)
+ public PaginaDTO<Producto> findByCategoria(String categoria, String cursor, int limit) {
+  if ("todos".equalsIgnoreCase(categoria)) {
+   return findActivos(cursor, limit);
+  }
+
+  int tamanio = CursorPaginacion.normalizarLimit(limit);
+  List<Producto> filas = productoRepository.findByCategoriaNormAndActivoAndIdGreaterThanOrderByIdAsc(
+          Producto.normalizarCategoria(categoria), true, CursorPaginacion.decodificar(cursor), Limit.of(tamanio + 1));
+  return CursorPaginacion.armarPagina(filas, tamanio, Producto::getId);
+ }
+
+ @Override
+ @Transactional(readOnly = true)
+ public PaginaDTO<Producto> buscarPorNombre(String nombre, String cursor, int limit) {
+  int tamanio = CursorPaginacion.normalizarLimit(limit);
+  // Mientras el índice no termine de cargarse se consulta la base de datos, y las páginas que empezaron
+  // así siguen por ID hasta el final
+  if (!indiceBusqueda.isListo() || CursorPaginacion.esPorId(cursor)) {
+   List<Producto> filas = productoRepository.findByNombreContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(
+           nombre, CursorPaginacion.decodificar(cursor), Limit.of(tamanio + 1));
+   return CursorPaginacion.armarPagina(filas, tamanio, Producto::getId);
+  }
+
+  // El cursor es la posición (puntaje, ID) de la última coincidencia entregada en el orden de relevancia
+  CursorPaginacion.Posicion posicion = CursorPaginacion.decodificar(cursor, ORDEN_RELEVANCIA);
+  IndiceBusquedaProductos.Coincidencia desde;
+  try {
+   desde = posicion == null ? null
+           : new IndiceBusquedaProductos.Coincidencia(posicion.id(), Double.parseDouble(posicion.valor()));
+  } catch (NumberFormatException ex) {
+   throw new ProductoException("Cursor de paginación inválido");
+  }
+  PaginaDTO<IndiceBusquedaProductos.Coincidencia> pagina = CursorPaginacion.armarPaginaConCursor(
+          indiceBusqueda.buscar(nombre, desde, tamanio + 1), tamanio,
+          coincidencia -> CursorPaginacion.codificar(ORDEN_RELEVANCIA, coincidencia.puntaje(), coincidencia.id()));
+
+  // Una consulta IN (...) para la página; se respeta el orden del índice
+  Map<Long, Producto> productos = findByIds(pagina.getItems().stream().map(IndiceBusquedaProductos.Coincidencia::id).toList());
+  return PaginaDTO.<Producto>builder()
+          .items(pagina.getItems().stream()
+                  .map(coincidencia -> productos.get(coincidencia.id()))
+                  .filter(Objects::nonNull)
+                  .collect(Collectors.toList()))
+          .limit(pagina.getLimit())
+          .next(pagina.getNext())
+          .build();
+ }
+
+ @Override
+ @Transactional(readOnly = true)
+ public PaginaDTO<ProductoSimpleDTO> findResumenActivos(String cursor, int limit) {
+  int tamanio = CursorPaginacion.normalizarLimit(limit);
+  List<ProductoSimpleDTO> filas = productoRepository.findResumenActivos(
+          CursorPaginacion.decodificar(cursor), Limit.of(tamanio + 1));
+  return CursorPaginacion.armarPagina(filas, tamanio, ProductoSimpleDTO::getId);
+ }
+
+ @Override
+ @Transactional(readOnly = true)
+ public PaginaDTO<ProductoSimpleDTO> findResumenByCategoria(String categoria, String cursor, int limit) {
+  if ("todos".equalsIgnoreCase(categoria)) {
+   return findResumenActivos(cursor, limit);
+  }
+
+  int tamanio = CursorPaginacion.normalizarLimit(limit);
+  List<ProductoSimpleDTO> filas = productoRepository.findResumenByCategoria(
+          Producto.normalizarCategoria(categoria), CursorPaginacion.decodificar(cursor), Limit.of(tamanio + 1));
+  return CursorPaginacion.armarPagina(filas, tamanio, ProductoSimpleDTO::getId);
+ }
+
+ @Override
+ @Transactional(readOnly = true)
+ public PaginaDTO<Producto> consultar(String categoria, Integer precioMin, Integer precioMax,
+                                      String orden, String cursor, int limit) {
+  int tamanio = CursorPaginacion.normalizarLimit(limit);
+  OrdenConsulta criterio = OrdenConsulta.desde(orden);
+  if (precioMin != null && precioMax != null && precioMin > precioMax) {
+   throw new ProductoException("precioMin no puede ser mayor que precioMax");
+  }
+  String categoriaNorm = categoria == null || categoria.isBlank() || "todos".equalsIgnoreCase(categoria.trim())
+          ? null : Producto.normalizarCategoria(categoria);
+
+  Specification<Producto> filtro = ProductoSpecifications.activos(categoriaNorm, precioMin, precioMax);
+  CursorPaginacion.Posicion posicion = CursorPaginacion.decodificar(cursor, criterio.getParametro());
+  if (posicion != null) {
+   filtro = filtro.and(despuesDe(criterio, posicion));
+  }
+
+  // Las columnas fijadas por igualdad encabezan el ORDER BY igual que en el índice (siempre ascendentes):
+  // no cambian el resultado, pero así el motor reconoce que el índice ya entrega las filas ordenadas
+  List<Sort.Order> columnas = new ArrayList<>();
+  if (categoriaNorm != null) {
+   columnas.add(Sort.Order.asc("categoriaNorm"));
+  }
+  columnas.add(Sort.Order.asc("activo"));
+  Sort.Direction direccion = criterio.isDescendente() ? Sort.Direction.DESC : Sort.Direction.ASC;
+  columnas.add(new Sort.Order(direccion, criterio.getAtributo()));
+  columnas.add(new Sort.Order(direccion, "id"));
+  Sort sort = Sort.by(columnas);
+
+  List<Producto> filas = productoRepository.findBy(filtro, consulta -> consulta.sortBy(sort).limit(tamanio + 1).all());
+  return CursorPaginacion.armarPaginaConCursor(filas, tamanio, producto ->
+          CursorPaginacion.codificar(criterio.getParametro(), criterio.valor(producto), producto.getId()));
+ }
+
+ private static Specification<Producto> despuesDe(OrdenConsulta criterio, CursorPaginacion.Posicion posicion) {
+  try {
+   return criterio.porPrecio()
+           ? ProductoSpecifications.despuesDe("precio", Integer.valueOf(posicion.valor()), posicion.id(), criterio.isDescendente())
+           : ProductoSpecifications.despuesDe("rating", Double.valueOf(posicion.valor()), posicion.id(), criterio.isDescendente());
+  } catch (NumberFormatException ex) {
+   throw new ProductoException("Cursor de paginación inválido");
+  }
+ }
+
+ @Override
+ @Transactional(readOnly = true)
+ public ImagenDTO findImagen(Long id) {
+  Optional<String> hash = productoRepository.findImagenHashById(id);
+  if (hash.isPresent()) {
+   return findImagenPorHash(hash.get());
+  }
+
+  String imagen = productoRepository.findImagenById(id)
+          .filter(valor -> !valor.isBlank())
+          .orElseThrow(() -> new ProductoException("El Producto con ID " + id + " no tiene imagen o no existe"));
+
+  // La columna guarda una URL externa, o todavía la imagen en línea si MigracionImagenes no llegó a esa fila
+  if (AlmacenImagenes.esUrl(imagen)) {
+   return ImagenDTO.builder()
+           .url(imagen)
+           .etag(DigestUtils.md5DigestAsHex(imagen.getBytes(StandardCharsets.UTF_8)))
+           .build();
+  }
+
+  // Una referencia de texto (nombre de archivo) no son bytes de imagen: decodificarla daría basura
+  if (!AlmacenImagenes.enLinea(imagen)) {
+   throw new ProductoException("La imagen del producto " + id + " no tiene un formato válido");
+  }
+
+  AlmacenImagenes.Contenido contenido;
+  try {
+   contenido = AlmacenImagenes.decodificar(imagen);
+  } catch (ProductoException ex) {
+   throw new ProductoException("La imagen del producto " + id + " no tiene un formato válido");
+  }
+
+  return ImagenDTO.builder()
+          .contenido(contenido.bytes())
+          .tipoContenido(contenido.tipoContenido())
+          .etag(DigestUtils.md5DigestAsHex(contenido.bytes()))
+          .build();
+ }
+
+ @Override
+ public ImagenDTO findImagenPorHash(String hash) {
+  AlmacenImagenes.ArchivoImagen archivo = almacenImagenes.abrir(hash);
+  return ImagenDTO.builder()
+          .archivo(archivo.ruta())
+          .tamanio(archivo.tamanio())
+          .tipoContenido(archivo.tipoContenido())
+          .etag(archivo.hash())
+          .build();
+ }
+
+ private void validarUmbralStock(Integer umbralStock) {
+  if (umbralStock != null && umbralStock < 0) {
+   throw new ProductoException("El umbral de stock no puede ser negativo");
+  }
+ }
+
+ // Las imágenes en línea (data URI o Base64) se guardan en AlmacenImagenes y la fila queda con el hash;
+ // una URL externa se guarda tal cual. Sin imagen nueva se acepta el hash de una imagen ya guardada
+ private void asignarImagen(Producto producto, String imagen, String imagenHash) {
+  String hash = almacenImagenes.externalizar(imagen);
+  boolean sinImagen = imagen == null || imagen.isBlank();
+  if (sinImagen && imagenHash != null) {
+   if (!almacenImagenes.existe(imagenHash)) {
+    throw new ProductoException("La imagen " + imagenHash + " no existe");
+   }
+   hash = imagenHash;
+  }
+  producto.setImagenHash(hash);
+  producto.setImagen(hash == null && !sinImagen ? imagen : null);
+ }
+
+ @Override
+ public EstadisticasIndiceDTO reconstruirIndiceBusqueda() {
+  return indiceBusqueda.reconstruir();
+ }
+
+ @Override
+ public FacetasDTO findFacetas() {
+  // Se sirve desde los agregados en memoria, sin recorrer la tabla
+  return facetasCatalogo.facetas();
+ }
+
+ @Override
+ public List<StockBajoDTO> findStockBajo() {
+  // Conjunto en memoria de los productos bajo su umbral; no recorre la tabla
+  return alertasStock.stockBajo();
+ }
+
+ @Override
+ public List<SugerenciaDTO> sugerencias(String consulta, int limit) {
+  int maximo = sugerenciasProductos.getMaxSugerencias();
+  if (limit < 1 || limit > maximo) {
+   throw new ProductoException("El parámetro limit debe estar entre 1 y " + maximo);
+  }
+  // Se resuelve en el trie en memoria; no llega a la base de datos
+  return sugerenciasProductos.sugerir(consulta, limit);
+ }
+
+ @Override
+ public ResultadoImportacionDTO importar(InputStream entrada, boolean csv) {
+  // Sin @Transactional: el importador confirma cada lote en su propia transacción
+  return importadorProductos.importar(entrada, csv);
+ }
+
+ @Override
+ @Transactional(readOnly = true)
+ public long exportar(OutputStream salida) throws IOException {
+  // Sin flush por producto: el generador y el contenedor ya escriben en bloques
+  ObjectWriter writer = objectMapper.writerFor(Producto.class)
+    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+  long exportados = 0;
+
+  try (Stream<Producto> productos = productoRepository.streamAll();
+       JsonGenerator generador = objectMapper.createGenerator(salida)) {
+   generador.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+   generador.setRootValueSeparator(null);
+
+   Iterator<Producto> iterador = productos.iterator();
+   while (iterador.hasNext()) {
+    Producto producto = iterador.next();
+    writer.writeValue(generador, producto);
+    generador.writeRaw('\n');
+    // Se suelta la entidad recién escrita: el contexto de persistencia no crece con el catálogo
+    entityManager.detach(producto);
+    exportados++;
+   }
+  }
+  return exportados;
  }
 
  @Override
  @Transactional
- public Producto actualizarStock(Long id, Integer cantidad) {
-  Producto producto = findById(id);
-  
-  Integer nuevoStock = producto.getStock() + cantidad;
-  if (nuevoStock < 0) {
-   throw new ProductoException("Stock insuficiente para el producto: " + producto.getNombre());
-  }
-  
-  producto.setStock(nuevoStock);
-  return productoRepository.save(producto);
+ public int actualizarRatings(List<RatingProductoDTO> ratings) {
+  // Un lote ya coalescido por msvc-resenas: un UPDATE por producto y un solo evento para todo el lote.
+  // Los productos eliminados mientras tanto se omiten
+  Map<Long, Double> actualizados = new LinkedHashMap<>();
+  Cache cacheProductos = cacheManager.getCache(CacheConfig.PRODUCTOS);
+  for (RatingProductoDTO rating : ratings) {
+   if (rating.getIdProducto() == null || rating.getRating() == null || rating.getRating() < 0 || rating.getRating() > 5) {
+    throw new ProductoException("Cada rating debe indicar idProducto y un valor entre 0 y 5");
+   }
+   if (productoRepository.actualizarRating(rating.getIdProducto(), rating.getRating(),
+          secuenciaCambios.siguiente()) > 0) {
+    actualizados.put(rating.getIdProducto(), rating.getRating());
+    if (cacheProductos != null) {
+     cacheProductos.evict(rating.getIdProducto());
+    }
+   }
+  }
+
+  if (!actualizados.isEmpty()) {
+   eventPublisher.publishEvent(new RatingsActualizadosEvent(actualizados));
+  }
+  return actualizados.size();
+ }
+
+ @Override
+ @Transactional(readOnly = true)
+ public CambiosDTO cambios(long desde, int limit) {
+  if (desde < 0) {
+   throw new ProductoException("El parámetro desde no puede ser negativo");
+  }
+  int tamanio = CursorPaginacion.normalizarLimit(limit);
+
+  // Solo hasta la última secuencia sin transacciones abiertas por debajo: un cambio que confirme
+  // después una transacción lenta queda por encima de la respuesta y se entrega en la próxima
+  long hasta = Math.max(desde, secuenciaCambios.confirmada());
+  List<Producto> modificados = productoRepository
+          .findBySecuenciaGreaterThanAndSecuenciaLessThanEqualOrderBySecuenciaAsc(desde, hasta, Limit.of(tamanio + 1));
+  List<ProductoEliminado> eliminados = productoEliminadoRepository
+          .findBySecuenciaGreaterThanAndSecuenciaLessThanEqualOrderBySecuenciaAsc(desde, hasta, Limit.of(tamanio + 1));
+
+  // Mezcla de las dos listas ordenadas hasta completar el limit
+  List<Producto> productos = new ArrayList<>();
+  List<Long> ids = new ArrayList<>();
+  int i = 0;
+  int j = 0;
+  long ultima = desde;
+  while (productos.size() + ids.size() < tamanio && (i < modificados.size() || j < eliminados.size())) {
+   if (j == eliminados.size()
+           || (i < modificados.size() && modificados.get(i).getSecuencia() < eliminados.get(j).getSecuencia())) {
+    ultima = modificados.get(i).getSecuencia();
+    productos.add(modificados.get(i++));
+   } else {
+    ultima = eliminados.get(j).getSecuencia();
+    ids.add(eliminados.get(j++).getId());
+   }
+  }
+  boolean hayMas = i < modificados.size() || j < eliminados.size();
+
+  return CambiosDTO.builder()
+          .desde(desde)
+          .hasta(hayMas ? ultima : hasta)
+          .hayMas(hayMas)
+          .productos(productos)
+          .eliminados(ids)
+          .build();
+ }
+
+ @Override
+ @Transactional
+ // Los listados cachean solo IDs: un cambio de stock invalida únicamente la entrada del producto
+ @CacheEvict(cacheNames = CacheConfig.PRODUCTOS, key = "#id")
+ public StockDTO actualizarStock(Long id, Integer cantidad) {
+  StockDTO resultado;
+  if (stockCaliente.isCaliente(id)) {
+   // Producto en modo stock caliente: se descuenta en memoria y se persiste en el próximo flush
+   resultado = stockCaliente.sumar(id, cantidad);
+  } else {
+   // Un único UPDATE condicional: no se lee la entidad ni hay ventana entre leer y escribir el stock
+   if (productoRepository.sumarStock(id, cantidad, secuenciaCambios.siguiente()) == 0) {
+    throw errorDeStock(id, cantidad);
+   }
+   resultado = productoRepository.findStockById(id).orElseThrow();
+  }
+  eventPublisher.publishEvent(new StockActualizadoEvent(
+          id, resultado.getCategoria(), resultado.getStock() - cantidad, resultado.getStock()));
+  return resultado;
+ }
+
+ @Override
+ @Transactional
+ public List<StockDTO> reservarStock(List<LineaStockDTO> lineas) {
+  Map<Long, Integer> cantidades = agruparLineas(lineas);
+
+  // Los UPDATE se ejecutan en orden ascendente de ID: dos reservas que comparten productos
+  // bloquean las filas en el mismo orden y no pueden quedar esperándose mutuamente (deadlock).
+  // Si una línea no alcanza, la excepción hace rollback de las anteriores: todo o nada.
+  // Las líneas en stock caliente se descuentan en memoria y se revierten solas si hay rollback.
+  Map<Long, StockDTO> enMemoria = new HashMap<>();
+  for (Map.Entry<Long, Integer> linea : cantidades.entrySet()) {
+   if (stockCaliente.isCaliente(linea.getKey())) {
+    enMemoria.put(linea.getKey(), stockCaliente.sumar(linea.getKey(), -linea.getValue()));
+   } else if (productoRepository.sumarStock(linea.getKey(), -linea.getValue(), secuenciaCambios.siguiente()) == 0) {
+    throw errorDeStock(linea.getKey(), -linea.getValue());
+   }
+  }
+
+  return publicarCambiosDeStock(cantidades, enMemoria, -1);
+ }
+
+ @Override
+ @Transactional
+ public List<StockDTO> liberarStock(List<LineaStockDTO> lineas) {
+  Map<Long, Integer> cantidades = agruparLineas(lineas);
+
+  // Devolver stock nunca puede fallar por cantidad; un producto eliminado mientras tanto se omite
+  // para que la cancelación del pedido no quede bloqueada
+  Map<Long, StockDTO> enMemoria = new HashMap<>();
+  Iterator<Map.Entry<Long, Integer>> iterador = cantidades.entrySet().iterator();
+  while (iterador.hasNext()) {
+   Map.Entry<Long, Integer> linea = iterador.next();
+   if (stockCaliente.isCaliente(linea.getKey())) {
+    enMemoria.put(linea.getKey(), stockCaliente.sumar(linea.getKey(), linea.getValue()));
+   } else if (productoRepository.sumarStock(linea.getKey(), linea.getValue(), secuenciaCambios.siguiente()) == 0) {
+    iterador.remove();
+   }
+  }
+
+  return publicarCambiosDeStock(cantidades, enMemoria, 1);
+ }
+
+ // Suma las cantidades de un mismo producto y las ordena por ID (TreeMap) para fijar el orden de bloqueo
+ private Map<Long, Integer> agruparLineas(List<LineaStockDTO> lineas) {
+  if (lineas == null || lineas.isEmpty()) {
+   throw new ProductoException("La reserva debe incluir al menos un producto");
+  }
+
+  Map<Long, Integer> cantidades = new TreeMap<>();
+  for (LineaStockDTO linea : lineas) {
+   if (linea.getIdProducto() == null || linea.getCantidad() == null || linea.getCantidad() <= 0) {
+    throw new ProductoException("Cada línea debe indicar idProducto y una cantidad mayor a cero");
+   }
+   cantidades.merge(linea.getIdProducto(), linea.getCantidad(), Integer::sum);
+  }
+  return cantidades;
+ }
+
+ // Lee el stock resultante de todas las filas en una consulta, invalida su caché y publica un evento por producto
+ private List<StockDTO> publicarCambiosDeStock(Map<Long, Integer> cantidades, Map<Long, StockDTO> enMemoria, int signo) {
+  if (cantidades.isEmpty()) {
+   return Collections.emptyList();
+  }
+
+  List<StockDTO> resultado = new ArrayList<>(enMemoria.values());
+  Set<Long> enBase = new TreeSet<>(cantidades.keySet());
+  enBase.removeAll(enMemoria.keySet());
+  if (!enBase.isEmpty()) {
+   resultado.addAll(productoRepository.findStockByIdIn(enBase));
+  }
+  resultado.sort(Comparator.comparing(StockDTO::getId));
+
+  Cache cacheProductos = cacheManager.getCache(CacheConfig.PRODUCTOS);
+  for (StockDTO stock : resultado) {
+   if (cacheProductos != null) {
+    cacheProductos.evict(stock.getId());
+   }
+   int delta = signo * cantidades.get(stock.getId());
+   eventPublisher.publishEvent(new StockActualizadoEvent(
+           stock.getId(), stock.getCategoria(), stock.getStock() - delta, stock.getStock()));
+  }
+  return resultado;
+ }
+
+ // El UPDATE condicional no afectó filas: se distingue si el producto no existe o si no alcanza el stock
+ private ProductoException errorDeStock(Long id, Integer cantidad) {
+  StockDTO actual = productoRepository.findStockById(id).orElseThrow(
+          () -> new ProductoException("El Producto con ID " + id + " no se encuentra en la base de datos")
+  );
+  return new ProductoException("Stock insuficiente para el producto con ID " + actual.getId()
+          + " (disponible: " + actual.getStock() + ", solicitado: " + -cantidad + ")");
  }
 }
\ No newline at end of file
@@ -0,0 +1,120 @@
+package com.appmovil.msvc.productos.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Respuestas de los listados del catálogo ya serializadas a JSON (y comprimidas con gzip si superan
+ * gzip-min-bytes), por versión del catálogo y petición. Mientras la versión no cambie, un GET repetido
+ * se responde copiando bytes: sin consultar la base de datos ni volver a pasar por Jackson.
+ * La versión forma parte de la clave, así una respuesta vieja nunca se entrega; cuando avanza
+ * (alta, edición, baja, stock o rating) las entradas anteriores se descartan juntas.
+ */
+@Component
+public class RespuestasSerializadas {
+
+    @Value("${productos.respuestas.enabled:true}")
+    private boolean habilitada;
+
+    @Value("${productos.respuestas.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${productos.respuestas.gzip-min-bytes:1024}")
+    private int gzipMinBytes;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Cache<Clave, Respuesta> cache;
+
+    // Versión más nueva vista; las peticiones que leyeron una anterior no guardan su resultado
+    private final AtomicLong versionVigente = new AtomicLong(-1);
+
+    @PostConstruct
+    public void iniciar() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Clave clave, Respuesta respuesta) -> respuesta.peso())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Devuelve la respuesta serializada de la petición para la versión dada, ejecutando la consulta solo
+     * si no está en caché. La versión debe leerse antes de consultar, igual que la ETag que la acompaña.
+     * Varias peticiones simultáneas de la misma clave ejecutan una sola consulta.
+     */
+    public Respuesta obtener(long version, String peticion, Supplier<?> consulta) {
+        if (!habilitada || !avanzarVersion(version)) {
+            return serializar(consulta.get());
+        }
+        return cache.get(new Clave(version, peticion), clave -> serializar(consulta.get()));
+    }
+
+    public CacheStats estadisticas() {
+        return cache.stats();
+    }
+
+    private boolean avanzarVersion(long version) {
+        long vigente = versionVigente.get();
+        while (version > vigente) {
+            if (versionVigente.compareAndSet(vigente, version)) {
+                cache.invalidateAll();
+                return true;
+            }
+            vigente = versionVigente.get();
+        }
+        return version == vigente;
+    }
+
+    Respuesta serializar(Object cuerpo) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(cuerpo);
+            return new Respuesta(json, json.length >= gzipMinBytes ? comprimir(json) : null);
+        } catch (JsonProcessingException ex) {
+            throw new UncheckedIOException("No se pudo serializar la respuesta", ex);
+        }
+    }
+
+    private static byte[] comprimir(byte[] json) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(salida, 8192)) {
+            gzip.write(json);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return salida.toByteArray();
+    }
+
+    private record Clave(long version, String peticion) {
+    }
+
+    /**
+     * Cuerpo JSON listo para escribir; gzip es null si el cuerpo es demasiado chico para comprimirlo.
+     * Los arreglos se comparten entre peticiones: no deben modificarse.
+     */
+    public record Respuesta(byte[] json, byte[] gzip) {
+
+        public boolean comprimida() {
+            return gzip != null;
+        }
+
+        int peso() {
+            return json.length + (gzip == null ? 0 : gzip.length);
+        }
+    }
+}
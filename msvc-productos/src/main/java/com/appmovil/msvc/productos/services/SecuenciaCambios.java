@@ -0,0 +1,110 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.repositories.ProductoEliminadoRepository;
+import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.TreeSet;
+
+/**
+ * Secuencia global y monótona de cambios del catálogo: cada alta, modificación, cambio de stock o de
+ * rating guarda la siguiente en productos.secuencia, y cada baja en productos_eliminados.
+ * <p>
+ * Las secuencias se asignan antes del commit, así que una transacción lenta puede confirmar una
+ * secuencia menor que otra ya visible. Para que GET /cambios no la saltee, {@link #confirmada()}
+ * devuelve el mayor valor por debajo del cual ninguna transacción sigue abierta: un cliente que
+ * sincroniza hasta ahí nunca pierde un cambio que se confirme después.
+ */
+@Component
+public class SecuenciaCambios {
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private ProductoEliminadoRepository productoEliminadoRepository;
+
+    private boolean iniciada;
+    private long ultima;
+
+    // Primera secuencia de cada transacción todavía abierta
+    private final TreeSet<Long> enCurso = new TreeSet<>();
+
+    /**
+     * Asigna la secuencia del próximo cambio. Debe llamarse dentro de la transacción que escribe la fila.
+     */
+    public long siguiente() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("La secuencia de cambios debe asignarse dentro de una transacción");
+        }
+        iniciar();
+
+        // Se busca entre las sincronizaciones y no en un recurso ligado al hilo: una transacción
+        // REQUIRES_NEW suspende las sincronizaciones de la externa pero no los recursos
+        boolean primera = TransactionSynchronizationManager.getSynchronizations().stream()
+                .noneMatch(sincronizacion -> sincronizacion instanceof Registro registro && registro.secuencias() == this);
+        long secuencia;
+        // Asignar y registrar la transacción es atómico respecto de confirmada()
+        synchronized (this) {
+            secuencia = ++ultima;
+            if (primera) {
+                enCurso.add(secuencia);
+            }
+        }
+        if (primera) {
+            TransactionSynchronizationManager.registerSynchronization(new Registro(this, secuencia));
+        }
+        return secuencia;
+    }
+
+    /**
+     * Mayor secuencia cuyos cambios, y los de todas las anteriores, ya están confirmados o descartados.
+     */
+    public long confirmada() {
+        iniciar();
+        synchronized (this) {
+            return enCurso.isEmpty() ? ultima : enCurso.first() - 1;
+        }
+    }
+
+    /**
+     * Vuelve a leer el máximo de la base de datos; lo usa la migración después de numerar filas viejas.
+     */
+    public void sincronizar() {
+        long maximo = leerMaximo();
+        synchronized (this) {
+            ultima = Math.max(ultima, maximo);
+            iniciada = true;
+        }
+    }
+
+    private void iniciar() {
+        synchronized (this) {
+            if (iniciada) {
+                return;
+            }
+        }
+        sincronizar();
+    }
+
+    private synchronized void terminar(long primera) {
+        enCurso.remove(primera);
+    }
+
+    // Saca la transacción de enCurso al terminar, con commit o con rollback
+    private record Registro(SecuenciaCambios secuencias, long primera) implements TransactionSynchronization {
+        @Override
+        public void afterCompletion(int status) {
+            secuencias.terminar(primera);
+        }
+    }
+
+    private long leerMaximo() {
+        Long productos = productoRepository.maxSecuencia();
+        Long eliminados = productoEliminadoRepository.maxSecuencia();
+        return Math.max(productos == null ? 0 : productos, eliminados == null ? 0 : eliminados);
+    }
+}
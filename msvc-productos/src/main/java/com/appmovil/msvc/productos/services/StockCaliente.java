@@ -0,0 +1,484 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.dtos.StockDTO;
+import com.appmovil.msvc.productos.exception.ProductoException;
+import com.appmovil.msvc.productos.models.entities.StockCalienteAplicado;
+import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import com.appmovil.msvc.productos.repositories.StockCalienteAplicadoRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Modo "stock caliente" para los productos que concentran el tráfico de una venta flash.
+ * El stock de esos productos se descuenta en memoria con contadores atómicos: la disponibilidad se
+ * decide con CAS, sin locks. Cada cambio se anota en un journal append-only con commit en grupo (como
+ * CarritosActivos): los cambios que llegan mientras se escribe un grupo salen juntos en el siguiente, con
+ * un solo write y un solo fsync, y el lock del journal solo se toma para agregar el registro al grupo.
+ * Los deltas acumulados se escriben en productos.stock en lotes cada intervalo-flush-ms y al apagar el
+ * servicio. Al arrancar se reaplican los deltas del journal que no llegaron a la base de datos.
+ * <p>
+ * Los deltas son relativos, así que cada segmento se aplica una sola vez: su número se guarda en
+ * stock_caliente_aplicado en la misma transacción que los UPDATE, y un segmento con número menor o igual
+ * se saltea tanto al reintentar un flush como al recuperar el journal.
+ */
+@Component
+@Slf4j
+public class StockCaliente {
+
+    // idProducto (8) + delta (4) + CRC32 de ambos (4): un registro cortado por una caída se descarta
+    private static final int TAMANIO_REGISTRO = 16;
+
+    @Value("${productos.stock-caliente.enabled:false}")
+    private boolean habilitado;
+
+    @Value("${productos.stock-caliente.productos:}")
+    private Set<Long> idsCalientes;
+
+    @Value("${productos.stock-caliente.intervalo-flush-ms:500}")
+    private long intervaloFlushMs;
+
+    @Value("${productos.stock-caliente.journal:./data/stock-caliente.journal}")
+    private String rutaJournal;
+
+    // true: fsync en cada grupo de cambios (sobrevive a un corte de energía, no solo a la caída del proceso)
+    @Value("${productos.stock-caliente.fsync:false}")
+    private boolean fsync;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private StockCalienteAplicadoRepository stockCalienteAplicadoRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private VersionCatalogo versionCatalogo;
+
+    @Autowired
+    private SecuenciaCambios secuenciaCambios;
+
+    private final Map<Long, Contador> contadores = new ConcurrentHashMap<>();
+
+    // Deltas escritos en el journal activo y todavía no enviados a la base de datos (protegidos por lockJournal)
+    private final Map<Long, Integer> pendientes = new HashMap<>();
+    // lockJournal protege el canal, el grupo abierto y pendientes; se suelta mientras se escribe un grupo
+    private final ReentrantLock lockJournal = new ReentrantLock();
+    private final Condition grupoEscrito = lockJournal.newCondition();
+    private Grupo grupoAbierto = new Grupo();
+    private boolean escribiendo;
+    private FileChannel journal;
+    // Número del último segmento creado; sigue por encima del último aplicado entre ejecuciones
+    private long ultimoSegmento;
+
+    // Segmentos rotados cuyo lote falló al escribirse; se reintentan en orden en el siguiente flush
+    private final Deque<Segmento> segmentosSinAplicar = new ArrayDeque<>();
+
+    private TransactionTemplate transacciones;
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void iniciar() throws IOException {
+        if (!habilitado) {
+            return;
+        }
+
+        transacciones = new TransactionTemplate(transactionManager);
+        recuperarJournal();
+        journal = FileChannel.open(Path.of(rutaJournal), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        for (Long id : idsCalientes) {
+            activar(id);
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "stock-caliente-flush");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        flusher.scheduleWithFixedDelay(this::flushSinFallar, intervaloFlushMs, intervaloFlushMs, TimeUnit.MILLISECONDS);
+        log.info("Stock caliente activo para {} productos (flush cada {} ms, journal {})",
+                contadores.size(), intervaloFlushMs, rutaJournal);
+    }
+
+    @PreDestroy
+    public void detener() throws IOException {
+        if (flusher == null) {
+            return;
+        }
+
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        journal.close();
+    }
+
+    public boolean isCaliente(Long id) {
+        return contadores.containsKey(id);
+    }
+
+    // Carga el stock actual del producto desde la base de datos y desde ahí se maneja en memoria
+    void activar(Long id) {
+        Optional<StockDTO> stock = productoRepository.findStockById(id);
+        if (stock.isEmpty()) {
+            log.warn("Producto {} configurado como stock caliente no existe; se ignora", id);
+            return;
+        }
+        contadores.put(id, new Contador(stock.get().getCategoria(), stock.get().getStock()));
+    }
+
+    /**
+     * Suma (o resta, con delta negativo) stock en memoria. Falla sin modificar nada si el resultado
+     * quedaría negativo. Dentro de una transacción, el cambio se revierte si esta hace rollback.
+     */
+    public StockDTO sumar(Long id, int delta) {
+        Contador contador = contador(id);
+        int actual;
+        int nuevo;
+        do {
+            actual = contador.stock.get();
+            nuevo = actual + delta;
+            if (nuevo < 0) {
+                throw new ProductoException("Stock insuficiente para el producto con ID " + id
+                        + " (disponible: " + actual + ", solicitado: " + -delta + ")");
+            }
+        } while (!contador.stock.compareAndSet(actual, nuevo));
+
+        anotar(id, contador, delta);
+        return new StockDTO(id, contador.categoria, nuevo);
+    }
+
+    // Reemplaza el stock (edición desde administración); se anota como delta para no pisar reservas en curso
+    public StockDTO fijar(Long id, int valor) {
+        Contador contador = contador(id);
+        int actual;
+        do {
+            actual = contador.stock.get();
+        } while (!contador.stock.compareAndSet(actual, valor));
+
+        anotar(id, contador, valor - actual);
+        return new StockDTO(id, contador.categoria, valor);
+    }
+
+    /**
+     * Rota el journal y escribe en la base de datos los deltas acumulados, un UPDATE por producto
+     * en una sola transacción. El segmento rotado se borra recién cuando esa transacción hizo commit.
+     */
+    public synchronized void flush() {
+        Map<Long, Integer> lote;
+        lockJournal.lock();
+        try {
+            // El grupo en escritura va al segmento que se rota; sus deltas entran en pendientes al terminar
+            while (escribiendo) {
+                grupoEscrito.awaitUninterruptibly();
+            }
+            if (!pendientes.isEmpty()) {
+                lote = new TreeMap<>(pendientes);
+                pendientes.clear();
+                journal.close();
+                long numero = ++ultimoSegmento;
+                Path segmento = rutaSegmento(numero);
+                Files.move(Path.of(rutaJournal), segmento);
+                journal = FileChannel.open(Path.of(rutaJournal), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                segmentosSinAplicar.addLast(new Segmento(numero, segmento, lote));
+            }
+        } catch (IOException ex) {
+            throw new ProductoException("No se pudo rotar el journal de stock: " + ex.getMessage());
+        } finally {
+            lockJournal.unlock();
+        }
+
+        while (!segmentosSinAplicar.isEmpty()) {
+            Segmento segmento = segmentosSinAplicar.peekFirst();
+            aplicarSegmento(segmento.numero(), segmento.deltas());
+            // Confirmado el commit el segmento sale de la cola aunque su archivo no se pueda borrar:
+            // la recuperación lo reconoce por el número y no lo vuelve a aplicar
+            segmentosSinAplicar.pollFirst();
+            borrarSinFallar(segmento.ruta());
+            versionCatalogo.invalidarProductos(segmento.deltas().keySet());
+        }
+    }
+
+    private void flushSinFallar() {
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            log.warn("Flush de stock caliente fallido, se reintenta en el próximo intervalo: {}", ex.getMessage());
+        }
+    }
+
+    private Contador contador(Long id) {
+        Contador contador = contadores.get(id);
+        if (contador == null) {
+            throw new ProductoException("El producto con ID " + id + " no está en modo stock caliente");
+        }
+        return contador;
+    }
+
+    private void anotar(Long id, Contador contador, int delta) {
+        if (delta == 0) {
+            return;
+        }
+
+        byte[] registro = ByteBuffer.allocate(TAMANIO_REGISTRO).putLong(id).putInt(delta).putInt(crc(id, delta)).array();
+        IOException error;
+        lockJournal.lock();
+        try {
+            Grupo grupo = grupoAbierto;
+            grupo.registros.writeBytes(registro);
+            grupo.deltas.merge(id, delta, Integer::sum);
+            while (!grupo.escrito) {
+                if (escribiendo) {
+                    grupoEscrito.awaitUninterruptibly();
+                } else {
+                    escribirGrupo();
+                }
+            }
+            error = grupo.error;
+        } finally {
+            lockJournal.unlock();
+        }
+        if (error != null) {
+            // Sin registro durable el cambio no se confirma
+            revertir(id, contador, delta);
+            throw new ProductoException("No se pudo registrar el cambio de stock: " + error.getMessage());
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        anotar(id, contador, revertir(id, contador, delta));
+                    }
+                }
+            });
+        }
+    }
+
+    // Se llama con lockJournal tomado y lo suelta durante el write y el fsync, para que otros hilos sigan
+    // llenando el grupo siguiente. Los deltas del grupo pasan a pendientes recién cuando quedó escrito
+    private void escribirGrupo() {
+        Grupo grupo = grupoAbierto;
+        grupoAbierto = new Grupo();
+        escribiendo = true;
+        FileChannel canal = journal;
+        lockJournal.unlock();
+
+        IOException error = null;
+        long tamanioAnterior = -1;
+        try {
+            tamanioAnterior = canal.size();
+            ByteBuffer buffer = ByteBuffer.wrap(grupo.registros.toByteArray());
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            if (fsync) {
+                canal.force(false);
+            }
+        } catch (IOException ex) {
+            // Se descarta un grupo escrito a medias: ninguno de sus cambios se confirma
+            error = ex;
+            truncarSinFallar(canal, tamanioAnterior);
+        } finally {
+            lockJournal.lock();
+            if (error == null) {
+                grupo.deltas.forEach((idProducto, cambio) -> pendientes.merge(idProducto, cambio,
+                        (anterior, suma) -> anterior + suma == 0 ? null : anterior + suma));
+            }
+            grupo.error = error;
+            grupo.escrito = true;
+            escribiendo = false;
+            grupoEscrito.signalAll();
+        }
+    }
+
+    /**
+     * Deshace un cambio ya aplicado en memoria con el mismo CAS que sumar, sin dejar el stock negativo.
+     * Si las unidades que sumó (por ejemplo, las de un liberar) ya se reservaron, se quita lo que queda
+     * y se informa la diferencia. Devuelve el delta realmente aplicado.
+     */
+    private int revertir(Long id, Contador contador, int delta) {
+        int actual;
+        int nuevo;
+        do {
+            actual = contador.stock.get();
+            nuevo = Math.max(0, actual - delta);
+        } while (!contador.stock.compareAndSet(actual, nuevo));
+
+        if (actual - delta < 0) {
+            log.error("Producto {}: al revertir un cambio de {} unidades faltaron {} que ya se habían reservado",
+                    id, delta, delta - actual);
+        }
+        return nuevo - actual;
+    }
+
+    private static void truncarSinFallar(FileChannel canal, long tamanio) {
+        if (tamanio < 0) {
+            return;
+        }
+        try {
+            canal.truncate(tamanio);
+        } catch (IOException ex) {
+            log.error("No se pudo truncar el journal de stock caliente: {}", ex.getMessage());
+        }
+    }
+
+    // Aplica los deltas y registra el segmento en una transacción; si el segmento ya estaba registrado
+    // (un commit anterior cuyo resultado no se conoció) no escribe nada
+    private void aplicarSegmento(long numero, Map<Long, Integer> deltas) {
+        transacciones.executeWithoutResult(estado -> {
+            if (numero <= ultimoAplicado()) {
+                log.info("Segmento {} del journal de stock ya aplicado; se omite", numero);
+                return;
+            }
+            deltas.forEach((id, delta) -> productoRepository.aplicarDeltaStock(id, delta, secuenciaCambios.siguiente()));
+            stockCalienteAplicadoRepository.save(new StockCalienteAplicado(StockCalienteAplicado.ID, numero));
+        });
+    }
+
+    private long ultimoAplicado() {
+        return stockCalienteAplicadoRepository.findById(StockCalienteAplicado.ID)
+                .map(StockCalienteAplicado::getUltimoSegmento)
+                .orElse(0L);
+    }
+
+    private Path rutaSegmento(long numero) {
+        return Path.of(rutaJournal + "." + numero);
+    }
+
+    private void borrarSinFallar(Path archivo) {
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException ex) {
+            log.warn("No se pudo borrar el segmento aplicado {}: {}", archivo, ex.getMessage());
+        }
+    }
+
+    // Reaplica, en una sola transacción, los segmentos y el journal activo que quedaron de la ejecución
+    // anterior, salvo los que stock_caliente_aplicado ya registra
+    private void recuperarJournal() throws IOException {
+        Path activo = Path.of(rutaJournal).toAbsolutePath();
+        Files.createDirectories(activo.getParent());
+
+        TreeMap<Long, Path> segmentos = new TreeMap<>();
+        String prefijo = activo.getFileName() + ".";
+        try (Stream<Path> hermanos = Files.list(activo.getParent())) {
+            hermanos.filter(ruta -> ruta.getFileName().toString().startsWith(prefijo)
+                            && ruta.getFileName().toString().substring(prefijo.length()).matches("\\d+"))
+                    .forEach(ruta -> segmentos.put(Long.parseLong(ruta.getFileName().toString().substring(prefijo.length())), ruta));
+        }
+        long aplicado = ultimoAplicado();
+        ultimoSegmento = Math.max(aplicado, segmentos.isEmpty() ? 0 : segmentos.lastKey());
+
+        // El journal activo pasa a ser un segmento numerado antes de aplicarlo: si la ejecución se corta
+        // después del commit, la próxima recuperación lo reconoce por su número
+        if (Files.exists(activo)) {
+            if (Files.size(activo) == 0) {
+                Files.delete(activo);
+            } else {
+                long numero = ++ultimoSegmento;
+                Path segmento = rutaSegmento(numero).toAbsolutePath();
+                Files.move(activo, segmento);
+                segmentos.put(numero, segmento);
+            }
+        }
+        if (segmentos.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Integer> deltas = new TreeMap<>();
+        long hasta = aplicado;
+        for (Map.Entry<Long, Path> segmento : segmentos.entrySet()) {
+            if (segmento.getKey() > aplicado) {
+                leerRegistros(segmento.getValue(), deltas);
+                hasta = segmento.getKey();
+            }
+        }
+        if (hasta > aplicado) {
+            aplicarSegmento(hasta, deltas);
+        }
+        segmentos.values().forEach(this::borrarSinFallar);
+        log.info("Journal de stock caliente recuperado: {} archivos ({} ya aplicados), {} productos",
+                segmentos.size(), segmentos.headMap(aplicado, true).size(), deltas.size());
+    }
+
+    private void leerRegistros(Path archivo, Map<Long, Integer> deltas) throws IOException {
+        try (InputStream in = Files.newInputStream(archivo);
+             DataInputStream datos = new DataInputStream(new BufferedInputStream(in))) {
+            while (true) {
+                long id = datos.readLong();
+                int delta = datos.readInt();
+                if (datos.readInt() != crc(id, delta)) {
+                    log.warn("Registro corrupto en {}; se descarta el resto del archivo", archivo);
+                    return;
+                }
+                deltas.merge(id, delta, Integer::sum);
+            }
+        } catch (EOFException ex) {
+            // Fin del archivo (o último registro escrito a medias)
+        }
+    }
+
+    private static int crc(long id, int delta) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(12).putLong(id).putInt(delta).array());
+        return (int) crc.getValue();
+    }
+
+    private static final class Contador {
+        private final String categoria;
+        private final AtomicInteger stock;
+
+        private Contador(String categoria, int stock) {
+            this.categoria = categoria;
+            this.stock = new AtomicInteger(stock);
+        }
+    }
+
+    private record Segmento(long numero, Path ruta, Map<Long, Integer> deltas) {
+    }
+
+    // Registros de varios cambios que se escriben juntos en el journal, y su suma por producto
+    private static final class Grupo {
+        private final ByteArrayOutputStream registros = new ByteArrayOutputStream();
+        private final Map<Long, Integer> deltas = new HashMap<>();
+        private boolean escrito;
+        private IOException error;
+    }
+}
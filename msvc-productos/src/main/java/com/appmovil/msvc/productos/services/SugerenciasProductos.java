@@ -0,0 +1,411 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.dtos.SugerenciaDTO;
+import com.appmovil.msvc.productos.events.ProductoModificadoEvent;
+import com.appmovil.msvc.productos.events.ProductosImportadosEvent;
+import com.appmovil.msvc.productos.events.RatingsActualizadosEvent;
+import com.appmovil.msvc.productos.events.StockActualizadoEvent;
+import com.appmovil.msvc.productos.models.entities.Producto;
+import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+
+/**
+ * Autocompletado por prefijo sobre los nombres de los productos activos, normalizados igual que en
+ * IndiceBusquedaProductos. Cada nombre se indexa desde el comienzo de cada palabra, así "gam" sugiere
+ * "Laptop Gamer". Las claves viven en un trie comprimido (las cadenas sin ramificación se guardan como
+ * una sola arista) y cada nodo conserva los mejores productos de su subárbol: responder es bajar por
+ * el prefijo y copiar esa lista, sin recorrer las hojas.
+ *
+ * Orden: primero los productos con stock, luego por rating y por ID. Se mantiene con los eventos de
+ * ProductoServiceImpl; un cambio de stock solo toca el trie cuando el producto se agota o se repone.
+ */
+@Component
+@Slf4j
+public class SugerenciasProductos extends VistaCatalogo<SugerenciasProductos.Contenido, Void> {
+
+    // Solo se indexan las primeras palabras: las siguientes rara vez se escriben en el buscador
+    private static final int MAX_PALABRAS = 8;
+
+    private static final Entrada[] SIN_ENTRADAS = new Entrada[0];
+
+    @Value("${productos.sugerencias.max:10}")
+    private int maxSugerencias;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    private Nodo raiz = new Nodo("");
+
+    private Map<Long, Entrada> productos = new HashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlIniciar() {
+        reconstruir();
+    }
+
+    public void reconstruir() {
+        Contenido leido = recargar();
+        log.info("Sugerencias de productos cargadas: {} productos", leido.productos().size());
+    }
+
+    @TransactionalEventListener
+    public void onProductoModificado(ProductoModificadoEvent event) {
+        registrar(List.of(event));
+    }
+
+    @TransactionalEventListener
+    public void onProductosImportados(ProductosImportadosEvent event) {
+        registrar(event.comoAltas());
+    }
+
+    @TransactionalEventListener
+    public void onStockActualizado(StockActualizadoEvent event) {
+        if (conStock(event.getStockAnterior()) != conStock(event.getStock())) {
+            registrar(List.of(event));
+        }
+    }
+
+    @TransactionalEventListener
+    public void onRatingsActualizados(RatingsActualizadosEvent event) {
+        registrar(List.of(event));
+    }
+
+    /**
+     * Hasta limite productos cuyo nombre tiene alguna palabra que empieza con la consulta
+     * (la consulta puede abarcar varias palabras). limite no puede superar sugerencias.max.
+     */
+    public List<SugerenciaDTO> sugerir(String consulta, int limite) {
+        if (!isListo()) {
+            reconstruir();
+        }
+        String prefijo = IndiceBusquedaProductos.normalizar(consulta);
+        if (prefijo.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Nodo nodo = raiz;
+            int pos = 0;
+            while (pos < prefijo.length()) {
+                nodo = nodo.hijo(prefijo.charAt(pos));
+                if (nodo == null) {
+                    return List.of();
+                }
+                int comun = prefijoComun(nodo.etiqueta, prefijo, pos);
+                // La consulta puede terminar a mitad de una arista; si difiere antes, no hay coincidencias
+                if (comun < nodo.etiqueta.length() && pos + comun < prefijo.length()) {
+                    return List.of();
+                }
+                pos += comun;
+            }
+
+            int cantidad = Math.min(limite, nodo.top.length);
+            List<SugerenciaDTO> resultado = new ArrayList<>(cantidad);
+            for (int i = 0; i < cantidad; i++) {
+                Entrada entrada = nodo.top[i];
+                resultado.add(new SugerenciaDTO(entrada.id, entrada.nombre, entrada.rating, entrada.disponible));
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getMaxSugerencias() {
+        return maxSugerencias;
+    }
+
+    @Override
+    protected Contenido leer() {
+        Contenido contenido = new Contenido(new Nodo(""), new HashMap<>());
+        for (SugerenciaDTO fila : productoRepository.findAllSugerencias()) {
+            Entrada entrada = new Entrada(fila.getId(), fila.getNombre(),
+                    IndiceBusquedaProductos.normalizar(fila.getNombre()), valor(fila.getRating()),
+                    Boolean.TRUE.equals(fila.getDisponible()));
+            agregar(contenido.raiz(), contenido.productos(), entrada);
+        }
+        return contenido;
+    }
+
+    @Override
+    protected void reemplazar(Contenido leido) {
+        raiz = leido.raiz();
+        productos = leido.productos();
+    }
+
+    @Override
+    protected void aplicar(Object event, List<Void> avisos) {
+        if (event instanceof ProductoModificadoEvent modificado) {
+            quitar(modificado.getIdProducto());
+            Producto producto = modificado.getProducto();
+            if (producto != null && Boolean.TRUE.equals(producto.getActivo())) {
+                agregar(raiz, productos, new Entrada(producto.getId(), producto.getNombre(),
+                        IndiceBusquedaProductos.normalizar(producto.getNombre()), valor(producto.getRating()),
+                        conStock(producto.getStock())));
+            }
+        } else if (event instanceof StockActualizadoEvent stock) {
+            Entrada actual = productos.get(stock.getIdProducto());
+            if (actual != null && actual.disponible != conStock(stock.getStock())) {
+                reemplazar(actual, actual.rating, conStock(stock.getStock()));
+            }
+        } else if (event instanceof RatingsActualizadosEvent ratings) {
+            for (Map.Entry<Long, Double> rating : ratings.getRatings().entrySet()) {
+                Entrada actual = productos.get(rating.getKey());
+                if (actual != null && actual.rating != valor(rating.getValue())) {
+                    reemplazar(actual, valor(rating.getValue()), actual.disponible);
+                }
+            }
+        }
+    }
+
+    private void reemplazar(Entrada actual, double rating, boolean disponible) {
+        quitar(actual.id);
+        agregar(raiz, productos, new Entrada(actual.id, actual.nombre, actual.normalizado, rating, disponible));
+    }
+
+    private void quitar(Long id) {
+        Entrada anterior = productos.remove(id);
+        if (anterior != null) {
+            for (String clave : claves(anterior.normalizado)) {
+                quitar(raiz, clave, 0, anterior);
+            }
+        }
+    }
+
+    private void agregar(Nodo arbol, Map<Long, Entrada> productos, Entrada entrada) {
+        productos.put(entrada.id, entrada);
+        for (String clave : claves(entrada.normalizado)) {
+            insertar(arbol, clave, entrada);
+        }
+    }
+
+    // El nombre completo y cada sufijo que empieza en una palabra
+    static List<String> claves(String normalizado) {
+        List<String> claves = new ArrayList<>();
+        int inicio = 0;
+        while (inicio < normalizado.length() && claves.size() < MAX_PALABRAS) {
+            claves.add(normalizado.substring(inicio));
+            int espacio = normalizado.indexOf(' ', inicio);
+            if (espacio < 0) {
+                break;
+            }
+            inicio = espacio + 1;
+        }
+        return claves;
+    }
+
+    private void insertar(Nodo arbol, String clave, Entrada entrada) {
+        Nodo nodo = arbol;
+        int pos = 0;
+        while (pos < clave.length()) {
+            Nodo hijo = nodo.hijo(clave.charAt(pos));
+            if (hijo == null) {
+                Nodo hoja = new Nodo(clave.substring(pos));
+                hoja.terminales.add(entrada);
+                hoja.top = new Entrada[]{entrada};
+                nodo.ponerHijo(hoja);
+                return;
+            }
+            int comun = prefijoComun(hijo.etiqueta, clave, pos);
+            if (comun < hijo.etiqueta.length()) {
+                // La clave se separa a mitad de la arista: se parte con un nodo intermedio
+                Nodo intermedio = new Nodo(hijo.etiqueta.substring(0, comun));
+                intermedio.top = hijo.top.clone();
+                hijo.etiqueta = hijo.etiqueta.substring(comun);
+                intermedio.ponerHijo(hijo);
+                nodo.ponerHijo(intermedio);
+                hijo = intermedio;
+            }
+            ofrecer(hijo, entrada);
+            nodo = hijo;
+            pos += comun;
+        }
+        nodo.terminales.add(entrada);
+    }
+
+    /**
+     * Quita la clave del subárbol y recalcula los mejores de cada nodo del camino que contenía el producto.
+     * Devuelve true si el nodo quedó vacío y el padre debe descartarlo.
+     */
+    private boolean quitar(Nodo nodo, String clave, int pos, Entrada entrada) {
+        if (pos == clave.length()) {
+            nodo.terminales.removeIf(terminal -> terminal.id == entrada.id);
+        } else {
+            Nodo hijo = nodo.hijo(clave.charAt(pos));
+            if (hijo != null && clave.startsWith(hijo.etiqueta, pos)) {
+                if (quitar(hijo, clave, pos + hijo.etiqueta.length(), entrada)) {
+                    nodo.quitarHijo(hijo.etiqueta.charAt(0));
+                } else if (hijo.terminales.isEmpty() && hijo.hijos.length == 1) {
+                    // Sin producto propio y con un solo hijo: se fusiona con él para seguir comprimido
+                    Nodo nieto = hijo.hijos[0];
+                    nieto.etiqueta = hijo.etiqueta + nieto.etiqueta;
+                    nodo.ponerHijo(nieto);
+                }
+            }
+        }
+        if (contiene(nodo.top, entrada.id)) {
+            recalcular(nodo);
+        }
+        return nodo != raiz && nodo.terminales.isEmpty() && nodo.hijos.length == 0;
+    }
+
+    private void ofrecer(Nodo nodo, Entrada entrada) {
+        Entrada[] top = nodo.top;
+        if (contiene(top, entrada.id)) {
+            return;
+        }
+        if (top.length == maxSugerencias && Entrada.ORDEN.compare(entrada, top[top.length - 1]) >= 0) {
+            return;
+        }
+        int posicion = 0;
+        while (posicion < top.length && Entrada.ORDEN.compare(top[posicion], entrada) < 0) {
+            posicion++;
+        }
+        Entrada[] nuevo = new Entrada[Math.min(top.length + 1, maxSugerencias)];
+        System.arraycopy(top, 0, nuevo, 0, posicion);
+        nuevo[posicion] = entrada;
+        System.arraycopy(top, posicion, nuevo, posicion + 1, nuevo.length - posicion - 1);
+        nodo.top = nuevo;
+    }
+
+    // Los mejores del nodo salen de sus productos propios y de los mejores de cada hijo
+    private void recalcular(Nodo nodo) {
+        List<Entrada> candidatos = new ArrayList<>(nodo.terminales);
+        for (Nodo hijo : nodo.hijos) {
+            candidatos.addAll(Arrays.asList(hijo.top));
+        }
+        candidatos.sort(Entrada.ORDEN);
+        List<Entrada> top = new ArrayList<>(maxSugerencias);
+        Set<Long> vistos = new HashSet<>();
+        for (Entrada candidato : candidatos) {
+            if (top.size() == maxSugerencias) {
+                break;
+            }
+            if (vistos.add(candidato.id)) {
+                top.add(candidato);
+            }
+        }
+        nodo.top = top.toArray(SIN_ENTRADAS);
+    }
+
+    private static boolean contiene(Entrada[] top, long id) {
+        for (Entrada entrada : top) {
+            if (entrada.id == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int prefijoComun(String etiqueta, String texto, int desde) {
+        int maximo = Math.min(etiqueta.length(), texto.length() - desde);
+        int i = 0;
+        while (i < maximo && etiqueta.charAt(i) == texto.charAt(desde + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean conStock(Integer stock) {
+        return stock != null && stock > 0;
+    }
+
+    private static double valor(Double rating) {
+        return rating == null ? 0.0 : rating;
+    }
+
+    record Contenido(Nodo raiz, Map<Long, Entrada> productos) {
+    }
+
+    private static final class Entrada {
+
+        // Con stock primero, luego mayor rating; el ID desempata para que el orden sea total
+        static final Comparator<Entrada> ORDEN = Comparator.comparing((Entrada e) -> !e.disponible)
+                .thenComparing(e -> -e.rating)
+                .thenComparingLong(e -> e.id);
+
+        final long id;
+        final String nombre;
+        final String normalizado;
+        final double rating;
+        final boolean disponible;
+
+        Entrada(long id, String nombre, String normalizado, double rating, boolean disponible) {
+            this.id = id;
+            this.nombre = nombre;
+            this.normalizado = normalizado;
+            this.rating = rating;
+            this.disponible = disponible;
+        }
+    }
+
+    private static final class Nodo {
+
+        // Texto de la arista que llega a este nodo desde su padre
+        String etiqueta;
+
+        // Hijos ordenados por el primer carácter de su etiqueta, para buscarlos por bisección
+        char[] iniciales = new char[0];
+        Nodo[] hijos = new Nodo[0];
+
+        // Productos cuya clave termina exactamente en este nodo
+        final List<Entrada> terminales = new ArrayList<>(1);
+
+        // Mejores productos distintos del subárbol, ya ordenados
+        Entrada[] top = SIN_ENTRADAS;
+
+        Nodo(String etiqueta) {
+            this.etiqueta = etiqueta;
+        }
+
+        Nodo hijo(char inicial) {
+            int i = Arrays.binarySearch(iniciales, inicial);
+            return i >= 0 ? hijos[i] : null;
+        }
+
+        // Agrega el hijo o reemplaza el que empieza con el mismo carácter
+        void ponerHijo(Nodo hijo) {
+            char inicial = hijo.etiqueta.charAt(0);
+            int i = Arrays.binarySearch(iniciales, inicial);
+            if (i >= 0) {
+                hijos[i] = hijo;
+                return;
+            }
+            int posicion = -i - 1;
+            char[] nuevasIniciales = new char[iniciales.length + 1];
+            Nodo[] nuevosHijos = new Nodo[hijos.length + 1];
+            System.arraycopy(iniciales, 0, nuevasIniciales, 0, posicion);
+            System.arraycopy(hijos, 0, nuevosHijos, 0, posicion);
+            nuevasIniciales[posicion] = inicial;
+            nuevosHijos[posicion] = hijo;
+            System.arraycopy(iniciales, posicion, nuevasIniciales, posicion + 1, iniciales.length - posicion);
+            System.arraycopy(hijos, posicion, nuevosHijos, posicion + 1, hijos.length - posicion);
+            iniciales = nuevasIniciales;
+            hijos = nuevosHijos;
+        }
+
+        void quitarHijo(char inicial) {
+            int i = Arrays.binarySearch(iniciales, inicial);
+            if (i < 0) {
+                return;
+            }
+            char[] nuevasIniciales = new char[iniciales.length - 1];
+            Nodo[] nuevosHijos = new Nodo[hijos.length - 1];
+            System.arraycopy(iniciales, 0, nuevasIniciales, 0, i);
+            System.arraycopy(hijos, 0, nuevosHijos, 0, i);
+            System.arraycopy(iniciales, i + 1, nuevasIniciales, i, iniciales.length - i - 1);
+            System.arraycopy(hijos, i + 1, nuevosHijos, i, hijos.length - i - 1);
+            iniciales = nuevasIniciales;
+            hijos = nuevosHijos;
+        }
+    }
+}
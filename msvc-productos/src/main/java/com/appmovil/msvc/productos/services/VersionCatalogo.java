@@ -0,0 +1,153 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.config.CacheConfig;
+import com.appmovil.msvc.productos.events.ProductoModificadoEvent;
+import com.appmovil.msvc.productos.events.ProductosImportadosEvent;
+import com.appmovil.msvc.productos.events.RatingsActualizadosEvent;
+import com.appmovil.msvc.productos.events.StockActualizadoEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versión del catálogo: se incrementa con cada alta, modificación, baja, cambio de stock o de rating.
+ * Las respuestas de listados y detalle llevan una ETag derivada de ella, así un GET con
+ * If-None-Match se responde 304 sin consultar la base de datos.
+ */
+@Component
+public class VersionCatalogo {
+
+    // Distingue reinicios: el contador vuelve a 0, pero las ETags emitidas antes no deben coincidir
+    private final String epoca = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLong version = new AtomicLong();
+
+    // Cambia solo con los datos que otros servicios guardan como copia (nombre, imagen, activo); no con
+    // el stock ni el rating, que cambian a cada rato y no forman parte de esas copias
+    private final AtomicLong versionCopias = new AtomicLong();
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    // Versión que publicó la última invalidación de cada producto y de los listados. CacheCatalogo
+    // descarta las entradas leídas antes: evictIfPresent no alcanza, porque un GET que consultó la base
+    // antes del commit puede guardar su resultado después de la invalidación
+    private final Map<Long, Long> productosInvalidadosEn = new ConcurrentHashMap<>();
+
+    private final AtomicLong listadosInvalidadosEn = new AtomicLong();
+
+    // Cada listener marca lo que cambió con la versión que va a publicar y recién después la publica; así
+    // un GET en ese intervalo no combina la versión nueva con datos viejos de la caché (que
+    // RespuestasSerializadas guardaría con la versión nueva)
+    @TransactionalEventListener
+    public void onProductoModificado(ProductoModificadoEvent event) {
+        invalidar(List.of(event.getIdProducto()));
+        invalidarListados();
+        if (event.isCopiaModificada()) {
+            incrementarCopias();
+        }
+        incrementar();
+    }
+
+    @TransactionalEventListener
+    public void onProductosImportados(ProductosImportadosEvent event) {
+        invalidarListados();
+        incrementar();
+    }
+
+    // Los listados cachean solo IDs y un cambio de stock o de rating no altera cuáles productos
+    // contienen: basta con invalidar la entrada de cada producto
+    @TransactionalEventListener
+    public void onRatingsActualizados(RatingsActualizadosEvent event) {
+        invalidarProductos(event.getIdsProductos());
+    }
+
+    @TransactionalEventListener
+    public void onStockActualizado(StockActualizadoEvent event) {
+        invalidarProductos(List.of(event.getIdProducto()));
+    }
+
+    /**
+     * Invalida productos cuyo contenido cambió sin que cambie a qué listados pertenecen (stock, rating,
+     * imagen) y publica la nueva versión.
+     */
+    public void invalidarProductos(Collection<Long> ids) {
+        invalidar(ids);
+        incrementar();
+    }
+
+    // Si una entrada fue leída en una versión anterior a la última invalidación de lo que contiene, ya no vale
+    public boolean productoVigente(Long id, long leidaEn) {
+        return leidaEn >= productosInvalidadosEn.getOrDefault(id, 0L);
+    }
+
+    public boolean listadosVigentes(long leidaEn) {
+        return leidaEn >= listadosInvalidadosEn.get();
+    }
+
+    // evictIfPresent e invalidate se aplican en el acto aunque la caché sea transaccional; solo liberan
+    // memoria, la marca de versión es la que descarta las entradas
+    private void invalidar(Collection<Long> ids) {
+        long siguiente = version.get() + 1;
+        ids.forEach(id -> productosInvalidadosEn.merge(id, siguiente, Math::max));
+        Cache productos = cacheManager.getCache(CacheConfig.PRODUCTOS);
+        if (productos != null) {
+            ids.forEach(productos::evictIfPresent);
+        }
+    }
+
+    private void invalidarListados() {
+        listadosInvalidadosEn.accumulateAndGet(version.get() + 1, Math::max);
+        for (String nombre : List.of(CacheConfig.PRODUCTOS_ACTIVOS, CacheConfig.PRODUCTOS_POR_CATEGORIA)) {
+            Cache cache = cacheManager.getCache(nombre);
+            if (cache != null) {
+                cache.invalidate();
+            }
+        }
+    }
+
+    public void incrementar() {
+        version.incrementAndGet();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    // Se incrementa antes que la versión general: quien lee ambas, en ese orden, nunca ve la versión
+    // general nueva junto a la de copias anterior
+    public void incrementarCopias() {
+        versionCopias.incrementAndGet();
+    }
+
+    public long getVersionCopias() {
+        return versionCopias.get();
+    }
+
+    // ETag fuerte; debe leerse antes de consultar los datos que acompaña
+    public String etag() {
+        return etag(version.get());
+    }
+
+    // ETag de una versión ya leída, para usar la misma lectura como clave de otras cachés
+    public String etag(long version) {
+        return "\"" + token(version) + "\"";
+    }
+
+    /**
+     * Versión publicada en GET /version (general y de copias). Otros servicios la guardan junto a sus
+     * copias de datos del catálogo y solo la comparan por igualdad: distinta significa que hubo cambios
+     * o un reinicio.
+     */
+    public String token(long version) {
+        return epoca + "-" + version;
+    }
+}
@@ -0,0 +1,106 @@
+package com.appmovil.msvc.productos.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Estado en memoria derivado del catálogo: se carga desde la base de datos y luego se mantiene con los
+ * eventos de ProductoServiceImpl. La lectura corre sin el lock, así las consultas siguen respondiendo con
+ * el estado anterior mientras tanto; los cambios que llegan en ese lapso se aplican al estado anterior y
+ * se guardan para reaplicarlos sobre el nuevo al reemplazarlo.
+ *
+ * @param <F> lo leído de la base de datos
+ * @param <A> avisos que genera un cambio y se publican fuera del lock
+ */
+public abstract class VistaCatalogo<F, A> {
+
+    // Protege el estado de la subclase; las consultas toman el read lock
+    protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Cambios recibidos mientras se recarga; se reaplican sobre el estado nuevo
+    private List<Object> pendientes;
+
+    private volatile boolean listo = false;
+
+    public boolean isListo() {
+        return listo;
+    }
+
+    /**
+     * Lee el estado completo desde la base de datos. Se llama sin el lock tomado.
+     */
+    protected abstract F leer();
+
+    /**
+     * Reemplaza el estado por el leído. Se llama con el write lock tomado.
+     */
+    protected abstract void reemplazar(F leido);
+
+    /**
+     * Aplica un cambio al estado y agrega a avisos lo que deba publicarse. Se llama con el write lock tomado.
+     */
+    protected abstract void aplicar(Object evento, List<A> avisos);
+
+    /**
+     * Publica los avisos de un cambio, ya sin el lock. Por defecto no hace nada.
+     */
+    protected void publicar(List<A> avisos) {
+    }
+
+    protected synchronized F recargar() {
+        lock.writeLock().lock();
+        try {
+            pendientes = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        F leido;
+        try {
+            leido = leer();
+        } catch (RuntimeException ex) {
+            lock.writeLock().lock();
+            try {
+                pendientes = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw ex;
+        }
+
+        lock.writeLock().lock();
+        try {
+            reemplazar(leido);
+            // Los pendientes ya generaron sus avisos cuando llegaron
+            List<A> descartados = new ArrayList<>();
+            for (Object evento : pendientes) {
+                aplicar(evento, descartados);
+            }
+            pendientes = null;
+            listo = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return leido;
+    }
+
+    protected void registrar(List<?> eventos) {
+        List<A> avisos = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            if (pendientes != null) {
+                pendientes.addAll(eventos);
+            }
+            for (Object evento : eventos) {
+                aplicar(evento, avisos);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!avisos.isEmpty()) {
+            publicar(avisos);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.appmovil.msvc.productos.repositories;
+
+import com.appmovil.msvc.productos.MsvcProductosApplication;
+import com.appmovil.msvc.productos.dtos.PaginaDTO;
+import com.appmovil.msvc.productos.dtos.ProductoSimpleDTO;
+import com.appmovil.msvc.productos.models.entities.Producto;
+import com.appmovil.msvc.productos.services.AlertasStock;
+import com.appmovil.msvc.productos.services.ProductoService;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifica con EXPLAIN de H2 que las consultas que Hibernate genera para el catálogo se resuelven
+ * sobre idx_productos_* (rango sobre el índice y filas ya ordenadas) y no recorriendo la tabla.
+ * El SQL se captura con un StatementInspector, así se prueba exactamente lo que llega a la base de datos.
+ */
+@SpringBootTest(classes = MsvcProductosApplication.class, properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.appmovil.msvc.productos.repositories.ProductoRepositoryPlanTest$SentenciasEjecutadas")
+@ActiveProfiles("test")
+@DisplayName("ProductoRepository - Planes de consulta sobre los índices")
+class ProductoRepositoryPlanTest {
+
+    private static final int FILAS = 5_000;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private AlertasStock alertasStock;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        // 20 categorías, 1 de cada 10 productos inactivo; ANALYZE deja al optimizador con estadísticas reales
+        jdbcTemplate.update("INSERT INTO productos (nombre, precio, categoria, categoria_norm, descripcion, stock, " +
+                "activo, rating, version) SELECT 'Plan ' || X, MOD(X * 7, 5000), 'PLAN_' || MOD(X, 20), " +
+                "'plan_' || MOD(X, 20), 'Plan de consulta', 5, MOD(X, 10) <> 0, MOD(X, 50) / 10.0, 0 " +
+                "FROM SYSTEM_RANGE(1, ?)", FILAS);
+        jdbcTemplate.execute("ANALYZE");
+        SentenciasEjecutadas.SQL.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM productos WHERE categoria_norm LIKE 'plan\\_%' ESCAPE '\\'");
+    }
+
+    @Test
+    @DisplayName("consultar por categoría y rango de precios - Debe recorrer idx_productos_categoria_activo_precio en orden")
+    void testConsultarPorPrecio_DebeUsarIndiceCategoriaActivoPrecio() {
+        // When: primera página y la siguiente por cursor
+        PaginaDTO<Producto> primera = productoService.consultar("Plan_3", 100, 3000, "precio", null, 20);
+        productoService.consultar("Plan_3", 100, 3000, "precio", primera.getNext(), 20);
+
+        // Then
+        List<String> consultas = consultasDeProductos();
+        assertThat(consultas).hasSize(2);
+        for (String sql : consultas) {
+            assertThat(plan(sql))
+                    .contains("IDX_PRODUCTOS_CATEGORIA_ACTIVO_PRECIO")
+                    .contains("/* index sorted */");
+        }
+    }
+
+    @Test
+    @DisplayName("consultar por categoría ordenado por rating - Debe recorrer idx_productos_categoria_activo_rating en orden")
+    void testConsultarPorRating_DebeUsarIndiceCategoriaActivoRating() {
+        // When
+        productoService.consultar("PLAN_3", null, null, "-rating", null, 20);
+
+        // Then
+        assertThat(plan(consultasDeProductos().get(0)))
+                .contains("IDX_PRODUCTOS_CATEGORIA_ACTIVO_RATING")
+                .contains("/* index sorted */");
+    }
+
+    @Test
+    @DisplayName("findByCategoria - La igualdad sobre categoria_norm debe resolverse con el índice")
+    void testFindByCategoria_DebeUsarIndiceDeCategoria() {
+        // When
+        productoService.findByCategoria("PLAN_3");
+
+        // Then
+        assertThat(plan(consultasDeProductos().get(0)))
+                .contains("IDX_PRODUCTOS_CATEGORIA_ACTIVO_")
+                .contains("CATEGORIA_NORM = ?");
+    }
+
+    @Test
+    @DisplayName("cambios - Debe recorrer idx_productos_secuencia en orden")
+    void testCambios_DebeUsarIndiceDeSecuencia() {
+        // When
+        productoService.cambios(0L, 20);
+
+        // Then
+        assertThat(plan(consultasDeProductos().get(0)))
+                .contains("IDX_PRODUCTOS_SECUENCIA")
+                .contains("/* index sorted */");
+    }
+
+    @Test
+    @DisplayName("stock bajo - La carga de productos con umbral debe recorrer idx_productos_umbral_stock")
+    void testStockBajo_DebeUsarIndiceDeUmbral() {
+        // When
+        alertasStock.reconstruir();
+
+        // Then
+        assertThat(plan(consultasDeProductos().get(0)))
+                .contains("IDX_PRODUCTOS_UMBRAL_STOCK")
+                .contains("UMBRAL_STOCK > 0");
+    }
+
+    @Test
+    @DisplayName("consultar - Las páginas encadenadas por cursor deben coincidir con el orden completo, sin repetir filas")
+    void testConsultar_PaginasEncadenadas_DebenRespetarElOrden() {
+        // Given: orden esperado calculado en memoria sobre todas las filas que cumplen el filtro
+        List<Producto> esperados = jdbcTemplate.query(
+                "SELECT id_producto, rating FROM productos WHERE categoria_norm = 'plan_7' AND activo " +
+                "AND precio BETWEEN 1000 AND 4000",
+                (fila, i) -> Producto.builder().id(fila.getLong(1)).rating(fila.getDouble(2)).build());
+        esperados.sort(Comparator.comparing(Producto::getRating).thenComparing(Producto::getId).reversed());
+
+        // When
+        List<Long> recorridos = new ArrayList<>();
+        String cursor = null;
+        do {
+            PaginaDTO<Producto> pagina = productoService.consultar("plan_7", 1000, 4000, "-rating", cursor, 7);
+            pagina.getItems().forEach(producto -> recorridos.add(producto.getId()));
+            cursor = pagina.getNext();
+        } while (cursor != null);
+
+        // Then
+        assertThat(recorridos).containsExactlyElementsOf(esperados.stream().map(Producto::getId).toList());
+    }
+
+    @Test
+    @DisplayName("findResumenByCategoria - Debe resolverse con el índice y referenciar la imagen solo si existe")
+    void testFindResumenByCategoria_DebeReferenciarImagenSegunExista() {
+        // Given: un producto con imagen en el almacén, uno con URL externa y uno sin imagen
+        jdbcTemplate.update("INSERT INTO productos (nombre, precio, categoria, categoria_norm, descripcion, stock, " +
+                "activo, rating, version, imagen, imagen_hash) VALUES " +
+                "('Con hash', 1, 'PLAN_IMG', 'plan_img', 'd', 5, true, 0, 0, NULL, 'abc123'), " +
+                "('Con URL', 1, 'PLAN_IMG', 'plan_img', 'd', 5, true, 0, 0, 'https://cdn/p.png', NULL), " +
+                "('Sin imagen', 1, 'PLAN_IMG', 'plan_img', 'd', 5, true, 0, 0, '', NULL)");
+        SentenciasEjecutadas.SQL.clear();
+
+        // When
+        List<ProductoSimpleDTO> filas = productoService.findResumenByCategoria("plan_img", null, 10).getItems();
+
+        // Then
+        assertThat(filas).extracting(ProductoSimpleDTO::getImagen).containsExactly(
+                "/api/v1/productos/imagenes/abc123", "/api/v1/productos/" + filas.get(1).getId() + "/imagen", null);
+        assertThat(consultasDeProductos()).singleElement()
+                .satisfies(sql -> assertThat(plan(sql)).contains("IDX_PRODUCTOS_CATEGORIA_ACTIVO"));
+    }
+
+    private List<String> consultasDeProductos() {
+        return SentenciasEjecutadas.SQL.stream()
+                .filter(sql -> sql.startsWith("select") && sql.contains(" from productos "))
+                .toList();
+    }
+
+    // H2 acepta EXPLAIN con los parámetros sin asignar; el plan no depende de sus valores
+    private String plan(String sql) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+    }
+
+    public static class SentenciasEjecutadas implements StatementInspector {
+
+        static final List<String> SQL = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            SQL.add(sql);
+            return sql;
+        }
+    }
+}
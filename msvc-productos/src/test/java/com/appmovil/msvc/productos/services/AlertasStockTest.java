@@ -0,0 +1,157 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.dtos.StockBajoDTO;
+import com.appmovil.msvc.productos.events.ProductoModificadoEvent;
+import com.appmovil.msvc.productos.events.StockActualizadoEvent;
+import com.appmovil.msvc.productos.events.StockBajoEvent;
+import com.appmovil.msvc.productos.models.entities.Producto;
+import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AlertasStock - Unit Tests")
+class AlertasStockTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    @Mock
+    private StockCaliente stockCaliente;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private AlertasStock alertasStock;
+
+    @BeforeEach
+    void setUp() {
+        when(productoRepository.findConUmbralStock()).thenReturn(List.of(
+                new StockBajoDTO(1L, "Laptop", "LAPTOPS", 20, 10),
+                new StockBajoDTO(2L, "Mouse", "ACCESORIOS", 3, 5)));
+        alertasStock.iniciar();
+        alertasStock.reconstruir();
+    }
+
+    @AfterEach
+    void tearDown() {
+        alertasStock.detener();
+    }
+
+    @Test
+    @DisplayName("stockBajo - Debe devolver solo los productos por debajo de su umbral")
+    void testStockBajo_DebeDevolverBajoUmbral() {
+        // When
+        List<StockBajoDTO> resultado = alertasStock.stockBajo();
+
+        // Then
+        assertThat(resultado).extracting(StockBajoDTO::getId).containsExactly(2L);
+        verify(productoRepository, times(1)).findConUmbralStock();
+    }
+
+    @Test
+    @DisplayName("onStockActualizado - Al quedar por debajo del umbral debe publicar la alerta una sola vez")
+    void testOnStockActualizado_CruceHaciaAbajo_DebePublicarAlerta() {
+        // When
+        alertasStock.onStockActualizado(new StockActualizadoEvent(1L, "LAPTOPS", 20, 9));
+        alertasStock.onStockActualizado(new StockActualizadoEvent(1L, "LAPTOPS", 9, 4));
+
+        // Then
+        ArgumentCaptor<StockBajoEvent> captor = ArgumentCaptor.forClass(StockBajoEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(captor.capture());
+        assertThat(captor.getValue().isBajo()).isTrue();
+        assertThat(captor.getValue().getProducto().getStock()).isEqualTo(9);
+        assertThat(alertasStock.stockBajo()).extracting(StockBajoDTO::getId).containsExactly(1L, 2L);
+        assertThat(alertasStock.stockBajo().get(0).getStock()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("onStockActualizado - Al reponer hasta el umbral debe quitar el producto y avisar")
+    void testOnStockActualizado_Reposicion_DebeQuitarYAvisar() {
+        // When
+        alertasStock.onStockActualizado(new StockActualizadoEvent(2L, "ACCESORIOS", 3, 5));
+
+        // Then
+        ArgumentCaptor<StockBajoEvent> captor = ArgumentCaptor.forClass(StockBajoEvent.class);
+        verify(eventPublisher).publishEvent(captor.capture());
+        assertThat(captor.getValue().isBajo()).isFalse();
+        assertThat(alertasStock.stockBajo()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("onStockActualizado - Un producto sin umbral no debe generar alertas")
+    void testOnStockActualizado_SinUmbral_NoDebeAvisar() {
+        // When
+        alertasStock.onStockActualizado(new StockActualizadoEvent(3L, "LAPTOPS", 5, 0));
+
+        // Then
+        verifyNoInteractions(eventPublisher);
+        assertThat(alertasStock.stockBajo()).extracting(StockBajoDTO::getId).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("onProductoModificado - Asignar un umbral mayor al stock debe avisar y quitarlo debe sacarlo de la lista")
+    void testOnProductoModificado_CambioDeUmbral() {
+        // Given
+        Producto producto = Producto.builder()
+                .id(1L).nombre("Laptop").categoria("LAPTOPS").stock(20).umbralStock(25).build();
+
+        // When
+        alertasStock.onProductoModificado(new ProductoModificadoEvent(1L, producto));
+
+        // Then
+        verify(eventPublisher).publishEvent(any(StockBajoEvent.class));
+        assertThat(alertasStock.stockBajo()).extracting(StockBajoDTO::getId).containsExactly(1L, 2L);
+
+        // When
+        producto.setUmbralStock(0);
+        alertasStock.onProductoModificado(new ProductoModificadoEvent(1L, producto));
+        alertasStock.onProductoModificado(new ProductoModificadoEvent(2L, null));
+
+        // Then
+        assertThat(alertasStock.stockBajo()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("onProductoModificado - En stock caliente debe conservar el último stock recibido por evento")
+    void testOnProductoModificado_StockCaliente_DebeConservarStock() {
+        // Given
+        when(stockCaliente.isCaliente(2L)).thenReturn(true);
+        alertasStock.onStockActualizado(new StockActualizadoEvent(2L, "ACCESORIOS", 3, 1));
+        Producto producto = Producto.builder()
+                .id(2L).nombre("Mouse inalámbrico").categoria("ACCESORIOS").stock(3).umbralStock(5).build();
+
+        // When
+        alertasStock.onProductoModificado(new ProductoModificadoEvent(2L, producto));
+
+        // Then
+        StockBajoDTO mouse = alertasStock.stockBajo().get(0);
+        assertThat(mouse.getNombre()).isEqualTo("Mouse inalámbrico");
+        assertThat(mouse.getStock()).isEqualTo(1);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    @DisplayName("suscribir - Debe registrar la conexión SSE")
+    void testSuscribir_DebeRegistrarSuscriptor() {
+        // When
+        alertasStock.suscribir();
+
+        // Then
+        assertThat(alertasStock.getSuscriptores()).isEqualTo(1);
+    }
+}
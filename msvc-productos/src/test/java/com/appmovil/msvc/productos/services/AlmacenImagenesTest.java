@@ -0,0 +1,114 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.exception.ProductoException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("AlmacenImagenes - Unit Tests")
+class AlmacenImagenesTest {
+
+    // Cabecera PNG seguida de algunos bytes
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13, 1, 2, 3};
+
+    @TempDir
+    Path directorio;
+
+    private AlmacenImagenes almacen;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        almacen = new AlmacenImagenes();
+        ReflectionTestUtils.setField(almacen, "directorio", directorio.toString());
+        almacen.iniciar();
+    }
+
+    private long archivos() throws IOException {
+        try (Stream<Path> rutas = Files.walk(directorio)) {
+            return rutas.filter(Files::isRegularFile).count();
+        }
+    }
+
+    @Test
+    @DisplayName("externalizar - La misma imagen en data URI o Base64 debe guardarse una sola vez")
+    void testExternalizar_DebeDeduplicarPorContenido() throws IOException {
+        // Given
+        String base64 = Base64.getEncoder().encodeToString(PNG);
+
+        // When
+        String primero = almacen.externalizar("data:image/png;base64," + base64);
+        String segundo = almacen.externalizar(base64);
+
+        // Then
+        assertThat(primero).hasSize(64).isEqualTo(segundo);
+        assertThat(archivos()).isEqualTo(1);
+        assertThat(Files.readAllBytes(directorio.resolve(primero.substring(0, 2)).resolve(primero))).isEqualTo(PNG);
+    }
+
+    @Test
+    @DisplayName("externalizar - URLs, referencias y valores vacíos no se guardan; un data URI inválido se rechaza")
+    void testExternalizar_UrlVaciaOInvalida() {
+        assertThat(almacen.externalizar("https://cdn.tienda.cl/laptop.png")).isNull();
+        assertThat(almacen.externalizar("laptop.png")).isNull();
+        assertThat(almacen.externalizar("  ")).isNull();
+        assertThat(almacen.externalizar(null)).isNull();
+        assertThatThrownBy(() -> almacen.externalizar("data:image/png;base64,%%%"))
+                .isInstanceOf(ProductoException.class);
+    }
+
+    @Test
+    @DisplayName("externalizar - Una palabra o ruta que también es Base64 válido no debe tratarse como imagen")
+    void testExternalizar_ReferenciaDeTexto_NoDebeGuardarse() throws IOException {
+        assertThat(almacen.externalizar("camiseta")).isNull();
+        assertThat(almacen.externalizar("default")).isNull();
+        assertThat(almacen.externalizar("img/polera")).isNull();
+        assertThat(almacen.externalizar("zapatillasDeporte")).isNull();
+        assertThat(almacen.externalizar("AQID")).isNull();
+        assertThat(archivos()).isZero();
+    }
+
+    @Test
+    @DisplayName("enLinea - Un Base64 plano solo es imagen si tiene la firma de un formato conocido")
+    void testEnLinea_Base64ConFirma() {
+        String png = Base64.getMimeEncoder().encodeToString(PNG);
+
+        assertThat(AlmacenImagenes.enLinea(png)).isTrue();
+        assertThat(AlmacenImagenes.enLinea(Base64.getEncoder().encodeToString("texto sin firma".getBytes()))).isFalse();
+        assertThat(AlmacenImagenes.enLinea("data:image/png;base64,AQID")).isTrue();
+    }
+
+    @Test
+    @DisplayName("abrir - Debe informar tamaño y tipo de contenido deducido de los bytes")
+    void testAbrir_DebeDeducirTipoDeContenido() {
+        // Given
+        String png = almacen.guardar(PNG);
+        String texto = almacen.guardar("sin firma conocida".getBytes());
+
+        // When
+        AlmacenImagenes.ArchivoImagen archivo = almacen.abrir(png);
+
+        // Then
+        assertThat(archivo.tamanio()).isEqualTo(PNG.length);
+        assertThat(archivo.tipoContenido()).isEqualTo("image/png");
+        assertThat(almacen.abrir(texto).tipoContenido()).isEqualTo("application/octet-stream");
+        assertThat(almacen.existe(png)).isTrue();
+    }
+
+    @Test
+    @DisplayName("abrir - Debe rechazar hashes mal formados o inexistentes sin salir del directorio")
+    void testAbrir_HashInvalido_DebeLanzarExcepcion() {
+        assertThatThrownBy(() -> almacen.abrir("../../etc/passwd")).isInstanceOf(ProductoException.class);
+        assertThatThrownBy(() -> almacen.abrir("0".repeat(64))).isInstanceOf(ProductoException.class);
+        assertThat(almacen.existe("../" + "0".repeat(61))).isFalse();
+    }
+}
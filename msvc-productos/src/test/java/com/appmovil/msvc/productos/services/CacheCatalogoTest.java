@@ -0,0 +1,179 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.config.CacheConfig;
+import com.appmovil.msvc.productos.events.ProductoModificadoEvent;
+import com.appmovil.msvc.productos.events.StockActualizadoEvent;
+import com.appmovil.msvc.productos.models.entities.Producto;
+import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("CacheCatalogo - Unit Tests")
+class CacheCatalogoTest {
+
+    private CacheManager cacheManager;
+    private ProductoRepository productoRepository;
+    private VersionCatalogo versionCatalogo;
+    private CacheCatalogo cacheCatalogo;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new CaffeineCacheManager(
+                CacheConfig.PRODUCTOS, CacheConfig.PRODUCTOS_ACTIVOS, CacheConfig.PRODUCTOS_POR_CATEGORIA);
+        versionCatalogo = new VersionCatalogo();
+        ReflectionTestUtils.setField(versionCatalogo, "cacheManager", cacheManager);
+        productoRepository = mock(ProductoRepository.class);
+        cacheCatalogo = new CacheCatalogo();
+        ReflectionTestUtils.setField(cacheCatalogo, "productoRepository", productoRepository);
+        ReflectionTestUtils.setField(cacheCatalogo, "cacheManager", cacheManager);
+        ReflectionTestUtils.setField(cacheCatalogo, "versionCatalogo", versionCatalogo);
+    }
+
+    @Test
+    @DisplayName("listado - Una lectura lenta que guarda después del commit no debe servirse")
+    void testListado_LecturaLentaDuranteCommit_NoDebeServirse() throws Exception {
+        // Given: un GET consulta la base antes del commit y queda demorado
+        Producto viejo = producto(1L, "Teclado");
+        Producto nuevo = producto(1L, "Teclado mecánico");
+        ConsultaLenta<List<Producto>> consulta = new ConsultaLenta<>(List.of(viejo));
+        CompletableFuture<List<Producto>> lenta = CompletableFuture.supplyAsync(() -> cacheCatalogo.listado(
+                CacheConfig.PRODUCTOS_ACTIVOS, SimpleKey.EMPTY, consulta, p -> true));
+        consulta.esperarInicio();
+
+        // When: el commit invalida mientras tanto y la lectura lenta guarda su lista vieja después
+        versionCatalogo.onProductoModificado(new ProductoModificadoEvent(1L, nuevo));
+        consulta.terminar();
+        assertThat(lenta.get(5, TimeUnit.SECONDS)).containsExactly(viejo);
+
+        // Then: la entrada vieja quedó en la caché, pero la próxima lectura vuelve a la base
+        assertThat(cacheManager.getCache(CacheConfig.PRODUCTOS_ACTIVOS).get(SimpleKey.EMPTY)).isNotNull();
+        List<Producto> siguiente = cacheCatalogo.listado(
+                CacheConfig.PRODUCTOS_ACTIVOS, SimpleKey.EMPTY, () -> List.of(nuevo), p -> true);
+        assertThat(siguiente).containsExactly(nuevo);
+    }
+
+    @Test
+    @DisplayName("producto - Una lectura lenta que guarda después de un cambio de stock no debe servirse")
+    void testProducto_LecturaLentaDuranteCambio_NoDebeServirse() throws Exception {
+        // Given
+        Producto viejo = producto(1L, "Mouse");
+        Producto nuevo = producto(1L, "Mouse");
+        nuevo.setStock(4);
+        ConsultaLenta<Producto> consulta = new ConsultaLenta<>(viejo);
+        CompletableFuture<Producto> lenta = CompletableFuture.supplyAsync(() -> cacheCatalogo.producto(1L, consulta));
+        consulta.esperarInicio();
+
+        // When
+        versionCatalogo.invalidarProductos(List.of(1L));
+        consulta.terminar();
+        lenta.get(5, TimeUnit.SECONDS);
+
+        // Then: se vuelve a consultar una vez y esa lectura sí queda cacheada
+        assertThat(cacheCatalogo.producto(1L, () -> nuevo)).isSameAs(nuevo);
+        assertThat(cacheCatalogo.producto(1L, () -> viejo)).isSameAs(nuevo);
+    }
+
+    @Test
+    @DisplayName("listado - Sin cambios debe servir la entrada cacheada")
+    void testListado_SinCambios_DebeUsarCache() {
+        // Given
+        List<Producto> primera = cacheCatalogo.listado(
+                CacheConfig.PRODUCTOS_POR_CATEGORIA, "perifericos", () -> List.of(producto(1L, "Mouse")), p -> true);
+
+        // When: se publica una versión nueva sin invalidar los listados
+        versionCatalogo.incrementar();
+        List<Producto> segunda = cacheCatalogo.listado(
+                CacheConfig.PRODUCTOS_POR_CATEGORIA, "perifericos", () -> fail("No debe consultar la base"), p -> true);
+
+        // Then
+        assertThat(segunda).isEqualTo(primera);
+        verifyNoInteractions(productoRepository);
+    }
+
+    @Test
+    @DisplayName("listado - Un cambio de stock solo debe volver a leer el producto modificado")
+    void testListado_CambioDeStock_DebeLeerSoloElProducto() {
+        // Given
+        Producto mouse = producto(1L, "Mouse");
+        Producto teclado = producto(2L, "Teclado");
+        cacheCatalogo.listado(CacheConfig.PRODUCTOS_ACTIVOS, SimpleKey.EMPTY, () -> List.of(mouse, teclado), p -> true);
+        Producto tecladoNuevo = producto(2L, "Teclado");
+        tecladoNuevo.setStock(3);
+        when(productoRepository.findAllById(List.of(2L))).thenReturn(List.of(tecladoNuevo));
+
+        // When
+        versionCatalogo.onStockActualizado(new StockActualizadoEvent(2L, "PERIFERICOS", 5, 3));
+        List<Producto> resultado = cacheCatalogo.listado(CacheConfig.PRODUCTOS_ACTIVOS, SimpleKey.EMPTY,
+                () -> fail("No debe consultar el listado"), p -> true);
+
+        // Then
+        assertThat(resultado).containsExactly(mouse, tecladoNuevo);
+        verify(productoRepository).findAllById(List.of(2L));
+    }
+
+    @Test
+    @DisplayName("listado - Si un producto armado desde la caché ya no pertenece debe consultar el listado")
+    void testListado_ProductoQueNoPertenece_DebeConsultar() {
+        // Given
+        Producto mouse = producto(1L, "Mouse");
+        cacheCatalogo.listado(CacheConfig.PRODUCTOS_ACTIVOS, SimpleKey.EMPTY, () -> List.of(mouse), p -> true);
+        mouse.setActivo(false);
+
+        // When
+        List<Producto> resultado = cacheCatalogo.listado(CacheConfig.PRODUCTOS_ACTIVOS, SimpleKey.EMPTY,
+                List::of, p -> Boolean.TRUE.equals(p.getActivo()));
+
+        // Then
+        assertThat(resultado).isEmpty();
+    }
+
+    // Consulta a la base que se queda esperando hasta que el test la deja terminar
+    private static final class ConsultaLenta<T> implements Supplier<T> {
+
+        private final T resultado;
+        private final CountDownLatch iniciada = new CountDownLatch(1);
+        private final CountDownLatch liberada = new CountDownLatch(1);
+
+        ConsultaLenta(T resultado) {
+            this.resultado = resultado;
+        }
+
+        @Override
+        public T get() {
+            iniciada.countDown();
+            try {
+                liberada.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return resultado;
+        }
+
+        void esperarInicio() throws InterruptedException {
+            assertThat(iniciada.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+
+        void terminar() {
+            liberada.countDown();
+        }
+    }
+
+    private static Producto producto(Long id, String nombre) {
+        return Producto.builder().id(id).nombre(nombre).descripcion(nombre).precio(10_000).stock(5)
+                .categoria("PERIFERICOS").activo(true).build();
+    }
+}
@@ -0,0 +1,122 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.dtos.FacetaCategoriaDTO;
+import com.appmovil.msvc.productos.dtos.FacetasDTO;
+import com.appmovil.msvc.productos.dtos.ProductoFacetaDTO;
+import com.appmovil.msvc.productos.events.ProductoModificadoEvent;
+import com.appmovil.msvc.productos.events.ProductosImportadosEvent;
+import com.appmovil.msvc.productos.events.StockActualizadoEvent;
+import com.appmovil.msvc.productos.models.entities.Producto;
+import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("FacetasCatalogo - Unit Tests")
+class FacetasCatalogoTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    @InjectMocks
+    private FacetasCatalogo facetasCatalogo;
+
+    @BeforeEach
+    void setUp() {
+        when(productoRepository.findAllFacetas()).thenReturn(List.of(
+                new ProductoFacetaDTO(1L, "LAPTOPS", 2500, 10, true),
+                new ProductoFacetaDTO(2L, "Laptops", 900, 0, true),
+                new ProductoFacetaDTO(3L, "SMARTPHONES", 1200, 5, true),
+                new ProductoFacetaDTO(4L, "SMARTPHONES", 100, 5, false)));
+        facetasCatalogo.reconstruir();
+    }
+
+    @Test
+    @DisplayName("facetas - Debe agrupar sin distinguir mayúsculas y excluir productos inactivos")
+    void testFacetas_DebeAgruparPorCategoria() {
+        // When
+        FacetasDTO facetas = facetasCatalogo.facetas();
+
+        // Then
+        assertThat(facetas.getProductos()).isEqualTo(3);
+        assertThat(facetas.getEnStock()).isEqualTo(2);
+        assertThat(facetas.getPrecioMin()).isEqualTo(900);
+        assertThat(facetas.getPrecioMax()).isEqualTo(2500);
+        assertThat(facetas.getCategorias()).hasSize(2);
+
+        FacetaCategoriaDTO laptops = facetas.getCategorias().get(0);
+        assertThat(laptops.getProductos()).isEqualTo(2);
+        assertThat(laptops.getEnStock()).isEqualTo(1);
+        assertThat(laptops.getPrecioMin()).isEqualTo(900);
+        assertThat(laptops.getPrecioMax()).isEqualTo(2500);
+    }
+
+    @Test
+    @DisplayName("onStockActualizado - Debe actualizar la cantidad de productos con stock")
+    void testOnStockActualizado_DebeActualizarEnStock() {
+        // When
+        facetasCatalogo.onStockActualizado(new StockActualizadoEvent(1L, "LAPTOPS", 10, 0));
+        facetasCatalogo.onStockActualizado(new StockActualizadoEvent(2L, "Laptops", 0, 3));
+
+        // Then
+        FacetaCategoriaDTO laptops = facetasCatalogo.facetas().getCategorias().get(0);
+        assertThat(laptops.getEnStock()).isEqualTo(1);
+        assertThat(laptops.getProductos()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("onProductoModificado - Al eliminar el producto más caro debe recalcular el precio máximo")
+    void testOnProductoModificado_Eliminacion_DebeRecalcularRango() {
+        // When
+        facetasCatalogo.onProductoModificado(new ProductoModificadoEvent(1L, null));
+
+        // Then
+        FacetaCategoriaDTO laptops = facetasCatalogo.facetas().getCategorias().get(0);
+        assertThat(laptops.getProductos()).isEqualTo(1);
+        assertThat(laptops.getPrecioMax()).isEqualTo(900);
+    }
+
+    @Test
+    @DisplayName("onProductoModificado - Un cambio de categoría o de estado debe mover el producto de faceta")
+    void testOnProductoModificado_CambioDeCategoria_DebeMoverProducto() {
+        // Given
+        Producto movido = Producto.builder().id(3L).categoria("TABLETS").precio(700).stock(2).activo(true).build();
+        Producto reactivado = Producto.builder().id(4L).categoria("SMARTPHONES").precio(100).stock(5).activo(true).build();
+
+        // When
+        facetasCatalogo.onProductoModificado(new ProductoModificadoEvent(3L, movido));
+        facetasCatalogo.onProductoModificado(new ProductoModificadoEvent(4L, reactivado));
+
+        // Then
+        FacetasDTO facetas = facetasCatalogo.facetas();
+        assertThat(facetas.getCategorias()).extracting(FacetaCategoriaDTO::getCategoria)
+                .containsExactly("Laptops", "SMARTPHONES", "TABLETS");
+        assertThat(facetas.getCategorias().get(1).getPrecioMax()).isEqualTo(100);
+        assertThat(facetas.getProductos()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("onProductosImportados - Debe agregar todos los productos del lote")
+    void testOnProductosImportados_DebeAgregarElLote() {
+        // When
+        facetasCatalogo.onProductosImportados(new ProductosImportadosEvent(List.of(
+                Producto.builder().id(10L).categoria("laptops").precio(3000).stock(1).build(),
+                Producto.builder().id(11L).categoria("MONITORES").precio(400).stock(0).build())));
+
+        // Then
+        FacetasDTO facetas = facetasCatalogo.facetas();
+        assertThat(facetas.getProductos()).isEqualTo(5);
+        assertThat(facetas.getCategorias()).extracting("categoria").contains("MONITORES");
+        assertThat(facetas.getCategorias().get(0).getPrecioMax()).isEqualTo(3000);
+    }
+}
@@ -0,0 +1,87 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.MsvcProductosApplication;
+import com.appmovil.msvc.productos.dtos.ResultadoImportacionDTO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmark de la importación masiva: filas por segundo importando NDJSON y CSV generados al vuelo
+ * (el archivo nunca existe completo en memoria). Se ejecuta solo a pedido:
+ * mvn test -Dtest=ImportadorProductosBenchmarkTest -Dbenchmark=true
+ */
+@SpringBootTest(classes = MsvcProductosApplication.class)
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("ImportadorProductos - Benchmark de filas por segundo")
+class ImportadorProductosBenchmarkTest {
+
+    private static final int FILAS = 100_000;
+
+    @Autowired
+    private ImportadorProductos importador;
+
+    @Test
+    void medirFilasPorSegundo() {
+        // Calentamiento del JIT y del pool de conexiones
+        importador.importar(ndjson(5_000), false);
+
+        medir("NDJSON", ndjson(FILAS), false);
+        medir("CSV", csv(FILAS), true);
+    }
+
+    private void medir(String formato, InputStream entrada, boolean csv) {
+        ResultadoImportacionDTO resultado = importador.importar(entrada, csv);
+
+        System.out.printf("%-6s %,d filas en %,d ms -> %,d filas/s%n",
+                formato, resultado.getFilas(), resultado.getDuracionMs(), resultado.getFilasPorSegundo());
+        assertThat(resultado.getInsertadas()).isEqualTo(FILAS);
+        assertThat(resultado.getConError()).isZero();
+    }
+
+    private static InputStream ndjson(int filas) {
+        return generar(filas, null, i -> String.format(
+                "{\"nombre\":\"Producto %d\",\"precio\":%d,\"categoria\":\"CATEGORIA_%d\",\"descripcion\":\"Carga masiva\",\"stock\":%d}%n",
+                i, 100 + i % 5_000, i % 20, i % 300));
+    }
+
+    private static InputStream csv(int filas) {
+        return generar(filas, "nombre,precio,categoria,descripcion,stock\n", i -> String.format(
+                "\"Producto %d, edición\",%d,CATEGORIA_%d,Carga masiva,%d%n",
+                i, 100 + i % 5_000, i % 20, i % 300));
+    }
+
+    // Concatena las filas a medida que el importador las lee, como llegaría un archivo grande por la red
+    private static InputStream generar(int filas, String encabezado, IntFunction<String> fila) {
+        Iterator<InputStream> iterador = IntStream.range(-1, filas)
+                .mapToObj(i -> i < 0 ? (encabezado == null ? "" : encabezado) : fila.apply(i))
+                .map(texto -> (InputStream) new ByteArrayInputStream(texto.getBytes(StandardCharsets.UTF_8)))
+                .iterator();
+        return new SequenceInputStream(new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return iterador.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                return iterador.next();
+            }
+        });
+    }
+}
@@ -0,0 +1,248 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.dtos.ResultadoImportacionDTO;
+import com.appmovil.msvc.productos.events.ProductosImportadosEvent;
+import com.appmovil.msvc.productos.exception.ProductoException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ImportadorProductos - Unit Tests")
+class ImportadorProductosTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private SecuenciaCambios secuenciaCambios;
+
+    @Mock
+    private AlmacenImagenes almacenImagenes;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @InjectMocks
+    private ImportadorProductos importador;
+
+    // Tamaño de cada lote enviado a la base de datos
+    private final List<Integer> lotes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(importador, "tamanioLote", 2);
+        ReflectionTestUtils.setField(importador, "maxErrores", 10);
+    }
+
+    // Simula el batchUpdate: registra el tamaño del lote y devuelve un ID generado por fila
+    private void simularInserciones() {
+        AtomicLong secuencia = new AtomicLong();
+        when(jdbcTemplate.batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class),
+                any(KeyHolder.class))).thenAnswer(invocacion -> {
+                    BatchPreparedStatementSetter setter = invocacion.getArgument(1);
+                    KeyHolder claves = invocacion.getArgument(2);
+                    lotes.add(setter.getBatchSize());
+                    for (int i = 0; i < setter.getBatchSize(); i++) {
+                        claves.getKeyList().add(Map.of("ID_PRODUCTO", secuencia.incrementAndGet()));
+                    }
+                    return new int[setter.getBatchSize()];
+                });
+    }
+
+    private ResultadoImportacionDTO importar(String contenido, boolean csv) {
+        return importador.importar(new ByteArrayInputStream(contenido.getBytes(StandardCharsets.UTF_8)), csv);
+    }
+
+    @Test
+    @DisplayName("importar NDJSON - Debe insertar en lotes y reportar las filas inválidas")
+    void testImportarNdjson_DebeInsertarEnLotesYReportarErrores() {
+        // Given
+        simularInserciones();
+        String ndjson = """
+                {"nombre":"Laptop","precio":1000,"categoria":"LAPTOPS","stock":5}
+                {"nombre":"","precio":-1,"categoria":"LAPTOPS","stock":5}
+
+                {"nombre":"Mouse","precio":20,"categoria":"ACCESORIOS","stock":50}
+                {no es json
+                {"nombre":"Teclado","precio":40,"categoria":"ACCESORIOS","stock":10}
+                """;
+
+        // When
+        ResultadoImportacionDTO resultado = importar(ndjson, false);
+
+        // Then
+        assertThat(resultado.getFilas()).isEqualTo(5);
+        assertThat(resultado.getInsertadas()).isEqualTo(3);
+        assertThat(resultado.getConError()).isEqualTo(2);
+        assertThat(lotes).containsExactly(2, 1);
+        assertThat(resultado.getErrores()).extracting("fila").containsExactly(2L, 5L);
+        assertThat(resultado.getErrores().get(0).getMensaje())
+                .contains("nombre: El nombre es obligatorio")
+                .contains("precio: El precio no puede ser negativo");
+        assertThat(resultado.getErrores().get(1).getMensaje()).startsWith("JSON inválido");
+        // Un evento por lote insertado
+        verify(eventPublisher, times(2)).publishEvent(any(ProductosImportadosEvent.class));
+    }
+
+    @Test
+    @DisplayName("importar - Las imágenes en línea deben ir al almacén y las inválidas reportarse por fila")
+    void testImportar_DebeExternalizarImagenes() {
+        // Given
+        simularInserciones();
+        when(almacenImagenes.externalizar("AQID")).thenReturn("d".repeat(64));
+        when(almacenImagenes.externalizar("%%%")).thenThrow(new ProductoException("La imagen no tiene un formato válido"));
+        String ndjson = """
+                {"nombre":"Laptop","precio":1000,"categoria":"LAPTOPS","stock":5,"imagen":"AQID"}
+                {"nombre":"Mouse","precio":20,"categoria":"ACCESORIOS","stock":50,"imagen":"%%%"}
+                {"nombre":"Teclado","precio":40,"categoria":"ACCESORIOS","stock":10,"imagen":"https://cdn/t.png"}
+                """;
+
+        // When
+        ResultadoImportacionDTO resultado = importar(ndjson, false);
+
+        // Then
+        assertThat(resultado.getInsertadas()).isEqualTo(2);
+        assertThat(resultado.getErrores()).singleElement().satisfies(error -> {
+            assertThat(error.getFila()).isEqualTo(2L);
+            assertThat(error.getMensaje()).contains("formato válido");
+        });
+        verify(eventPublisher).publishEvent(argThat((ProductosImportadosEvent evento) ->
+                evento.getProductos().get(0).getImagen() == null
+                        && evento.getProductos().get(0).getImagenHash().equals("d".repeat(64))
+                        && evento.getProductos().get(1).getImagen().equals("https://cdn/t.png")
+                        && evento.getProductos().get(1).getImagenHash() == null));
+    }
+
+    @Test
+    @DisplayName("importar CSV - Debe respetar el encabezado y los campos entre comillas")
+    void testImportarCsv_DebeLeerCamposEntreComillas() {
+        // Given
+        simularInserciones();
+        String csv = "\uFEFFStock,Nombre,Precio,Categoria,Descripcion\r\n"
+                + "5,\"Laptop 15\"\", i7\",1000,LAPTOPS,\"Línea 1\nLínea 2\"\r\n"
+                + "x,Mouse,20,ACCESORIOS,\r\n";
+
+        // When
+        ResultadoImportacionDTO resultado = importar(csv, true);
+
+        // Then
+        assertThat(resultado.getFilas()).isEqualTo(2);
+        assertThat(resultado.getInsertadas()).isEqualTo(1);
+        assertThat(resultado.getErrores()).singleElement().satisfies(error -> {
+            assertThat(error.getFila()).isEqualTo(2L);
+            assertThat(error.getMensaje()).contains("stock debe ser un número entero");
+        });
+        verify(eventPublisher).publishEvent(argThat((ProductosImportadosEvent evento) ->
+                evento.getProductos().size() == 1
+                        && evento.getProductos().get(0).getNombre().equals("Laptop 15\", i7")
+                        && evento.getProductos().get(0).getDescripcion().equals("Línea 1\nLínea 2")
+                        && evento.getProductos().get(0).getStock() == 5));
+    }
+
+    @Test
+    @DisplayName("importar - Si falla un lote debe reintentar fila por fila e informar solo la fila rechazada")
+    void testImportar_ErrorDeLote_DebeAislarLaFila() {
+        // Given
+        ReflectionTestUtils.setField(importador, "tamanioLote", 3);
+        when(jdbcTemplate.batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class),
+                any(KeyHolder.class))).thenAnswer(invocacion -> {
+                    BatchPreparedStatementSetter setter = invocacion.getArgument(1);
+                    throw new DataIntegrityViolationException("lote de " + setter.getBatchSize() + " rechazado");
+                })
+                .thenAnswer(invocacion -> {
+                    KeyHolder claves = invocacion.getArgument(2);
+                    claves.getKeyList().add(Map.of("ID_PRODUCTO", 1L));
+                    return new int[1];
+                })
+                .thenThrow(new DataIntegrityViolationException("valor demasiado largo"))
+                .thenAnswer(invocacion -> {
+                    KeyHolder claves = invocacion.getArgument(2);
+                    claves.getKeyList().add(Map.of("ID_PRODUCTO", 2L));
+                    return new int[1];
+                });
+        String ndjson = """
+                {"nombre":"A","precio":1,"categoria":"X","stock":1}
+                {"nombre":"B","precio":1,"categoria":"X","stock":1}
+                {"nombre":"C","precio":1,"categoria":"X","stock":1}
+                """;
+
+        // When
+        ResultadoImportacionDTO resultado = importar(ndjson, false);
+
+        // Then
+        assertThat(resultado.getFilas()).isEqualTo(3);
+        assertThat(resultado.getInsertadas()).isEqualTo(2);
+        assertThat(resultado.getErrores()).singleElement().satisfies(error -> {
+            assertThat(error.getFila()).isEqualTo(2L);
+            assertThat(error.getMensaje()).isEqualTo("Error al insertar: valor demasiado largo");
+        });
+    }
+
+    @Test
+    @DisplayName("importar - Debe limitar la cantidad de errores detallados pero contarlos todos")
+    void testImportar_DebeLimitarErroresDetallados() {
+        // Given
+        ReflectionTestUtils.setField(importador, "maxErrores", 2);
+        String ndjson = "{}\n".repeat(5);
+
+        // When
+        ResultadoImportacionDTO resultado = importar(ndjson, false);
+
+        // Then
+        assertThat(resultado.getConError()).isEqualTo(5);
+        assertThat(resultado.getErrores()).hasSize(2);
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("leerRegistroCsv - Debe devolver null al final del archivo")
+    void testLeerRegistroCsv_FinDeArchivo() throws IOException {
+        StringReader lector = new StringReader("a,\"b,c\"");
+
+        assertThat(ImportadorProductos.leerRegistroCsv(lector)).containsExactly("a", "b,c");
+        assertThat(ImportadorProductos.leerRegistroCsv(lector)).isNull();
+    }
+}
@@ -0,0 +1,126 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.dtos.EstadisticasIndiceDTO;
+import com.appmovil.msvc.productos.dtos.ProductoTextoDTO;
+import com.appmovil.msvc.productos.events.ProductoModificadoEvent;
+import com.appmovil.msvc.productos.models.entities.Producto;
+import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("IndiceBusquedaProductos - Unit Tests")
+class IndiceBusquedaProductosTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private IndiceBusquedaProductos indice;
+
+    @BeforeEach
+    void setUp() {
+        when(productoRepository.findAllTextos()).thenReturn(Arrays.asList(
+                new ProductoTextoDTO(1L, "Café de Grano Colombiano", "BEBIDAS", "Tostado medio"),
+                new ProductoTextoDTO(2L, "Taza para café", "COCINA", "Cerámica blanca"),
+                new ProductoTextoDTO(3L, "Cafetera Italiana", "COCINA", "Para preparar café espresso"),
+                new ProductoTextoDTO(4L, "Piña en Almíbar", "CONSERVAS", null)
+        ));
+        indice.registrarMetricas();
+        indice.reconstruir();
+    }
+
+    @Test
+    @DisplayName("reconstruir - Debe indexar todos los productos y marcar el índice como listo")
+    void testReconstruir_DebeIndexarTodos() {
+        // When
+        EstadisticasIndiceDTO estadisticas = indice.estadisticas();
+
+        // Then
+        assertThat(indice.isListo()).isTrue();
+        assertThat(estadisticas.getDocumentos()).isEqualTo(4);
+        assertThat(estadisticas.getTerminos()).isPositive();
+        assertThat(meterRegistry.get("productos.busqueda.documentos").gauge().value()).isEqualTo(4.0);
+    }
+
+    @Test
+    @DisplayName("buscar - Debe ignorar tildes y mayúsculas")
+    void testBuscar_SinTildes_DebeEncontrar() {
+        // When
+        List<Long> resultado = indice.buscar("PINA", 10);
+
+        // Then
+        assertThat(resultado).containsExactly(4L);
+    }
+
+    @Test
+    @DisplayName("buscar - Debe continuar el ranking desde la última coincidencia entregada")
+    void testBuscar_DesdeCoincidencia_DebeContinuarRanking() {
+        // Given
+        List<IndiceBusquedaProductos.Coincidencia> primera = indice.buscar("cafe", null, 2);
+
+        // When
+        List<IndiceBusquedaProductos.Coincidencia> segunda = indice.buscar("cafe", primera.get(1), 2);
+
+        // Then
+        assertThat(primera).extracting(IndiceBusquedaProductos.Coincidencia::id).containsExactly(1L, 2L);
+        assertThat(segunda).extracting(IndiceBusquedaProductos.Coincidencia::id).containsExactly(3L);
+    }
+
+    @Test
+    @DisplayName("buscar - Debe priorizar coincidencias en el nombre sobre la descripción")
+    void testBuscar_DebeOrdenarPorRelevancia() {
+        // When
+        List<Long> resultado = indice.buscar("cafe", 10);
+
+        // Then
+        assertThat(resultado).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    @DisplayName("buscar - Debe respetar el máximo de resultados")
+    void testBuscar_DebeRespetarMaximo() {
+        // When & Then
+        assertThat(indice.buscar("cafe", 1)).containsExactly(1L);
+        assertThat(indice.buscar("   ", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("onProductoModificado - Debe actualizar y eliminar productos sin reconstruir")
+    void testOnProductoModificado_DebeActualizarIncrementalmente() {
+        // Given
+        Producto renombrado = Producto.builder()
+                .id(4L)
+                .nombre("Mango deshidratado")
+                .categoria("SNACKS")
+                .build();
+
+        // When
+        indice.onProductoModificado(new ProductoModificadoEvent(4L, renombrado));
+        indice.onProductoModificado(new ProductoModificadoEvent(2L, null));
+
+        // Then
+        assertThat(indice.buscar("pina", 10)).isEmpty();
+        assertThat(indice.buscar("mango", 10)).containsExactly(4L);
+        assertThat(indice.buscar("taza", 10)).isEmpty();
+        assertThat(indice.estadisticas().getDocumentos()).isEqualTo(3);
+        verify(productoRepository, times(1)).findAllTextos();
+    }
+}
@@ -0,0 +1,90 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.exception.ProductoException;
+import com.appmovil.msvc.productos.models.entities.Producto;
+import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MigracionImagenes - Unit Tests")
+class MigracionImagenesTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    @Mock
+    private AlmacenImagenes almacenImagenes;
+
+    @Mock
+    private SecuenciaCambios secuenciaCambios;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private VersionCatalogo versionCatalogo;
+
+    @InjectMocks
+    private MigracionImagenes migracion;
+
+    @BeforeEach
+    void setUp() {
+        migracion.iniciar();
+    }
+
+    private static Producto producto(long id, String imagen) {
+        return Producto.builder().id(id).nombre("P" + id).categoria("X").precio(1).stock(1).imagen(imagen).build();
+    }
+
+    @Test
+    @DisplayName("migrar - Debe mover las imágenes en línea, recorrer por lotes y dejar las inválidas en la tabla")
+    void testMigrar_DebeMoverImagenesEnLinea() {
+        // Given: dos lotes; el 3 cambió a una URL después de la consulta de IDs y el 4 no es una imagen en línea
+        String hash = "e".repeat(64);
+        Producto conDataUri = producto(1L, "data:image/png;base64,AQID");
+        Producto invalido = producto(2L, "%%%");
+        Producto conUrl = producto(3L, "https://cdn/p.png");
+        Producto vacio = producto(4L, "");
+        when(productoRepository.findIdsConImagenEnLinea(eq(0L), any(Limit.class))).thenReturn(List.of(1L, 2L, 3L));
+        when(productoRepository.findIdsConImagenEnLinea(eq(3L), any(Limit.class))).thenReturn(List.of(4L));
+        when(productoRepository.findIdsConImagenEnLinea(eq(4L), any(Limit.class))).thenReturn(List.of());
+        when(productoRepository.findParaMigrarImagen(1L)).thenReturn(Optional.of(conDataUri));
+        when(productoRepository.findParaMigrarImagen(2L)).thenReturn(Optional.of(invalido));
+        when(productoRepository.findParaMigrarImagen(3L)).thenReturn(Optional.of(conUrl));
+        when(productoRepository.findParaMigrarImagen(4L)).thenReturn(Optional.of(vacio));
+        when(almacenImagenes.externalizar("data:image/png;base64,AQID")).thenReturn(hash);
+        when(almacenImagenes.externalizar("%%%")).thenThrow(new ProductoException("La imagen no tiene un formato válido"));
+        when(secuenciaCambios.siguiente()).thenReturn(20L);
+
+        // When
+        int migradas = migracion.migrar();
+
+        // Then
+        assertThat(migradas).isEqualTo(1);
+        assertThat(conDataUri.getImagen()).isNull();
+        assertThat(conDataUri.getImagenHash()).isEqualTo(hash);
+        assertThat(conDataUri.getSecuencia()).isEqualTo(20L);
+        assertThat(invalido.getImagen()).isEqualTo("%%%");
+        assertThat(conUrl.getImagen()).isEqualTo("https://cdn/p.png");
+        assertThat(vacio.getImagen()).isEmpty();
+        assertThat(vacio.getImagenHash()).isNull();
+        // Solo el lote que movió imágenes invalida cachés
+        verify(versionCatalogo, times(1)).invalidarProductos(List.of(1L));
+        verify(versionCatalogo, times(1)).incrementarCopias();
+    }
+}
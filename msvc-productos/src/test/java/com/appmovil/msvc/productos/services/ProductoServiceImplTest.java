@@ -1,20 +1,54 @@
 package com.appmovil.msvc.productos.services;
 
+import com.appmovil.msvc.productos.dtos.CambiosDTO;
+import com.appmovil.msvc.productos.dtos.FacetasDTO;
+import com.appmovil.msvc.productos.dtos.ImagenDTO;
+import com.appmovil.msvc.productos.dtos.LineaStockDTO;
+import com.appmovil.msvc.productos.dtos.PaginaDTO;
+import com.appmovil.msvc.productos.dtos.ProductoSimpleDTO;
 import com.appmovil.msvc.productos.dtos.ProductoUpdateDTO;
+import com.appmovil.msvc.productos.dtos.RatingProductoDTO;
+import com.appmovil.msvc.productos.dtos.StockBajoDTO;
+import com.appmovil.msvc.productos.dtos.StockDTO;
+import com.appmovil.msvc.productos.dtos.SugerenciaDTO;
+import com.appmovil.msvc.productos.events.ProductoModificadoEvent;
+import com.appmovil.msvc.productos.events.RatingsActualizadosEvent;
+import com.appmovil.msvc.productos.events.StockActualizadoEvent;
 import com.appmovil.msvc.productos.exception.ProductoException;
 import com.appmovil.msvc.productos.models.entities.Producto;
+import com.appmovil.msvc.productos.models.entities.ProductoEliminado;
+import com.appmovil.msvc.productos.repositories.ProductoEliminadoRepository;
 import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -27,6 +61,48 @@ class ProductoServiceImplTest {
     @Mock
     private ProductoRepository productoRepository;
 
+    @Mock
+    private IndiceBusquedaProductos indiceBusqueda;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private StockCaliente stockCaliente;
+
+    @Mock
+    private FacetasCatalogo facetasCatalogo;
+
+    @Mock
+    private SugerenciasProductos sugerenciasProductos;
+
+    @Mock
+    private ImportadorProductos importadorProductos;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private ProductoEliminadoRepository productoEliminadoRepository;
+
+    @Mock
+    private SecuenciaCambios secuenciaCambios;
+
+    @Mock
+    private AlmacenImagenes almacenImagenes;
+
+    @Mock
+    private AlertasStock alertasStock;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private CacheCatalogo cacheCatalogo = new CacheCatalogo();
+
     @InjectMocks
     private ProductoServiceImpl productoService;
 
@@ -35,6 +111,10 @@ class ProductoServiceImplTest {
 
     @BeforeEach
     void setUp() {
+        ReflectionTestUtils.setField(cacheCatalogo, "cacheManager", cacheManager);
+        ReflectionTestUtils.setField(cacheCatalogo, "versionCatalogo", new VersionCatalogo());
+        ReflectionTestUtils.setField(cacheCatalogo, "productoRepository", productoRepository);
+
         productoTest = Producto.builder()
                 .id(1L)
                 .nombre("MacBook Pro")
@@ -111,6 +191,43 @@ class ProductoServiceImplTest {
         verify(productoRepository).findById(999L);
     }
 
+    @Test
+    @DisplayName("findByIds - Debe retornar productos indexados por ID con una sola consulta")
+    void testFindByIds_DebeRetornarMapaPorId() {
+        // Given
+        Producto producto2 = Producto.builder()
+                .id(2L)
+                .nombre("Dell XPS")
+                .precio(2000)
+                .categoria("LAPTOPS")
+                .stock(5)
+                .activo(true)
+                .build();
+
+        when(productoRepository.findAllById(anyIterable())).thenReturn(Arrays.asList(productoTest, producto2));
+
+        // When
+        Map<Long, Producto> resultado = productoService.findByIds(Arrays.asList(1L, 2L, 1L));
+
+        // Then
+        assertThat(resultado).hasSize(2);
+        assertThat(resultado.get(1L).getNombre()).isEqualTo("MacBook Pro");
+        assertThat(resultado.get(2L).getNombre()).isEqualTo("Dell XPS");
+        verify(productoRepository, times(1)).findAllById(anyIterable());
+        verify(productoRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    @DisplayName("findByIds - Con lista vacía no debe consultar la base de datos")
+    void testFindByIds_ListaVacia_NoDebeConsultar() {
+        // When
+        Map<Long, Producto> resultado = productoService.findByIds(List.of());
+
+        // Then
+        assertThat(resultado).isEmpty();
+        verify(productoRepository, never()).findAllById(anyIterable());
+    }
+
     @Test
     @DisplayName("save - Debe guardar producto exitosamente")
     void testSave_DebeGuardarExitosamente() {
@@ -137,6 +254,27 @@ class ProductoServiceImplTest {
         verify(productoRepository).save(nuevoProducto);
     }
 
+    @Test
+    @DisplayName("update - Solo un cambio de nombre, imagen o activo debe marcar modificadas las copias")
+    void testUpdate_CopiaModificada_SoloConDatosDeCopia() {
+        // Given: se cambian precio y stock, pero no nombre, imagen ni activo
+        productoTest.setImagen("imagen.jpg");
+        updateDTO.setNombre("MacBook Pro");
+        when(productoRepository.findById(1L)).thenReturn(Optional.of(productoTest));
+        when(productoRepository.save(any(Producto.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        // When
+        productoService.update(1L, updateDTO);
+        updateDTO.setNombre("MacBook Pro M2");
+        productoService.update(1L, updateDTO);
+
+        // Then
+        ArgumentCaptor<ProductoModificadoEvent> eventos = ArgumentCaptor.forClass(ProductoModificadoEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(eventos.capture());
+        assertThat(eventos.getAllValues()).extracting(ProductoModificadoEvent::isCopiaModificada)
+                .containsExactly(false, true);
+    }
+
     @Test
     @DisplayName("update - Debe actualizar producto exitosamente")
     void testUpdate_ConDatosValidos_DebeActualizarExitosamente() {
@@ -206,6 +344,37 @@ class ProductoServiceImplTest {
         verify(productoRepository).deleteById(1L);
     }
 
+    @Test
+    @DisplayName("delete - Debe dejar una marca de baja con la secuencia del cambio")
+    void testDelete_DebeGuardarMarcaDeBaja() {
+        // Given
+        when(productoRepository.existsById(1L)).thenReturn(true);
+        when(secuenciaCambios.siguiente()).thenReturn(42L);
+
+        // When
+        productoService.delete(1L);
+
+        // Then
+        ArgumentCaptor<ProductoEliminado> marca = ArgumentCaptor.forClass(ProductoEliminado.class);
+        verify(productoEliminadoRepository).save(marca.capture());
+        assertThat(marca.getValue().getId()).isEqualTo(1L);
+        assertThat(marca.getValue().getSecuencia()).isEqualTo(42L);
+    }
+
+    @Test
+    @DisplayName("save y update - Deben asignar la secuencia del cambio")
+    void testSaveYUpdate_DebenAsignarSecuencia() {
+        // Given
+        when(secuenciaCambios.siguiente()).thenReturn(7L, 8L);
+        when(productoRepository.save(any(Producto.class))).thenAnswer(invocacion -> invocacion.getArgument(0));
+        when(productoRepository.findById(1L)).thenReturn(Optional.of(productoTest));
+
+        // When / Then
+        assertThat(productoService.save(Producto.builder().nombre("Nuevo").categoria("X").precio(1).stock(1).build())
+                .getSecuencia()).isEqualTo(7L);
+        assertThat(productoService.update(1L, updateDTO).getSecuencia()).isEqualTo(8L);
+    }
+
     @Test
     @DisplayName("delete - Debe lanzar excepción si producto no existe")
     void testDelete_ConIdInexistente_DebeLanzarExcepcion() {
@@ -245,7 +414,7 @@ class ProductoServiceImplTest {
     @DisplayName("findByCategoria - Debe retornar productos de la categoría especificada")
     void testFindByCategoria_DebeRetornarPorCategoria() {
         // Given
-        when(productoRepository.findByCategoriaIgnoreCaseAndActivo("LAPTOPS", true))
+        when(productoRepository.findByCategoriaNormAndActivo("laptops", true))
                 .thenReturn(Arrays.asList(productoTest));
 
         // When
@@ -254,7 +423,7 @@ class ProductoServiceImplTest {
         // Then
         assertThat(resultado).hasSize(1);
         assertThat(resultado.get(0).getCategoria()).isEqualTo("LAPTOPS");
-        verify(productoRepository).findByCategoriaIgnoreCaseAndActivo("LAPTOPS", true);
+        verify(productoRepository).findByCategoriaNormAndActivo("laptops", true);
     }
 
     @Test
@@ -269,7 +438,7 @@ class ProductoServiceImplTest {
         // Then
         assertThat(resultado).hasSize(1);
         verify(productoRepository).findByActivo(true);
-        verify(productoRepository, never()).findByCategoriaIgnoreCaseAndActivo(anyString(), anyBoolean());
+        verify(productoRepository, never()).findByCategoriaNormAndActivo(anyString(), anyBoolean());
     }
 
     @Test
@@ -292,26 +461,29 @@ class ProductoServiceImplTest {
     @DisplayName("actualizarStock - Debe actualizar stock correctamente")
     void testActualizarStock_DebeActualizarExitosamente() {
         // Given
-        when(productoRepository.findById(1L)).thenReturn(Optional.of(productoTest));
-        when(productoRepository.save(any(Producto.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(productoRepository.sumarStock(eq(1L), eq(-3), anyLong())).thenReturn(1);
+        when(productoRepository.findStockById(1L)).thenReturn(Optional.of(new StockDTO(1L, "Electronica", 7)));
 
         // When
-        Producto resultado = productoService.actualizarStock(1L, -3);
+        StockDTO resultado = productoService.actualizarStock(1L, -3);
 
         // Then
         assertThat(resultado.getStock()).isEqualTo(7); // 10 - 3
-        verify(productoRepository).save(argThat(p -> p.getStock() == 7));
+        verify(productoRepository, never()).findById(any());
+        verify(productoRepository, never()).save(any());
+        verify(eventPublisher).publishEvent(argThat((Object e) -> e instanceof StockActualizadoEvent ev
+                && ev.getStockAnterior() == 10 && ev.getStock() == 7));
     }
 
     @Test
     @DisplayName("actualizarStock - Debe permitir incrementar stock")
     void testActualizarStock_Incrementar_DebeAumentarStock() {
         // Given
-        when(productoRepository.findById(1L)).thenReturn(Optional.of(productoTest));
-        when(productoRepository.save(any(Producto.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(productoRepository.sumarStock(eq(1L), eq(5), anyLong())).thenReturn(1);
+        when(productoRepository.findStockById(1L)).thenReturn(Optional.of(new StockDTO(1L, "Electronica", 15)));
 
         // When
-        Producto resultado = productoService.actualizarStock(1L, 5);
+        StockDTO resultado = productoService.actualizarStock(1L, 5);
 
         // Then
         assertThat(resultado.getStock()).isEqualTo(15); // 10 + 5
@@ -320,22 +492,24 @@ class ProductoServiceImplTest {
     @Test
     @DisplayName("actualizarStock - Debe lanzar excepción si stock resultante es negativo")
     void testActualizarStock_StockNegativo_DebeLanzarExcepcion() {
-        // Given
-        when(productoRepository.findById(1L)).thenReturn(Optional.of(productoTest));
+        // Given: el UPDATE condicional no afecta filas porque 10 - 15 < 0
+        when(productoRepository.sumarStock(eq(1L), eq(-15), anyLong())).thenReturn(0);
+        when(productoRepository.findStockById(1L)).thenReturn(Optional.of(new StockDTO(1L, "Electronica", 10)));
 
         // When & Then
         assertThatThrownBy(() -> productoService.actualizarStock(1L, -15))
                 .isInstanceOf(ProductoException.class)
                 .hasMessageContaining("Stock insuficiente");
         
-        verify(productoRepository, never()).save(any());
+        verify(eventPublisher, never()).publishEvent(any());
     }
 
     @Test
     @DisplayName("actualizarStock - Debe lanzar excepción si producto no existe")
     void testActualizarStock_ProductoNoExiste_DebeLanzarExcepcion() {
         // Given
-        when(productoRepository.findById(999L)).thenReturn(Optional.empty());
+        when(productoRepository.sumarStock(eq(999L), eq(5), anyLong())).thenReturn(0);
+        when(productoRepository.findStockById(999L)).thenReturn(Optional.empty());
 
         // When & Then
         assertThatThrownBy(() -> productoService.actualizarStock(999L, 5))
@@ -343,6 +517,212 @@ class ProductoServiceImplTest {
                 .hasMessageContaining("999");
     }
 
+    @Test
+    @DisplayName("actualizarStock - Un producto en stock caliente no debe tocar la base de datos")
+    void testActualizarStock_StockCaliente_DebeDescontarEnMemoria() {
+        // Given
+        when(stockCaliente.isCaliente(1L)).thenReturn(true);
+        when(stockCaliente.sumar(1L, -1)).thenReturn(new StockDTO(1L, "LAPTOPS", 9));
+
+        // When
+        StockDTO resultado = productoService.actualizarStock(1L, -1);
+
+        // Then
+        assertThat(resultado.getStock()).isEqualTo(9);
+        verify(productoRepository, never()).sumarStock(anyLong(), anyInt(), anyLong());
+        verify(eventPublisher).publishEvent(any(StockActualizadoEvent.class));
+    }
+
+    @Test
+    @DisplayName("findFacetas - Debe responder desde las facetas en memoria sin consultar el repositorio")
+    void testFindFacetas_DebeUsarFacetasEnMemoria() {
+        // Given
+        FacetasDTO facetas = FacetasDTO.builder().productos(3).categorias(List.of()).build();
+        when(facetasCatalogo.facetas()).thenReturn(facetas);
+
+        // When
+        FacetasDTO resultado = productoService.findFacetas();
+
+        // Then
+        assertThat(resultado.getProductos()).isEqualTo(3);
+        verifyNoInteractions(productoRepository);
+    }
+
+    @Test
+    @DisplayName("sugerencias - Debe validar el límite contra el máximo del trie")
+    void testSugerencias_ConLimitFueraDeRango_DebeLanzarExcepcion() {
+        // Given
+        when(sugerenciasProductos.getMaxSugerencias()).thenReturn(10);
+        when(sugerenciasProductos.sugerir("lap", 5)).thenReturn(List.of(new SugerenciaDTO(1L, "Laptop", 4.5, true)));
+
+        // When & Then
+        assertThat(productoService.sugerencias("lap", 5)).hasSize(1);
+        assertThatThrownBy(() -> productoService.sugerencias("lap", 11))
+                .isInstanceOf(ProductoException.class)
+                .hasMessageContaining("limit");
+        verifyNoInteractions(productoRepository);
+    }
+
+    @Test
+    @DisplayName("reservarStock - Debe agrupar las líneas y descontarlas en orden de ID")
+    void testReservarStock_DebeDescontarEnOrdenDeId() {
+        // Given
+        Cache cache = mock(Cache.class);
+        when(cacheManager.getCache("productos")).thenReturn(cache);
+        when(productoRepository.sumarStock(anyLong(), anyInt(), anyLong())).thenReturn(1);
+        when(productoRepository.findStockByIdIn(any())).thenReturn(List.of(
+                new StockDTO(1L, "LAPTOPS", 7), new StockDTO(3L, "LAPTOPS", 4)));
+
+        // When
+        List<StockDTO> resultado = productoService.reservarStock(List.of(
+                new LineaStockDTO(3L, 1), new LineaStockDTO(1L, 2), new LineaStockDTO(1L, 1)));
+
+        // Then
+        assertThat(resultado).extracting(StockDTO::getStock).containsExactly(7, 4);
+        InOrder orden = inOrder(productoRepository);
+        orden.verify(productoRepository).sumarStock(eq(1L), eq(-3), anyLong());
+        orden.verify(productoRepository).sumarStock(eq(3L), eq(-1), anyLong());
+        verify(cache).evict(1L);
+        verify(cache).evict(3L);
+        verify(eventPublisher, times(2)).publishEvent(any(StockActualizadoEvent.class));
+    }
+
+    @Test
+    @DisplayName("reservarStock - Si una línea no alcanza debe fallar sin seguir descontando")
+    void testReservarStock_StockInsuficiente_DebeLanzarExcepcion() {
+        // Given
+        when(productoRepository.sumarStock(eq(1L), eq(-2), anyLong())).thenReturn(1);
+        when(productoRepository.sumarStock(eq(2L), eq(-50), anyLong())).thenReturn(0);
+        when(productoRepository.findStockById(2L)).thenReturn(Optional.of(new StockDTO(2L, "LAPTOPS", 5)));
+
+        // When & Then
+        assertThatThrownBy(() -> productoService.reservarStock(List.of(
+                new LineaStockDTO(2L, 50), new LineaStockDTO(1L, 2), new LineaStockDTO(4L, 1))))
+                .isInstanceOf(ProductoException.class)
+                .hasMessageContaining("Stock insuficiente");
+
+        verify(productoRepository, never()).sumarStock(eq(4L), anyInt(), anyLong());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    @DisplayName("reservarStock - Debe rechazar cantidades no positivas")
+    void testReservarStock_CantidadInvalida_DebeLanzarExcepcion() {
+        assertThatThrownBy(() -> productoService.reservarStock(List.of(new LineaStockDTO(1L, 0))))
+                .isInstanceOf(ProductoException.class);
+
+        verify(productoRepository, never()).sumarStock(anyLong(), anyInt(), anyLong());
+    }
+
+    @Test
+    @DisplayName("liberarStock - Debe devolver el stock y omitir productos eliminados")
+    void testLiberarStock_DebeOmitirProductosEliminados() {
+        // Given
+        when(cacheManager.getCache("productos")).thenReturn(null);
+        when(productoRepository.sumarStock(eq(1L), eq(2), anyLong())).thenReturn(1);
+        when(productoRepository.sumarStock(eq(9L), eq(1), anyLong())).thenReturn(0);
+        when(productoRepository.findStockByIdIn(Set.of(1L))).thenReturn(List.of(new StockDTO(1L, "LAPTOPS", 12)));
+
+        // When
+        List<StockDTO> resultado = productoService.liberarStock(List.of(
+                new LineaStockDTO(1L, 2), new LineaStockDTO(9L, 1)));
+
+        // Then
+        assertThat(resultado).extracting(StockDTO::getId).containsExactly(1L);
+        verify(eventPublisher).publishEvent(argThat((Object e) -> e instanceof StockActualizadoEvent ev
+                && ev.getStockAnterior() == 10 && ev.getStock() == 12));
+    }
+
+    @Test
+    @DisplayName("update - Con una versión desactualizada debe rechazar la edición")
+    void testUpdate_ConVersionDesactualizada_DebeLanzarConflicto() {
+        // Given
+        productoTest.setVersion(3L);
+        updateDTO.setVersion(2L);
+        when(productoRepository.findById(1L)).thenReturn(Optional.of(productoTest));
+
+        // When & Then
+        assertThatThrownBy(() -> productoService.update(1L, updateDTO))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        verify(productoRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("buscarPorNombre - Con el índice cargado debe respetar el orden de relevancia")
+    void testBuscarPorNombre_ConIndice_DebeRespetarRanking() {
+        // Given
+        Producto producto2 = Producto.builder().id(2L).nombre("MacBook Air").build();
+        when(indiceBusqueda.isListo()).thenReturn(true);
+        when(indiceBusqueda.buscar(eq("macbook"), anyInt())).thenReturn(Arrays.asList(2L, 1L));
+        when(productoRepository.findAllById(anyIterable())).thenReturn(Arrays.asList(productoTest, producto2));
+
+        // When
+        List<Producto> resultado = productoService.buscarPorNombre("macbook");
+
+        // Then
+        assertThat(resultado).extracting(Producto::getId).containsExactly(2L, 1L);
+        verify(productoRepository, never()).findByNombreContainingIgnoreCase(anyString());
+    }
+
+    @Test
+    @DisplayName("buscarPorNombre paginado - Con el índice cargado debe paginar sobre el ranking")
+    void testBuscarPorNombrePaginado_ConIndice_DebePaginarRanking() {
+        // Given
+        Producto producto2 = Producto.builder().id(2L).nombre("MacBook Air").build();
+        IndiceBusquedaProductos.Coincidencia air = new IndiceBusquedaProductos.Coincidencia(2L, 3.5);
+        IndiceBusquedaProductos.Coincidencia pro = new IndiceBusquedaProductos.Coincidencia(1L, 2.0);
+        when(indiceBusqueda.isListo()).thenReturn(true);
+        when(indiceBusqueda.buscar(eq("macbook"), isNull(), eq(2)))
+                .thenReturn(Arrays.asList(air, pro));
+        when(indiceBusqueda.buscar(eq("macbook"), eq(air), eq(2)))
+                .thenReturn(List.of(pro));
+        when(productoRepository.findAllById(anyIterable()))
+                .thenReturn(List.of(producto2))
+                .thenReturn(List.of(productoTest));
+
+        // When
+        PaginaDTO<Producto> primera = productoService.buscarPorNombre("macbook", null, 1);
+        PaginaDTO<Producto> segunda = productoService.buscarPorNombre("macbook", primera.getNext(), 1);
+
+        // Then
+        assertThat(primera.getItems()).extracting(Producto::getId).containsExactly(2L);
+        assertThat(primera.getNext()).isNotNull();
+        assertThat(segunda.getItems()).extracting(Producto::getId).containsExactly(1L);
+        assertThat(segunda.getNext()).isNull();
+        verify(productoRepository, never()).findByNombreContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(
+                anyString(), anyLong(), any(Limit.class));
+    }
+
+    @Test
+    @DisplayName("buscarPorNombre paginado - Una página empezada sin índice debe seguir por ID")
+    void testBuscarPorNombrePaginado_CursorPorId_DebeUsarBaseDeDatos() {
+        // Given
+        when(indiceBusqueda.isListo()).thenReturn(true);
+        when(productoRepository.findByNombreContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(
+                eq("macbook"), eq(1L), any(Limit.class))).thenReturn(List.of());
+
+        // When
+        PaginaDTO<Producto> resultado = productoService.buscarPorNombre("macbook", CursorPaginacion.codificar(1L), 1);
+
+        // Then
+        assertThat(resultado.getItems()).isEmpty();
+        verify(indiceBusqueda, never()).buscar(anyString(), any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("delete - Debe publicar el evento de producto eliminado")
+    void testDelete_DebePublicarEvento() {
+        // Given
+        when(productoRepository.existsById(1L)).thenReturn(true);
+
+        // When
+        productoService.delete(1L);
+
+        // Then
+        verify(eventPublisher).publishEvent(argThat((Object e) ->
+                e instanceof ProductoModificadoEvent evento && evento.getIdProducto() == 1L && evento.isEliminado()));
+    }
+
     @Test
     @DisplayName("buscarPorNombre - Debe retornar lista vacía si no hay coincidencias")
     void testBuscarPorNombre_SinCoincidencias_DebeRetornarListaVacia() {
@@ -358,17 +738,334 @@ class ProductoServiceImplTest {
     }
 
     @Test
-    @DisplayName("findByCategoria - Debe ignorar mayúsculas/minúsculas")
+    @DisplayName("findActivos paginado - Debe devolver cursor cuando hay más resultados")
+    void testFindActivosPaginado_ConMasResultados_DebeRetornarCursor() {
+        // Given
+        Producto producto2 = Producto.builder().id(2L).nombre("Dell XPS").activo(true).build();
+        Producto producto3 = Producto.builder().id(3L).nombre("ThinkPad").activo(true).build();
+
+        when(productoRepository.findByActivoAndIdGreaterThanOrderByIdAsc(eq(true), eq(0L), any(Limit.class)))
+                .thenReturn(Arrays.asList(productoTest, producto2, producto3));
+
+        // When
+        PaginaDTO<Producto> pagina = productoService.findActivos(null, 2);
+
+        // Then
+        assertThat(pagina.getItems()).hasSize(2);
+        assertThat(pagina.getNext()).isNotNull();
+        assertThat(CursorPaginacion.decodificar(pagina.getNext())).isEqualTo(2L);
+        verify(productoRepository).findByActivoAndIdGreaterThanOrderByIdAsc(true, 0L, Limit.of(3));
+    }
+
+    @Test
+    @DisplayName("findAll paginado - Última página no debe traer cursor")
+    void testFindAllPaginado_UltimaPagina_SinCursor() {
+        // Given
+        String cursor = CursorPaginacion.codificar(1L);
+        Producto producto2 = Producto.builder().id(2L).nombre("Dell XPS").build();
+
+        when(productoRepository.findByIdGreaterThanOrderByIdAsc(1L, Limit.of(21)))
+                .thenReturn(Arrays.asList(producto2));
+
+        // When
+        PaginaDTO<Producto> pagina = productoService.findAll(cursor, 20);
+
+        // Then
+        assertThat(pagina.getItems()).hasSize(1);
+        assertThat(pagina.getNext()).isNull();
+    }
+
+    @Test
+    @DisplayName("findAll paginado - Debe rechazar un cursor inválido")
+    void testFindAllPaginado_CursorInvalido_DebeLanzarExcepcion() {
+        // When & Then
+        assertThatThrownBy(() -> productoService.findAll("no-es-un-cursor", 20))
+                .isInstanceOf(ProductoException.class)
+                .hasMessageContaining("Cursor");
+
+        verify(productoRepository, never()).findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class));
+    }
+
+    @Test
+    @DisplayName("findResumenActivos - Debe usar la proyección sin imagen y referenciar la imagen según dónde esté")
+    void testFindResumenActivos_DebeUsarProyeccion() {
+        // Given
+        when(productoRepository.findResumenActivos(0L, Limit.of(21))).thenReturn(Arrays.asList(
+                new ProductoSimpleDTO(1L, "MacBook Pro", 2500, null, true),
+                new ProductoSimpleDTO(2L, "iPad", 1500, "abc123", false),
+                new ProductoSimpleDTO(3L, "Funda", 30, null, false)));
+
+        // When
+        PaginaDTO<ProductoSimpleDTO> pagina = productoService.findResumenActivos(null, 20);
+
+        // Then
+        assertThat(pagina.getItems()).extracting(ProductoSimpleDTO::getImagen)
+                .containsExactly("/api/v1/productos/1/imagen", "/api/v1/productos/imagenes/abc123", null);
+        assertThat(pagina.getNext()).isNull();
+        verify(productoRepository, never()).findByActivo(anyBoolean());
+    }
+
+    @Test
+    @DisplayName("findImagen - Debe decodificar un data URI con su tipo de contenido")
+    void testFindImagen_DataUri_DebeDecodificar() {
+        // Given
+        when(productoRepository.findImagenById(1L)).thenReturn(Optional.of("data:image/png;base64,AQID"));
+
+        // When
+        ImagenDTO imagen = productoService.findImagen(1L);
+
+        // Then
+        assertThat(imagen.getContenido()).containsExactly(1, 2, 3);
+        assertThat(imagen.getTipoContenido()).isEqualTo("image/png");
+        assertThat(imagen.getEtag()).isNotBlank();
+        assertThat(imagen.getUrl()).isNull();
+    }
+
+    @Test
+    @DisplayName("findImagen - Con imagen en el almacén debe devolver el archivo sin leer la columna imagen")
+    void testFindImagen_ConHash_DebeUsarAlmacen() {
+        // Given
+        String hash = "a".repeat(64);
+        when(productoRepository.findImagenHashById(1L)).thenReturn(Optional.of(hash));
+        when(almacenImagenes.abrir(hash)).thenReturn(
+                new AlmacenImagenes.ArchivoImagen(hash, Path.of("/imagenes/aa", hash), 2048L, "image/png"));
+
+        // When
+        ImagenDTO imagen = productoService.findImagen(1L);
+
+        // Then
+        assertThat(imagen.getArchivo()).isEqualTo(Path.of("/imagenes/aa", hash));
+        assertThat(imagen.getTamanio()).isEqualTo(2048L);
+        assertThat(imagen.getEtag()).isEqualTo(hash);
+        verify(productoRepository, never()).findImagenById(anyLong());
+    }
+
+    @Test
+    @DisplayName("save y update - La imagen en línea debe guardarse en el almacén y la fila quedar con el hash")
+    void testSaveYUpdate_DebenExternalizarImagen() {
+        // Given
+        String hash = "b".repeat(64);
+        when(almacenImagenes.externalizar("data:image/png;base64,AQID")).thenReturn(hash);
+        when(almacenImagenes.existe(hash)).thenReturn(true);
+        when(productoRepository.save(any(Producto.class))).thenAnswer(invocacion -> invocacion.getArgument(0));
+        when(productoRepository.findById(1L)).thenReturn(Optional.of(productoTest));
+
+        // When
+        Producto guardado = productoService.save(Producto.builder().nombre("Nuevo").categoria("X").precio(1)
+                .stock(1).imagen("data:image/png;base64,AQID").build());
+        // El cliente reenvía el producto leído: sin imagen, con el hash
+        updateDTO.setImagen(null);
+        updateDTO.setImagenHash(hash);
+        Producto actualizado = productoService.update(1L, updateDTO);
+
+        // Then
+        assertThat(guardado.getImagen()).isNull();
+        assertThat(guardado.getImagenHash()).isEqualTo(hash);
+        assertThat(actualizado.getImagen()).isNull();
+        assertThat(actualizado.getImagenHash()).isEqualTo(hash);
+    }
+
+    @Test
+    @DisplayName("update - Debe rechazar un imagenHash que no está en el almacén")
+    void testUpdate_ConHashInexistente_DebeLanzarExcepcion() {
+        // Given
+        when(productoRepository.findById(1L)).thenReturn(Optional.of(productoTest));
+        updateDTO.setImagen(null);
+        updateDTO.setImagenHash("c".repeat(64));
+
+        // When & Then
+        assertThatThrownBy(() -> productoService.update(1L, updateDTO))
+                .isInstanceOf(ProductoException.class)
+                .hasMessageContaining("no existe");
+    }
+
+    @Test
+    @DisplayName("update - Debe conservar el umbral de stock si no se envía y reemplazarlo si se envía")
+    void testUpdate_UmbralStock() {
+        // Given
+        productoTest.setUmbralStock(5);
+        when(productoRepository.findById(1L)).thenReturn(Optional.of(productoTest));
+        when(productoRepository.save(any(Producto.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        // When
+        Producto sinUmbral = productoService.update(1L, updateDTO);
+
+        // Then
+        assertThat(sinUmbral.getUmbralStock()).isEqualTo(5);
+
+        // When
+        updateDTO.setUmbralStock(0);
+        Producto sinAlerta = productoService.update(1L, updateDTO);
+
+        // Then
+        assertThat(sinAlerta.getUmbralStock()).isZero();
+    }
+
+    @Test
+    @DisplayName("save - Debe rechazar un umbral de stock negativo")
+    void testSave_ConUmbralNegativo_DebeLanzarExcepcion() {
+        // Given
+        productoTest.setUmbralStock(-1);
+
+        // When & Then
+        assertThatThrownBy(() -> productoService.save(productoTest))
+                .isInstanceOf(ProductoException.class)
+                .hasMessageContaining("umbral");
+        verify(productoRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("findStockBajo - Debe responder desde AlertasStock sin consultar la base de datos")
+    void testFindStockBajo_DebeUsarConjuntoEnMemoria() {
+        // Given
+        when(alertasStock.stockBajo()).thenReturn(List.of(new StockBajoDTO(1L, "MacBook Pro", "LAPTOPS", 2, 5)));
+
+        // When
+        List<StockBajoDTO> resultado = productoService.findStockBajo();
+
+        // Then
+        assertThat(resultado).hasSize(1);
+        verifyNoInteractions(productoRepository);
+    }
+
+    @Test
+    @DisplayName("findImagen - Debe lanzar excepción si el producto no tiene imagen")
+    void testFindImagen_SinImagen_DebeLanzarExcepcion() {
+        // Given
+        when(productoRepository.findImagenById(999L)).thenReturn(Optional.empty());
+
+        // When & Then
+        assertThatThrownBy(() -> productoService.findImagen(999L))
+                .isInstanceOf(ProductoException.class)
+                .hasMessageContaining("no existe");
+    }
+
+    @Test
+    @DisplayName("findByCategoria - Debe ignorar mayúsculas/minúsculas y espacios de borde")
     void testFindByCategoria_IgnoraCaseSensitive() {
         // Given
-        when(productoRepository.findByCategoriaIgnoreCaseAndActivo("laptops", true))
+        when(productoRepository.findByCategoriaNormAndActivo("laptops", true))
                 .thenReturn(Arrays.asList(productoTest));
 
         // When
-        List<Producto> resultado = productoService.findByCategoria("laptops");
+        List<Producto> resultado = productoService.findByCategoria(" Laptops ");
 
         // Then
         assertThat(resultado).hasSize(1);
-        verify(productoRepository).findByCategoriaIgnoreCaseAndActivo("laptops", true);
+        verify(productoRepository).findByCategoriaNormAndActivo("laptops", true);
+    }
+
+    @Test
+    @DisplayName("consultar - Debe rechazar un orden desconocido o un rango de precios invertido")
+    void testConsultar_ParametrosInvalidos_DebeLanzarExcepcion() {
+        assertThatThrownBy(() -> productoService.consultar(null, null, null, "nombre", null, 20))
+                .isInstanceOf(ProductoException.class)
+                .hasMessageContaining("Orden inválido");
+        assertThatThrownBy(() -> productoService.consultar("laptops", 500, 100, "precio", null, 20))
+                .isInstanceOf(ProductoException.class)
+                .hasMessageContaining("precioMin");
+        verifyNoInteractions(productoRepository);
+    }
+
+    @Test
+    @DisplayName("consultar - Debe rechazar el cursor emitido para otro orden")
+    void testConsultar_CursorDeOtroOrden_DebeLanzarExcepcion() {
+        String cursorPrecio = CursorPaginacion.codificar("precio", 1500, 7L);
+
+        assertThatThrownBy(() -> productoService.consultar("laptops", null, null, "-rating", cursorPrecio, 20))
+                .isInstanceOf(ProductoException.class)
+                .hasMessageContaining("Cursor de paginación inválido");
+        verifyNoInteractions(productoRepository);
+    }
+
+    @Test
+    @DisplayName("exportar - Debe escribir un producto por línea, soltar cada entidad y cerrar el cursor")
+    void testExportar_DebeEscribirNdjsonYSoltarEntidades() throws Exception {
+        // Given
+        Producto producto2 = Producto.builder().id(2L).nombre("Dell XPS").precio(2000).stock(3)
+                .categoria("LAPTOPS").build();
+        AtomicBoolean cerrado = new AtomicBoolean();
+        when(productoRepository.streamAll())
+                .thenReturn(Stream.of(productoTest, producto2).onClose(() -> cerrado.set(true)));
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        // When
+        long exportados = productoService.exportar(salida);
+
+        // Then
+        String[] lineas = salida.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(exportados).isEqualTo(2);
+        assertThat(lineas).hasSize(2);
+        assertThat(objectMapper.readValue(lineas[0], Producto.class).getNombre()).isEqualTo("MacBook Pro");
+        assertThat(objectMapper.readValue(lineas[1], Producto.class).getId()).isEqualTo(2L);
+        assertThat(salida.toString(StandardCharsets.UTF_8)).endsWith("}\n");
+        verify(entityManager).detach(productoTest);
+        verify(entityManager).detach(producto2);
+        assertThat(cerrado).isTrue();
+    }
+
+    @Test
+    @DisplayName("actualizarRatings - Debe actualizar el lote, omitir productos inexistentes y publicar un solo evento")
+    void testActualizarRatings_DebeActualizarLote() {
+        // Given
+        when(productoRepository.actualizarRating(eq(1L), eq(4.5), anyLong())).thenReturn(1);
+        when(productoRepository.actualizarRating(eq(99L), eq(3.0), anyLong())).thenReturn(0);
+
+        // When
+        int actualizados = productoService.actualizarRatings(List.of(
+                new RatingProductoDTO(1L, 4.5, 2L), new RatingProductoDTO(99L, 3.0, 1L)));
+
+        // Then
+        assertThat(actualizados).isEqualTo(1);
+        verify(eventPublisher).publishEvent(argThat((RatingsActualizadosEvent evento) ->
+                evento.getIdsProductos().equals(List.of(1L))));
+    }
+
+    @Test
+    @DisplayName("actualizarRatings - Debe rechazar ratings fuera de rango")
+    void testActualizarRatings_FueraDeRango_DebeLanzarExcepcion() {
+        assertThatThrownBy(() -> productoService.actualizarRatings(List.of(new RatingProductoDTO(1L, 7.0, 1L))))
+                .isInstanceOf(ProductoException.class)
+                .hasMessageContaining("entre 0 y 5");
+        verify(productoRepository, never()).actualizarRating(anyLong(), anyDouble(), anyLong());
+    }
+
+    @Test
+    @DisplayName("cambios - Debe mezclar modificaciones y bajas por secuencia y cortar en el limit")
+    void testCambios_DebeMezclarPorSecuencia() {
+        // Given: cambios confirmados hasta la secuencia 10
+        when(secuenciaCambios.confirmada()).thenReturn(10L);
+        when(productoRepository.findBySecuenciaGreaterThanAndSecuenciaLessThanEqualOrderBySecuenciaAsc(
+                eq(1L), eq(10L), any(Limit.class))).thenReturn(List.of(
+                Producto.builder().id(4L).secuencia(2L).build(),
+                Producto.builder().id(5L).secuencia(5L).build(),
+                Producto.builder().id(6L).secuencia(9L).build()));
+        when(productoEliminadoRepository.findBySecuenciaGreaterThanAndSecuenciaLessThanEqualOrderBySecuenciaAsc(
+                eq(1L), eq(10L), any(Limit.class))).thenReturn(List.of(
+                new ProductoEliminado(7L, 3L, LocalDateTime.now()),
+                new ProductoEliminado(8L, 8L, LocalDateTime.now())));
+
+        // When
+        CambiosDTO pagina = productoService.cambios(1L, 3);
+        CambiosDTO completa = productoService.cambios(1L, 10);
+
+        // Then: la página cortada continúa desde el último cambio incluido
+        assertThat(pagina.getProductos()).extracting(Producto::getId).containsExactly(4L, 5L);
+        assertThat(pagina.getEliminados()).containsExactly(7L);
+        assertThat(pagina.getHayMas()).isTrue();
+        assertThat(pagina.getHasta()).isEqualTo(5L);
+
+        assertThat(completa.getProductos()).extracting(Producto::getId).containsExactly(4L, 5L, 6L);
+        assertThat(completa.getEliminados()).containsExactly(7L, 8L);
+        assertThat(completa.getHayMas()).isFalse();
+        assertThat(completa.getHasta()).isEqualTo(10L);
+    }
+
+    @Test
+    @DisplayName("cambios - Debe rechazar una secuencia negativa")
+    void testCambios_DesdeNegativo_DebeLanzarExcepcion() {
+        assertThatThrownBy(() -> productoService.cambios(-1L, 10))
+                .isInstanceOf(ProductoException.class)
+                .hasMessageContaining("desde");
     }
 }
@@ -0,0 +1,109 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.models.entities.Producto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmark de GET /activos con el catálogo sin cambios: CPU y memoria asignada por petición al
+ * serializar la lista con Jackson en cada llamada (lo que hace el conversor de Spring MVC) frente a
+ * copiar los bytes guardados en RespuestasSerializadas, con y sin gzip. Se ejecuta solo a pedido:
+ * mvn test -Dtest=RespuestasSerializadasBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("RespuestasSerializadas - Benchmark de CPU y memoria por petición")
+class RespuestasSerializadasBenchmarkTest {
+
+    private static final int PRODUCTOS = 2_000;
+    private static final int PETICIONES = 500;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final com.sun.management.ThreadMXBean hilos =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void medirSerializacionFrenteABytesEnCache() throws IOException {
+        List<Producto> activos = LongStream.rangeClosed(1, PRODUCTOS)
+                .mapToObj(id -> Producto.builder().id(id).nombre("Producto " + id).precio((int) (id * 37 % 5_000))
+                        .categoria("CATEGORIA_" + id % 20).descripcion("Descripción del producto " + id)
+                        .stock((int) (id % 300)).activo(true).rating(id % 50 / 10.0).version(id % 7).build())
+                .toList();
+
+        RespuestasSerializadas respuestas = new RespuestasSerializadas();
+        ReflectionTestUtils.setField(respuestas, "habilitada", true);
+        ReflectionTestUtils.setField(respuestas, "maxBytes", 64L * 1024 * 1024);
+        ReflectionTestUtils.setField(respuestas, "gzipMinBytes", 1024);
+        ReflectionTestUtils.setField(respuestas, "objectMapper", objectMapper);
+        respuestas.iniciar();
+        // Descarta lo escrito; a diferencia de nullOutputStream sigue aceptando escrituras después de
+        // close(), que Jackson llama al terminar igual que al cerrar la respuesta del servlet
+        OutputStream salida = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+
+        Medicion jackson = medir(() -> objectMapper.writeValue(salida, activos));
+        Medicion jacksonGzip = medir(() -> {
+            GZIPOutputStream gzip = new GZIPOutputStream(salida, 8192);
+            objectMapper.writeValue(gzip, activos);
+        });
+        Medicion cache = medir(() -> salida.write(respuestas.obtener(1, "/activos", () -> activos).json()));
+        Medicion cacheGzip = medir(() -> salida.write(respuestas.obtener(1, "/activos", () -> activos).gzip()));
+
+        RespuestasSerializadas.Respuesta respuesta = respuestas.obtener(1, "/activos", () -> activos);
+        System.out.printf("Cuerpo: %,d bytes JSON, %,d bytes gzip (%d productos)%n",
+                respuesta.json().length, respuesta.gzip().length, PRODUCTOS);
+        jackson.imprimir("Jackson por petición");
+        jacksonGzip.imprimir("Jackson + gzip por petición");
+        cache.imprimir("Bytes en caché");
+        cacheGzip.imprimir("Bytes gzip en caché");
+
+        assertThat(cache.bytesPorPeticion()).isLessThan(jackson.bytesPorPeticion() / 10);
+        assertThat(cache.nanosPorPeticion()).isLessThan(jackson.nanosPorPeticion());
+    }
+
+    private Medicion medir(Peticion peticion) throws IOException {
+        // Calentamiento del JIT
+        for (int i = 0; i < PETICIONES; i++) {
+            peticion.ejecutar();
+        }
+        long hilo = Thread.currentThread().getId();
+        long bytesInicio = hilos.getThreadAllocatedBytes(hilo);
+        long cpuInicio = hilos.getCurrentThreadCpuTime();
+        for (int i = 0; i < PETICIONES; i++) {
+            peticion.ejecutar();
+        }
+        return new Medicion((hilos.getCurrentThreadCpuTime() - cpuInicio) / PETICIONES,
+                (hilos.getThreadAllocatedBytes(hilo) - bytesInicio) / PETICIONES);
+    }
+
+    @FunctionalInterface
+    private interface Peticion {
+        void ejecutar() throws IOException;
+    }
+
+    private record Medicion(long nanosPorPeticion, long bytesPorPeticion) {
+        void imprimir(String caso) {
+            System.out.printf("%-28s %,10d ns CPU/petición %,12d bytes asignados/petición%n",
+                    caso, nanosPorPeticion, bytesPorPeticion);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.appmovil.msvc.productos.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("RespuestasSerializadas - Unit Tests")
+class RespuestasSerializadasTest {
+
+    private RespuestasSerializadas respuestas;
+
+    private final AtomicInteger consultas = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        respuestas = crear(true);
+    }
+
+    private static RespuestasSerializadas crear(boolean habilitada) {
+        RespuestasSerializadas respuestas = new RespuestasSerializadas();
+        ReflectionTestUtils.setField(respuestas, "habilitada", habilitada);
+        ReflectionTestUtils.setField(respuestas, "maxBytes", 1_000_000L);
+        ReflectionTestUtils.setField(respuestas, "gzipMinBytes", 100);
+        ReflectionTestUtils.setField(respuestas, "objectMapper", new ObjectMapper());
+        respuestas.iniciar();
+        return respuestas;
+    }
+
+    // Consulta que cuenta sus ejecuciones y devuelve un cuerpo distinto cada vez
+    private Supplier<Object> consulta() {
+        return () -> Map.of("consulta", consultas.incrementAndGet());
+    }
+
+    private static String texto(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("obtener - Con la misma versión y petición debe devolver los mismos bytes sin volver a consultar")
+    void testObtener_MismaVersion_DebeReutilizarBytes() {
+        RespuestasSerializadas.Respuesta primera = respuestas.obtener(1, "/activos", consulta());
+        RespuestasSerializadas.Respuesta segunda = respuestas.obtener(1, "/activos", consulta());
+
+        assertThat(texto(primera.json())).isEqualTo("{\"consulta\":1}");
+        assertThat(segunda.json()).isSameAs(primera.json());
+        assertThat(consultas).hasValue(1);
+        assertThat(respuestas.estadisticas().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("obtener - Cada petición (ruta y parámetros) debe tener su propia entrada")
+    void testObtener_OtraPeticion_DebeConsultar() {
+        respuestas.obtener(1, "/activos", consulta());
+        RespuestasSerializadas.Respuesta otra = respuestas.obtener(1, "/activos&cursor=abc&limit=20", consulta());
+
+        assertThat(texto(otra.json())).isEqualTo("{\"consulta\":2}");
+    }
+
+    @Test
+    @DisplayName("obtener - Una versión nueva del catálogo debe descartar las respuestas anteriores")
+    void testObtener_VersionNueva_DebeInvalidar() {
+        respuestas.obtener(1, "/activos", consulta());
+
+        RespuestasSerializadas.Respuesta nueva = respuestas.obtener(2, "/activos", consulta());
+
+        assertThat(texto(nueva.json())).isEqualTo("{\"consulta\":2}");
+        respuestas.obtener(2, "/activos", consulta());
+        assertThat(consultas).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("obtener - Una petición que leyó una versión vieja no debe guardar su resultado")
+    void testObtener_VersionVieja_NoDebeGuardar() {
+        respuestas.obtener(5, "/activos", consulta());
+
+        respuestas.obtener(4, "/facetas", consulta());
+        respuestas.obtener(5, "/facetas", consulta());
+
+        assertThat(consultas).hasValue(3);
+    }
+
+    @Test
+    @DisplayName("obtener - Los cuerpos desde gzip-min-bytes deben guardar además su copia gzip")
+    void testObtener_CuerpoGrande_DebeComprimir() throws IOException {
+        List<String> grande = List.of("x".repeat(500), "y".repeat(500));
+
+        RespuestasSerializadas.Respuesta comprimida = respuestas.obtener(1, "/grande", () -> grande);
+        RespuestasSerializadas.Respuesta chica = respuestas.obtener(1, "/chica", () -> List.of("x"));
+
+        assertThat(comprimida.comprimida()).isTrue();
+        assertThat(comprimida.gzip().length).isLessThan(comprimida.json().length);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(comprimida.gzip()))) {
+            assertThat(gzip.readAllBytes()).isEqualTo(comprimida.json());
+        }
+        assertThat(chica.comprimida()).isFalse();
+    }
+
+    @Test
+    @DisplayName("obtener - Deshabilitada debe serializar en cada petición")
+    void testObtener_Deshabilitada_DebeSerializarSiempre() {
+        RespuestasSerializadas deshabilitada = crear(false);
+
+        deshabilitada.obtener(1, "/activos", consulta());
+        RespuestasSerializadas.Respuesta segunda = deshabilitada.obtener(1, "/activos", consulta());
+
+        assertThat(texto(segunda.json())).isEqualTo("{\"consulta\":2}");
+    }
+}
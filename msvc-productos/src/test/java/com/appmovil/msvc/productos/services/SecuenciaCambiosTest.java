@@ -0,0 +1,116 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.repositories.ProductoEliminadoRepository;
+import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("SecuenciaCambios - Unit Tests")
+class SecuenciaCambiosTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    @Mock
+    private ProductoEliminadoRepository productoEliminadoRepository;
+
+    @InjectMocks
+    private SecuenciaCambios secuencia;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(productoRepository.maxSecuencia()).thenReturn(5L);
+        lenient().when(productoEliminadoRepository.maxSecuencia()).thenReturn(9L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // Simula una transacción abierta en el hilo: devuelve sus sincronizaciones y la deja suspendida
+    private List<TransactionSynchronization> transaccion(int cambios, long[] asignadas) {
+        TransactionSynchronizationManager.initSynchronization();
+        for (int i = 0; i < cambios; i++) {
+            asignadas[i] = secuencia.siguiente();
+        }
+        List<TransactionSynchronization> sincronizaciones = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        return sincronizaciones;
+    }
+
+    private static void terminar(List<TransactionSynchronization> sincronizaciones, int estado) {
+        sincronizaciones.forEach(sincronizacion -> sincronizacion.afterCompletion(estado));
+    }
+
+    @Test
+    @DisplayName("siguiente - Debe continuar desde la mayor secuencia guardada en productos y bajas")
+    void testSiguiente_DebeContinuarDesdeLaBase() {
+        // Given
+        long[] asignadas = new long[3];
+
+        // When
+        List<TransactionSynchronization> sincronizaciones = transaccion(3, asignadas);
+
+        // Then: una sola sincronización por transacción aunque asigne varias secuencias
+        assertThat(asignadas).containsExactly(10L, 11L, 12L);
+        assertThat(sincronizaciones).hasSize(1);
+        terminar(sincronizaciones, TransactionSynchronization.STATUS_COMMITTED);
+        assertThat(secuencia.confirmada()).isEqualTo(12L);
+    }
+
+    @Test
+    @DisplayName("confirmada - No debe superar la primera secuencia de una transacción abierta")
+    void testConfirmada_DebeEsperarTransaccionesAbiertas() {
+        // Given: A toma la 10 y 11, B toma la 12 y confirma primero
+        long[] deA = new long[2];
+        long[] deB = new long[1];
+        List<TransactionSynchronization> a = transaccion(2, deA);
+        List<TransactionSynchronization> b = transaccion(1, deB);
+        assertThat(secuencia.confirmada()).isEqualTo(9L);
+
+        // When / Then
+        terminar(b, TransactionSynchronization.STATUS_COMMITTED);
+        assertThat(secuencia.confirmada()).isEqualTo(9L);
+
+        // Un rollback también libera la marca: sus secuencias quedan sin filas
+        terminar(a, TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertThat(secuencia.confirmada()).isEqualTo(12L);
+    }
+
+    @Test
+    @DisplayName("siguiente - Fuera de una transacción debe fallar")
+    void testSiguiente_SinTransaccion_DebeFallar() {
+        assertThatThrownBy(() -> secuencia.siguiente()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("sincronizar - Nunca debe retroceder la secuencia")
+    void testSincronizar_NoDebeRetroceder() {
+        // Given
+        terminar(transaccion(1, new long[1]), TransactionSynchronization.STATUS_COMMITTED);
+
+        // When: la migración numera filas viejas con valores menores
+        when(productoRepository.maxSecuencia()).thenReturn(7L);
+        secuencia.sincronizar();
+
+        // Then
+        assertThat(secuencia.confirmada()).isEqualTo(10L);
+    }
+}
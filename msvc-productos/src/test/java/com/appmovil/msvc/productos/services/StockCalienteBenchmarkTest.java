@@ -0,0 +1,102 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.MsvcProductosApplication;
+import com.appmovil.msvc.productos.models.entities.Producto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmark de contención: muchos hilos descontando stock del mismo producto por el camino de la
+ * base de datos (UPDATE condicional) y por el modo stock caliente. Se ejecuta solo a pedido:
+ * mvn test -Dtest=StockCalienteBenchmarkTest -Dbenchmark=true
+ */
+@SpringBootTest(classes = MsvcProductosApplication.class, properties = {
+        "productos.stock-caliente.enabled=true",
+        "productos.stock-caliente.intervalo-flush-ms=100",
+        "productos.stock-caliente.journal=target/benchmark/stock-caliente.journal"
+})
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("StockCaliente - Benchmark de contención")
+class StockCalienteBenchmarkTest {
+
+    private static final int HILOS = 16;
+    private static final int OPERACIONES_POR_HILO = 2_000;
+    private static final int STOCK_INICIAL = 1_000_000;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private StockCaliente stockCaliente;
+
+    @Test
+    void compararBaseDeDatosContraStockCaliente() throws InterruptedException {
+        Long enBase = crearProducto("SKU base de datos");
+        Long caliente = crearProducto("SKU caliente");
+        stockCaliente.activar(caliente);
+
+        // Calentamiento del JIT y del pool de conexiones
+        medir("calentamiento", i -> productoService.actualizarStock(enBase, -1));
+        medir("calentamiento", i -> productoService.actualizarStock(caliente, -1));
+
+        medir("UPDATE condicional", i -> productoService.actualizarStock(enBase, -1));
+        medir("stock caliente (servicio)", i -> productoService.actualizarStock(caliente, -1));
+        medir("stock caliente (contador)", i -> stockCaliente.sumar(caliente, -1));
+
+        // Después del flush la base de datos refleja todo lo descontado en memoria
+        stockCaliente.flush();
+        int descontado = HILOS * OPERACIONES_POR_HILO;
+        assertThat(productoService.findById(enBase).getStock()).isEqualTo(STOCK_INICIAL - 2 * descontado);
+        assertThat(productoService.findById(caliente).getStock()).isEqualTo(STOCK_INICIAL - 3 * descontado);
+    }
+
+    private Long crearProducto(String nombre) {
+        return productoService.save(Producto.builder()
+                .nombre(nombre).precio(1000).categoria("BENCHMARK").stock(STOCK_INICIAL).build()).getId();
+    }
+
+    private void medir(String escenario, LongConsumer operacion) throws InterruptedException {
+        ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+        CountDownLatch largada = new CountDownLatch(1);
+        long[] latencias = new long[HILOS * OPERACIONES_POR_HILO];
+
+        for (int h = 0; h < HILOS; h++) {
+            int base = h * OPERACIONES_POR_HILO;
+            hilos.submit(() -> {
+                largada.await();
+                for (int i = 0; i < OPERACIONES_POR_HILO; i++) {
+                    long inicio = System.nanoTime();
+                    operacion.accept(i);
+                    latencias[base + i] = System.nanoTime() - inicio;
+                }
+                return null;
+            });
+        }
+
+        long inicio = System.nanoTime();
+        largada.countDown();
+        hilos.shutdown();
+        assertThat(hilos.awaitTermination(5, TimeUnit.MINUTES)).isTrue();
+        long duracionNs = System.nanoTime() - inicio;
+
+        Arrays.sort(latencias);
+        System.out.printf("%-28s %10.0f ops/s  p50 %7.1f us  p99 %8.1f us%n", escenario,
+                latencias.length / (duracionNs / 1e9),
+                latencias[latencias.length / 2] / 1e3,
+                latencias[(int) (latencias.length * 0.99)] / 1e3);
+    }
+}
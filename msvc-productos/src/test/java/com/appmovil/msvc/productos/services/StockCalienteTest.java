@@ -0,0 +1,355 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.dtos.StockDTO;
+import com.appmovil.msvc.productos.exception.ProductoException;
+import com.appmovil.msvc.productos.models.entities.StockCalienteAplicado;
+import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import com.appmovil.msvc.productos.repositories.StockCalienteAplicadoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("StockCaliente - Unit Tests")
+class StockCalienteTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    @Mock
+    private StockCalienteAplicadoRepository stockCalienteAplicadoRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private VersionCatalogo versionCatalogo;
+
+    @Mock
+    private SecuenciaCambios secuenciaCambios;
+
+    @InjectMocks
+    private StockCaliente stockCaliente;
+
+    @TempDir
+    Path directorio;
+
+    private Path journal;
+
+    // Fila de stock_caliente_aplicado simulada
+    private final AtomicLong ultimoAplicado = new AtomicLong();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        journal = directorio.resolve("stock.journal");
+        when(stockCalienteAplicadoRepository.findById(StockCalienteAplicado.ID)).thenAnswer(inv -> ultimoAplicado.get() == 0
+                ? Optional.empty()
+                : Optional.of(new StockCalienteAplicado(StockCalienteAplicado.ID, ultimoAplicado.get())));
+        when(stockCalienteAplicadoRepository.save(any())).thenAnswer(inv -> {
+            StockCalienteAplicado fila = inv.getArgument(0);
+            ultimoAplicado.set(fila.getUltimoSegmento());
+            return fila;
+        });
+        when(productoRepository.findStockById(1L)).thenReturn(Optional.of(new StockDTO(1L, "LAPTOPS", 10)));
+        when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+        configurar(stockCaliente);
+        stockCaliente.iniciar();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        stockCaliente.detener();
+    }
+
+    private void configurar(StockCaliente instancia) {
+        ReflectionTestUtils.setField(instancia, "habilitado", true);
+        ReflectionTestUtils.setField(instancia, "idsCalientes", Set.of(1L));
+        // Intervalo largo: en los tests el flush se invoca a mano
+        ReflectionTestUtils.setField(instancia, "intervaloFlushMs", 60_000L);
+        ReflectionTestUtils.setField(instancia, "rutaJournal", journal.toString());
+    }
+
+    @Test
+    @DisplayName("sumar - Con reservas concurrentes nunca debe vender más que el stock disponible")
+    void testSumar_Concurrente_NoDebeQuedarNegativo() throws InterruptedException {
+        // Given
+        ExecutorService hilos = Executors.newFixedThreadPool(8);
+        AtomicInteger exitosas = new AtomicInteger();
+
+        // When
+        for (int i = 0; i < 50; i++) {
+            hilos.submit(() -> {
+                try {
+                    stockCaliente.sumar(1L, -1);
+                    exitosas.incrementAndGet();
+                } catch (ProductoException ex) {
+                    // Sin stock
+                }
+            });
+        }
+        hilos.shutdown();
+        hilos.awaitTermination(10, TimeUnit.SECONDS);
+
+        // Then
+        assertThat(exitosas.get()).isEqualTo(10);
+        assertThatThrownBy(() -> stockCaliente.sumar(1L, -1))
+                .isInstanceOf(ProductoException.class)
+                .hasMessageContaining("Stock insuficiente");
+    }
+
+    @Test
+    @DisplayName("flush - Debe escribir un único delta agregado por producto y borrar el segmento")
+    void testFlush_DebeAgregarDeltas() throws IOException {
+        // Given
+        stockCaliente.sumar(1L, -1);
+        stockCaliente.sumar(1L, -2);
+        stockCaliente.sumar(1L, 1);
+
+        // When
+        stockCaliente.flush();
+
+        // Then
+        verify(productoRepository).aplicarDeltaStock(eq(1L), eq(-2), anyLong());
+        verify(transactionManager).commit(any());
+        verify(versionCatalogo).invalidarProductos(Set.of(1L));
+        try (var archivos = Files.list(directorio)) {
+            assertThat(archivos).containsExactly(journal);
+        }
+        assertThat(Files.size(journal)).isZero();
+    }
+
+    @Test
+    @DisplayName("flush - Si la base de datos falla debe reintentar el mismo lote")
+    void testFlush_ConErrorDeBase_DebeReintentar() {
+        // Given
+        stockCaliente.sumar(1L, -3);
+        when(productoRepository.aplicarDeltaStock(eq(1L), eq(-3), anyLong()))
+                .thenThrow(new IllegalStateException("sin conexión"))
+                .thenReturn(1);
+
+        // When
+        assertThatThrownBy(() -> stockCaliente.flush()).isInstanceOf(IllegalStateException.class);
+        stockCaliente.sumar(1L, -1);
+        stockCaliente.flush();
+
+        // Then
+        verify(productoRepository, times(2)).aplicarDeltaStock(eq(1L), eq(-3), anyLong());
+        verify(productoRepository).aplicarDeltaStock(eq(1L), eq(-1), anyLong());
+    }
+
+    @Test
+    @DisplayName("iniciar - Debe reaplicar el journal de una ejecución que terminó sin flush")
+    void testIniciar_DebeRecuperarJournal() throws IOException {
+        // Given: se simula una caída (sin flush) y un último registro escrito a medias
+        stockCaliente.sumar(1L, -3);
+        stockCaliente.sumar(1L, -1);
+        simularCaida(stockCaliente);
+        try (FileChannel canal = FileChannel.open(journal, StandardOpenOption.APPEND)) {
+            canal.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 0, 0}));
+        }
+
+        // When
+        reiniciar();
+
+        // Then
+        verify(productoRepository).aplicarDeltaStock(eq(1L), eq(-4), anyLong());
+        assertThat(Files.size(journal)).isZero();
+        assertThat(ultimoAplicado.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("iniciar - No debe reaplicar un segmento cuyo commit ya se registró")
+    void testIniciar_SegmentoYaAplicado_NoDebeReaplicar() throws IOException {
+        // Given: el segmento 3 llegó a la base de datos pero la caída fue antes de borrarlo;
+        // el journal activo todavía no se aplicó
+        simularCaida(stockCaliente);
+        escribirRegistro(directorio.resolve("stock.journal.3"), 1L, -3);
+        escribirRegistro(journal, 1L, -1);
+        ultimoAplicado.set(3);
+
+        // When
+        reiniciar();
+
+        // Then
+        verify(productoRepository, never()).aplicarDeltaStock(eq(1L), eq(-3), anyLong());
+        verify(productoRepository, never()).aplicarDeltaStock(eq(1L), eq(-4), anyLong());
+        verify(productoRepository).aplicarDeltaStock(eq(1L), eq(-1), anyLong());
+        assertThat(ultimoAplicado.get()).isEqualTo(4);
+        try (var archivos = Files.list(directorio)) {
+            assertThat(archivos).containsExactly(journal);
+        }
+
+        // Los segmentos siguientes se numeran por encima del último aplicado
+        stockCaliente.sumar(1L, -2);
+        stockCaliente.flush();
+        assertThat(ultimoAplicado.get()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("flush - Si el commit se hizo pero falló la confirmación, el reintento no debe reaplicar los deltas")
+    void testFlush_CommitIncierto_NoDebeReaplicar() {
+        // Given: el commit llega a la base de datos pero la respuesta se pierde
+        stockCaliente.sumar(1L, -3);
+        doThrow(new IllegalStateException("conexión cortada")).doNothing().when(transactionManager).commit(any());
+
+        // When
+        assertThatThrownBy(() -> stockCaliente.flush()).isInstanceOf(IllegalStateException.class);
+        stockCaliente.flush();
+
+        // Then
+        verify(productoRepository, times(1)).aplicarDeltaStock(eq(1L), eq(-3), anyLong());
+        verify(versionCatalogo).invalidarProductos(Set.of(1L));
+    }
+
+    @Test
+    @DisplayName("sumar - Si la transacción hace rollback debe devolver el stock")
+    void testSumar_ConRollback_DebeRevertir() {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            stockCaliente.sumar(1L, -4);
+
+            // When
+            for (TransactionSynchronization sincronizacion : TransactionSynchronizationManager.getSynchronizations()) {
+                sincronizacion.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        stockCaliente.flush();
+
+        // Then
+        assertThat(stockCaliente.sumar(1L, -10).getStock()).isZero();
+        verify(productoRepository, never()).aplicarDeltaStock(anyLong(), anyInt(), anyLong());
+    }
+
+    @Test
+    @DisplayName("sumar - El rollback de una liberación cuyas unidades ya se reservaron no debe dejar stock negativo")
+    void testSumar_RollbackDeLiberacion_NoDebeQuedarNegativo() {
+        // Given: se liberan 5 unidades y, antes del rollback, otra operación reserva las 15 disponibles
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            stockCaliente.sumar(1L, 5);
+            List<TransactionSynchronization> sincronizaciones = TransactionSynchronizationManager.getSynchronizations();
+            TransactionSynchronizationManager.clearSynchronization();
+            stockCaliente.sumar(1L, -15);
+
+            // When
+            TransactionSynchronizationManager.initSynchronization();
+            for (TransactionSynchronization sincronizacion : sincronizaciones) {
+                sincronizacion.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        stockCaliente.flush();
+
+        // Then: el contador queda en cero y el journal anota solo lo que se pudo quitar
+        assertThatThrownBy(() -> stockCaliente.sumar(1L, -1)).isInstanceOf(ProductoException.class);
+        verify(productoRepository).aplicarDeltaStock(eq(1L), eq(-10), anyLong());
+    }
+
+    @Test
+    @DisplayName("sumar - Los cambios concurrentes deben quedar todos en el journal, escritos en grupos")
+    void testSumar_Concurrente_DebeAnotarTodo() throws Exception {
+        // Given
+        ReflectionTestUtils.setField(stockCaliente, "fsync", true);
+        stockCaliente.fijar(1L, 1_000);
+        ExecutorService hilos = Executors.newFixedThreadPool(8);
+
+        // When: 8 hilos reservan 400 unidades en total y el proceso cae sin flush
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int h = 0; h < 8; h++) {
+            tareas.add(hilos.submit(() -> {
+                for (int i = 0; i < 50; i++) {
+                    stockCaliente.sumar(1L, -1);
+                }
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get(10, TimeUnit.SECONDS);
+        }
+        hilos.shutdown();
+        simularCaida(stockCaliente);
+        reiniciar();
+
+        // Then
+        verify(productoRepository).aplicarDeltaStock(eq(1L), eq(990 - 400), anyLong());
+    }
+
+    @Test
+    @DisplayName("fijar - Debe anotar la diferencia con el stock actual")
+    void testFijar_DebeAnotarDiferencia() {
+        // When
+        StockDTO resultado = stockCaliente.fijar(1L, 25);
+        stockCaliente.flush();
+
+        // Then
+        assertThat(resultado.getStock()).isEqualTo(25);
+        verify(productoRepository).aplicarDeltaStock(eq(1L), eq(15), anyLong());
+    }
+
+    private void reiniciar() throws IOException {
+        stockCaliente = new StockCaliente();
+        ReflectionTestUtils.setField(stockCaliente, "productoRepository", productoRepository);
+        ReflectionTestUtils.setField(stockCaliente, "stockCalienteAplicadoRepository", stockCalienteAplicadoRepository);
+        ReflectionTestUtils.setField(stockCaliente, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(stockCaliente, "versionCatalogo", versionCatalogo);
+        ReflectionTestUtils.setField(stockCaliente, "secuenciaCambios", secuenciaCambios);
+        configurar(stockCaliente);
+        stockCaliente.iniciar();
+    }
+
+    // Mismo formato que StockCaliente.anotar: idProducto, delta y CRC32 de ambos
+    private static void escribirRegistro(Path archivo, long id, int delta) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(12).putLong(id).putInt(delta).array());
+        ByteBuffer registro = ByteBuffer.allocate(16).putLong(id).putInt(delta).putInt((int) crc.getValue()).flip();
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            canal.write(registro);
+        }
+    }
+
+    private void simularCaida(StockCaliente instancia) throws IOException {
+        ((ScheduledExecutorService) ReflectionTestUtils.getField(instancia, "flusher")).shutdownNow();
+        ((FileChannel) ReflectionTestUtils.getField(instancia, "journal")).close();
+        ReflectionTestUtils.setField(instancia, "flusher", null);
+    }
+}
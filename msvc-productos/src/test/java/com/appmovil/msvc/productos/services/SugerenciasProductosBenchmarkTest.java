@@ -0,0 +1,103 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.dtos.SugerenciaDTO;
+import com.appmovil.msvc.productos.events.ProductoModificadoEvent;
+import com.appmovil.msvc.productos.events.StockActualizadoEvent;
+import com.appmovil.msvc.productos.models.entities.Producto;
+import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Latencia del autocompletado con 100.000 productos: tiempo de carga del trie, percentiles de
+ * sugerir() con prefijos de 1 a 8 caracteres y costo de los cambios incrementales.
+ * Se ejecuta solo a pedido: mvn test -Dtest=SugerenciasProductosBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("SugerenciasProductos - Benchmark de latencia")
+class SugerenciasProductosBenchmarkTest {
+
+    private static final int PRODUCTOS = 100_000;
+    private static final int CONSULTAS = 200_000;
+
+    private static final String[] MARCAS = {"samsung", "lenovo", "logitech", "apple", "xiaomi", "asus", "acer",
+            "sony", "lg", "hp", "dell", "razer", "corsair", "kingston", "philips", "motorola"};
+    private static final String[] TIPOS = {"laptop", "monitor", "mouse", "teclado", "audifonos", "tablet",
+            "smartphone", "parlante", "camara", "impresora", "router", "disco", "memoria", "cargador", "cable"};
+    private static final String[] ADJETIVOS = {"gamer", "inalambrico", "pro", "ultra", "mini", "max", "slim",
+            "plus", "lite", "curvo", "mecanico", "portatil", "usb", "hdmi", "bluetooth"};
+
+    @Test
+    void medirLatencia() {
+        Random azar = new Random(7);
+        List<SugerenciaDTO> filas = new ArrayList<>(PRODUCTOS);
+        for (long id = 1; id <= PRODUCTOS; id++) {
+            filas.add(new SugerenciaDTO(id, nombre(azar, id), azar.nextInt(51) / 10.0, azar.nextInt(10) > 0));
+        }
+        ProductoRepository repositorio = mock(ProductoRepository.class);
+        when(repositorio.findAllSugerencias()).thenReturn(filas);
+        SugerenciasProductos sugerencias = new SugerenciasProductos();
+        ReflectionTestUtils.setField(sugerencias, "productoRepository", repositorio);
+        ReflectionTestUtils.setField(sugerencias, "maxSugerencias", 10);
+
+        long inicio = System.nanoTime();
+        sugerencias.reconstruir();
+        System.out.printf("%nCarga de %,d productos: %d ms%n", PRODUCTOS, (System.nanoTime() - inicio) / 1_000_000);
+
+        String[] consultas = new String[CONSULTAS];
+        for (int i = 0; i < CONSULTAS; i++) {
+            String nombre = filas.get(azar.nextInt(PRODUCTOS)).getNombre().toLowerCase();
+            consultas[i] = nombre.substring(0, Math.min(nombre.length(), 1 + azar.nextInt(8)));
+        }
+
+        // Calentamiento del JIT
+        for (String consulta : consultas) {
+            sugerencias.sugerir(consulta, 10);
+        }
+        long[] latencias = new long[CONSULTAS];
+        for (int i = 0; i < CONSULTAS; i++) {
+            long t = System.nanoTime();
+            sugerencias.sugerir(consultas[i], 10);
+            latencias[i] = System.nanoTime() - t;
+        }
+        Arrays.sort(latencias);
+        long p99 = latencias[(int) (CONSULTAS * 0.99)];
+        System.out.printf("sugerir: p50 %.1f µs | p99 %.1f µs | p99.9 %.1f µs | max %.1f µs%n",
+                latencias[CONSULTAS / 2] / 1e3, p99 / 1e3, latencias[(int) (CONSULTAS * 0.999)] / 1e3,
+                latencias[CONSULTAS - 1] / 1e3);
+
+        // Cambios incrementales: renombrar y agotar/reponer productos al azar
+        int cambios = 20_000;
+        inicio = System.nanoTime();
+        for (int i = 0; i < cambios; i++) {
+            long id = 1 + azar.nextInt(PRODUCTOS);
+            if (i % 2 == 0) {
+                sugerencias.onProductoModificado(new ProductoModificadoEvent(id, Producto.builder().id(id)
+                        .nombre(nombre(azar, id)).stock(azar.nextInt(5)).rating(azar.nextInt(51) / 10.0)
+                        .activo(true).build()));
+            } else {
+                sugerencias.onStockActualizado(new StockActualizadoEvent(id, null, 1, 0));
+            }
+        }
+        System.out.printf("Cambios incrementales: %.1f µs por cambio%n%n",
+                (System.nanoTime() - inicio) / 1e3 / cambios);
+
+        assertThat(p99).isLessThan(1_000_000L);
+    }
+
+    private static String nombre(Random azar, long id) {
+        return TIPOS[azar.nextInt(TIPOS.length)] + " " + MARCAS[azar.nextInt(MARCAS.length)] + " "
+                + ADJETIVOS[azar.nextInt(ADJETIVOS.length)] + " " + Long.toString(id * 7919 % 100_000, 36);
+    }
+}
@@ -0,0 +1,165 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.dtos.SugerenciaDTO;
+import com.appmovil.msvc.productos.events.ProductoModificadoEvent;
+import com.appmovil.msvc.productos.events.RatingsActualizadosEvent;
+import com.appmovil.msvc.productos.events.StockActualizadoEvent;
+import com.appmovil.msvc.productos.models.entities.Producto;
+import com.appmovil.msvc.productos.repositories.ProductoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("SugerenciasProductos - Unit Tests")
+class SugerenciasProductosTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    @InjectMocks
+    private SugerenciasProductos sugerencias;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(sugerencias, "maxSugerencias", 3);
+    }
+
+    private void cargar(SugerenciaDTO... filas) {
+        when(productoRepository.findAllSugerencias()).thenReturn(List.of(filas));
+        sugerencias.reconstruir();
+    }
+
+    private static List<Long> ids(List<SugerenciaDTO> resultado) {
+        return resultado.stream().map(SugerenciaDTO::getId).toList();
+    }
+
+    private static Producto producto(long id, String nombre, int stock, double rating) {
+        return Producto.builder().id(id).nombre(nombre).categoria("X").precio(1).stock(stock).rating(rating)
+                .activo(true).build();
+    }
+
+    @Test
+    @DisplayName("sugerir - Debe ordenar por disponibilidad y rating, sin acentos ni mayúsculas")
+    void testSugerir_DebeOrdenarPorStockYRating() {
+        // Given
+        cargar(new SugerenciaDTO(1L, "Laptop Básica", 3.0, true),
+                new SugerenciaDTO(2L, "Laptop Gamer", 4.8, false),
+                new SugerenciaDTO(3L, "LÁPIZ táctil", 4.0, true),
+                new SugerenciaDTO(4L, "Mouse", 5.0, true));
+
+        // Then: el agotado queda último aunque tenga el mejor rating
+        assertThat(ids(sugerencias.sugerir("la", 3))).containsExactly(3L, 1L, 2L);
+        assertThat(ids(sugerencias.sugerir("LAPT", 3))).containsExactly(1L, 2L);
+        assertThat(ids(sugerencias.sugerir("lapiz t", 3))).containsExactly(3L);
+        assertThat(sugerencias.sugerir("laptox", 3)).isEmpty();
+        assertThat(sugerencias.sugerir("  ", 3)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("sugerir - Debe encontrar palabras que no están al comienzo del nombre")
+    void testSugerir_DebeCoincidirConCualquierPalabra() {
+        // Given
+        cargar(new SugerenciaDTO(1L, "Laptop Gamer 15", 4.0, true),
+                new SugerenciaDTO(2L, "Silla gamer", 4.5, true),
+                new SugerenciaDTO(3L, "Gamepad", 3.5, true));
+
+        // Then
+        assertThat(ids(sugerencias.sugerir("game", 3))).containsExactly(2L, 1L, 3L);
+        assertThat(ids(sugerencias.sugerir("gamer", 3))).containsExactly(2L, 1L);
+        assertThat(ids(sugerencias.sugerir("gamer 1", 3))).containsExactly(1L);
+        assertThat(ids(sugerencias.sugerir("game", 1))).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("eventos - Altas, bajas, stock y ratings deben reflejarse sin reconstruir")
+    void testEventos_DebenActualizarIncrementalmente() {
+        // Given
+        cargar(new SugerenciaDTO(1L, "Monitor 24", 4.0, true),
+                new SugerenciaDTO(2L, "Monitor 27", 3.0, true));
+
+        // When / Then
+        sugerencias.onProductoModificado(new ProductoModificadoEvent(3L, producto(3L, "Monitor curvo", 5, 4.5)));
+        assertThat(ids(sugerencias.sugerir("mon", 3))).containsExactly(3L, 1L, 2L);
+
+        sugerencias.onStockActualizado(new StockActualizadoEvent(3L, "X", 5, 0));
+        assertThat(ids(sugerencias.sugerir("mon", 3))).containsExactly(1L, 2L, 3L);
+
+        sugerencias.onRatingsActualizados(new RatingsActualizadosEvent(Map.of(2L, 4.9)));
+        assertThat(ids(sugerencias.sugerir("mon", 3))).containsExactly(2L, 1L, 3L);
+
+        // Renombrado: deja de coincidir con el nombre anterior
+        sugerencias.onProductoModificado(new ProductoModificadoEvent(1L, producto(1L, "Pantalla 24", 5, 4.0)));
+        assertThat(ids(sugerencias.sugerir("mon", 3))).containsExactly(2L, 3L);
+        assertThat(ids(sugerencias.sugerir("pan", 3))).containsExactly(1L);
+
+        // Baja
+        sugerencias.onProductoModificado(new ProductoModificadoEvent(2L, null));
+        assertThat(ids(sugerencias.sugerir("monitor", 3))).containsExactly(3L);
+        verify(productoRepository, times(1)).findAllSugerencias();
+    }
+
+    @Test
+    @DisplayName("eventos - Tras muchos cambios aleatorios el trie debe coincidir con una búsqueda exhaustiva")
+    void testEventosAleatorios_DebenCoincidirConBusquedaExhaustiva() {
+        // Given: nombres con muchos prefijos compartidos para forzar divisiones y fusiones de aristas
+        cargar();
+        String[] palabras = {"lap", "laptop", "lapiz", "la", "mouse", "mou", "monitor", "mon", "m", "pro", "p"};
+        Random azar = new Random(42);
+        Map<Long, Producto> vigentes = new HashMap<>();
+
+        for (int i = 0; i < 3_000; i++) {
+            long id = 1 + azar.nextInt(60);
+            if (azar.nextInt(5) == 0) {
+                vigentes.remove(id);
+                sugerencias.onProductoModificado(new ProductoModificadoEvent(id, null));
+                continue;
+            }
+            StringBuilder nombre = new StringBuilder(palabras[azar.nextInt(palabras.length)]);
+            for (int p = azar.nextInt(3); p > 0; p--) {
+                nombre.append(' ').append(palabras[azar.nextInt(palabras.length)]);
+            }
+            Producto producto = producto(id, nombre.toString(), azar.nextInt(3), azar.nextInt(6));
+            vigentes.put(id, producto);
+            sugerencias.onProductoModificado(new ProductoModificadoEvent(id, producto));
+
+            if (i % 100 == 0) {
+                verificarContraBusquedaExhaustiva(vigentes, palabras);
+            }
+        }
+        verificarContraBusquedaExhaustiva(vigentes, palabras);
+    }
+
+    private void verificarContraBusquedaExhaustiva(Map<Long, Producto> vigentes, String[] palabras) {
+        Set<String> consultas = new TreeSet<>();
+        for (String palabra : palabras) {
+            for (int largo = 1; largo <= palabra.length(); largo++) {
+                consultas.add(palabra.substring(0, largo));
+            }
+            consultas.add(palabra + " m");
+            consultas.add(palabra + " la");
+        }
+        for (String consulta : consultas) {
+            List<Long> esperados = vigentes.values().stream()
+                    .filter(producto -> SugerenciasProductos.claves(producto.getNombre()).stream()
+                            .anyMatch(clave -> clave.startsWith(consulta)))
+                    .sorted(Comparator.comparing((Producto producto) -> producto.getStock() == 0)
+                            .thenComparing(Producto::getRating, Comparator.reverseOrder())
+                            .thenComparing(Producto::getId))
+                    .limit(3)
+                    .map(Producto::getId)
+                    .toList();
+            assertThat(ids(sugerencias.sugerir(consulta, 3))).as("consulta '%s'", consulta).isEqualTo(esperados);
+        }
+    }
+}
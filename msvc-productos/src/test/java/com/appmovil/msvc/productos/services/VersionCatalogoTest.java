@@ -0,0 +1,98 @@
+package com.appmovil.msvc.productos.services;
+
+import com.appmovil.msvc.productos.config.CacheConfig;
+import com.appmovil.msvc.productos.models.entities.Producto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * La versión del catálogo se incrementa recién cuando las cachés ya se invalidaron: un GET que lee
+ * la versión nueva no puede encontrar datos viejos en caché.
+ */
+@SpringBootTest(properties = "productos.cache.enabled=true")
+@ActiveProfiles("test")
+@DisplayName("VersionCatalogo - Orden respecto de la caché")
+class VersionCatalogoTest {
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @SpyBean
+    private VersionCatalogo versionCatalogo;
+
+    @Test
+    @DisplayName("incrementar - Debe ocurrir después de invalidar los listados cacheados")
+    void testIncrementar_DespuesDeInvalidarListados() {
+        // Given: los listados quedan en caché
+        productoService.save(producto("Teclado"));
+        productoService.findActivos();
+        productoService.findByCategoria("PERIFERICOS");
+        Cache activos = cacheManager.getCache(CacheConfig.PRODUCTOS_ACTIVOS);
+        Cache porCategoria = cacheManager.getCache(CacheConfig.PRODUCTOS_POR_CATEGORIA);
+        assertThat(activos.get(SimpleKey.EMPTY)).isNotNull();
+
+        List<Boolean> cachesVacias = new ArrayList<>();
+        doAnswer(inv -> {
+            cachesVacias.add(activos.get(SimpleKey.EMPTY) == null
+                    && porCategoria.get(Producto.normalizarCategoria("PERIFERICOS")) == null);
+            return inv.callRealMethod();
+        }).when(versionCatalogo).incrementar();
+
+        // When
+        productoService.save(producto("Mouse"));
+
+        // Then
+        assertThat(cachesVacias).isNotEmpty().containsOnly(true);
+        assertThat(productoService.findActivos()).extracting(Producto::getNombre).contains("Teclado", "Mouse");
+    }
+
+    @Test
+    @DisplayName("findByCategoria - Variantes con espacios o mayúsculas comparten entrada y el cambio de stock no la invalida")
+    void testFindByCategoria_ClaveNormalizada() {
+        // Given
+        Producto monitor = productoService.save(producto("Monitor", " Monitores"));
+        Cache porCategoria = cacheManager.getCache(CacheConfig.PRODUCTOS_POR_CATEGORIA);
+        Cache productos = cacheManager.getCache(CacheConfig.PRODUCTOS);
+
+        // When
+        List<Producto> primera = productoService.findByCategoria("MONITORES ");
+        List<Producto> segunda = productoService.findByCategoria("  monitores");
+
+        // Then
+        assertThat(primera).extracting(Producto::getId).containsExactly(monitor.getId());
+        assertThat(segunda).extracting(Producto::getId).containsExactly(monitor.getId());
+        Cache.ValueWrapper entrada = porCategoria.get("monitores");
+        assertThat(entrada).isNotNull();
+
+        // El cambio de stock solo invalida la entrada del producto; el listado se arma con el stock nuevo
+        productoService.actualizarStock(monitor.getId(), -1);
+        assertThat(productos.get(monitor.getId())).isNull();
+        assertThat(porCategoria.get("monitores").get()).isSameAs(entrada.get());
+        assertThat(productoService.findByCategoria(" Monitores ")).extracting(Producto::getStock).containsExactly(4);
+    }
+
+    private static Producto producto(String nombre) {
+        return producto(nombre, "PERIFERICOS");
+    }
+
+    private static Producto producto(String nombre, String categoria) {
+        return Producto.builder().nombre(nombre).descripcion(nombre).precio(10_000).stock(5)
+                .categoria(categoria).activo(true).build();
+    }
+}
@@ -0,0 +1,83 @@
+package com.appmovil.msvc.productos.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DisplayName("VistaCatalogo - Unit Tests")
+class VistaCatalogoTest {
+
+    @Test
+    @DisplayName("recargar - Los cambios recibidos durante la lectura deben reaplicarse sin repetir sus avisos")
+    void testRecargar_DebeReaplicarPendientes() {
+        // Given: mientras se lee la base llega un cambio que la lectura no vio
+        Vista vista = new Vista();
+        vista.lectura = () -> {
+            vista.registrar(List.of("b"));
+            return List.of("a");
+        };
+
+        // When
+        vista.recargar();
+
+        // Then
+        assertThat(vista.isListo()).isTrue();
+        assertThat(vista.estado).containsExactly("a", "b");
+        assertThat(vista.publicados).containsExactly("b");
+    }
+
+    @Test
+    @DisplayName("recargar - Si la lectura falla debe conservar el estado anterior y dejar de guardar pendientes")
+    void testRecargar_ConError_DebeConservarEstado() {
+        // Given
+        Vista vista = new Vista();
+        vista.lectura = () -> List.of("a");
+        vista.recargar();
+        vista.lectura = () -> {
+            vista.registrar(List.of("b"));
+            throw new IllegalStateException("sin conexión");
+        };
+
+        // When & Then
+        assertThatThrownBy(vista::recargar).isInstanceOf(IllegalStateException.class);
+        assertThat(vista.estado).containsExactly("a", "b");
+
+        // Una recarga posterior no reaplica el cambio de la lectura fallida
+        vista.lectura = () -> List.of("a", "b");
+        vista.recargar();
+        assertThat(vista.estado).containsExactly("a", "b");
+    }
+
+    private static final class Vista extends VistaCatalogo<List<String>, String> {
+
+        Supplier<List<String>> lectura;
+        List<String> estado = new ArrayList<>();
+        final List<String> publicados = new ArrayList<>();
+
+        @Override
+        protected List<String> leer() {
+            return lectura.get();
+        }
+
+        @Override
+        protected void reemplazar(List<String> leido) {
+            estado = new ArrayList<>(leido);
+        }
+
+        @Override
+        protected void aplicar(Object evento, List<String> avisos) {
+            estado.add((String) evento);
+            avisos.add((String) evento);
+        }
+
+        @Override
+        protected void publicar(List<String> avisos) {
+            publicados.addAll(avisos);
+        }
+    }
+}
@@ -1,11 +1,16 @@
 ﻿package com.appmovil.msvc.resenas.clients;
 
+import com.appmovil.msvc.resenas.dtos.RatingProductoDTO;
 import com.appmovil.msvc.resenas.models.Producto;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
+import java.util.Map;
 
 @FeignClient(name = "msvc-productos", url = "http://localhost:8002/api/v1/productos")
 public interface ProductoClientRest {
@@ -14,4 +19,10 @@ public interface ProductoClientRest {
 
     @GetMapping("/{id}")
     Producto findById(@PathVariable Long id);
+
+    @GetMapping("/batch")
+    Map<Long, Producto> findByIds(@RequestParam List<Long> ids);
+
+    @PutMapping("/ratings")
+    void actualizarRatings(@RequestBody List<RatingProductoDTO> ratings);
 }
@@ -0,0 +1,15 @@
+package com.appmovil.msvc.resenas.dtos;
+
+import lombok.*;
+
+// Promedio de reseñas de un producto tal como se envía a msvc-productos
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+public class RatingProductoDTO {
+    private Long idProducto;
+    private Double rating;
+    private Long cantidadResenas;
+}
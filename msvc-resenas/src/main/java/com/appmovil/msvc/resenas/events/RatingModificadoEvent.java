@@ -0,0 +1,17 @@
+package com.appmovil.msvc.resenas.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Se publica desde AgregadoRatings cada vez que cambia el acumulado de un producto.
+ * Se escucha después del commit para encolar el producto en el próximo envío a msvc-productos.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class RatingModificadoEvent {
+
+    private final Long idProducto;
+}
@@ -0,0 +1,48 @@
+package com.appmovil.msvc.resenas.models.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Acumulado de las reseñas activas de un producto. Se actualiza con cada alta, edición o baja de una
+ * reseña, así el promedio sale de una fila en lugar de un AVG sobre todas las reseñas del producto.
+ * <p>
+ * cambios cuenta las actualizaciones del acumulado y cambiosPublicados el valor ya enviado a msvc-productos:
+ * una fila con cambios mayor está pendiente de enviar, también después de un reinicio.
+ */
+@Entity
+@Table(name = "rating_productos")
+@Getter @Setter @ToString
+@NoArgsConstructor
+public class RatingProducto {
+    @Id
+    @Column(name = "id_producto")
+    private Long idProducto;
+
+    @Column(nullable = false)
+    private Long cantidad = 0L;
+
+    @Column(nullable = false)
+    private Long suma = 0L;
+
+    // Sin nullable = false: las filas creadas antes de estas columnas quedan en null (ya enviadas)
+    @Column(name = "cambios")
+    private Long cambios = 0L;
+
+    @Column(name = "cambios_publicados")
+    private Long cambiosPublicados = 0L;
+
+    public RatingProducto(Long idProducto, Long cantidad, Long suma) {
+        this.idProducto = idProducto;
+        this.cantidad = cantidad;
+        this.suma = suma;
+    }
+
+    public double promedio() {
+        if (cantidad == null || cantidad == 0) {
+            return 0.0;
+        }
+        // Dos decimales: evita reenviar cambios que no se ven en el catálogo
+        return Math.round(suma * 100.0 / cantidad) / 100.0;
+    }
+}
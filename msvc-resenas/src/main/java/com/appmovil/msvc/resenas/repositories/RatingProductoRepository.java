@@ -0,0 +1,30 @@
+package com.appmovil.msvc.resenas.repositories;
+
+import com.appmovil.msvc.resenas.models.entities.RatingProducto;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RatingProductoRepository extends JpaRepository<RatingProducto, Long> {
+
+    // Suma atómica sobre la fila del producto: dos reseñas concurrentes no se pisan el acumulado.
+    // Incrementar cambios en la misma transacción deja la fila pendiente de enviar
+    @Modifying
+    @Query("UPDATE RatingProducto r SET r.cantidad = r.cantidad + :cantidad, r.suma = r.suma + :suma, " +
+            "r.cambios = COALESCE(r.cambios, 0) + 1 WHERE r.idProducto = :idProducto")
+    int sumar(@Param("idProducto") Long idProducto, @Param("cantidad") long cantidad, @Param("suma") long suma);
+
+    @Query("SELECT r.idProducto FROM RatingProducto r WHERE r.cambios > COALESCE(r.cambiosPublicados, 0)")
+    List<Long> findIdsSinPublicar();
+
+    // Solo avanza: un envío más viejo que termina después no vuelve a marcar como pendiente lo ya enviado
+    @Modifying
+    @Query("UPDATE RatingProducto r SET r.cambiosPublicados = :cambios WHERE r.idProducto = :idProducto " +
+            "AND (r.cambiosPublicados IS NULL OR r.cambiosPublicados < :cambios)")
+    int marcarPublicado(@Param("idProducto") Long idProducto, @Param("cambios") long cambios);
+}
@@ -1,5 +1,6 @@
 ﻿package com.appmovil.msvc.resenas.repositories;
 
+import com.appmovil.msvc.resenas.models.entities.RatingProducto;
 import com.appmovil.msvc.resenas.models.entities.Resena;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -15,8 +16,10 @@ public interface ResenaRepository extends JpaRepository<Resena, Long> {
     
     List<Resena> findByIdProductoAndActivo(Long idProducto, Boolean activo);
     
-    @Query("SELECT AVG(r.rating) FROM Resena r WHERE r.idProducto = :idProducto AND r.activo = true")
-    Double findAverageRatingByProducto(Long idProducto);
+    // Carga inicial del acumulado de ratings: cantidad y suma de las reseñas activas por producto
+    @Query("SELECT new com.appmovil.msvc.resenas.models.entities.RatingProducto(r.idProducto, COUNT(r), SUM(r.rating)) " +
+            "FROM Resena r WHERE r.activo = true GROUP BY r.idProducto")
+    List<RatingProducto> findAcumuladoPorProducto();
     
     boolean existsByIdUsuarioAndIdProducto(Long idUsuario, Long idProducto);
 }
@@ -0,0 +1,231 @@
+package com.appmovil.msvc.resenas.services;
+
+import com.appmovil.msvc.resenas.clients.ProductoClientRest;
+import com.appmovil.msvc.resenas.dtos.RatingProductoDTO;
+import com.appmovil.msvc.resenas.events.RatingModificadoEvent;
+import com.appmovil.msvc.resenas.models.entities.RatingProducto;
+import com.appmovil.msvc.resenas.repositories.RatingProductoRepository;
+import com.appmovil.msvc.resenas.repositories.ResenaRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Mantiene por producto el acumulado (cantidad, suma) de sus reseñas activas y lo propaga a
+ * msvc-productos. Los productos modificados se juntan en un conjunto y se envían cada intervalo-ms
+ * en lotes: muchas reseñas del mismo producto dentro de un intervalo generan un solo envío.
+ * Se envía el promedio absoluto, no el delta, así un reintento nunca cuenta dos veces.
+ * <p>
+ * El conjunto en memoria es solo la cola de trabajo: lo que falta enviar queda marcado en la fila
+ * (cambios &gt; cambiosPublicados) dentro de la transacción de la reseña, y al arrancar se vuelve a encolar.
+ */
+@Component
+@Slf4j
+public class AgregadoRatings {
+
+    @Value("${resenas.ratings.intervalo-ms:2000}")
+    private long intervaloMs;
+
+    @Value("${resenas.ratings.tamanio-lote:200}")
+    private int tamanioLote;
+
+    @Autowired
+    private RatingProductoRepository ratingProductoRepository;
+
+    @Autowired
+    private ResenaRepository resenaRepository;
+
+    @Autowired
+    private ProductoClientRest productoClientRest;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Productos cuyo promedio cambió y todavía no se envió a msvc-productos
+    private final Set<Long> pendientes = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService publicador;
+
+    @PostConstruct
+    public void iniciar() {
+        publicador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "ratings-publicador");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        publicador.scheduleWithFixedDelay(this::publicarSinFallar, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void detener() {
+        publicador.shutdown();
+        try {
+            publicador.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        publicarSinFallar();
+    }
+
+    // Instalaciones con reseñas previas a esta tabla: el acumulado se arma una vez y se envía completo.
+    // Después se encolan los acumulados que cambiaron y no llegaron a enviarse antes de un reinicio o una caída
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        if (ratingProductoRepository.count() == 0) {
+            List<RatingProducto> acumulados = resenaRepository.findAcumuladoPorProducto();
+            if (!acumulados.isEmpty()) {
+                acumulados.forEach(acumulado -> acumulado.setCambios(1L));
+                ratingProductoRepository.saveAll(acumulados);
+                log.info("Acumulado de ratings inicializado para {} productos", acumulados.size());
+            }
+        }
+
+        List<Long> sinPublicar = ratingProductoRepository.findIdsSinPublicar();
+        if (!sinPublicar.isEmpty()) {
+            pendientes.addAll(sinPublicar);
+            log.info("{} ratings pendientes de enviar a msvc-productos", sinPublicar.size());
+        }
+    }
+
+    /**
+     * Suma al acumulado del producto dentro de la transacción de la reseña: si la reseña hace
+     * rollback, el acumulado también.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void aplicar(Long idProducto, long cantidad, long suma) {
+        if (cantidad == 0 && suma == 0) {
+            return;
+        }
+        if (ratingProductoRepository.sumar(idProducto, cantidad, suma) == 0) {
+            crearFila(idProducto);
+            ratingProductoRepository.sumar(idProducto, cantidad, suma);
+        }
+        eventPublisher.publishEvent(new RatingModificadoEvent(idProducto));
+    }
+
+    // Primera reseña del producto: la fila se crea en su propia transacción para que, si otra reseña
+    // concurrente la creó antes, el choque de clave no arrastre a la transacción de la reseña
+    private void crearFila(Long idProducto) {
+        TransactionTemplate nueva = new TransactionTemplate(transactionManager);
+        nueva.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            nueva.executeWithoutResult(estado -> {
+                if (!ratingProductoRepository.existsById(idProducto)) {
+                    ratingProductoRepository.saveAndFlush(new RatingProducto(idProducto, 0L, 0L));
+                }
+            });
+        } catch (DataIntegrityViolationException ex) {
+            log.debug("El acumulado del producto {} ya fue creado por otra reseña", idProducto);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public double promedio(Long idProducto) {
+        return ratingProductoRepository.findById(idProducto)
+                .map(RatingProducto::promedio)
+                .orElse(0.0);
+    }
+
+    @TransactionalEventListener
+    public void onRatingModificado(RatingModificadoEvent event) {
+        pendientes.add(event.getIdProducto());
+    }
+
+    /**
+     * Envía a msvc-productos el promedio actual de cada producto pendiente, en lotes de tamanio-lote.
+     * Si un lote falla, sus productos vuelven a quedar pendientes para el siguiente intervalo.
+     */
+    public synchronized void publicar() {
+        if (pendientes.isEmpty()) {
+            return;
+        }
+
+        Set<Long> ids = new TreeSet<>();
+        for (Long id : pendientes) {
+            pendientes.remove(id);
+            ids.add(id);
+        }
+
+        Map<Long, RatingProducto> acumulados;
+        try {
+            acumulados = ratingProductoRepository.findAllById(ids).stream()
+                    .collect(Collectors.toMap(RatingProducto::getIdProducto, Function.identity()));
+        } catch (RuntimeException ex) {
+            pendientes.addAll(ids);
+            throw ex;
+        }
+        List<RatingProductoDTO> ratings = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            RatingProducto acumulado = acumulados.getOrDefault(id, new RatingProducto(id, 0L, 0L));
+            ratings.add(new RatingProductoDTO(id, acumulado.promedio(), acumulado.getCantidad()));
+        }
+
+        for (int desde = 0; desde < ratings.size(); desde += tamanioLote) {
+            List<RatingProductoDTO> lote = ratings.subList(desde, Math.min(desde + tamanioLote, ratings.size()));
+            try {
+                productoClientRest.actualizarRatings(lote);
+            } catch (RuntimeException ex) {
+                lote.forEach(rating -> pendientes.add(rating.getIdProducto()));
+                log.warn("No se pudieron enviar {} ratings a msvc-productos, se reintentará: {}",
+                        lote.size(), ex.getMessage());
+                continue;
+            }
+            try {
+                marcarPublicados(lote, acumulados);
+            } catch (RuntimeException ex) {
+                // Reenviar el mismo promedio no cambia nada; así el envío queda anotado en el próximo intervalo
+                lote.forEach(rating -> pendientes.add(rating.getIdProducto()));
+                log.warn("No se pudo anotar el envío de {} ratings, se reenviarán: {}", lote.size(), ex.getMessage());
+            }
+        }
+    }
+
+    // Se anota el valor de cambios leído antes del envío: una reseña confirmada mientras tanto deja la
+    // fila todavía pendiente (y ya está otra vez en pendientes por su evento)
+    private void marcarPublicados(List<RatingProductoDTO> lote, Map<Long, RatingProducto> acumulados) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(estado -> {
+            for (RatingProductoDTO rating : lote) {
+                RatingProducto acumulado = acumulados.get(rating.getIdProducto());
+                if (acumulado != null && acumulado.getCambios() != null) {
+                    ratingProductoRepository.marcarPublicado(rating.getIdProducto(), acumulado.getCambios());
+                }
+            }
+        });
+    }
+
+    private void publicarSinFallar() {
+        try {
+            publicar();
+        } catch (RuntimeException ex) {
+            log.error("Error al publicar ratings: {}", ex.getMessage());
+        }
+    }
+}
@@ -13,7 +13,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,7 +30,44 @@ public class ResenaServiceImpl implements ResenaService {
     @Autowired
     private ProductoClientRest productoClientRest;
 
+    @Autowired
+    private AgregadoRatings agregadoRatings;
+
     private ResenaDTO convertToDTO(Resena resena) {
+        Producto producto = null;
+        try {
+            producto = this.productoClientRest.findById(resena.getIdProducto());
+        } catch (FeignException e) {
+            throw new ResenaException("El producto no existe");
+        }
+
+        return convertToDTO(resena, producto);
+    }
+
+    // Convierte una lista de reseñas obteniendo todos sus productos en una sola llamada
+    private List<ResenaDTO> convertToDTOs(List<Resena> resenas) {
+        if (resenas.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Long> idsProductos = resenas.stream()
+                .map(Resena::getIdProducto)
+                .distinct()
+                .collect(Collectors.toList());
+
+        Map<Long, Producto> productos;
+        try {
+            productos = this.productoClientRest.findByIds(idsProductos);
+        } catch (FeignException e) {
+            throw new ResenaException("El producto no existe");
+        }
+
+        return resenas.stream()
+                .map(resena -> convertToDTO(resena, productos.get(resena.getIdProducto())))
+                .collect(Collectors.toList());
+    }
+
+    private ResenaDTO convertToDTO(Resena resena, Producto producto) {
         Usuario usuario = null;
         try {
             usuario = this.usuarioClientRest.findById(resena.getIdUsuario());
@@ -36,10 +75,7 @@ public class ResenaServiceImpl implements ResenaService {
             throw new ResenaException("El usuario no existe");
         }
 
-        Producto producto = null;
-        try {
-            producto = this.productoClientRest.findById(resena.getIdProducto());
-        } catch (FeignException e) {
+        if (producto == null) {
             throw new ResenaException("El producto no existe");
         }
 
@@ -59,9 +95,7 @@ public class ResenaServiceImpl implements ResenaService {
     @Override
     @Transactional(readOnly = true)
     public List<ResenaDTO> findAll() {
-        return this.resenaRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return convertToDTOs(this.resenaRepository.findAll());
     }
 
     @Override
@@ -94,6 +128,9 @@ public class ResenaServiceImpl implements ResenaService {
         }
         
         Resena saved = this.resenaRepository.save(resena);
+        if (Boolean.TRUE.equals(saved.getActivo())) {
+            this.agregadoRatings.aplicar(saved.getIdProducto(), 1, saved.getRating());
+        }
         return convertToDTO(saved);
     }
 
@@ -104,6 +141,10 @@ public class ResenaServiceImpl implements ResenaService {
                 () -> new ResenaException("Resena con id " + id + " no encontrada")
         );
         
+        // Solo las reseñas activas cuentan en el promedio del producto
+        if (Boolean.TRUE.equals(existing.getActivo())) {
+            this.agregadoRatings.aplicar(existing.getIdProducto(), 0, resena.getRating() - existing.getRating());
+        }
         existing.setRating(resena.getRating());
         existing.setComentario(resena.getComentario());
         
@@ -117,6 +158,9 @@ public class ResenaServiceImpl implements ResenaService {
         Resena resena = this.resenaRepository.findById(id).orElseThrow(
                 () -> new ResenaException("Resena con id " + id + " no encontrada")
         );
+        if (Boolean.TRUE.equals(resena.getActivo())) {
+            this.agregadoRatings.aplicar(resena.getIdProducto(), -1, -resena.getRating());
+        }
         resena.setActivo(false);
         this.resenaRepository.save(resena);
     }
@@ -124,23 +168,19 @@ public class ResenaServiceImpl implements ResenaService {
     @Override
     @Transactional(readOnly = true)
     public List<ResenaDTO> findByUsuario(Long idUsuario) {
-        return this.resenaRepository.findByIdUsuario(idUsuario).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return convertToDTOs(this.resenaRepository.findByIdUsuario(idUsuario));
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<ResenaDTO> findByProducto(Long idProducto) {
-        return this.resenaRepository.findByIdProductoAndActivo(idProducto, true).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return convertToDTOs(this.resenaRepository.findByIdProductoAndActivo(idProducto, true));
     }
 
     @Override
     @Transactional(readOnly = true)
     public Double getAverageRatingByProducto(Long idProducto) {
-        Double avg = this.resenaRepository.findAverageRatingByProducto(idProducto);
-        return avg != null ? avg : 0.0;
+        // Se lee del acumulado del producto en lugar de un AVG sobre todas sus reseñas
+        return this.agregadoRatings.promedio(idProducto);
     }
 }
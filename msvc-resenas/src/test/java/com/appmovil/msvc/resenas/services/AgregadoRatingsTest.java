@@ -0,0 +1,161 @@
+package com.appmovil.msvc.resenas.services;
+
+import com.appmovil.msvc.resenas.clients.ProductoClientRest;
+import com.appmovil.msvc.resenas.dtos.RatingProductoDTO;
+import com.appmovil.msvc.resenas.events.RatingModificadoEvent;
+import com.appmovil.msvc.resenas.models.entities.RatingProducto;
+import com.appmovil.msvc.resenas.repositories.RatingProductoRepository;
+import com.appmovil.msvc.resenas.repositories.ResenaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AgregadoRatings - Unit Tests")
+class AgregadoRatingsTest {
+
+    @Mock
+    private RatingProductoRepository ratingProductoRepository;
+
+    @Mock
+    private ResenaRepository resenaRepository;
+
+    @Mock
+    private ProductoClientRest productoClientRest;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private AgregadoRatings agregadoRatings;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(agregadoRatings, "tamanioLote", 2);
+    }
+
+    @Test
+    @DisplayName("aplicar - Debe sumar sobre la fila existente y publicar el cambio")
+    void testAplicar_FilaExistente_DebeSumar() {
+        // Given
+        when(ratingProductoRepository.sumar(1L, 1, 4)).thenReturn(1);
+
+        // When
+        agregadoRatings.aplicar(1L, 1, 4);
+
+        // Then
+        verify(ratingProductoRepository, never()).saveAndFlush(any());
+        verify(eventPublisher).publishEvent(any(RatingModificadoEvent.class));
+    }
+
+    @Test
+    @DisplayName("aplicar - Con la primera reseña del producto debe crear la fila y volver a sumar")
+    void testAplicar_PrimeraResena_DebeCrearFila() {
+        // Given
+        when(ratingProductoRepository.sumar(7L, 1, 5)).thenReturn(0, 1);
+        when(ratingProductoRepository.existsById(7L)).thenReturn(false);
+
+        // When
+        agregadoRatings.aplicar(7L, 1, 5);
+
+        // Then
+        verify(ratingProductoRepository).saveAndFlush(argThat(r -> r.getIdProducto() == 7L && r.getCantidad() == 0));
+        verify(ratingProductoRepository, times(2)).sumar(7L, 1, 5);
+    }
+
+    @Test
+    @DisplayName("publicar - Varios cambios del mismo producto deben enviarse una sola vez, en lotes")
+    void testPublicar_DebeCoalescerYEnviarEnLotes() {
+        // Given
+        for (long id : new long[]{1L, 2L, 1L, 3L, 1L}) {
+            agregadoRatings.onRatingModificado(new RatingModificadoEvent(id));
+        }
+        when(ratingProductoRepository.findAllById(any())).thenReturn(List.of(
+                new RatingProducto(1L, 3L, 13L), new RatingProducto(2L, 1L, 5L)));
+
+        // When
+        agregadoRatings.publicar();
+
+        // Then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<RatingProductoDTO>> lotes = ArgumentCaptor.forClass(List.class);
+        verify(productoClientRest, times(2)).actualizarRatings(lotes.capture());
+        List<RatingProductoDTO> enviados = lotes.getAllValues().stream().flatMap(List::stream).toList();
+        assertThat(enviados).extracting(RatingProductoDTO::getIdProducto).containsExactly(1L, 2L, 3L);
+        assertThat(enviados.get(0).getRating()).isEqualTo(4.33);
+        // Sin reseñas activas el promedio vuelve a 0
+        assertThat(enviados.get(2).getRating()).isEqualTo(0.0);
+
+        agregadoRatings.publicar();
+        verifyNoMoreInteractions(productoClientRest);
+    }
+
+    @Test
+    @DisplayName("publicar - Si msvc-productos falla, el producto debe quedar pendiente para el siguiente envío")
+    void testPublicar_ErrorRemoto_DebeReintentar() {
+        // Given
+        agregadoRatings.onRatingModificado(new RatingModificadoEvent(1L));
+        when(ratingProductoRepository.findAllById(any())).thenReturn(List.of(new RatingProducto(1L, 2L, 9L)));
+        doThrow(new RuntimeException("sin conexión")).doNothing().when(productoClientRest).actualizarRatings(anyList());
+
+        // When
+        agregadoRatings.publicar();
+        agregadoRatings.publicar();
+
+        // Then
+        verify(productoClientRest, times(2)).actualizarRatings(argThat(lote ->
+                lote.size() == 1 && lote.get(0).getRating() == 4.5));
+        verify(ratingProductoRepository, times(1)).marcarPublicado(eq(1L), anyLong());
+    }
+
+    @Test
+    @DisplayName("publicar - Debe anotar en la fila el valor de cambios que se envió")
+    void testPublicar_DebeMarcarPublicado() {
+        // Given
+        RatingProducto acumulado = new RatingProducto(1L, 2L, 9L);
+        acumulado.setCambios(7L);
+        agregadoRatings.onRatingModificado(new RatingModificadoEvent(1L));
+        when(ratingProductoRepository.findAllById(any())).thenReturn(List.of(acumulado));
+
+        // When
+        agregadoRatings.publicar();
+
+        // Then
+        verify(ratingProductoRepository).marcarPublicado(1L, 7L);
+    }
+
+    @Test
+    @DisplayName("inicializar - Debe volver a encolar los acumulados que cambiaron y no se enviaron antes de reiniciar")
+    void testInicializar_DebeEncolarSinPublicar() {
+        // Given
+        when(ratingProductoRepository.count()).thenReturn(3L);
+        when(ratingProductoRepository.findIdsSinPublicar()).thenReturn(List.of(4L));
+        when(ratingProductoRepository.findAllById(any())).thenReturn(List.of(new RatingProducto(4L, 1L, 5L)));
+
+        // When
+        agregadoRatings.inicializar();
+        agregadoRatings.publicar();
+
+        // Then
+        verify(resenaRepository, never()).findAcumuladoPorProducto();
+        verify(productoClientRest).actualizarRatings(argThat(lote ->
+                lote.size() == 1 && lote.get(0).getIdProducto() == 4L && lote.get(0).getRating() == 5.0));
+    }
+}
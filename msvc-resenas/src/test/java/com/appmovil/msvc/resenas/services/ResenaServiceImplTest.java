@@ -20,6 +20,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.*;
@@ -39,6 +40,9 @@ class ResenaServiceImplTest {
     @Mock
     private ProductoClientRest productoClientRest;
 
+    @Mock
+    private AgregadoRatings agregadoRatings;
+
     @InjectMocks
     private ResenaServiceImpl resenaService;
 
@@ -74,7 +78,7 @@ class ResenaServiceImplTest {
         // Given
         when(resenaRepository.findAll()).thenReturn(Arrays.asList(resenaTest));
         when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
-        when(productoClientRest.findById(1L)).thenReturn(productoTest);
+        when(productoClientRest.findByIds(List.of(1L))).thenReturn(Map.of(1L, productoTest));
 
         // When
         List<ResenaDTO> resultado = resenaService.findAll();
@@ -86,7 +90,7 @@ class ResenaServiceImplTest {
         assertThat(resultado.get(0).getRating()).isEqualTo(5);
         verify(resenaRepository).findAll();
         verify(usuarioClientRest).findById(1L);
-        verify(productoClientRest).findById(1L);
+        verify(productoClientRest).findByIds(List.of(1L));
     }
 
     @Test
@@ -144,6 +148,7 @@ class ResenaServiceImplTest {
         verify(productoClientRest).findById(1L);
         verify(resenaRepository).existsByIdUsuarioAndIdProducto(1L, 1L);
         verify(resenaRepository).save(any(Resena.class));
+        verify(agregadoRatings).aplicar(1L, 1, 5);
     }
 
     @Test
@@ -213,6 +218,8 @@ class ResenaServiceImplTest {
         verify(resenaRepository).save(argThat(r -> 
             r.getRating() == 4 && r.getComentario().contains("Actualizado")
         ));
+        // De 5 a 4 estrellas: la cantidad no cambia y la suma baja 1
+        verify(agregadoRatings).aplicar(1L, 0, -1);
     }
 
     @Test
@@ -241,6 +248,21 @@ class ResenaServiceImplTest {
 
         // Then
         verify(resenaRepository).save(argThat(r -> !r.getActivo()));
+        verify(agregadoRatings).aplicar(1L, -1, -5);
+    }
+
+    @Test
+    @DisplayName("delete - Una Resena ya desactivada no debe descontarse dos veces del promedio")
+    void testDelete_ResenaInactiva_NoDebeTocarElAcumulado() {
+        // Given
+        resenaTest.setActivo(false);
+        when(resenaRepository.findById(1L)).thenReturn(Optional.of(resenaTest));
+
+        // When
+        resenaService.delete(1L);
+
+        // Then
+        verifyNoInteractions(agregadoRatings);
     }
 
     @Test
@@ -262,7 +284,7 @@ class ResenaServiceImplTest {
         // Given
         when(resenaRepository.findByIdUsuario(1L)).thenReturn(Arrays.asList(resenaTest));
         when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
-        when(productoClientRest.findById(1L)).thenReturn(productoTest);
+        when(productoClientRest.findByIds(List.of(1L))).thenReturn(Map.of(1L, productoTest));
 
         // When
         List<ResenaDTO> resultado = resenaService.findByUsuario(1L);
@@ -279,7 +301,7 @@ class ResenaServiceImplTest {
         // Given
         when(resenaRepository.findByIdProductoAndActivo(1L, true)).thenReturn(Arrays.asList(resenaTest));
         when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
-        when(productoClientRest.findById(1L)).thenReturn(productoTest);
+        when(productoClientRest.findByIds(List.of(1L))).thenReturn(Map.of(1L, productoTest));
 
         // When
         List<ResenaDTO> resultado = resenaService.findByProducto(1L);
@@ -295,21 +317,21 @@ class ResenaServiceImplTest {
     @DisplayName("getAverageRatingByProducto - Debe calcular promedio correcto")
     void testGetAverageRatingByProducto_DebeCalcularPromedio() {
         // Given
-        when(resenaRepository.findAverageRatingByProducto(1L)).thenReturn(4.5);
+        when(agregadoRatings.promedio(1L)).thenReturn(4.5);
 
         // When
         Double promedio = resenaService.getAverageRatingByProducto(1L);
 
         // Then
         assertThat(promedio).isEqualTo(4.5);
-        verify(resenaRepository).findAverageRatingByProducto(1L);
+        verify(agregadoRatings).promedio(1L);
     }
 
     @Test
     @DisplayName("getAverageRatingByProducto - Debe retornar 0.0 si no hay Resenas")
     void testGetAverageRatingByProducto_SinResenas_DebeRetornar0() {
         // Given
-        when(resenaRepository.findAverageRatingByProducto(1L)).thenReturn(null);
+        when(agregadoRatings.promedio(1L)).thenReturn(0.0);
 
         // When
         Double promedio = resenaService.getAverageRatingByProducto(1L);
@@ -336,8 +358,7 @@ class ResenaServiceImplTest {
     void testFindAll_ErrorProducto_DebeLanzarExcepcion() {
         // Given
         when(resenaRepository.findAll()).thenReturn(Arrays.asList(resenaTest));
-        when(usuarioClientRest.findById(1L)).thenReturn(usuarioTest);
-        when(productoClientRest.findById(1L)).thenThrow(mock(FeignException.class));
+        when(productoClientRest.findByIds(List.of(1L))).thenThrow(mock(FeignException.class));
 
         // When & Then
         assertThatThrownBy(() -> resenaService.findAll())